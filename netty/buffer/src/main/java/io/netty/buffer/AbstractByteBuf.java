@@ -157,11 +157,19 @@ public abstract class AbstractByteBuf implements ByteBuf {
 
         setBytes(0, this, readerIndex, writerIndex - readerIndex);
         writerIndex -= readerIndex;
-        markedReaderIndex = Math.max(markedReaderIndex - readerIndex, 0);
-        markedWriterIndex = Math.max(markedWriterIndex - readerIndex, 0);
+        adjustMarkers(readerIndex);
         readerIndex = 0;
     }
 
+    /**
+     * Decreases the marked {@code readerIndex} and {@code writerIndex} by the
+     * specified amount when the bytes in front of them have been discarded.
+     */
+    protected final void adjustMarkers(int decrement) {
+        markedReaderIndex = Math.max(markedReaderIndex - decrement, 0);
+        markedWriterIndex = Math.max(markedWriterIndex - decrement, 0);
+    }
+
     @Override
     public void ensureWritableBytes(int writableBytes) {
         if (writableBytes > writableBytes()) {
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2012 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.buffer;
+
+import io.netty.util.IllegalReferenceCountException;
+import io.netty.util.ResourceLeak;
+import io.netty.util.ResourceLeakDetector;
+
+import java.nio.ByteOrder;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+/**
+ * A skeletal implementation of a buffer which owns its memory and keeps
+ * track of its reference count.  The buffers derived from it share its
+ * reference count.
+ */
+public abstract class AbstractReferenceCountedByteBuf extends AbstractByteBuf {
+
+    private static final AtomicIntegerFieldUpdater<AbstractReferenceCountedByteBuf> refCntUpdater =
+            AtomicIntegerFieldUpdater.newUpdater(AbstractReferenceCountedByteBuf.class, "refCnt");
+
+    static final ResourceLeakDetector<ByteBuf> leakDetector =
+            new ResourceLeakDetector<ByteBuf>(ByteBuf.class);
+
+    private volatile int refCnt = 1;
+    private ResourceLeak leak;
+
+    protected AbstractReferenceCountedByteBuf(ByteOrder endianness) {
+        super(endianness);
+    }
+
+    @Override
+    public int refCnt() {
+        return refCnt;
+    }
+
+    @Override
+    public ByteBuf retain() {
+        return retain(1);
+    }
+
+    @Override
+    public ByteBuf retain(int increment) {
+        if (increment <= 0) {
+            throw new IllegalArgumentException("increment: " + increment + " (expected: > 0)");
+        }
+
+        for (;;) {
+            int refCnt = this.refCnt;
+            if (refCnt == 0 || refCnt > Integer.MAX_VALUE - increment) {
+                throw new IllegalReferenceCountException(refCnt, increment);
+            }
+            if (refCntUpdater.compareAndSet(this, refCnt, refCnt + increment)) {
+                break;
+            }
+        }
+        return this;
+    }
+
+    @Override
+    public boolean release() {
+        return release(1);
+    }
+
+    @Override
+    public boolean release(int decrement) {
+        if (decrement <= 0) {
+            throw new IllegalArgumentException("decrement: " + decrement + " (expected: > 0)");
+        }
+
+        for (;;) {
+            int refCnt = this.refCnt;
+            if (refCnt < decrement) {
+                throw new IllegalReferenceCountException(refCnt, -decrement);
+            }
+
+            if (refCntUpdater.compareAndSet(this, refCnt, refCnt - decrement)) {
+                if (refCnt == decrement) {
+                    ResourceLeak leak = this.leak;
+                    if (leak != null) {
+                        leak.close();
+                    }
+                    deallocate();
+                    return true;
+                }
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Starts tracking this buffer with the {@link ResourceLeakDetector} if it
+     * is sampled.  Called by the allocators of the buffers whose memory is
+     * not reclaimed promptly by the garbage collector.
+     */
+    final void trackLeak() {
+        leak = leakDetector.open(this);
+    }
+
+    /**
+     * Throws an {@link IllegalReferenceCountException} if this buffer has
+     * been deallocated already.
+     */
+    protected final void ensureAccessible() {
+        if (refCnt == 0) {
+            throw new IllegalReferenceCountException(0);
+        }
+    }
+
+    /**
+     * Called once {@link #refCnt()} is equal to {@code 0}.
+     */
+    protected abstract void deallocate();
+}
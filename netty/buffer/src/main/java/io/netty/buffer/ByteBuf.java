@@ -15,6 +15,8 @@
  */
 package io.netty.buffer;
 
+import io.netty.util.ReferenceCounted;
+
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -264,6 +266,21 @@ import java.nio.charset.UnsupportedCharsetException;
  * 如果要求一个新鲜的拷贝的话，调用copy方法。
  * In case a completely fresh copy of an existing buffer is required, please
  * call {@link #copy()} method instead.
+ * <p>
+ * A derived buffer shares the reference count of the buffer it was derived
+ * from.  Releasing a derived buffer releases the original buffer.
+ *
+ * <h3>Reference counting</h3>
+ *
+ * A buffer starts with the reference count of {@code 1}.  The party which
+ * accesses a buffer last is responsible for calling {@link #release()}, so
+ * that a pooled buffer can return its memory to the pool as soon as
+ * possible.  A buffer must not be accessed once its reference count reached
+ * {@code 0}.  A buffer which is not pooled is still reclaimed by the garbage
+ * collector even if it is never released.  A buffer written to a channel is
+ * released by the channel pipeline once its content has been transferred,
+ * so call {@link #retain()} before writing a buffer which is written again
+ * later.
  *
  * <h3>Conversion to existing JDK types</h3>
  *
@@ -294,7 +311,7 @@ import java.nio.charset.UnsupportedCharsetException;
  * {@link ByteBufOutputStream}.
  * @apiviz.landmark
  */
-public interface ByteBuf extends ChannelBuf, Comparable<ByteBuf> {
+public interface ByteBuf extends ChannelBuf, ReferenceCounted, Comparable<ByteBuf> {
 
     /**
      * Returns the factory which creates a {@link ByteBuf} whose
@@ -1842,4 +1859,10 @@ public interface ByteBuf extends ChannelBuf, Comparable<ByteBuf> {
      */
     @Override
     String toString();
+
+    @Override
+    ByteBuf retain();
+
+    @Override
+    ByteBuf retain(int increment);
 }
@@ -231,6 +231,25 @@ public final class ByteBufUtil {
         }
     }
 
+    /**
+     * Releases the storage of the specified buffer and allocates a smaller one
+     * if it is a {@link DynamicByteBuf}, it has no readable bytes and its
+     * capacity is greater than the specified capacity.  A transport calls this
+     * method with the next expected receive buffer size once its inbound
+     * buffer has been larger than that for a while, so that the buffer does
+     * not keep the memory allocated for a burst.
+     *
+     * @return {@code true} if and only if the capacity has been reduced
+     *
+     * @see DynamicByteBuf#shrink(int)
+     */
+    public static boolean shrink(ByteBuf buffer, int capacity) {
+        if (buffer instanceof DynamicByteBuf) {
+            return ((DynamicByteBuf) buffer).shrink(capacity);
+        }
+        return false;
+    }
+
     /**
      * Toggles the endianness of the specified 16-bit short integer.
      */
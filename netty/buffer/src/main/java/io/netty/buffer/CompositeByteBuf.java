@@ -37,10 +37,11 @@ import java.util.List;
  * is recommended to use {@link Unpooled#wrappedBuffer(ByteBuf...)}
  * instead of calling the constructor explicitly.
  */
-public class CompositeByteBuf extends AbstractByteBuf {
+public class CompositeByteBuf extends AbstractReferenceCountedByteBuf {
 
     private ByteBuf[] components;
     private int[] indices;
+    private int componentCount;
     private int lastAccessedComponentId;
 
     public CompositeByteBuf(ByteOrder endianness, List<ByteBuf> buffers) {
@@ -62,7 +63,7 @@ public class CompositeByteBuf extends AbstractByteBuf {
         }
 
         int componentId = componentId(index);
-        List<ByteBuf> slice = new ArrayList<ByteBuf>(components.length);
+        List<ByteBuf> slice = new ArrayList<ByteBuf>(componentCount);
 
         // The first component
         ByteBuf first = components[componentId].duplicate();
@@ -106,8 +107,9 @@ public class CompositeByteBuf extends AbstractByteBuf {
         lastAccessedComponentId = 0;
 
         // Build the component array.
-        components = new ByteBuf[newComponents.size()];
-        for (int i = 0; i < components.length; i ++) {
+        componentCount = newComponents.size();
+        components = new ByteBuf[componentCount];
+        for (int i = 0; i < componentCount; i ++) {
             ByteBuf c = newComponents.get(i);
             if (c.order() != order()) {
                 throw new IllegalArgumentException(
@@ -121,9 +123,9 @@ public class CompositeByteBuf extends AbstractByteBuf {
         }
 
         // Build the component lookup table.
-        indices = new int[components.length + 1];
+        indices = new int[componentCount + 1];
         indices[0] = 0;
-        for (int i = 1; i <= components.length; i ++) {
+        for (int i = 1; i <= componentCount; i ++) {
             indices[i] = indices[i - 1] + components[i - 1].capacity();
         }
 
@@ -131,11 +133,59 @@ public class CompositeByteBuf extends AbstractByteBuf {
         setIndex(0, capacity());
     }
 
-    private CompositeByteBuf(CompositeByteBuf buffer) {
-        super(buffer.order());
-        components = buffer.components.clone();
-        indices = buffer.indices.clone();
-        setIndex(buffer.readerIndex(), buffer.writerIndex());
+    /**
+     * Discards the capacity of this buffer from the specified index and
+     * appends the specified component.  This buffer takes over the reference
+     * of the component, whose indexes must span its whole capacity, and
+     * releases the discarded components.  The indexes of this buffer are
+     * reset like the constructor does.  Unlike creating a new buffer, this
+     * method does not copy the remaining components, so that
+     * {@link DynamicByteBuf} can append many components in linear time.
+     */
+    void truncateAndAppend(int index, ByteBuf component) {
+        if (index < 0 || index > capacity()) {
+            throw new IndexOutOfBoundsException("Invalid index: " + index + ", capacity: " + capacity());
+        }
+        if (component.order() != order()) {
+            throw new IllegalArgumentException("All buffers must have the same endianness.");
+        }
+        assert component.readerIndex() == 0;
+        assert component.writerIndex() == component.capacity();
+
+        int count = componentCount;
+        if (index < capacity()) {
+            // Drop the components after the index and cut the one which contains it.
+            count = index == 0 ? 0 : componentId(index - 1) + 1;
+            for (int i = count; i < componentCount; i ++) {
+                components[i].release();
+                components[i] = null;
+            }
+            if (count > 0) {
+                int last = count - 1;
+                int length = index - indices[last];
+                if (length < components[last].capacity()) {
+                    // The slice shares the reference count of the component.
+                    components[last] = components[last].slice(0, length);
+                    indices[count] = index;
+                }
+            }
+        }
+
+        if (count == components.length) {
+            int newLength = Math.max(count << 1, 4);
+            ByteBuf[] newComponents = new ByteBuf[newLength];
+            System.arraycopy(components, 0, newComponents, 0, count);
+            components = newComponents;
+            int[] newIndices = new int[newLength + 1];
+            System.arraycopy(indices, 0, newIndices, 0, count + 1);
+            indices = newIndices;
+        }
+
+        components[count] = component;
+        indices[count + 1] = indices[count] + component.capacity();
+        componentCount = count + 1;
+        lastAccessedComponentId = 0;
+        setIndex(0, capacity());
     }
 
     @Override
@@ -165,11 +215,11 @@ public class CompositeByteBuf extends AbstractByteBuf {
 
     @Override
     public int capacity() {
-        return indices[components.length];
+        return indices[componentCount];
     }
 
     public int numComponents() {
-        return components.length;
+        return componentCount;
     }
 
     @Override
@@ -542,9 +592,7 @@ public class CompositeByteBuf extends AbstractByteBuf {
 
     @Override
     public ByteBuf duplicate() {
-        ByteBuf duplicate = new CompositeByteBuf(this);
-        duplicate.setIndex(readerIndex(), writerIndex());
-        return duplicate;
+        return new DuplicatedByteBuf(this);
     }
 
     @Override
@@ -620,15 +668,10 @@ public class CompositeByteBuf extends AbstractByteBuf {
             return Unpooled.EMPTY_BUFFER;
         }
 
-        List<ByteBuf> components = decompose(index, length);
-        switch (components.size()) {
-        case 0:
-            return Unpooled.EMPTY_BUFFER;
-        case 1:
-            return components.get(0);
-        default:
-            return new CompositeByteBuf(order(), components);
+        if (index == 0) {
+            return new TruncatedByteBuf(this, length);
         }
+        return new SlicedByteBuf(this, index, length);
     }
 
     @Override
@@ -641,7 +684,7 @@ public class CompositeByteBuf extends AbstractByteBuf {
     }
 
     private ByteBuffer copiedNioBuffer(int index, int length) {
-        if (components.length == 1) {
+        if (componentCount == 1) {
             return toNioBuffer(components[0], index, length);
         }
 
@@ -661,7 +704,7 @@ public class CompositeByteBuf extends AbstractByteBuf {
                     + (index + length) + ", maximum is " + capacity());
         }
 
-        List<ByteBuffer> buffers = new ArrayList<ByteBuffer>(components.length);
+        List<ByteBuffer> buffers = new ArrayList<ByteBuffer>(componentCount);
 
         int i = componentId;
         while (length > 0) {
@@ -693,7 +736,7 @@ public class CompositeByteBuf extends AbstractByteBuf {
             }
 
             // Search right
-            for (int i = lastComponentId + 1; i < components.length; i ++) {
+            for (int i = lastComponentId + 1; i < componentCount; i ++) {
                 if (index < indices[i + 1]) {
                     lastAccessedComponentId = i;
                     return i;
@@ -759,6 +802,17 @@ public class CompositeByteBuf extends AbstractByteBuf {
             // ignore
         }
 
+        // The slices of the remaining components share the reference count of
+        // their components, which are released below.
+        for (ByteBuf c: list) {
+            if (c != padding) {
+                c.retain();
+            }
+        }
+        for (int i = 0; i < componentCount; i ++) {
+            components[i].release();
+        }
+
         setComponents(list);
 
         // reset marked Indexes
@@ -776,6 +830,13 @@ public class CompositeByteBuf extends AbstractByteBuf {
     public String toString() {
         String result = super.toString();
         result = result.substring(0, result.length() - 1);
-        return result + ", components=" + components.length + ")";
+        return result + ", components=" + componentCount + ")";
+    }
+
+    @Override
+    protected void deallocate() {
+        for (int i = 0; i < componentCount; i ++) {
+            components[i].release();
+        }
     }
 }
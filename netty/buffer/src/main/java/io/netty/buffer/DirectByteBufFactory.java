@@ -57,9 +57,9 @@ public class DirectByteBufFactory extends AbstractByteBufFactory {
     private final Object bigEndianLock = new Object();
     private final Object littleEndianLock = new Object();
     private final int preallocatedBufCapacity;
-    private ByteBuf preallocatedBEBuf;
+    private ByteBuffer preallocatedBEBuf;
     private int preallocatedBEBufPos;
-    private ByteBuf preallocatedLEBuf;
+    private ByteBuffer preallocatedLEBuf;
     private int preallocatedLEBufPos;
 
     /**
@@ -160,19 +160,31 @@ public class DirectByteBufFactory extends AbstractByteBufFactory {
         return buf;
     }
 
+    /**
+     * Returns a new buffer which shares the memory of the specified region of
+     * the pre-allocated buffer.
+     */
+    private static ByteBuf newSlice(ByteBuffer preallocatedBuf, int index, int capacity) {
+        ByteBuffer region = preallocatedBuf.duplicate().order(preallocatedBuf.order());
+        region.limit(index + capacity).position(index);
+        NioBufferBackedByteBuf slice = new NioBufferBackedByteBuf(region);
+        slice.trackLeak();
+        return slice;
+    }
+
     private ByteBuf allocateBigEndianBuffer(int capacity) {
         ByteBuf slice;
         synchronized (bigEndianLock) {
             if (preallocatedBEBuf == null) {
-                preallocatedBEBuf = Unpooled.directBuffer(preallocatedBufCapacity);
-                slice = preallocatedBEBuf.slice(0, capacity);
+                preallocatedBEBuf = ByteBuffer.allocateDirect(preallocatedBufCapacity);
+                slice = newSlice(preallocatedBEBuf, 0, capacity);
                 preallocatedBEBufPos = capacity;
             } else if (preallocatedBEBuf.capacity() - preallocatedBEBufPos >= capacity) {
-                slice = preallocatedBEBuf.slice(preallocatedBEBufPos, capacity);
+                slice = newSlice(preallocatedBEBuf, preallocatedBEBufPos, capacity);
                 preallocatedBEBufPos += capacity;
             } else {
-                preallocatedBEBuf = Unpooled.directBuffer(preallocatedBufCapacity);
-                slice = preallocatedBEBuf.slice(0, capacity);
+                preallocatedBEBuf = ByteBuffer.allocateDirect(preallocatedBufCapacity);
+                slice = newSlice(preallocatedBEBuf, 0, capacity);
                 preallocatedBEBufPos = capacity;
             }
         }
@@ -183,17 +195,17 @@ public class DirectByteBufFactory extends AbstractByteBufFactory {
         ByteBuf slice;
         synchronized (littleEndianLock) {
             if (preallocatedLEBuf == null) {
-                preallocatedLEBuf = Unpooled.directBuffer(
+                preallocatedLEBuf = ByteBuffer.allocateDirect(
                         preallocatedBufCapacity).order(ByteOrder.LITTLE_ENDIAN);
-                slice = preallocatedLEBuf.slice(0, capacity);
+                slice = newSlice(preallocatedLEBuf, 0, capacity);
                 preallocatedLEBufPos = capacity;
             } else if (preallocatedLEBuf.capacity() - preallocatedLEBufPos >= capacity) {
-                slice = preallocatedLEBuf.slice(preallocatedLEBufPos, capacity);
+                slice = newSlice(preallocatedLEBuf, preallocatedLEBufPos, capacity);
                 preallocatedLEBufPos += capacity;
             } else {
-                preallocatedLEBuf = Unpooled.directBuffer(
+                preallocatedLEBuf = ByteBuffer.allocateDirect(
                         preallocatedBufCapacity).order(ByteOrder.LITTLE_ENDIAN);
-                slice = preallocatedLEBuf.slice(0, capacity);
+                slice = newSlice(preallocatedLEBuf, 0, capacity);
                 preallocatedLEBufPos = capacity;
             }
         }
@@ -210,4 +210,31 @@ public class DuplicatedByteBuf extends AbstractByteBuf implements WrappedByteBuf
     public ByteBuffer nioBuffer(int index, int length) {
         return buffer.nioBuffer(index, length);
     }
+
+    @Override
+    public int refCnt() {
+        return buffer.refCnt();
+    }
+
+    @Override
+    public ByteBuf retain() {
+        buffer.retain();
+        return this;
+    }
+
+    @Override
+    public ByteBuf retain(int increment) {
+        buffer.retain(increment);
+        return this;
+    }
+
+    @Override
+    public boolean release() {
+        return buffer.release();
+    }
+
+    @Override
+    public boolean release(int decrement) {
+        return buffer.release(decrement);
+    }
 }
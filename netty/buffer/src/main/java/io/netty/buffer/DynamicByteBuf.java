@@ -22,6 +22,8 @@ import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.channels.GatheringByteChannel;
 import java.nio.channels.ScatteringByteChannel;
+import java.util.ArrayList;
+import java.util.List;
 
 
 /**
@@ -30,11 +32,27 @@ import java.nio.channels.ScatteringByteChannel;
  * A dynamic capacity buffer which increases its capacity as needed.  It is
  * recommended to use {@link Unpooled#dynamicBuffer(int)} instead of
  * calling the constructor explicitly.
+ * <p>
+ * A buffer can also be appended without copying via
+ * {@link #addComponent(ByteBuf)}.  The content of this buffer then consists
+ * of multiple components, which are written out by a single gathering write
+ * when this buffer is transferred to a {@link GatheringByteChannel}.
  */
-public class DynamicByteBuf extends AbstractByteBuf {
+public class DynamicByteBuf extends AbstractReferenceCountedByteBuf {
+
+    /**
+     * The minimum capacity of the component which is appended to make room
+     * for the bytes written after {@link #addComponent(ByteBuf)}.
+     */
+    private static final int MIN_COMPONENT_CAPACITY = 256;
 
     private final ByteBufFactory factory;
     private ByteBuf buffer;
+    /**
+     * The single buffer which was used before the first component was added.
+     * It is reused by {@link #clear()} instead of allocating a new one.
+     */
+    private ByteBuf spare;
 
     public DynamicByteBuf(int estimatedLength) {
         this(estimatedLength, HeapByteBufFactory.getInstance(ByteOrder.BIG_ENDIAN));
@@ -58,6 +76,15 @@ public class DynamicByteBuf extends AbstractByteBuf {
             return;
         }
 
+        if (buffer instanceof CompositeByteBuf) {
+            // Append a new component rather than copying the added ones.
+            ByteBuf component = factory().getBuffer(
+                    order(), Math.max(minWritableBytes, MIN_COMPONENT_CAPACITY));
+            component.writerIndex(component.capacity());
+            appendComponent(component);
+            return;
+        }
+
         int newCapacity;
         if (capacity() == 0) {
             newCapacity = 1;
@@ -78,7 +105,158 @@ public class DynamicByteBuf extends AbstractByteBuf {
 
         ByteBuf newBuffer = factory().getBuffer(order(), newCapacity);
         newBuffer.writeBytes(buffer, 0, writerIndex());
+        setBuffer(newBuffer);
+    }
+
+    /**
+     * Appends the readable bytes of the specified buffer to this buffer
+     * without copying them, and increases the {@code writerIndex} by the
+     * number of the appended bytes.  This buffer takes the ownership of the
+     * specified buffer, which is released when the appended bytes are
+     * discarded or this buffer is deallocated.  The specified buffer is
+     * copied instead if it can not be exposed as NIO buffers or its byte
+     * order differs from this buffer.
+     * <p>
+     * The appended bytes are never overwritten by the subsequent write
+     * operations.  Do not move the {@code writerIndex} back to the appended
+     * bytes unless this buffer has been {@linkplain #clear() cleared}.
+     */
+    public void addComponent(ByteBuf buffer) {
+        if (buffer == null) {
+            throw new NullPointerException("buffer");
+        }
+
+        final int length = buffer.readableBytes();
+        if (length == 0) {
+            buffer.release();
+            return;
+        }
+
+        if (buffer.order() != order() ||
+            !buffer.hasNioBuffer() && !(buffer instanceof CompositeByteBuf)) {
+            writeBytes(buffer, buffer.readerIndex(), length);
+            buffer.release();
+            return;
+        }
+
+        if (writerIndex() + length < 0) {
+            throw new IllegalStateException("buffer capacity over 2GiB");
+        }
+
+        if (buffer instanceof CompositeByteBuf) {
+            // Flatten the nested components so that each becomes an NIO buffer.
+            for (ByteBuf c: ((CompositeByteBuf) buffer).decompose(buffer.readerIndex(), length)) {
+                appendComponent(c.retain());
+                writerIndex(writerIndex() + c.capacity());
+            }
+            buffer.release();
+        } else {
+            appendComponent(buffer.slice());
+            writerIndex(writerIndex() + length);
+        }
+    }
+
+    /**
+     * Appends the specified component after the {@code writerIndex},
+     * discarding the capacity after the {@code writerIndex}.  The components
+     * added so far are kept as they are, so that appending is not slowed down
+     * by the number of the components.
+     */
+    private void appendComponent(ByteBuf component) {
+        if (buffer instanceof CompositeByteBuf) {
+            ((CompositeByteBuf) buffer).truncateAndAppend(writerIndex(), component);
+            return;
+        }
+
+        List<ByteBuf> components = new ArrayList<ByteBuf>(2);
+        final int writerIndex = writerIndex();
+        if (writerIndex > 0) {
+            components.add(buffer.slice(0, writerIndex).retain());
+        }
+        components.add(component);
+
+        // Keep the single buffer so that clear() can switch back to it.
+        spare = buffer;
+        buffer = new CompositeByteBuf(order(), components);
+    }
+
+    private void setBuffer(ByteBuf newBuffer) {
+        ByteBuf oldBuffer = buffer;
         buffer = newBuffer;
+        oldBuffer.release();
+        if (spare != null && !(newBuffer instanceof CompositeByteBuf)) {
+            spare.release();
+            spare = null;
+        }
+    }
+
+    @Override
+    public void clear() {
+        if (buffer instanceof CompositeByteBuf) {
+            // Switch back to the single buffer not to overwrite the added
+            // components.  The components do not refer to it anymore.
+            ByteBuf single = spare;
+            if (single == null) {
+                single = factory().getBuffer(order(), MIN_COMPONENT_CAPACITY);
+            }
+            buffer.release();
+            buffer = single;
+            spare = null;
+        }
+        super.clear();
+    }
+
+    /**
+     * Releases the storage of this buffer and allocates a smaller one if this
+     * buffer has no readable bytes and its capacity is greater than the
+     * specified capacity.  It prevents a long-lived buffer from holding the
+     * memory allocated for the largest content it has ever had.  The indexes
+     * and the marked indexes are reset to {@code 0} when the capacity is
+     * reduced.
+     *
+     * @return {@code true} if and only if the capacity has been reduced
+     */
+    public boolean shrink(int capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("capacity: " + capacity + " (expected: 0+)");
+        }
+        if (readable() || capacity() <= capacity) {
+            return false;
+        }
+
+        setBuffer(factory().getBuffer(order(), capacity));
+        setIndex(0, 0);
+        markReaderIndex();
+        markWriterIndex();
+        return true;
+    }
+
+    @Override
+    public void discardReadBytes() {
+        if (!(buffer instanceof CompositeByteBuf)) {
+            super.discardReadBytes();
+            return;
+        }
+
+        final int readerIndex = readerIndex();
+        if (readerIndex == 0) {
+            return;
+        }
+
+        final int writerIndex = writerIndex();
+        if (readerIndex == writerIndex) {
+            clear();
+            return;
+        }
+
+        // Drop the read components instead of moving the remaining bytes.
+        List<ByteBuf> components = new ArrayList<ByteBuf>();
+        for (ByteBuf c: ((CompositeByteBuf) buffer).decompose(readerIndex, writerIndex - readerIndex)) {
+            components.add(c.retain());
+        }
+        setBuffer(new CompositeByteBuf(order(), components));
+        adjustMarkers(readerIndex);
+        setIndex(0, writerIndex - readerIndex);
     }
 
     @Override
@@ -290,6 +468,7 @@ public class DynamicByteBuf extends AbstractByteBuf {
     @Override
     public ByteBuf copy(int index, int length) {
         DynamicByteBuf copiedBuffer = new DynamicByteBuf(Math.max(length, 64), factory());
+        copiedBuffer.buffer.release();
         copiedBuffer.buffer = buffer.copy(index, length);
         copiedBuffer.setIndex(0, length);
         return copiedBuffer;
@@ -319,4 +498,12 @@ public class DynamicByteBuf extends AbstractByteBuf {
     public ByteBuffer nioBuffer(int index, int length) {
         return buffer.nioBuffer(index, length);
     }
+
+    @Override
+    protected void deallocate() {
+        buffer.release();
+        if (spare != null) {
+            spare.release();
+        }
+    }
 }
@@ -31,7 +31,7 @@ import java.nio.channels.ScatteringByteChannel;
  * 
  * Big endian Java heap buffer implementation.
  */
-public class HeapByteBuf extends AbstractByteBuf {
+public class HeapByteBuf extends AbstractReferenceCountedByteBuf {
 
     /**
      * The underlying heap byte array that this buffer is wrapping.
@@ -278,7 +278,7 @@ public class HeapByteBuf extends AbstractByteBuf {
 
     @Override
     public ByteBuf duplicate() {
-        return new HeapByteBuf(array, readerIndex(), writerIndex());
+        return new DuplicatedByteBuf(this);
     }
 
     @Override
@@ -292,4 +292,9 @@ public class HeapByteBuf extends AbstractByteBuf {
         System.arraycopy(array, index, copiedArray, 0, length);
         return new HeapByteBuf(copiedArray);
     }
+
+    @Override
+    protected void deallocate() {
+        // The array is reclaimed by the garbage collector.
+    }
 }
@@ -28,7 +28,7 @@ import java.nio.channels.ScatteringByteChannel;
  * and {@link Unpooled#wrappedBuffer(ByteBuffer)} instead of calling the
  * constructor explicitly.
  */
-public class NioBufferBackedByteBuf extends AbstractByteBuf {
+public class NioBufferBackedByteBuf extends AbstractReferenceCountedByteBuf {
 	// 基于NIO buffer
     private final ByteBuffer buffer;
     private final ByteBuffer tmpBuf;
@@ -45,14 +45,6 @@ public class NioBufferBackedByteBuf extends AbstractByteBuf {
         writerIndex(capacity);
     }
 
-    private NioBufferBackedByteBuf(NioBufferBackedByteBuf buffer) {
-        super(buffer.order());
-        this.buffer = buffer.buffer;
-        tmpBuf = this.buffer.duplicate();
-        capacity = buffer.capacity;
-        setIndex(buffer.readerIndex(), buffer.writerIndex());
-    }
-
     @Override
     public ByteBufFactory factory() {
         if (buffer.isDirect()) {
@@ -290,15 +282,16 @@ public class NioBufferBackedByteBuf extends AbstractByteBuf {
             if (index >= 0 && length == 0) {
                 return Unpooled.EMPTY_BUFFER;
             }
-            return new NioBufferBackedByteBuf(
-                    ((ByteBuffer) tmpBuf.clear().position(
-                            index).limit(index + length)).order(order()));
+            if (index == 0) {
+                return new TruncatedByteBuf(this, length);
+            }
+            return new SlicedByteBuf(this, index, length);
         }
     }
 
     @Override
     public ByteBuf duplicate() {
-        return new NioBufferBackedByteBuf(this);
+        return new DuplicatedByteBuf(this);
     }
 
     @Override
@@ -317,4 +310,9 @@ public class NioBufferBackedByteBuf extends AbstractByteBuf {
         dst.clear();
         return new NioBufferBackedByteBuf(dst);
     }
+
+    @Override
+    protected void deallocate() {
+        // The NIO buffer is reclaimed by the garbage collector.
+    }
 }
@@ -0,0 +1,272 @@
+/*
+ * Copyright 2012 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.buffer;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A set of {@link PoolChunk}s which serves the allocation requests of the
+ * threads assigned to it.  A {@link PooledByteBufFactory} creates several
+ * arenas so that the threads rarely contend for the same lock.
+ * <p>
+ * The capacity of a request is normalized into one of the following size
+ * classes:
+ * <ul>
+ * <li>tiny - a multiple of 16 less than 512, served by a {@link PoolSubpage}</li>
+ * <li>small - a power of two from 512 to the half of the page size, also
+ *     served by a {@link PoolSubpage}</li>
+ * <li>normal - a power of two from the page size to the chunk size, served
+ *     by a run of pages</li>
+ * </ul>
+ * A request which is larger than the chunk size is not pooled at all.
+ */
+abstract class PoolArena<T> {
+
+    static final int TINY_SUBPAGE_POOLS = 512 >>> 4;
+
+    final PooledByteBufFactory parent;
+    final AtomicInteger numThreadCaches = new AtomicInteger();
+
+    private final int pageSize;
+    private final int maxOrder;
+    private final int pageShifts;
+    private final int chunkSize;
+    private final int subpageOverflowMask;
+
+    private final PoolSubpage<T>[] tinySubpagePools;
+    private final PoolSubpage<T>[] smallSubpagePools;
+    private final List<PoolChunk<T>> chunks = new ArrayList<PoolChunk<T>>();
+
+    protected PoolArena(PooledByteBufFactory parent, int pageSize, int maxOrder, int pageShifts, int chunkSize) {
+        this.parent = parent;
+        this.pageSize = pageSize;
+        this.maxOrder = maxOrder;
+        this.pageShifts = pageShifts;
+        this.chunkSize = chunkSize;
+        subpageOverflowMask = ~(pageSize - 1);
+
+        tinySubpagePools = newSubpagePoolArray(TINY_SUBPAGE_POOLS);
+        for (int i = 0; i < tinySubpagePools.length; i ++) {
+            tinySubpagePools[i] = new PoolSubpage<T>(pageSize);
+        }
+
+        smallSubpagePools = newSubpagePoolArray(pageShifts - 9);
+        for (int i = 0; i < smallSubpagePools.length; i ++) {
+            smallSubpagePools[i] = new PoolSubpage<T>(pageSize);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> PoolSubpage<T>[] newSubpagePoolArray(int size) {
+        return (PoolSubpage<T>[]) new PoolSubpage<?>[size];
+    }
+
+    int pageSize() {
+        return pageSize;
+    }
+
+    int chunkSize() {
+        return chunkSize;
+    }
+
+    /**
+     * Allocates a new buffer whose capacity is {@code reqCapacity}, looking
+     * up the specified thread-local cache first.
+     */
+    PooledByteBuf<T> allocate(PoolThreadCache<T> cache, int reqCapacity) {
+        final int normCapacity = normalizeCapacity(reqCapacity);
+        assert normCapacity <= chunkSize;
+
+        PooledByteBuf<T> buf = newByteBuf();
+        if (cache != null && cache.allocate(buf, reqCapacity, normCapacity)) {
+            return buf;
+        }
+
+        synchronized (this) {
+            if (isSubpage(normCapacity)) {
+                final PoolSubpage<T> head = findSubpagePoolHead(normCapacity);
+                final PoolSubpage<T> s = head.next;
+                if (s != head) {
+                    long handle = s.allocate();
+                    assert handle >= 0;
+                    s.chunk.initBuf(buf, handle, reqCapacity);
+                    return buf;
+                }
+            }
+
+            allocateNormal(buf, reqCapacity, normCapacity);
+        }
+        return buf;
+    }
+
+    private void allocateNormal(PooledByteBuf<T> buf, int reqCapacity, int normCapacity) {
+        for (int i = 0; i < chunks.size(); i ++) {
+            PoolChunk<T> c = chunks.get(i);
+            long handle = c.allocate(normCapacity);
+            if (handle >= 0) {
+                c.initBuf(buf, handle, reqCapacity);
+                return;
+            }
+        }
+
+        // Add a new chunk.
+        PoolChunk<T> c = newChunk(pageSize, maxOrder, pageShifts, chunkSize);
+        long handle = c.allocate(normCapacity);
+        assert handle >= 0;
+        c.initBuf(buf, handle, reqCapacity);
+        chunks.add(c);
+    }
+
+    /**
+     * Releases the specified region, either into the thread-local cache of
+     * the current thread or back to its chunk.
+     */
+    void free(PoolChunk<T> chunk, long handle, int normCapacity) {
+        PoolThreadCache<T> cache = parent.threadCacheIfExists(this);
+        if (cache != null && cache.add(chunk, handle, normCapacity)) {
+            return;
+        }
+
+        freeToChunk(chunk, handle);
+    }
+
+    synchronized void freeToChunk(PoolChunk<T> chunk, long handle) {
+        chunk.free(handle);
+        if (chunk.freeBytes() == chunkSize && chunks.size() > 1) {
+            // Keep at least one chunk around so that a burst of allocations
+            // right after the release does not create a new chunk.
+            chunks.remove(chunk);
+            destroyChunk(chunk);
+        }
+    }
+
+    PoolSubpage<T> findSubpagePoolHead(int elemSize) {
+        if (elemSize < 512) {
+            return tinySubpagePools[elemSize >>> 4];
+        }
+
+        int tableIdx = 0;
+        elemSize >>>= 10;
+        while (elemSize != 0) {
+            elemSize >>>= 1;
+            tableIdx ++;
+        }
+        return smallSubpagePools[tableIdx];
+    }
+
+    boolean isSubpage(int normCapacity) {
+        return (normCapacity & subpageOverflowMask) == 0;
+    }
+
+    static boolean isTiny(int normCapacity) {
+        return (normCapacity & 0xFFFFFE00) == 0;
+    }
+
+    /**
+     * Rounds up the specified capacity to the nearest size class.
+     */
+    int normalizeCapacity(int reqCapacity) {
+        if (reqCapacity < 0) {
+            throw new IllegalArgumentException("capacity: " + reqCapacity + " (expected: 0+)");
+        }
+        if (reqCapacity >= chunkSize) {
+            return reqCapacity;
+        }
+
+        if (!isTiny(reqCapacity)) {
+            // Round up to the next power of two.
+            int normalizedCapacity = reqCapacity;
+            normalizedCapacity --;
+            normalizedCapacity |= normalizedCapacity >>>  1;
+            normalizedCapacity |= normalizedCapacity >>>  2;
+            normalizedCapacity |= normalizedCapacity >>>  4;
+            normalizedCapacity |= normalizedCapacity >>>  8;
+            normalizedCapacity |= normalizedCapacity >>> 16;
+            normalizedCapacity ++;
+            return normalizedCapacity;
+        }
+
+        // Round up to a multiple of 16.
+        if ((reqCapacity & 15) == 0) {
+            return reqCapacity;
+        }
+        return (reqCapacity & ~15) + 16;
+    }
+
+    protected abstract PoolChunk<T> newChunk(int pageSize, int maxOrder, int pageShifts, int chunkSize);
+    protected abstract PooledByteBuf<T> newByteBuf();
+    protected abstract void destroyChunk(PoolChunk<T> chunk);
+
+    @Override
+    public synchronized String toString() {
+        StringBuilder buf = new StringBuilder();
+        buf.append(getClass().getSimpleName());
+        buf.append("(chunks: ");
+        buf.append(chunks);
+        buf.append(", threadCaches: ");
+        buf.append(numThreadCaches.get());
+        buf.append(')');
+        return buf.toString();
+    }
+
+    static final class HeapArena extends PoolArena<byte[]> {
+
+        HeapArena(PooledByteBufFactory parent, int pageSize, int maxOrder, int pageShifts, int chunkSize) {
+            super(parent, pageSize, maxOrder, pageShifts, chunkSize);
+        }
+
+        @Override
+        protected PoolChunk<byte[]> newChunk(int pageSize, int maxOrder, int pageShifts, int chunkSize) {
+            return new PoolChunk<byte[]>(this, new byte[chunkSize], pageSize, maxOrder, pageShifts, chunkSize);
+        }
+
+        @Override
+        protected void destroyChunk(PoolChunk<byte[]> chunk) {
+            // Rely on GC.
+        }
+
+        @Override
+        protected PooledByteBuf<byte[]> newByteBuf() {
+            return new PooledHeapByteBuf();
+        }
+    }
+
+    static final class DirectArena extends PoolArena<ByteBuffer> {
+
+        DirectArena(PooledByteBufFactory parent, int pageSize, int maxOrder, int pageShifts, int chunkSize) {
+            super(parent, pageSize, maxOrder, pageShifts, chunkSize);
+        }
+
+        @Override
+        protected PoolChunk<ByteBuffer> newChunk(int pageSize, int maxOrder, int pageShifts, int chunkSize) {
+            return new PoolChunk<ByteBuffer>(
+                    this, ByteBuffer.allocateDirect(chunkSize), pageSize, maxOrder, pageShifts, chunkSize);
+        }
+
+        @Override
+        protected void destroyChunk(PoolChunk<ByteBuffer> chunk) {
+            // Rely on GC.
+        }
+
+        @Override
+        protected PooledByteBuf<ByteBuffer> newByteBuf() {
+            return new PooledDirectByteBuf();
+        }
+    }
+}
@@ -0,0 +1,248 @@
+/*
+ * Copyright 2012 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.buffer;
+
+/**
+ * A large contiguous block of memory which is carved into runs of pages by a
+ * buddy allocator.  The pages of a chunk form the leaves of a complete binary
+ * tree; {@code memoryMap[id]} holds the smallest depth at which a free run
+ * can still be found in the subtree rooted at {@code id}.  A node whose value
+ * equals its own depth is entirely free, and a node whose value is
+ * {@code maxOrder + 1} is entirely allocated.
+ * <p>
+ * A handle returned by {@link #allocate(int)} encodes the node index in its
+ * lower 32 bits.  When a page is divided by a {@link PoolSubpage}, the upper
+ * 32 bits hold the index of the element within the subpage, tagged with
+ * {@code 0x40000000} so that the element {@code 0} can be told apart from a
+ * run allocation.
+ * <p>
+ * All methods must be called while holding the lock of the owning
+ * {@link PoolArena}.
+ */
+final class PoolChunk<T> {
+
+    final PoolArena<T> arena;
+    final T memory;
+
+    private final byte[] memoryMap;
+    private final byte[] depthMap;
+    private final PoolSubpage<T>[] subpages;
+    private final int subpageOverflowMask;
+    private final int pageSize;
+    private final int pageShifts;
+    private final int maxOrder;
+    private final int chunkSize;
+    private final int log2ChunkSize;
+    private final int maxSubpageAllocs;
+    private final byte unusable;
+
+    private int freeBytes;
+
+    @SuppressWarnings("unchecked")
+    PoolChunk(PoolArena<T> arena, T memory, int pageSize, int maxOrder, int pageShifts, int chunkSize) {
+        this.arena = arena;
+        this.memory = memory;
+        this.pageSize = pageSize;
+        this.pageShifts = pageShifts;
+        this.maxOrder = maxOrder;
+        this.chunkSize = chunkSize;
+        unusable = (byte) (maxOrder + 1);
+        log2ChunkSize = Integer.numberOfTrailingZeros(chunkSize);
+        subpageOverflowMask = ~(pageSize - 1);
+        freeBytes = chunkSize;
+
+        maxSubpageAllocs = 1 << maxOrder;
+
+        // Generate the memory map.
+        memoryMap = new byte[maxSubpageAllocs << 1];
+        depthMap = new byte[memoryMap.length];
+        int memoryMapIndex = 1;
+        for (int d = 0; d <= maxOrder; d ++) {
+            int depth = 1 << d;
+            for (int p = 0; p < depth; p ++) {
+                memoryMap[memoryMapIndex] = (byte) d;
+                depthMap[memoryMapIndex] = (byte) d;
+                memoryMapIndex ++;
+            }
+        }
+
+        subpages = (PoolSubpage<T>[]) new PoolSubpage<?>[maxSubpageAllocs];
+    }
+
+    int freeBytes() {
+        return freeBytes;
+    }
+
+    int chunkSize() {
+        return chunkSize;
+    }
+
+    /**
+     * Allocates a run of pages or an element of a subpage whose size is the
+     * specified normalized capacity.
+     *
+     * @return the handle of the allocated region, or {@code -1} if this chunk
+     *         does not have enough room
+     */
+    long allocate(int normCapacity) {
+        if ((normCapacity & subpageOverflowMask) != 0) {
+            return allocateRun(normCapacity);
+        } else {
+            return allocateSubpage(normCapacity);
+        }
+    }
+
+    private long allocateRun(int normCapacity) {
+        int d = maxOrder - (Integer.numberOfTrailingZeros(normCapacity) - pageShifts);
+        int id = allocateNode(d);
+        if (id < 0) {
+            return id;
+        }
+        freeBytes -= runLength(id);
+        return id;
+    }
+
+    private long allocateSubpage(int normCapacity) {
+        int id = allocateNode(maxOrder);
+        if (id < 0) {
+            return id;
+        }
+
+        freeBytes -= pageSize;
+
+        int subpageIdx = subpageIdx(id);
+        PoolSubpage<T> subpage = subpages[subpageIdx];
+        if (subpage == null) {
+            subpage = new PoolSubpage<T>(this, id, runOffset(id), pageSize, normCapacity);
+            subpages[subpageIdx] = subpage;
+        } else {
+            subpage.init(normCapacity);
+        }
+        return subpage.allocate();
+    }
+
+    /**
+     * Finds a free node at the depth {@code d} and marks it as allocated.
+     */
+    private int allocateNode(int d) {
+        int id = 1;
+        int initial = - (1 << d); // All bits but the lowest d bits are set.
+        byte val = memoryMap[id];
+        if (val > d) {
+            return -1;
+        }
+        // (id & initial) == 0 for every node shallower than d.
+        while (val < d || (id & initial) == 0) {
+            id <<= 1;
+            val = memoryMap[id];
+            if (val > d) {
+                id ^= 1;
+                val = memoryMap[id];
+            }
+        }
+
+        memoryMap[id] = unusable;
+        updateParentsAlloc(id);
+        return id;
+    }
+
+    private void updateParentsAlloc(int id) {
+        while (id > 1) {
+            int parentId = id >>> 1;
+            byte val1 = memoryMap[id];
+            byte val2 = memoryMap[id ^ 1];
+            memoryMap[parentId] = val1 < val2 ? val1 : val2;
+            id = parentId;
+        }
+    }
+
+    private void updateParentsFree(int id) {
+        int logChild = depthMap[id] + 1;
+        while (id > 1) {
+            int parentId = id >>> 1;
+            byte val1 = memoryMap[id];
+            byte val2 = memoryMap[id ^ 1];
+            logChild -= 1; // The depth of the current node.
+
+            if (val1 == logChild && val2 == logChild) {
+                // Both children are free - the parent becomes free as a whole.
+                memoryMap[parentId] = (byte) (logChild - 1);
+            } else {
+                memoryMap[parentId] = val1 < val2 ? val1 : val2;
+            }
+
+            id = parentId;
+        }
+    }
+
+    /**
+     * Releases the region identified by the specified handle.
+     */
+    void free(long handle) {
+        int memoryMapIdx = (int) handle;
+        int bitmapIdx = (int) (handle >>> 32);
+
+        if (bitmapIdx != 0) {
+            PoolSubpage<T> subpage = subpages[subpageIdx(memoryMapIdx)];
+            assert subpage != null && subpage.doNotDestroy;
+            if (subpage.free(bitmapIdx & 0x3FFFFFFF)) {
+                // The subpage is still in use.
+                return;
+            }
+        }
+
+        freeBytes += runLength(memoryMapIdx);
+        memoryMap[memoryMapIdx] = depthMap[memoryMapIdx];
+        updateParentsFree(memoryMapIdx);
+    }
+
+    void initBuf(PooledByteBuf<T> buf, long handle, int reqCapacity) {
+        int memoryMapIdx = (int) handle;
+        int bitmapIdx = (int) (handle >>> 32);
+        if (bitmapIdx == 0) {
+            assert memoryMap[memoryMapIdx] == unusable;
+            buf.init(this, handle, runOffset(memoryMapIdx), reqCapacity, runLength(memoryMapIdx));
+        } else {
+            PoolSubpage<T> subpage = subpages[subpageIdx(memoryMapIdx)];
+            assert subpage.doNotDestroy;
+            assert reqCapacity <= subpage.elemSize;
+            buf.init(
+                    this, handle,
+                    runOffset(memoryMapIdx) + (bitmapIdx & 0x3FFFFFFF) * subpage.elemSize,
+                    reqCapacity, subpage.elemSize);
+        }
+    }
+
+    private int runLength(int id) {
+        return 1 << (log2ChunkSize - depthMap[id]);
+    }
+
+    private int runOffset(int id) {
+        // The position of the node among the nodes of the same depth.
+        int shift = id ^ (1 << depthMap[id]);
+        return shift * runLength(id);
+    }
+
+    private int subpageIdx(int memoryMapIdx) {
+        return memoryMapIdx ^ maxSubpageAllocs; // Remove the highest set bit.
+    }
+
+    @Override
+    public String toString() {
+        return "Chunk(" + Integer.toHexString(System.identityHashCode(this)) +
+                ": " + (chunkSize - freeBytes) + '/' + chunkSize + ')';
+    }
+}
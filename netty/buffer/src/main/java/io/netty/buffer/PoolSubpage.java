@@ -0,0 +1,204 @@
+/*
+ * Copyright 2012 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.buffer;
+
+/**
+ * A page of a {@link PoolChunk} which is divided into the elements of the
+ * same size.  A bitmap keeps track of the allocated elements.  The subpages
+ * which still have a free element are linked into the pool of their size
+ * class in the owning {@link PoolArena}, so that the next allocation of the
+ * same size class does not need to search the chunk.
+ * <p>
+ * All methods must be called while holding the lock of the owning
+ * {@link PoolArena}.
+ */
+final class PoolSubpage<T> {
+
+    final PoolChunk<T> chunk;
+    private final int memoryMapIdx;
+    private final int runOffset;
+    private final int pageSize;
+    private final long[] bitmap;
+
+    PoolSubpage<T> prev;
+    PoolSubpage<T> next;
+
+    boolean doNotDestroy;
+    int elemSize;
+    private int maxNumElems;
+    private int bitmapLength;
+    private int nextAvail;
+    private int numAvail;
+
+    /**
+     * Creates the head of a subpage pool.
+     */
+    PoolSubpage(int pageSize) {
+        chunk = null;
+        memoryMapIdx = -1;
+        runOffset = -1;
+        elemSize = -1;
+        this.pageSize = pageSize;
+        bitmap = null;
+        prev = next = this;
+    }
+
+    PoolSubpage(PoolChunk<T> chunk, int memoryMapIdx, int runOffset, int pageSize, int elemSize) {
+        this.chunk = chunk;
+        this.memoryMapIdx = memoryMapIdx;
+        this.runOffset = runOffset;
+        this.pageSize = pageSize;
+        bitmap = new long[pageSize >>> 10]; // pageSize / 16 / 64
+        init(elemSize);
+    }
+
+    void init(int elemSize) {
+        doNotDestroy = true;
+        this.elemSize = elemSize;
+        maxNumElems = numAvail = pageSize / elemSize;
+        nextAvail = 0;
+        bitmapLength = maxNumElems >>> 6;
+        if ((maxNumElems & 63) != 0) {
+            bitmapLength ++;
+        }
+
+        for (int i = 0; i < bitmapLength; i ++) {
+            bitmap[i] = 0;
+        }
+
+        addToPool();
+    }
+
+    /**
+     * Returns the handle of a newly allocated element, or {@code -1} if this
+     * subpage is exhausted.
+     */
+    long allocate() {
+        if (numAvail == 0 || !doNotDestroy) {
+            return -1;
+        }
+
+        final int bitmapIdx = nextAvail();
+        int q = bitmapIdx >>> 6;
+        int r = bitmapIdx & 63;
+        assert (bitmap[q] >>> r & 1) == 0;
+        bitmap[q] |= 1L << r;
+
+        if (-- numAvail == 0) {
+            removeFromPool();
+        }
+
+        return toHandle(bitmapIdx);
+    }
+
+    /**
+     * Releases the element at the specified index.
+     *
+     * @return {@code true} if this subpage is still in use.
+     *         {@code false} if this subpage is not used by anyone anymore and
+     *         thus its page can be released back to the chunk.
+     */
+    boolean free(int bitmapIdx) {
+        int q = bitmapIdx >>> 6;
+        int r = bitmapIdx & 63;
+        assert (bitmap[q] >>> r & 1) != 0;
+        bitmap[q] ^= 1L << r;
+
+        nextAvail = bitmapIdx;
+
+        if (numAvail ++ == 0) {
+            addToPool();
+            return true;
+        }
+
+        if (numAvail != maxNumElems) {
+            return true;
+        }
+
+        // The subpage is not used at all.
+        if (prev == next) {
+            // Do not release the page if this is the only subpage in the pool.
+            return true;
+        }
+
+        doNotDestroy = false;
+        removeFromPool();
+        return false;
+    }
+
+    private void addToPool() {
+        PoolSubpage<T> head = chunk.arena.findSubpagePoolHead(elemSize);
+        assert prev == null && next == null || prev == this;
+        prev = head;
+        next = head.next;
+        next.prev = this;
+        head.next = this;
+    }
+
+    private void removeFromPool() {
+        assert prev != null && next != null;
+        prev.next = next;
+        next.prev = prev;
+        next = null;
+        prev = null;
+    }
+
+    private int nextAvail() {
+        int nextAvail = this.nextAvail;
+        if (nextAvail >= 0) {
+            this.nextAvail = -1;
+            return nextAvail;
+        }
+
+        for (int i = 0; i < bitmapLength; i ++) {
+            long bits = bitmap[i];
+            if (~bits != 0) {
+                return findNextAvail(i, bits);
+            }
+        }
+        return -1;
+    }
+
+    private int findNextAvail(int i, long bits) {
+        final int baseVal = i << 6;
+        for (int j = 0; j < 64; j ++) {
+            if ((bits & 1) == 0) {
+                int val = baseVal | j;
+                if (val < maxNumElems) {
+                    return val;
+                } else {
+                    break;
+                }
+            }
+            bits >>>= 1;
+        }
+        return -1;
+    }
+
+    private long toHandle(int bitmapIdx) {
+        return 0x4000000000000000L | (long) bitmapIdx << 32 | memoryMapIdx;
+    }
+
+    @Override
+    public String toString() {
+        if (!doNotDestroy) {
+            return "(" + memoryMapIdx + ": not in use)";
+        }
+
+        return String.valueOf('(') + memoryMapIdx + ": " + (maxNumElems - numAvail) + '/' + maxNumElems +
+               ", offset: " + runOffset + ", length: " + pageSize + ", elemSize: " + elemSize + ')';
+    }
+}
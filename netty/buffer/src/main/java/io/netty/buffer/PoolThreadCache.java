@@ -0,0 +1,241 @@
+/*
+ * Copyright 2012 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.buffer;
+
+/**
+ * Keeps the regions recently released by a thread so that the same thread
+ * can allocate them again without acquiring the lock of its {@link PoolArena}.
+ * A cache is accessed only by the thread which owns it.
+ * <p>
+ * The regions which were not reused since the previous trim are released back
+ * to the arena every {@code freeSweepAllocationThreshold} allocations, so that
+ * a thread which stopped allocating does not hold on to the cached memory for
+ * too long.  All cached regions are released back to the arena by
+ * {@link #free()} once the owning thread has finished; see
+ * {@link PooledByteBufFactory#freeThreadCaches()}.
+ */
+final class PoolThreadCache<T> {
+
+    private static final int DEFAULT_TINY_CACHE_SIZE = 256;
+    private static final int DEFAULT_SMALL_CACHE_SIZE = 64;
+    private static final int DEFAULT_NORMAL_CACHE_SIZE = 32;
+    private static final int DEFAULT_MAX_CACHED_CAPACITY = 32 * 1024;
+    private static final int FREE_SWEEP_ALLOCATION_THRESHOLD = 8192;
+
+    final PoolArena<T> arena;
+    final Thread thread = Thread.currentThread();
+
+    private final MemoryRegionCache<T>[] tinyCaches;
+    private final MemoryRegionCache<T>[] smallCaches;
+    private final MemoryRegionCache<T>[] normalCaches;
+    private final int pageShifts;
+
+    private int allocations;
+    private boolean freed;
+
+    PoolThreadCache(PoolArena<T> arena) {
+        this.arena = arena;
+
+        int pageSize = arena.pageSize();
+        pageShifts = Integer.numberOfTrailingZeros(pageSize);
+
+        tinyCaches = newCaches(PoolArena.TINY_SUBPAGE_POOLS, DEFAULT_TINY_CACHE_SIZE);
+        smallCaches = newCaches(pageShifts - 9, DEFAULT_SMALL_CACHE_SIZE);
+
+        int maxCachedCapacity = Math.min(arena.chunkSize(), DEFAULT_MAX_CACHED_CAPACITY);
+        int numNormalCaches = 0;
+        for (int c = pageSize; c <= maxCachedCapacity; c <<= 1) {
+            numNormalCaches ++;
+        }
+        normalCaches = newCaches(numNormalCaches, DEFAULT_NORMAL_CACHE_SIZE);
+
+        arena.numThreadCaches.getAndIncrement();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> MemoryRegionCache<T>[] newCaches(int numCaches, int cacheSize) {
+        MemoryRegionCache<T>[] caches = (MemoryRegionCache<T>[]) new MemoryRegionCache<?>[numCaches];
+        for (int i = 0; i < caches.length; i ++) {
+            caches[i] = new MemoryRegionCache<T>(cacheSize);
+        }
+        return caches;
+    }
+
+    /**
+     * Initializes the specified buffer with a cached region.
+     *
+     * @return {@code true} if and only if a cached region was found
+     */
+    boolean allocate(PooledByteBuf<T> buf, int reqCapacity, int normCapacity) {
+        MemoryRegionCache<T> cache = cacheFor(normCapacity);
+        if (cache == null) {
+            return false;
+        }
+
+        boolean allocated = cache.allocate(buf, reqCapacity);
+        if (++ allocations >= FREE_SWEEP_ALLOCATION_THRESHOLD) {
+            allocations = 0;
+            trim();
+        }
+        return allocated;
+    }
+
+    /**
+     * Adds the specified region to this cache.
+     *
+     * @return {@code true} if and only if the region was cached.  {@code false}
+     *         if the caller has to release it back to the arena.
+     */
+    boolean add(PoolChunk<T> chunk, long handle, int normCapacity) {
+        MemoryRegionCache<T> cache = cacheFor(normCapacity);
+        if (cache == null) {
+            return false;
+        }
+        return cache.add(chunk, handle);
+    }
+
+    /**
+     * Releases all cached regions back to the arena and stops counting this
+     * cache as a user of the arena.  Called by the owning thread, or by
+     * another thread once the owning thread has terminated.
+     */
+    void free() {
+        if (freed) {
+            return;
+        }
+        freed = true;
+        free(tinyCaches);
+        free(smallCaches);
+        free(normalCaches);
+        arena.numThreadCaches.getAndDecrement();
+    }
+
+    void trim() {
+        trim(tinyCaches);
+        trim(smallCaches);
+        trim(normalCaches);
+    }
+
+    private MemoryRegionCache<T> cacheFor(int normCapacity) {
+        if (PoolArena.isTiny(normCapacity)) {
+            return tinyCaches[normCapacity >>> 4];
+        }
+
+        int idx = log2(normCapacity);
+        if (arena.isSubpage(normCapacity)) {
+            return smallCaches[idx - 9];
+        }
+
+        idx -= pageShifts;
+        if (idx >= normalCaches.length) {
+            return null;
+        }
+        return normalCaches[idx];
+    }
+
+    private static int log2(int val) {
+        return 31 - Integer.numberOfLeadingZeros(val);
+    }
+
+    private void free(MemoryRegionCache<T>[] caches) {
+        for (MemoryRegionCache<T> c: caches) {
+            c.free(arena, Integer.MAX_VALUE);
+        }
+    }
+
+    private void trim(MemoryRegionCache<T>[] caches) {
+        for (MemoryRegionCache<T> c: caches) {
+            c.trim(arena);
+        }
+    }
+
+    /**
+     * A bounded ring of the cached regions of the same size class.
+     */
+    private static final class MemoryRegionCache<T> {
+        private final PoolChunk<T>[] chunks;
+        private final long[] handles;
+        private int head;
+        private int tail;
+        private int size;
+        private int allocations;
+
+        @SuppressWarnings("unchecked")
+        MemoryRegionCache(int capacity) {
+            chunks = (PoolChunk<T>[]) new PoolChunk<?>[capacity];
+            handles = new long[capacity];
+        }
+
+        boolean add(PoolChunk<T> chunk, long handle) {
+            if (size == chunks.length) {
+                return false;
+            }
+            chunks[tail] = chunk;
+            handles[tail] = handle;
+            tail = next(tail);
+            size ++;
+            return true;
+        }
+
+        boolean allocate(PooledByteBuf<T> buf, int reqCapacity) {
+            if (size == 0) {
+                return false;
+            }
+
+            // Reuse the most recently released region; it is most likely to be in the CPU cache.
+            tail = prev(tail);
+            PoolChunk<T> chunk = chunks[tail];
+            long handle = handles[tail];
+            chunks[tail] = null;
+            size --;
+            allocations ++;
+
+            chunk.initBuf(buf, handle, reqCapacity);
+            return true;
+        }
+
+        /**
+         * Releases the regions which were not reused since the last trim.
+         */
+        void trim(PoolArena<T> arena) {
+            int free = size - allocations;
+            allocations = 0;
+            if (free > 0) {
+                free(arena, free);
+            }
+        }
+
+        void free(PoolArena<T> arena, int max) {
+            for (int i = 0; i < max && size > 0; i ++) {
+                // Release the oldest region first.
+                PoolChunk<T> chunk = chunks[head];
+                long handle = handles[head];
+                chunks[head] = null;
+                head = next(head);
+                size --;
+                arena.freeToChunk(chunk, handle);
+            }
+        }
+
+        private int next(int index) {
+            return index + 1 == chunks.length ? 0 : index + 1;
+        }
+
+        private int prev(int index) {
+            return index == 0 ? chunks.length - 1 : index - 1;
+        }
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2012 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.buffer;
+
+import java.nio.ByteOrder;
+
+/**
+ * A big endian buffer whose memory is a region of a {@link PoolChunk}.
+ * The region is returned to the pool when the reference count of the buffer
+ * drops to {@code 0}.  A released buffer and the buffers derived from it
+ * must not be accessed anymore.
+ *
+ * @param <T> the type of the underlying memory
+ */
+public abstract class PooledByteBuf<T> extends AbstractReferenceCountedByteBuf {
+
+    PoolChunk<T> chunk;
+    long handle;
+    T memory;
+    int offset;
+    int length;
+    int maxLength;
+
+    PooledByteBuf() {
+        super(ByteOrder.BIG_ENDIAN);
+    }
+
+    void init(PoolChunk<T> chunk, long handle, int offset, int length, int maxLength) {
+        assert handle >= 0;
+        assert chunk != null;
+
+        this.chunk = chunk;
+        this.handle = handle;
+        memory = chunk.memory;
+        this.offset = offset;
+        this.length = length;
+        this.maxLength = maxLength;
+        setIndex(0, 0);
+        memoryChanged();
+        trackLeak();
+    }
+
+    /**
+     * Invoked when this buffer has been assigned a new region.
+     */
+    void memoryChanged() {
+        // Override if necessary.
+    }
+
+    @Override
+    public final int capacity() {
+        return length;
+    }
+
+    @Override
+    public final boolean isPooled() {
+        return true;
+    }
+
+    @Override
+    public final ByteBufFactory factory() {
+        return chunk.arena.parent;
+    }
+
+    @Override
+    protected final void deallocate() {
+        final long handle = this.handle;
+        if (handle >= 0) {
+            this.handle = -1;
+            memory = null;
+            chunk.arena.free(chunk, handle, maxLength);
+        }
+    }
+
+    final int idx(int index) {
+        return offset + index;
+    }
+
+    final void checkIndex(int index, int length) {
+        ensureAccessible();
+        if (index < 0 || length < 0 || index + length > capacity()) {
+            throw new IndexOutOfBoundsException(
+                    "index: " + index + ", length: " + length + " (expected: range(0, " + capacity() + "))");
+        }
+    }
+}
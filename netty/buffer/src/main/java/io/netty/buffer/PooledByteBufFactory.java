@@ -0,0 +1,334 @@
+/*
+ * Copyright 2012 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.buffer;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * A {@link ByteBufFactory} which recycles the memory of the buffers it
+ * allocated.  The memory is managed in large chunks by a set of
+ * {@link PoolArena}s, and each thread is bound to the arena which is used by
+ * the least number of threads, so that the threads rarely contend for the
+ * same arena.  Each thread also keeps a small cache of the recently released
+ * regions, which makes the allocation of a short-living buffer in the
+ * thread which released another one almost free.  The cache of a thread is
+ * released back to its arena by {@link #freeThreadCaches()}, which the event
+ * loops call when their threads finish, or otherwise when another thread
+ * creates its cache after the owning thread has terminated.
+ * <p>
+ * A buffer allocated by this factory is a {@link PooledByteBuf}, whose memory
+ * is returned to the pool once it is {@linkplain ByteBuf#release() released}.
+ * A buffer which is never released leaks its memory: the arena keeps a
+ * strong reference to every chunk, so the region of the buffer is neither
+ * reused nor reclaimed by the garbage collector for as long as the arena
+ * lives.  Use {@link io.netty.util.ResourceLeakDetector} to find such
+ * buffers.  A buffer whose capacity is larger than the chunk size is not
+ * pooled at all.
+ */
+public class PooledByteBufFactory extends AbstractByteBufFactory {
+
+    private static final int DEFAULT_NUM_ARENAS = Runtime.getRuntime().availableProcessors() * 2;
+    private static final int DEFAULT_PAGE_SIZE = 8192;
+    private static final int DEFAULT_MAX_ORDER = 11; // 8192 << 11 = 16 MiB per chunk
+
+    private static final int MIN_PAGE_SIZE = 4096;
+    private static final int MAX_CHUNK_SIZE = (int) (((long) Integer.MAX_VALUE + 1) / 2);
+
+    private static final PooledByteBufFactory HEAP_INSTANCE = new PooledByteBufFactory(false);
+    private static final PooledByteBufFactory DIRECT_INSTANCE = new PooledByteBufFactory(true);
+
+    /**
+     * Returns the shared big endian factory which allocates heap buffers.
+     */
+    public static PooledByteBufFactory getHeapInstance() {
+        return HEAP_INSTANCE;
+    }
+
+    /**
+     * Returns the shared big endian factory which allocates direct buffers.
+     */
+    public static PooledByteBufFactory getDirectInstance() {
+        return DIRECT_INSTANCE;
+    }
+
+    private final boolean direct;
+    private final int chunkSize;
+    private final PoolArena<?>[] arenas;
+
+    /**
+     * The factories which have a cache for the current thread.
+     */
+    private static final ThreadLocal<List<PooledByteBufFactory>> CACHING_FACTORIES =
+            new ThreadLocal<List<PooledByteBufFactory>>();
+
+    /**
+     * Releases the caches of the current thread in all factories back to
+     * their arenas.  Call it right before a thread which allocated pooled
+     * buffers finishes, so that the cached memory is reused by the other
+     * threads immediately.  The thread gets a new cache if it allocates a
+     * pooled buffer again.
+     */
+    public static void freeThreadCaches() {
+        List<PooledByteBufFactory> factories = CACHING_FACTORIES.get();
+        if (factories == null) {
+            return;
+        }
+        CACHING_FACTORIES.remove();
+        for (PooledByteBufFactory f: factories) {
+            f.freeThreadCache();
+        }
+    }
+
+    private final ThreadLocal<PoolThreadCache<?>> threadCache = new ThreadLocal<PoolThreadCache<?>>();
+    /**
+     * The caches of all threads, guarded by itself.
+     */
+    private final List<PoolThreadCache<?>> threadCaches = new ArrayList<PoolThreadCache<?>>();
+
+    /**
+     * Creates a new factory with the default configuration whose default
+     * {@link ByteOrder} is {@link ByteOrder#BIG_ENDIAN}.
+     *
+     * @param direct {@code true} to allocate direct buffers.
+     *               {@code false} to allocate heap buffers.
+     */
+    public PooledByteBufFactory(boolean direct) {
+        this(direct, ByteOrder.BIG_ENDIAN);
+    }
+
+    /**
+     * Creates a new factory with the default configuration and the specified
+     * default {@link ByteOrder}.
+     *
+     * @param direct {@code true} to allocate direct buffers.
+     *               {@code false} to allocate heap buffers.
+     * @param defaultOrder the default {@link ByteOrder} of this factory
+     */
+    public PooledByteBufFactory(boolean direct, ByteOrder defaultOrder) {
+        this(direct, defaultOrder, DEFAULT_NUM_ARENAS, DEFAULT_PAGE_SIZE, DEFAULT_MAX_ORDER);
+    }
+
+    /**
+     * Creates a new factory.
+     *
+     * @param direct       {@code true} to allocate direct buffers.
+     *                     {@code false} to allocate heap buffers.
+     * @param defaultOrder the default {@link ByteOrder} of this factory
+     * @param nArenas      the number of arenas
+     * @param pageSize     the size of a page, which must be a power of two
+     *                     no less than {@code 4096}
+     * @param maxOrder     the depth of the buddy tree of a chunk.  The size of
+     *                     a chunk is {@code pageSize << maxOrder}.
+     */
+    public PooledByteBufFactory(
+            boolean direct, ByteOrder defaultOrder, int nArenas, int pageSize, int maxOrder) {
+        super(defaultOrder);
+        if (nArenas <= 0) {
+            throw new IllegalArgumentException("nArenas: " + nArenas + " (expected: 1+)");
+        }
+
+        this.direct = direct;
+        int pageShifts = validateAndCalculatePageShifts(pageSize);
+        chunkSize = validateAndCalculateChunkSize(pageSize, maxOrder);
+
+        arenas = new PoolArena<?>[nArenas];
+        for (int i = 0; i < arenas.length; i ++) {
+            if (direct) {
+                arenas[i] = new PoolArena.DirectArena(this, pageSize, maxOrder, pageShifts, chunkSize);
+            } else {
+                arenas[i] = new PoolArena.HeapArena(this, pageSize, maxOrder, pageShifts, chunkSize);
+            }
+        }
+    }
+
+    private static int validateAndCalculatePageShifts(int pageSize) {
+        if (pageSize < MIN_PAGE_SIZE) {
+            throw new IllegalArgumentException("pageSize: " + pageSize + " (expected: " + MIN_PAGE_SIZE + "+)");
+        }
+        if ((pageSize & pageSize - 1) != 0) {
+            throw new IllegalArgumentException("pageSize: " + pageSize + " (expected: power of 2)");
+        }
+        return Integer.numberOfTrailingZeros(pageSize);
+    }
+
+    private static int validateAndCalculateChunkSize(int pageSize, int maxOrder) {
+        if (maxOrder < 0 || maxOrder > 14) {
+            throw new IllegalArgumentException("maxOrder: " + maxOrder + " (expected: 0-14)");
+        }
+
+        // Ensure the resulting chunkSize does not overflow.
+        int chunkSize = pageSize;
+        for (int i = maxOrder; i > 0; i --) {
+            if (chunkSize > MAX_CHUNK_SIZE / 2) {
+                throw new IllegalArgumentException(String.format(
+                        "pageSize (%d) << maxOrder (%d) must not exceed %d", pageSize, maxOrder, MAX_CHUNK_SIZE));
+            }
+            chunkSize <<= 1;
+        }
+        return chunkSize;
+    }
+
+    /**
+     * Returns {@code true} if and only if this factory allocates direct
+     * buffers.
+     */
+    public boolean isDirect() {
+        return direct;
+    }
+
+    @Override
+    public ByteBuf getBuffer(ByteOrder order, int capacity) {
+        if (order == null) {
+            throw new NullPointerException("order");
+        }
+        if (capacity < 0) {
+            throw new IllegalArgumentException("capacity: " + capacity);
+        }
+        if (capacity == 0) {
+            return Unpooled.EMPTY_BUFFER;
+        }
+        if (capacity > chunkSize) {
+            if (direct) {
+                return Unpooled.directBuffer(capacity).order(order);
+            } else {
+                return Unpooled.buffer(capacity).order(order);
+            }
+        }
+
+        PoolThreadCache<?> cache = threadCache.get();
+        if (cache == null) {
+            cache = newThreadCache();
+        }
+        return allocate(cache, capacity).order(order);
+    }
+
+    private PoolThreadCache<?> newThreadCache() {
+        PoolThreadCache<?> cache;
+        synchronized (threadCaches) {
+            // Give the regions cached by the terminated threads back before
+            // counting the users of each arena.
+            for (Iterator<PoolThreadCache<?>> i = threadCaches.iterator(); i.hasNext();) {
+                PoolThreadCache<?> c = i.next();
+                if (!c.thread.isAlive()) {
+                    i.remove();
+                    c.free();
+                }
+            }
+
+            cache = newThreadCache(leastUsedArena());
+            threadCaches.add(cache);
+        }
+        threadCache.set(cache);
+
+        List<PooledByteBufFactory> factories = CACHING_FACTORIES.get();
+        if (factories == null) {
+            factories = new ArrayList<PooledByteBufFactory>(2);
+            CACHING_FACTORIES.set(factories);
+        }
+        factories.add(this);
+        return cache;
+    }
+
+    private static <T> PoolThreadCache<T> newThreadCache(PoolArena<T> arena) {
+        return new PoolThreadCache<T>(arena);
+    }
+
+    private void freeThreadCache() {
+        PoolThreadCache<?> cache = threadCache.get();
+        if (cache == null) {
+            return;
+        }
+        threadCache.remove();
+        synchronized (threadCaches) {
+            threadCaches.remove(cache);
+        }
+        cache.free();
+    }
+
+    private static <T> PooledByteBuf<T> allocate(PoolThreadCache<T> cache, int capacity) {
+        return cache.arena.allocate(cache, capacity);
+    }
+
+    @Override
+    public ByteBuf getBuffer(ByteOrder order, byte[] array, int offset, int length) {
+        if (array == null) {
+            throw new NullPointerException("array");
+        }
+        if (offset < 0) {
+            throw new IndexOutOfBoundsException("offset: " + offset);
+        }
+        if (length == 0) {
+            return Unpooled.EMPTY_BUFFER;
+        }
+        if (offset + length > array.length) {
+            throw new IndexOutOfBoundsException("length: " + length);
+        }
+
+        ByteBuf buf = getBuffer(order, length);
+        buf.writeBytes(array, offset, length);
+        return buf;
+    }
+
+    @Override
+    public ByteBuf getBuffer(ByteBuffer nioBuffer) {
+        ByteBuf buf = getBuffer(nioBuffer.order(), nioBuffer.remaining());
+        int pos = nioBuffer.position();
+        buf.writeBytes(nioBuffer);
+        nioBuffer.position(pos);
+        return buf;
+    }
+
+    /**
+     * Returns the cache of the current thread if the thread has allocated a
+     * buffer before and its cache is bound to the specified arena.  A thread
+     * which only releases buffers does not get a cache.
+     */
+    @SuppressWarnings("unchecked")
+    <T> PoolThreadCache<T> threadCacheIfExists(PoolArena<T> arena) {
+        PoolThreadCache<?> cache = threadCache.get();
+        if (cache == null || cache.arena != arena) {
+            return null;
+        }
+        return (PoolThreadCache<T>) cache;
+    }
+
+    private PoolArena<?> leastUsedArena() {
+        PoolArena<?> minArena = arenas[0];
+        for (int i = 1; i < arenas.length; i ++) {
+            PoolArena<?> arena = arenas[i];
+            if (arena.numThreadCaches.get() < minArena.numThreadCaches.get()) {
+                minArena = arena;
+            }
+        }
+        return minArena;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder buf = new StringBuilder();
+        buf.append(getClass().getSimpleName());
+        buf.append(direct ? "(direct, " : "(heap, ");
+        buf.append(arenas.length);
+        buf.append(" arena(s), chunkSize: ");
+        buf.append(chunkSize);
+        buf.append(')');
+        return buf.toString();
+    }
+}
@@ -0,0 +1,287 @@
+/*
+ * Copyright 2012 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.buffer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.ScatteringByteChannel;
+
+/**
+ * A {@link PooledByteBuf} whose memory is a region of a direct
+ * {@link ByteBuffer}.
+ */
+final class PooledDirectByteBuf extends PooledByteBuf<ByteBuffer> {
+
+    private ByteBuffer tmpNioBuf;
+
+    @Override
+    void memoryChanged() {
+        tmpNioBuf = null;
+    }
+
+    @Override
+    public boolean isDirect() {
+        return true;
+    }
+
+    @Override
+    public boolean hasArray() {
+        return false;
+    }
+
+    @Override
+    public byte[] array() {
+        throw new UnsupportedOperationException("direct buffer");
+    }
+
+    @Override
+    public int arrayOffset() {
+        throw new UnsupportedOperationException("direct buffer");
+    }
+
+    @Override
+    public byte getByte(int index) {
+        checkIndex(index, 1);
+        return memory.get(idx(index));
+    }
+
+    @Override
+    public short getShort(int index) {
+        checkIndex(index, 2);
+        return memory.getShort(idx(index));
+    }
+
+    @Override
+    public int getUnsignedMedium(int index) {
+        checkIndex(index, 3);
+        index = idx(index);
+        return  (memory.get(index)     & 0xff) << 16 |
+                (memory.get(index + 1) & 0xff) <<  8 |
+                (memory.get(index + 2) & 0xff) <<  0;
+    }
+
+    @Override
+    public int getInt(int index) {
+        checkIndex(index, 4);
+        return memory.getInt(idx(index));
+    }
+
+    @Override
+    public long getLong(int index) {
+        checkIndex(index, 8);
+        return memory.getLong(idx(index));
+    }
+
+    @Override
+    public void getBytes(int index, ByteBuf dst, int dstIndex, int length) {
+        checkIndex(index, length);
+        if (dst.hasArray()) {
+            getBytes(index, dst.array(), dst.arrayOffset() + dstIndex, length);
+        } else {
+            index = idx(index);
+            ByteBuffer tmpBuf = internalNioBuffer();
+            tmpBuf.clear().position(index).limit(index + length);
+            dst.setBytes(dstIndex, tmpBuf);
+        }
+    }
+
+    @Override
+    public void getBytes(int index, byte[] dst, int dstIndex, int length) {
+        checkIndex(index, length);
+        index = idx(index);
+        ByteBuffer tmpBuf = internalNioBuffer();
+        tmpBuf.clear().position(index).limit(index + length);
+        tmpBuf.get(dst, dstIndex, length);
+    }
+
+    @Override
+    public void getBytes(int index, ByteBuffer dst) {
+        int bytesToCopy = Math.min(capacity() - index, dst.remaining());
+        checkIndex(index, bytesToCopy);
+        index = idx(index);
+        ByteBuffer tmpBuf = internalNioBuffer();
+        tmpBuf.clear().position(index).limit(index + bytesToCopy);
+        dst.put(tmpBuf);
+    }
+
+    @Override
+    public void getBytes(int index, OutputStream out, int length) throws IOException {
+        checkIndex(index, length);
+        if (length == 0) {
+            return;
+        }
+
+        byte[] tmp = new byte[length];
+        getBytes(index, tmp, 0, length);
+        out.write(tmp);
+    }
+
+    @Override
+    public int getBytes(int index, GatheringByteChannel out, int length) throws IOException {
+        checkIndex(index, length);
+        index = idx(index);
+        ByteBuffer tmpBuf = internalNioBuffer();
+        tmpBuf.clear().position(index).limit(index + length);
+        return out.write(tmpBuf);
+    }
+
+    @Override
+    public void setByte(int index, int value) {
+        checkIndex(index, 1);
+        memory.put(idx(index), (byte) value);
+    }
+
+    @Override
+    public void setShort(int index, int value) {
+        checkIndex(index, 2);
+        memory.putShort(idx(index), (short) value);
+    }
+
+    @Override
+    public void setMedium(int index, int   value) {
+        checkIndex(index, 3);
+        index = idx(index);
+        memory.put(index,     (byte) (value >>> 16));
+        memory.put(index + 1, (byte) (value >>>  8));
+        memory.put(index + 2, (byte) (value >>>  0));
+    }
+
+    @Override
+    public void setInt(int index, int   value) {
+        checkIndex(index, 4);
+        memory.putInt(idx(index), value);
+    }
+
+    @Override
+    public void setLong(int index, long  value) {
+        checkIndex(index, 8);
+        memory.putLong(idx(index), value);
+    }
+
+    @Override
+    public void setBytes(int index, ByteBuf src, int srcIndex, int length) {
+        checkIndex(index, length);
+        if (src.hasArray()) {
+            setBytes(index, src.array(), src.arrayOffset() + srcIndex, length);
+        } else {
+            // Do not use the internal NIO buffer; src might be a view of this buffer.
+            index = idx(index);
+            ByteBuffer data = memory.duplicate();
+            data.clear().position(index).limit(index + length);
+            src.getBytes(srcIndex, data);
+        }
+    }
+
+    @Override
+    public void setBytes(int index, byte[] src, int srcIndex, int length) {
+        checkIndex(index, length);
+        index = idx(index);
+        ByteBuffer tmpBuf = internalNioBuffer();
+        tmpBuf.clear().position(index).limit(index + length);
+        tmpBuf.put(src, srcIndex, length);
+    }
+
+    @Override
+    public void setBytes(int index, ByteBuffer src) {
+        checkIndex(index, src.remaining());
+        ByteBuffer tmpBuf = internalNioBuffer();
+        if (src == tmpBuf) {
+            src = src.duplicate();
+        }
+
+        index = idx(index);
+        tmpBuf.clear().position(index).limit(index + src.remaining());
+        tmpBuf.put(src);
+    }
+
+    @Override
+    public int setBytes(int index, InputStream in, int length) throws IOException {
+        checkIndex(index, length);
+        byte[] tmp = new byte[length];
+        int readBytes = in.read(tmp);
+        if (readBytes > 0) {
+            setBytes(index, tmp, 0, readBytes);
+        }
+        return readBytes;
+    }
+
+    @Override
+    public int setBytes(int index, ScatteringByteChannel in, int length) throws IOException {
+        checkIndex(index, length);
+        index = idx(index);
+        ByteBuffer tmpBuf = internalNioBuffer();
+        tmpBuf.clear().position(index).limit(index + length);
+        try {
+            return in.read(tmpBuf);
+        } catch (ClosedChannelException e) {
+            return -1;
+        }
+    }
+
+    @Override
+    public ByteBuf slice(int index, int length) {
+        if (length == 0) {
+            return Unpooled.EMPTY_BUFFER;
+        }
+        if (index == 0) {
+            if (length == capacity()) {
+                ByteBuf slice = duplicate();
+                slice.setIndex(0, length);
+                return slice;
+            } else {
+                return new TruncatedByteBuf(this, length);
+            }
+        }
+        return new SlicedByteBuf(this, index, length);
+    }
+
+    @Override
+    public ByteBuf duplicate() {
+        return new DuplicatedByteBuf(this);
+    }
+
+    @Override
+    public ByteBuf copy(int index, int length) {
+        checkIndex(index, length);
+        ByteBuf copy = Unpooled.directBuffer(length);
+        copy.writeBytes(this, index, length);
+        return copy;
+    }
+
+    @Override
+    public boolean hasNioBuffer() {
+        return true;
+    }
+
+    @Override
+    public ByteBuffer nioBuffer(int index, int length) {
+        checkIndex(index, length);
+        index = idx(index);
+        return ((ByteBuffer) memory.duplicate().position(index).limit(index + length)).slice().order(order());
+    }
+
+    private ByteBuffer internalNioBuffer() {
+        ByteBuffer tmpNioBuf = this.tmpNioBuf;
+        if (tmpNioBuf == null) {
+            this.tmpNioBuf = tmpNioBuf = memory.duplicate();
+        }
+        return tmpNioBuf;
+    }
+}
@@ -0,0 +1,266 @@
+/*
+ * Copyright 2012 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.buffer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.ScatteringByteChannel;
+
+/**
+ * A {@link PooledByteBuf} whose memory is a region of a heap byte array.
+ */
+final class PooledHeapByteBuf extends PooledByteBuf<byte[]> {
+
+    private ByteBuffer tmpNioBuf;
+
+    @Override
+    void memoryChanged() {
+        tmpNioBuf = null;
+    }
+
+    @Override
+    public boolean isDirect() {
+        return false;
+    }
+
+    @Override
+    public boolean hasArray() {
+        return true;
+    }
+
+    @Override
+    public byte[] array() {
+        return memory;
+    }
+
+    @Override
+    public int arrayOffset() {
+        return offset;
+    }
+
+    @Override
+    public byte getByte(int index) {
+        checkIndex(index, 1);
+        return memory[idx(index)];
+    }
+
+    @Override
+    public short getShort(int index) {
+        checkIndex(index, 2);
+        index = idx(index);
+        return (short) (memory[index] << 8 | memory[index + 1] & 0xFF);
+    }
+
+    @Override
+    public int getUnsignedMedium(int index) {
+        checkIndex(index, 3);
+        index = idx(index);
+        return  (memory[index]     & 0xff) << 16 |
+                (memory[index + 1] & 0xff) <<  8 |
+                (memory[index + 2] & 0xff) <<  0;
+    }
+
+    @Override
+    public int getInt(int index) {
+        checkIndex(index, 4);
+        index = idx(index);
+        return  (memory[index]     & 0xff) << 24 |
+                (memory[index + 1] & 0xff) << 16 |
+                (memory[index + 2] & 0xff) <<  8 |
+                (memory[index + 3] & 0xff) <<  0;
+    }
+
+    @Override
+    public long getLong(int index) {
+        checkIndex(index, 8);
+        index = idx(index);
+        return  ((long) memory[index]     & 0xff) << 56 |
+                ((long) memory[index + 1] & 0xff) << 48 |
+                ((long) memory[index + 2] & 0xff) << 40 |
+                ((long) memory[index + 3] & 0xff) << 32 |
+                ((long) memory[index + 4] & 0xff) << 24 |
+                ((long) memory[index + 5] & 0xff) << 16 |
+                ((long) memory[index + 6] & 0xff) <<  8 |
+                ((long) memory[index + 7] & 0xff) <<  0;
+    }
+
+    @Override
+    public void getBytes(int index, ByteBuf dst, int dstIndex, int length) {
+        checkIndex(index, length);
+        dst.setBytes(dstIndex, memory, idx(index), length);
+    }
+
+    @Override
+    public void getBytes(int index, byte[] dst, int dstIndex, int length) {
+        checkIndex(index, length);
+        System.arraycopy(memory, idx(index), dst, dstIndex, length);
+    }
+
+    @Override
+    public void getBytes(int index, ByteBuffer dst) {
+        int bytesToCopy = Math.min(capacity() - index, dst.remaining());
+        checkIndex(index, bytesToCopy);
+        dst.put(memory, idx(index), bytesToCopy);
+    }
+
+    @Override
+    public void getBytes(int index, OutputStream out, int length) throws IOException {
+        checkIndex(index, length);
+        out.write(memory, idx(index), length);
+    }
+
+    @Override
+    public int getBytes(int index, GatheringByteChannel out, int length) throws IOException {
+        checkIndex(index, length);
+        index = idx(index);
+        return out.write((ByteBuffer) internalNioBuffer().clear().position(index).limit(index + length));
+    }
+
+    @Override
+    public void setByte(int index, int value) {
+        checkIndex(index, 1);
+        memory[idx(index)] = (byte) value;
+    }
+
+    @Override
+    public void setShort(int index, int value) {
+        checkIndex(index, 2);
+        index = idx(index);
+        memory[index]     = (byte) (value >>> 8);
+        memory[index + 1] = (byte) (value >>> 0);
+    }
+
+    @Override
+    public void setMedium(int index, int   value) {
+        checkIndex(index, 3);
+        index = idx(index);
+        memory[index]     = (byte) (value >>> 16);
+        memory[index + 1] = (byte) (value >>> 8);
+        memory[index + 2] = (byte) (value >>> 0);
+    }
+
+    @Override
+    public void setInt(int index, int   value) {
+        checkIndex(index, 4);
+        index = idx(index);
+        memory[index]     = (byte) (value >>> 24);
+        memory[index + 1] = (byte) (value >>> 16);
+        memory[index + 2] = (byte) (value >>> 8);
+        memory[index + 3] = (byte) (value >>> 0);
+    }
+
+    @Override
+    public void setLong(int index, long  value) {
+        checkIndex(index, 8);
+        index = idx(index);
+        memory[index]     = (byte) (value >>> 56);
+        memory[index + 1] = (byte) (value >>> 48);
+        memory[index + 2] = (byte) (value >>> 40);
+        memory[index + 3] = (byte) (value >>> 32);
+        memory[index + 4] = (byte) (value >>> 24);
+        memory[index + 5] = (byte) (value >>> 16);
+        memory[index + 6] = (byte) (value >>> 8);
+        memory[index + 7] = (byte) (value >>> 0);
+    }
+
+    @Override
+    public void setBytes(int index, ByteBuf src, int srcIndex, int length) {
+        checkIndex(index, length);
+        src.getBytes(srcIndex, memory, idx(index), length);
+    }
+
+    @Override
+    public void setBytes(int index, byte[] src, int srcIndex, int length) {
+        checkIndex(index, length);
+        System.arraycopy(src, srcIndex, memory, idx(index), length);
+    }
+
+    @Override
+    public void setBytes(int index, ByteBuffer src) {
+        checkIndex(index, src.remaining());
+        src.get(memory, idx(index), src.remaining());
+    }
+
+    @Override
+    public int setBytes(int index, InputStream in, int length) throws IOException {
+        checkIndex(index, length);
+        return in.read(memory, idx(index), length);
+    }
+
+    @Override
+    public int setBytes(int index, ScatteringByteChannel in, int length) throws IOException {
+        checkIndex(index, length);
+        index = idx(index);
+        try {
+            return in.read((ByteBuffer) internalNioBuffer().clear().position(index).limit(index + length));
+        } catch (ClosedChannelException e) {
+            return -1;
+        }
+    }
+
+    @Override
+    public ByteBuf slice(int index, int length) {
+        if (length == 0) {
+            return Unpooled.EMPTY_BUFFER;
+        }
+        if (index == 0) {
+            if (length == capacity()) {
+                ByteBuf slice = duplicate();
+                slice.setIndex(0, length);
+                return slice;
+            } else {
+                return new TruncatedByteBuf(this, length);
+            }
+        }
+        return new SlicedByteBuf(this, index, length);
+    }
+
+    @Override
+    public ByteBuf duplicate() {
+        return new DuplicatedByteBuf(this);
+    }
+
+    @Override
+    public ByteBuf copy(int index, int length) {
+        checkIndex(index, length);
+        byte[] copiedArray = new byte[length];
+        System.arraycopy(memory, idx(index), copiedArray, 0, length);
+        return new HeapByteBuf(copiedArray);
+    }
+
+    @Override
+    public boolean hasNioBuffer() {
+        return true;
+    }
+
+    @Override
+    public ByteBuffer nioBuffer(int index, int length) {
+        checkIndex(index, length);
+        return ByteBuffer.wrap(memory, idx(index), length).slice().order(order());
+    }
+
+    private ByteBuffer internalNioBuffer() {
+        ByteBuffer tmpNioBuf = this.tmpNioBuf;
+        if (tmpNioBuf == null) {
+            this.tmpNioBuf = tmpNioBuf = ByteBuffer.wrap(memory);
+        }
+        return tmpNioBuf;
+    }
+}
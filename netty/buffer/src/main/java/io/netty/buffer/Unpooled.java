@@ -103,6 +103,33 @@ public final class Unpooled {
             }
             return this;
         }
+
+        // The shared empty buffer is never deallocated.
+
+        @Override
+        public int refCnt() {
+            return 1;
+        }
+
+        @Override
+        public ByteBuf retain() {
+            return this;
+        }
+
+        @Override
+        public ByteBuf retain(int increment) {
+            return this;
+        }
+
+        @Override
+        public boolean release() {
+            return false;
+        }
+
+        @Override
+        public boolean release(int decrement) {
+            return false;
+        }
     };
 
     public static <T> MessageBuf<T> messageBuffer() {
@@ -142,8 +169,9 @@ public final class Unpooled {
             return EMPTY_BUFFER;
         }
 
-        ByteBuf buffer = new NioBufferBackedByteBuf(ByteBuffer.allocateDirect(capacity));
+        NioBufferBackedByteBuf buffer = new NioBufferBackedByteBuf(ByteBuffer.allocateDirect(capacity));
         buffer.clear();
+        buffer.trackLeak();
         return buffer;
     }
 
@@ -256,6 +284,12 @@ public final class Unpooled {
      */
     public static ByteBuf wrappedBuffer(ByteBuf buffer) {
         if (buffer.readable()) {
+            if (buffer instanceof CompositeByteBuf) {
+                // Keep the composition flat rather than wrapping it in a slice.
+                List<ByteBuf> components = new ArrayList<ByteBuf>();
+                addComponents(components, buffer);
+                return compositeBuffer(buffer.order(), components);
+            }
             return buffer.slice();
         } else {
             return EMPTY_BUFFER;
@@ -313,6 +347,10 @@ public final class Unpooled {
      * Creates a new composite buffer which wraps the readable bytes of the
      * specified buffers without copying them.  A modification on the content
      * of the specified buffers will be visible to the returned buffer.
+     * <p>
+     * The returned buffer takes over the references of the specified buffers:
+     * they are released when the returned buffer is released, and the
+     * specified buffers which are not readable are released immediately.
      *
      * @throws IllegalArgumentException
      *         if the specified buffers' endianness are different from each
@@ -326,6 +364,7 @@ public final class Unpooled {
             if (buffers[0].readable()) {
                 return wrappedBuffer(buffers[0]);
             }
+            buffers[0].release();
             break;
         default:
             ByteOrder order = null;
@@ -342,15 +381,9 @@ public final class Unpooled {
                     } else {
                         order = c.order();
                     }
-                    if (c instanceof CompositeByteBuf) {
-                        // Expand nested composition.
-                        components.addAll(
-                                ((CompositeByteBuf) c).decompose(
-                                        c.readerIndex(), c.readableBytes()));
-                    } else {
-                        // An ordinary buffer (non-composite)
-                        components.add(c.slice());
-                    }
+                    addComponents(components, c);
+                } else {
+                    c.release();
                 }
             }
             return compositeBuffer(order, components);
@@ -358,6 +391,24 @@ public final class Unpooled {
         return EMPTY_BUFFER;
     }
 
+    private static void addComponents(List<ByteBuf> components, ByteBuf c) {
+        if (c instanceof CompositeByteBuf) {
+            // Expand nested composition.  The slices share the reference
+            // counts of the nested components, so they are retained before
+            // the nested composition is released.
+            List<ByteBuf> decomposed = ((CompositeByteBuf) c).decompose(
+                    c.readerIndex(), c.readableBytes());
+            for (ByteBuf d: decomposed) {
+                d.retain();
+            }
+            components.addAll(decomposed);
+            c.release();
+        } else {
+            // An ordinary buffer (non-composite)
+            components.add(c.slice());
+        }
+    }
+
     /**
      * Creates a new composite buffer which wraps the slices of the specified
      * NIO buffers without copying them.  A modification on the content of the
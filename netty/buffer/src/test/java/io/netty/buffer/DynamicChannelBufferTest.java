@@ -17,6 +17,13 @@ package io.netty.buffer;
 
 import static org.junit.Assert.*;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.GatheringByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+
 import org.junit.Test;
 
 /**
@@ -58,4 +65,235 @@ public class DynamicChannelBufferTest extends AbstractChannelBufferTest {
         buf.writerIndex(10);
         buf.readerIndex(10);
     }
+
+    @Test
+    public void testAddComponent() {
+        byte[] array = new byte[16];
+        DynamicByteBuf buf = new DynamicByteBuf(4);
+        buf.writeInt(1);
+        buf.addComponent(Unpooled.wrappedBuffer(array));
+        buf.writeInt(2);
+
+        assertEquals(24, buf.readableBytes());
+        assertFalse(buf.hasNioBuffer());
+
+        // The added buffer is not copied.
+        array[0] = 42;
+        assertEquals(1, buf.readInt());
+        assertEquals(42, buf.readByte());
+        buf.skipBytes(15);
+        assertEquals(2, buf.readInt());
+    }
+
+    @Test
+    public void testAddUnreadableComponent() {
+        ByteBuf component = Unpooled.buffer(4);
+        DynamicByteBuf buf = new DynamicByteBuf(4);
+        buf.addComponent(component);
+        assertEquals(0, component.refCnt());
+        assertEquals(0, buf.writerIndex());
+        assertTrue(buf.hasNioBuffer());
+    }
+
+    @Test
+    public void testGatheringWrite() throws IOException {
+        DynamicByteBuf buf = new DynamicByteBuf(4);
+        buf.writeInt(1);
+        buf.addComponent(Unpooled.wrappedBuffer(new byte[16]));
+        buf.addComponent(Unpooled.wrappedBuffer(
+                Unpooled.wrappedBuffer(new byte[8]), Unpooled.wrappedBuffer(new byte[8])));
+
+        RecordingChannel ch = new RecordingChannel();
+        assertEquals(36, buf.readBytes(ch, buf.readableBytes()));
+        assertFalse(buf.readable());
+        if (ch.gatheringWrites > 0) {
+            assertEquals(1, ch.gatheringWrites);
+            assertEquals(4, ch.buffers.size());
+        }
+    }
+
+    @Test
+    public void testDiscardReadComponents() {
+        ByteBuf a = Unpooled.wrappedBuffer(new byte[8]);
+        ByteBuf b = Unpooled.wrappedBuffer(new byte[8]);
+        DynamicByteBuf buf = new DynamicByteBuf(4);
+        buf.addComponent(a);
+        buf.addComponent(b);
+
+        buf.skipBytes(8);
+        buf.discardReadBytes();
+        assertEquals(0, a.refCnt());
+        assertEquals(1, b.refCnt());
+        assertEquals(0, buf.readerIndex());
+        assertEquals(8, buf.writerIndex());
+
+        // A single buffer is used again once everything has been discarded.
+        buf.skipBytes(8);
+        buf.discardReadBytes();
+        assertEquals(0, b.refCnt());
+        assertTrue(buf.hasNioBuffer());
+
+        buf.writeLong(42);
+        assertEquals(42, buf.readLong());
+        assertTrue(buf.release());
+    }
+
+    @Test
+    public void testReleaseComponents() {
+        ByteBuf a = Unpooled.wrappedBuffer(new byte[8]);
+        DynamicByteBuf buf = new DynamicByteBuf(4);
+        buf.writeInt(1);
+        buf.addComponent(a);
+        buf.writeInt(2);
+        assertTrue(buf.release());
+        assertEquals(0, a.refCnt());
+    }
+
+    @Test
+    public void testAddManyComponents() {
+        List<ByteBuf> components = new ArrayList<ByteBuf>();
+        DynamicByteBuf buf = new DynamicByteBuf(4);
+        for (int i = 0; i < 4096; i ++) {
+            ByteBuf c = Unpooled.wrappedBuffer(new byte[] { (byte) i });
+            components.add(c);
+            buf.addComponent(c);
+            buf.writeByte(i + 1);
+        }
+
+        assertEquals(8192, buf.readableBytes());
+        for (int i = 0; i < 4096; i ++) {
+            assertEquals((byte) i, buf.readByte());
+            assertEquals((byte) (i + 1), buf.readByte());
+        }
+
+        buf.clear();
+        for (ByteBuf c: components) {
+            assertEquals(0, c.refCnt());
+        }
+        assertTrue(buf.release());
+    }
+
+    @Test
+    public void testClearReusesBuffer() {
+        CountingFactory factory = new CountingFactory();
+        DynamicByteBuf buf = new DynamicByteBuf(16, factory);
+        assertEquals(1, factory.allocations);
+
+        ByteBuf a = Unpooled.wrappedBuffer(new byte[8]);
+        buf.writeInt(1);
+        buf.addComponent(a);
+        buf.skipBytes(12);
+
+        // The buffer used before the component was added is used again.
+        buf.clear();
+        assertEquals(0, a.refCnt());
+        assertEquals(1, factory.allocations);
+        assertTrue(buf.hasNioBuffer());
+        assertEquals(16, buf.capacity());
+        assertEquals(0, buf.writerIndex());
+
+        buf.writeLong(42);
+        assertEquals(42, buf.readLong());
+        assertEquals(1, factory.allocations);
+        assertTrue(buf.release());
+    }
+
+    @Test
+    public void testShrink() {
+        DynamicByteBuf buf = new DynamicByteBuf(16);
+        buf.writeBytes(new byte[4096]);
+        assertTrue(buf.capacity() >= 4096);
+
+        // Never drops the readable bytes.
+        assertFalse(buf.shrink(16));
+        assertTrue(buf.capacity() >= 4096);
+
+        buf.skipBytes(4096);
+        assertTrue(buf.shrink(16));
+        assertEquals(16, buf.capacity());
+        assertEquals(0, buf.readerIndex());
+        assertEquals(0, buf.writerIndex());
+
+        // Never grows.
+        assertFalse(buf.shrink(32));
+        assertEquals(16, buf.capacity());
+
+        buf.writeLong(42);
+        assertEquals(42, buf.readLong());
+        assertTrue(buf.release());
+    }
+
+    @Test
+    public void testShrinkByteBufUtil() {
+        ByteBuf buf = Unpooled.dynamicBuffer(16);
+        buf.writeBytes(new byte[4096]);
+        buf.skipBytes(4096);
+        assertTrue(ByteBufUtil.shrink(buf, 16));
+        assertEquals(16, buf.capacity());
+
+        // Other buffers are left as they are.
+        ByteBuf fixed = Unpooled.buffer(4096);
+        assertFalse(ByteBufUtil.shrink(fixed, 16));
+        assertEquals(4096, fixed.capacity());
+    }
+
+    private static final class CountingFactory extends AbstractByteBufFactory {
+        int allocations;
+
+        @Override
+        public ByteBuf getBuffer(ByteOrder order, int capacity) {
+            allocations ++;
+            return HeapByteBufFactory.getInstance(order).getBuffer(order, capacity);
+        }
+
+        @Override
+        public ByteBuf getBuffer(ByteOrder order, byte[] array, int offset, int length) {
+            allocations ++;
+            return HeapByteBufFactory.getInstance(order).getBuffer(order, array, offset, length);
+        }
+
+        @Override
+        public ByteBuf getBuffer(ByteBuffer nioBuffer) {
+            allocations ++;
+            return HeapByteBufFactory.getInstance(nioBuffer.order()).getBuffer(nioBuffer);
+        }
+    }
+
+    private static final class RecordingChannel implements GatheringByteChannel {
+        final List<ByteBuffer> buffers = new ArrayList<ByteBuffer>();
+        int gatheringWrites;
+
+        @Override
+        public long write(ByteBuffer[] srcs, int offset, int length) {
+            gatheringWrites ++;
+            long writtenBytes = 0;
+            for (int i = offset; i < offset + length; i ++) {
+                buffers.add(srcs[i]);
+                writtenBytes += write(srcs[i]);
+            }
+            return writtenBytes;
+        }
+
+        @Override
+        public long write(ByteBuffer[] srcs) {
+            return write(srcs, 0, srcs.length);
+        }
+
+        @Override
+        public int write(ByteBuffer src) {
+            int writtenBytes = src.remaining();
+            src.position(src.limit());
+            return writtenBytes;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+            // NOOP
+        }
+    }
 }
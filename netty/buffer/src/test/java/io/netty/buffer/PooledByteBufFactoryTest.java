@@ -0,0 +1,205 @@
+/*
+ * Copyright 2012 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.buffer;
+
+import static org.junit.Assert.*;
+import io.netty.util.IllegalReferenceCountException;
+
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+/**
+ * Tests {@link PooledByteBufFactory}.
+ */
+public class PooledByteBufFactoryTest {
+
+    private final PooledByteBufFactory factory =
+            new PooledByteBufFactory(false, ByteOrder.BIG_ENDIAN, 1, 8192, 4);
+
+    @Test
+    public void testReuseTinyBuffer() {
+        testReuse(33);
+    }
+
+    @Test
+    public void testReuseSmallBuffer() {
+        testReuse(1000);
+    }
+
+    @Test
+    public void testReuseNormalBuffer() {
+        testReuse(20000);
+    }
+
+    private void testReuse(int capacity) {
+        PooledByteBuf<?> a = (PooledByteBuf<?>) factory.getBuffer(capacity);
+        assertEquals(capacity, a.capacity());
+        int offset = a.arrayOffset();
+        byte[] array = a.array();
+        assertTrue(a.release());
+        assertEquals(0, a.refCnt());
+
+        PooledByteBuf<?> b = (PooledByteBuf<?>) factory.getBuffer(capacity);
+        assertSame(array, b.array());
+        assertEquals(offset, b.arrayOffset());
+        assertEquals(0, b.readerIndex());
+        assertEquals(0, b.writerIndex());
+        b.release();
+    }
+
+    @Test
+    public void testFreeCacheOfTerminatedThread() throws Exception {
+        final int[] offset = new int[1];
+        Thread t = new Thread() {
+            @Override
+            public void run() {
+                PooledByteBuf<?> buf = (PooledByteBuf<?>) factory.getBuffer(64);
+                offset[0] = buf.arrayOffset();
+                // Kept in the cache of the thread.
+                buf.release();
+            }
+        };
+        t.start();
+        t.join();
+
+        // The cache of the terminated thread is freed when this thread creates its cache.
+        PooledByteBuf<?> buf = (PooledByteBuf<?>) factory.getBuffer(64);
+        assertEquals(offset[0], buf.arrayOffset());
+        buf.release();
+    }
+
+    @Test
+    public void testFreeThreadCaches() throws Exception {
+        PooledByteBuf<?> buf = (PooledByteBuf<?>) factory.getBuffer(64);
+        final int offset = buf.arrayOffset();
+        buf.release();
+        PooledByteBufFactory.freeThreadCaches();
+
+        final int[] reusedOffset = { -1 };
+        Thread t = new Thread() {
+            @Override
+            public void run() {
+                PooledByteBuf<?> buf = (PooledByteBuf<?>) factory.getBuffer(64);
+                reusedOffset[0] = buf.arrayOffset();
+                buf.release();
+                PooledByteBufFactory.freeThreadCaches();
+            }
+        };
+        t.start();
+        t.join();
+        assertEquals(offset, reusedOffset[0]);
+    }
+
+    @Test
+    public void testReleaseTwice() {
+        PooledByteBuf<?> a = (PooledByteBuf<?>) factory.getBuffer(64);
+        a.release();
+        try {
+            a.release();
+            fail();
+        } catch (IllegalReferenceCountException e) {
+            // Expected
+        }
+
+        // The region must be handed out only once.
+        PooledByteBuf<?> b = (PooledByteBuf<?>) factory.getBuffer(64);
+        PooledByteBuf<?> c = (PooledByteBuf<?>) factory.getBuffer(64);
+        assertFalse(b.arrayOffset() == c.arrayOffset());
+        b.release();
+        c.release();
+    }
+
+    @Test
+    public void testNoOverlap() {
+        int[] capacities = { 16, 100, 512, 4000, 8192, 30000 };
+        List<PooledByteBuf<?>> bufs = new ArrayList<PooledByteBuf<?>>();
+        for (int i = 0; i < 64; i ++) {
+            bufs.add((PooledByteBuf<?>) factory.getBuffer(capacities[i % capacities.length]));
+        }
+
+        Map<byte[], boolean[]> used = new IdentityHashMap<byte[], boolean[]>();
+        for (PooledByteBuf<?> b: bufs) {
+            boolean[] map = used.get(b.array());
+            if (map == null) {
+                map = new boolean[b.array().length];
+                used.put(b.array(), map);
+            }
+            for (int i = b.arrayOffset(); i < b.arrayOffset() + b.capacity(); i ++) {
+                assertFalse(map[i]);
+                map[i] = true;
+            }
+        }
+
+        for (PooledByteBuf<?> b: bufs) {
+            b.release();
+        }
+    }
+
+    @Test
+    public void testHugeBufferIsNotPooled() {
+        ByteBuf buf = factory.getBuffer((8192 << 4) + 1);
+        assertFalse(buf.isPooled());
+        assertEquals((8192 << 4) + 1, buf.capacity());
+    }
+
+    @Test
+    public void testLittleEndian() {
+        ByteBuf buf = factory.getBuffer(ByteOrder.LITTLE_ENDIAN, 16);
+        assertSame(ByteOrder.LITTLE_ENDIAN, buf.order());
+        buf.writeInt(0x01020304);
+        assertEquals(0x04, buf.getByte(0));
+    }
+
+    @Test
+    public void testDynamicBufferExpansion() {
+        ByteBuf buf = Unpooled.dynamicBuffer(16, factory);
+        for (int i = 0; i < 10000; i ++) {
+            buf.writeInt(i);
+        }
+        for (int i = 0; i < 10000; i ++) {
+            assertEquals(i, buf.readInt());
+        }
+    }
+
+    @Test
+    public void testRetainedBufferIsNotReturned() {
+        ByteBuf a = factory.getBuffer(64);
+        ByteBuf slice = a.slice(0, 16).retain();
+        assertFalse(a.release());
+        slice.setByte(0, 1);
+        assertTrue(slice.release());
+        assertEquals(0, a.refCnt());
+    }
+
+    @Test(expected = IllegalReferenceCountException.class)
+    public void testAccessAfterRelease() {
+        ByteBuf buf = factory.getBuffer(64);
+        buf.release();
+        buf.getByte(0);
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testAccessBeyondCapacity() {
+        // The region of a tiny buffer is rounded up to a multiple of 16.
+        ByteBuf buf = factory.getBuffer(10);
+        buf.getByte(10);
+    }
+}
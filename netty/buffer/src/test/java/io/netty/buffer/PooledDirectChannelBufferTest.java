@@ -0,0 +1,42 @@
+/*
+ * Copyright 2012 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.buffer;
+
+import static org.junit.Assert.*;
+
+import java.nio.ByteOrder;
+
+/**
+ * Tests big-endian pooled direct channel buffers
+ */
+public class PooledDirectChannelBufferTest extends AbstractChannelBufferTest {
+
+    private ByteBuf buffer;
+
+    @Override
+    protected ByteBuf newBuffer(int length) {
+        buffer = PooledByteBufFactory.getDirectInstance().getBuffer(length);
+        assertTrue(buffer instanceof PooledByteBuf);
+        assertSame(ByteOrder.BIG_ENDIAN, buffer.order());
+        assertEquals(0, buffer.writerIndex());
+        return buffer;
+    }
+
+    @Override
+    protected ByteBuf[] components() {
+        return new ByteBuf[] { buffer };
+    }
+}
@@ -0,0 +1,219 @@
+/*
+ * Copyright 2012 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.buffer;
+
+import static io.netty.buffer.Unpooled.*;
+import static org.junit.Assert.*;
+import io.netty.util.IllegalReferenceCountException;
+import io.netty.util.ReferenceCountUtil;
+import io.netty.util.ResourceLeakDetector;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import org.junit.Test;
+
+/**
+ * Tests the reference counting of the {@link ByteBuf} implementations.
+ */
+public class ReferenceCountedByteBufTest {
+
+    @Test
+    public void testRetainAndRelease() {
+        ByteBuf buf = buffer(8);
+        assertEquals(1, buf.refCnt());
+        assertSame(buf, buf.retain());
+        assertEquals(2, buf.refCnt());
+        assertSame(buf, buf.retain(3));
+        assertEquals(5, buf.refCnt());
+        assertFalse(buf.release(4));
+        assertEquals(1, buf.refCnt());
+        assertTrue(buf.release());
+        assertEquals(0, buf.refCnt());
+    }
+
+    @Test(expected = IllegalReferenceCountException.class)
+    public void testRetainAfterRelease() {
+        ByteBuf buf = buffer(8);
+        buf.release();
+        buf.retain();
+    }
+
+    @Test(expected = IllegalReferenceCountException.class)
+    public void testOverRelease() {
+        ByteBuf buf = buffer(8);
+        buf.retain();
+        buf.release(3);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNonPositiveIncrement() {
+        buffer(8).retain(0);
+    }
+
+    @Test
+    public void testDerivedBuffersShareReferenceCount() {
+        testDerivedBuffersShareReferenceCount(buffer(16));
+        testDerivedBuffersShareReferenceCount(directBuffer(16));
+        testDerivedBuffersShareReferenceCount(dynamicBuffer(16));
+        testDerivedBuffersShareReferenceCount(wrappedBuffer(filled(buffer(8)), filled(buffer(8))));
+    }
+
+    private static void testDerivedBuffersShareReferenceCount(ByteBuf buf) {
+        buf.writerIndex(buf.capacity());
+        ByteBuf[] derived = {
+                buf.duplicate(), buf.slice(), buf.slice(1, 4), buf.slice(0, 4),
+                unmodifiableBuffer(buf), buf.order(ByteOrder.LITTLE_ENDIAN) };
+
+        for (ByteBuf d: derived) {
+            assertSame(d, d.retain());
+            assertEquals(2, buf.refCnt());
+            assertEquals(2, d.refCnt());
+            assertFalse(d.release());
+            assertEquals(1, buf.refCnt());
+        }
+
+        assertTrue(derived[0].release());
+        assertEquals(0, buf.refCnt());
+    }
+
+    @Test
+    public void testCompositeBufferReleasesComponents() {
+        ByteBuf a = filled(buffer(4));
+        ByteBuf b = filled(directBuffer(4));
+        ByteBuf composite = wrappedBuffer(a, b);
+
+        assertEquals(1, a.refCnt());
+        assertEquals(1, b.refCnt());
+        assertTrue(composite.release());
+        assertEquals(0, a.refCnt());
+        assertEquals(0, b.refCnt());
+    }
+
+    @Test
+    public void testNestedCompositeBuffer() {
+        ByteBuf a = filled(buffer(4));
+        ByteBuf b = filled(buffer(4));
+        ByteBuf c = filled(buffer(4));
+        ByteBuf composite = wrappedBuffer(wrappedBuffer(a, b), c);
+
+        assertEquals(1, a.refCnt());
+        assertEquals(1, b.refCnt());
+        assertEquals(1, c.refCnt());
+        assertTrue(composite.release());
+        assertEquals(0, a.refCnt());
+        assertEquals(0, b.refCnt());
+        assertEquals(0, c.refCnt());
+    }
+
+    @Test
+    public void testCompositeBufferDiscardReadBytes() {
+        ByteBuf a = filled(buffer(4));
+        ByteBuf b = filled(buffer(4));
+        ByteBuf composite = wrappedBuffer(a, b);
+        composite.skipBytes(5);
+        composite.discardReadBytes();
+
+        // The first component is not referenced anymore.
+        assertEquals(0, a.refCnt());
+        assertEquals(1, b.refCnt());
+        assertTrue(composite.release());
+        assertEquals(0, b.refCnt());
+    }
+
+    @Test
+    public void testUnreadableBufferIsReleasedWhenWrapped() {
+        ByteBuf a = buffer(4);
+        ByteBuf b = filled(buffer(4));
+        ByteBuf c = filled(buffer(4));
+        ByteBuf composite = wrappedBuffer(a, b, c);
+
+        assertEquals(0, a.refCnt());
+        composite.release();
+        assertEquals(0, b.refCnt());
+        assertEquals(0, c.refCnt());
+    }
+
+    @Test
+    public void testDynamicBufferReleasesUnderlyingBuffer() {
+        ByteBufFactory factory = new PooledByteBufFactory(false, ByteOrder.BIG_ENDIAN, 1, 8192, 4);
+        ByteBuf buf = dynamicBuffer(16, factory);
+        buf.writeBytes(new byte[1024]);
+        assertTrue(buf.release());
+        try {
+            buf.getByte(0);
+            fail();
+        } catch (IllegalReferenceCountException e) {
+            // Expected
+        }
+    }
+
+    @Test
+    public void testDirectFactoryBuffersAreIndependent() {
+        ByteBufFactory factory = new DirectByteBufFactory(1024);
+        ByteBuf a = factory.getBuffer(16);
+        ByteBuf b = factory.getBuffer(16);
+        assertTrue(a.release());
+        assertEquals(1, b.refCnt());
+        b.writeInt(42);
+        assertEquals(42, b.readInt());
+    }
+
+    @Test
+    public void testEmptyBufferIsNeverReleased() {
+        assertFalse(EMPTY_BUFFER.release());
+        assertSame(EMPTY_BUFFER, EMPTY_BUFFER.retain());
+        assertEquals(1, EMPTY_BUFFER.refCnt());
+    }
+
+    @Test
+    public void testReferenceCountUtil() {
+        ByteBuf buf = wrappedBuffer(ByteBuffer.allocate(4));
+        assertSame(buf, ReferenceCountUtil.retain(buf));
+        assertEquals(2, buf.refCnt());
+        assertFalse(ReferenceCountUtil.release(buf));
+        assertTrue(ReferenceCountUtil.release(buf));
+
+        Object msg = "not reference-counted";
+        assertSame(msg, ReferenceCountUtil.retain(msg));
+        assertFalse(ReferenceCountUtil.release(msg));
+    }
+
+    @Test
+    public void testReleaseStopsLeakTracking() {
+        int oldSamplingInterval = ResourceLeakDetector.getSamplingInterval();
+        ResourceLeakDetector.setSamplingInterval(1);
+        try {
+            long active = AbstractReferenceCountedByteBuf.leakDetector.activeCount();
+            ByteBuf direct = directBuffer(16);
+            ByteBuf pooled = new PooledByteBufFactory(true).getBuffer(16);
+            ByteBuf heap = buffer(16);
+            assertEquals(active + 2, AbstractReferenceCountedByteBuf.leakDetector.activeCount());
+
+            direct.release();
+            pooled.release();
+            heap.release();
+            assertEquals(active, AbstractReferenceCountedByteBuf.leakDetector.activeCount());
+        } finally {
+            ResourceLeakDetector.setSamplingInterval(oldSamplingInterval);
+        }
+    }
+
+    private static ByteBuf filled(ByteBuf buf) {
+        buf.writerIndex(buf.capacity());
+        return buf;
+    }
+}
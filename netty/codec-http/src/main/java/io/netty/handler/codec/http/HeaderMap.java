@@ -0,0 +1,357 @@
+/*
+ * Copyright 2012 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.http;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * A multimap of header names and values whose names are compared
+ * case-insensitively and which remembers the order in which the headers were
+ * added.  This is the storage behind the headers of an {@link HttpMessage},
+ * an {@link HttpChunkTrailer} and a SPDY header block.
+ * <em>Internal use only</em>.
+ * <p>
+ * The names are looked up in an open-addressing table, which starts small and
+ * grows with the number of distinct names of the message.  The hash of a name
+ * covers all of its characters, folded to lower case, so that names which
+ * collide can not be crafted easily.  It is computed once per operation and
+ * kept with each header, so that the table never computes it again.
+ * <p>
+ * This class does not validate the names and the values.  Validating them is
+ * up to the caller.
+ * @apiviz.exclude
+ */
+public class HeaderMap {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * The latest header of each distinct name.  The earlier headers with the
+     * same name are linked by {@link Entry#next}.
+     */
+    private Entry[] slots = new Entry[INITIAL_CAPACITY];
+    private final Entry head = new Entry(-1, null, null);
+    private int names;
+    private int size;
+
+    /**
+     * Creates a new instance.
+     */
+    public HeaderMap() {
+        head.before = head.after = head;
+    }
+
+    /**
+     * Validates the value given to {@link Map.Entry#setValue(Object)}.  The
+     * default implementation does nothing.
+     */
+    protected void validateValue(String value) {
+        // NOOP
+    }
+
+    /**
+     * Returns the number of the headers.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Adds a new header.
+     */
+    public void add(String name, String value) {
+        add0(hash(name), name, value);
+    }
+
+    private void add0(int h, String name, String value) {
+        int i = find(h, name);
+        Entry e = new Entry(h, name, value);
+        if (i < 0) {
+            i = insert(h);
+            names ++;
+        } else {
+            e.next = slots[i];
+        }
+        slots[i] = e;
+        size ++;
+        e.addBefore(head);
+    }
+
+    /**
+     * Removes all headers with the specified name and then adds a new header.
+     */
+    public void set(String name, String value) {
+        int h = hash(name);
+        remove0(h, name);
+        add0(h, name, value);
+    }
+
+    /**
+     * Removes all headers with the specified name.
+     */
+    public void remove(String name) {
+        remove0(hash(name), name);
+    }
+
+    private void remove0(int h, String name) {
+        int i = find(h, name);
+        if (i < 0) {
+            return;
+        }
+
+        for (Entry e = slots[i]; e != null; e = e.next) {
+            e.remove();
+            size --;
+        }
+        delete(i);
+        names --;
+    }
+
+    /**
+     * Removes all headers.
+     */
+    public void clear() {
+        if (names != 0) {
+            slots = new Entry[INITIAL_CAPACITY];
+            names = 0;
+            size = 0;
+        }
+        head.before = head.after = head;
+    }
+
+    /**
+     * Returns the value of the latest header with the specified name, or
+     * {@code null} if there is no such header.
+     */
+    public String get(String name) {
+        int i = find(hash(name), name);
+        if (i < 0) {
+            return null;
+        }
+        return slots[i].value;
+    }
+
+    /**
+     * Returns the values of the headers with the specified name, in the order
+     * they were added.
+     */
+    public List<String> getAll(String name) {
+        int i = find(hash(name), name);
+        if (i < 0) {
+            return new ArrayList<String>(0);
+        }
+
+        List<String> values = new ArrayList<String>(4);
+        for (Entry e = slots[i]; e != null; e = e.next) {
+            values.add(e.value);
+        }
+        Collections.reverse(values);
+        return values;
+    }
+
+    /**
+     * Returns all headers in the order they were added.
+     */
+    public List<Map.Entry<String, String>> entries() {
+        List<Map.Entry<String, String>> all = new ArrayList<Map.Entry<String, String>>(size);
+        for (Entry e = head.after; e != head; e = e.after) {
+            all.add(e);
+        }
+        return all;
+    }
+
+    /**
+     * Returns {@code true} if and only if there is a header with the
+     * specified name.
+     */
+    public boolean contains(String name) {
+        return find(hash(name), name) >= 0;
+    }
+
+    /**
+     * Returns the distinct names of the headers, ordered case-insensitively.
+     */
+    public Set<String> names() {
+        Set<String> names = new TreeSet<String>(String.CASE_INSENSITIVE_ORDER);
+        for (Entry e = head.after; e != head; e = e.after) {
+            names.add(e.key);
+        }
+        return names;
+    }
+
+    /**
+     * Returns the index of the slot of the specified name, or {@code -1} if
+     * there is no header with the name.
+     */
+    private int find(int h, String name) {
+        final Entry[] slots = this.slots;
+        final int mask = slots.length - 1;
+        for (int i = h & mask;; i = i + 1 & mask) {
+            Entry e = slots[i];
+            if (e == null) {
+                return -1;
+            }
+            if (e.hash == h && eq(name, e.key)) {
+                return i;
+            }
+        }
+    }
+
+    /**
+     * Returns the index of a free slot for a new name, growing the table
+     * first if it would become more than half full.
+     */
+    private int insert(int h) {
+        if (names + 1 > slots.length >>> 1) {
+            Entry[] oldSlots = slots;
+            slots = new Entry[oldSlots.length << 1];
+            for (Entry e: oldSlots) {
+                if (e != null) {
+                    slots[insert0(e.hash)] = e;
+                }
+            }
+        }
+        return insert0(h);
+    }
+
+    private int insert0(int h) {
+        final Entry[] slots = this.slots;
+        final int mask = slots.length - 1;
+        int i = h & mask;
+        while (slots[i] != null) {
+            i = i + 1 & mask;
+        }
+        return i;
+    }
+
+    /**
+     * Frees the specified slot and moves the following names of the same
+     * cluster back so that they stay reachable from their home slots.
+     */
+    private void delete(int i) {
+        final Entry[] slots = this.slots;
+        final int mask = slots.length - 1;
+        slots[i] = null;
+        for (int j = i + 1 & mask;; j = j + 1 & mask) {
+            Entry e = slots[j];
+            if (e == null) {
+                return;
+            }
+            int home = e.hash & mask;
+            // Move the name if its home slot is not in the cyclic range (i, j].
+            boolean inRange = i <= j? i < home && home <= j : i < home || home <= j;
+            if (!inRange) {
+                slots[i] = e;
+                slots[j] = null;
+                i = j;
+            }
+        }
+    }
+
+    static int hash(String name) {
+        int h = 0;
+        for (int i = 0; i < name.length(); i ++) {
+            h = h * 31 + toLowerCase(name.charAt(i));
+        }
+        // Spread the bits as only the lower bits select a slot.
+        h *= 0x9E3779B9;
+        return h ^ h >>> 16;
+    }
+
+    private static char toLowerCase(char c) {
+        if (c >= 'A' && c <= 'Z') {
+            c += 32;
+        }
+        return c;
+    }
+
+    private static boolean eq(String name1, String name2) {
+        if (name1 == name2) {
+            return true;
+        }
+
+        int nameLen = name1.length();
+        if (nameLen != name2.length()) {
+            return false;
+        }
+
+        for (int i = nameLen - 1; i >= 0; i --) {
+            char c1 = name1.charAt(i);
+            char c2 = name2.charAt(i);
+            if (c1 != c2 && toLowerCase(c1) != toLowerCase(c2)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private final class Entry implements Map.Entry<String, String> {
+        final int hash;
+        final String key;
+        String value;
+        Entry next;
+        Entry before, after;
+
+        Entry(int hash, String key, String value) {
+            this.hash = hash;
+            this.key = key;
+            this.value = value;
+        }
+
+        void remove() {
+            before.after = after;
+            after.before = before;
+        }
+
+        void addBefore(Entry e) {
+            after  = e;
+            before = e.before;
+            before.after = this;
+            after.before = this;
+        }
+
+        @Override
+        public String getKey() {
+            return key;
+        }
+
+        @Override
+        public String getValue() {
+            return value;
+        }
+
+        @Override
+        public String setValue(String value) {
+            if (value == null) {
+                throw new NullPointerException("value");
+            }
+            validateValue(value);
+            String oldValue = this.value;
+            this.value = value;
+            return oldValue;
+        }
+
+        @Override
+        public String toString() {
+            return key + "=" + value;
+        }
+    }
+}
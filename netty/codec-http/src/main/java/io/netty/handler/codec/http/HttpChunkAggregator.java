@@ -26,6 +26,7 @@ import io.netty.handler.codec.MessageToMessageDecoder;
 import io.netty.handler.codec.TooLongFrameException;
 import io.netty.util.CharsetUtil;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map.Entry;
 
@@ -44,6 +45,12 @@ import java.util.Map.Entry;
  * p.addLast("encoder", new {@link HttpResponseEncoder}());
  * p.addLast("handler", new HttpRequestHandler());
  * </pre>
+ * The content of the chunks is not copied.  The aggregated content is a
+ * {@link CompositeByteBuf} whose components are the contents of the chunks,
+ * unless there are more chunks than
+ * {@linkplain #setMaxCumulationBufferComponents(int) the maximum number of
+ * the components}.  The chunks which follow a chunk that made the content
+ * too long are discarded until the last chunk of the message.
  * @apiviz.landmark
  * @apiviz.has io.netty.handler.codec.http.HttpChunk oneway - - filters out
  */
@@ -54,6 +61,14 @@ public class HttpChunkAggregator extends MessageToMessageDecoder<Object, HttpMes
 
     private final int maxContentLength;
     private HttpMessage currentMessage;
+    private final List<ByteBuf> cumulation = new ArrayList<ByteBuf>();
+    private int cumulationLength;
+    /**
+     * The number of the components at the head of {@link #cumulation} which
+     * have been consolidated already.
+     */
+    private int consolidatedComponents;
+    private boolean discarding;
 
     private int maxCumulationBufferComponents = DEFAULT_MAX_COMPOSITEBUFFER_COMPONENTS;
     private ChannelHandlerContext ctx;
@@ -77,8 +92,8 @@ public class HttpChunkAggregator extends MessageToMessageDecoder<Object, HttpMes
 
     /**
      * Returns the maximum number of components in the cumulation buffer.  If the number of
-     * the components in the cumulation buffer exceeds this value, the components of the
-     * cumulation buffer are consolidated into a single component, involving memory copies.
+     * the components in the cumulation buffer exceeds this value, the components added since
+     * the last consolidation are consolidated into a single component, involving memory copies.
      * The default value of this property is {@link #DEFAULT_MAX_COMPOSITEBUFFER_COMPONENTS}.
      */
     public final int getMaxCumulationBufferComponents() {
@@ -87,8 +102,8 @@ public class HttpChunkAggregator extends MessageToMessageDecoder<Object, HttpMes
 
     /**
      * Sets the maximum number of components in the cumulation buffer.  If the number of
-     * the components in the cumulation buffer exceeds this value, the components of the
-     * cumulation buffer are consolidated into a single component, involving memory copies.
+     * the components in the cumulation buffer exceeds this value, the components added since
+     * the last consolidation are consolidated into a single component, involving memory copies.
      * The default value of this property is {@link #DEFAULT_MAX_COMPOSITEBUFFER_COMPONENTS}
      * and its minimum allowed value is {@code 2}.
      */
@@ -125,7 +140,7 @@ public class HttpChunkAggregator extends MessageToMessageDecoder<Object, HttpMes
             //       No need to notify the upstream handlers - just log.
             //       If decoding a response, just throw an exception.
             if (is100ContinueExpected(m)) {
-                ctx.write(CONTINUE.duplicate());
+                ctx.write(CONTINUE.duplicate().retain());
             }
 
             if (m.isChunked()) {
@@ -137,15 +152,26 @@ public class HttpChunkAggregator extends MessageToMessageDecoder<Object, HttpMes
                     m.removeHeader(HttpHeaders.Names.TRANSFER_ENCODING);
                 }
                 m.setChunked(false);
-                m.setContent(Unpooled.dynamicBuffer());
+                m.setContent(Unpooled.EMPTY_BUFFER);
+                releaseCumulation();
                 this.currentMessage = m;
+                discarding = false;
                 return null;
             } else {
                 // Not a chunked message - pass through.
                 this.currentMessage = null;
+                discarding = false;
                 return m;
             }
         } else if (msg instanceof HttpChunk) {
+            if (discarding) {
+                // Discard the rest of the message whose content was too long.
+                HttpChunk chunk = (HttpChunk) msg;
+                chunk.getContent().release();
+                discarding = !chunk.isLast();
+                return null;
+            }
+
             // Sanity check
             if (currentMessage == null) {
                 throw new IllegalStateException(
@@ -155,13 +181,16 @@ public class HttpChunkAggregator extends MessageToMessageDecoder<Object, HttpMes
 
             // Merge the received chunk into the content of the current message.
             HttpChunk chunk = (HttpChunk) msg;
-            ByteBuf content = currentMessage.getContent();
 
-            if (content.readableBytes() > maxContentLength - chunk.getContent().readableBytes()) {
+            if (cumulationLength > maxContentLength - chunk.getContent().readableBytes()) {
                 // TODO: Respond with 413 Request Entity Too Large
                 //   and discard the traffic or close the connection.
                 //       No need to notify the upstream handlers - just log.
                 //       If decoding a response, just throw an exception.
+                releaseCumulation();
+                chunk.getContent().release();
+                this.currentMessage = null;
+                discarding = !chunk.isLast();
                 throw new TooLongFrameException(
                         "HTTP content length exceeded " + maxContentLength +
                         " bytes.");
@@ -184,7 +213,12 @@ public class HttpChunkAggregator extends MessageToMessageDecoder<Object, HttpMes
                 // Set the 'Content-Length' header.
                 currentMessage.setHeader(
                         HttpHeaders.Names.CONTENT_LENGTH,
-                        String.valueOf(content.readableBytes()));
+                        String.valueOf(cumulationLength));
+                currentMessage.setContent(Unpooled.wrappedBuffer(
+                        cumulation.toArray(new ByteBuf[cumulation.size()])));
+                cumulation.clear();
+                cumulationLength = 0;
+                consolidatedComponents = 0;
 
                 // All done
                 return currentMessage;
@@ -198,24 +232,47 @@ public class HttpChunkAggregator extends MessageToMessageDecoder<Object, HttpMes
         }
     }
 
+    /**
+     * Appends the specified content of a chunk to the content of the current
+     * message without copying it.  When the number of the components reaches
+     * {@link #getMaxCumulationBufferComponents()}, the components added since
+     * the last consolidation are copied into a single buffer, allocated with
+     * their exact length, so that most bytes are copied only once.  All
+     * components are consolidated only when every component is the result of
+     * an earlier consolidation.
+     */
     protected void appendToCumulation(ByteBuf input) {
-        ByteBuf cumulation = this.currentMessage.getContent();
-        if (cumulation instanceof CompositeByteBuf) {
-            // Make sure the resulting cumulation buffer has no more than 4 components.
-            CompositeByteBuf composite = (CompositeByteBuf) cumulation;
-            if (composite.numComponents() >= maxCumulationBufferComponents) {
-                currentMessage.setContent(Unpooled.wrappedBuffer(composite.copy(), input));
-            } else {
-                List<ByteBuf> decomposed = composite.decompose(0, composite.readableBytes());
-                ByteBuf[] buffers = decomposed.toArray(new ByteBuf[decomposed.size() + 1]);
-                buffers[buffers.length - 1] = input;
+        if (!input.readable()) {
+            input.release();
+            return;
+        }
 
-                currentMessage.setContent(Unpooled.wrappedBuffer(buffers));
+        List<ByteBuf> cumulation = this.cumulation;
+        int size = cumulation.size();
+        if (size >= maxCumulationBufferComponents) {
+            int first = consolidatedComponents;
+            if (size - first < 2) {
+                first = 0;
             }
-        } else {
-            currentMessage.setContent(Unpooled.wrappedBuffer(cumulation, input));
+            List<ByteBuf> batch = cumulation.subList(first, size);
+            ByteBuf composite = Unpooled.wrappedBuffer(batch.toArray(new ByteBuf[batch.size()]));
+            ByteBuf copy = composite.copy();
+            composite.release();
+            batch.clear();
+            cumulation.add(copy);
+            consolidatedComponents = first + 1;
         }
+        cumulation.add(input);
+        cumulationLength += input.readableBytes();
+    }
 
+    private void releaseCumulation() {
+        for (ByteBuf b: cumulation) {
+            b.release();
+        }
+        cumulation.clear();
+        cumulationLength = 0;
+        consolidatedComponents = 0;
     }
 
     public void beforeAdd(ChannelHandlerContext ctx) throws Exception {
@@ -112,7 +112,11 @@ public class HttpClientCodec extends CombinedChannelHandler {
         public Object decode(
                 ChannelHandlerContext ctx, ByteBuf buffer) throws Exception {
             if (done) {
-                return buffer.readBytes(actualReadableBytes());
+                int readable = buffer.readableBytes();
+                if (readable == 0) {
+                    return null;
+                }
+                return buffer.readBytes(readable);
             } else {
                 Object msg = super.decode(ctx, buffer);
                 if (failOnMissingResponse) {
@@ -15,13 +15,45 @@
  */
 package io.netty.handler.codec.http;
 
+import io.netty.buffer.ByteBuf;
+import io.netty.util.CharsetUtil;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * A utility class mainly for use with HTTP codec classes
  */
 final class HttpCodecUtil {
 
+    /**
+     * The ASCII bytes of the {@link HttpHeaders.Names} and {@link HttpHeaders.Values}
+     * constants, which make up most of the headers of a typical message.
+     */
+    private static final Map<String, byte[]> ASCII_CACHE = new HashMap<String, byte[]>();
+
+    static {
+        cacheAscii(HttpHeaders.Names.class);
+        cacheAscii(HttpHeaders.Values.class);
+    }
+
+    private static void cacheAscii(Class<?> constants) {
+        for (Field f: constants.getFields()) {
+            if (!Modifier.isStatic(f.getModifiers()) || f.getType() != String.class) {
+                continue;
+            }
+            try {
+                String value = (String) f.get(null);
+                ASCII_CACHE.put(value, value.getBytes(CharsetUtil.US_ASCII));
+            } catch (IllegalAccessException e) {
+                throw new Error(e);
+            }
+        }
+    }
+
     /**
      * Validates the name of a header
      *
@@ -151,6 +183,27 @@ final class HttpCodecUtil {
         return false;
     }
 
+    /**
+     * Writes the specified string into the specified buffer in ASCII.  A
+     * character which is not ASCII is written as {@code '?'}.
+     */
+    static void encodeAscii(String s, ByteBuf buf) {
+        byte[] bytes = ASCII_CACHE.get(s);
+        if (bytes != null) {
+            buf.writeBytes(bytes);
+            return;
+        }
+
+        final int length = s.length();
+        buf.ensureWritableBytes(length);
+        int writerIndex = buf.writerIndex();
+        for (int i = 0; i < length; i ++) {
+            char c = s.charAt(i);
+            buf.setByte(writerIndex ++, c < 128? c : '?');
+        }
+        buf.writerIndex(writerIndex);
+    }
+
     /**
      * A constructor to ensure that instances of this class are never made
      */
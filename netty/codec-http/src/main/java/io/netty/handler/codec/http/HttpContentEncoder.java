@@ -17,7 +17,9 @@ package io.netty.handler.codec.http;
 
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.FileRegion;
 import io.netty.channel.embedded.EmbeddedByteChannel;
 import io.netty.handler.codec.MessageToMessageCodec;
 
@@ -160,6 +162,22 @@ public abstract class HttpContentEncoder extends MessageToMessageCodec<HttpMessa
         return msg;
     }
 
+    /**
+     * Fails the transfer of a {@link FileRegion} while the content of a
+     * chunked message is being encoded, because the content of the file
+     * would be sent as it is.
+     */
+    @Override
+    public void sendFile(ChannelHandlerContext ctx, FileRegion region, ChannelFuture future) throws Exception {
+        if (encoder != null) {
+            region.release();
+            future.setFailure(new IllegalStateException(
+                    "cannot send a file region while encoding the content of a message"));
+            return;
+        }
+        super.sendFile(ctx, region, future);
+    }
+
     /**
      * Prepare to encode the HTTP message content.
      *
@@ -18,11 +18,9 @@ package io.netty.handler.codec.http;
 import java.text.ParseException;
 import java.util.Calendar;
 import java.util.Date;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.TreeSet;
 
 
 /**
@@ -86,6 +84,10 @@ public class HttpHeaders {
          * {@code "Content-Base"}
          */
         public static final String CONTENT_BASE = "Content-Base";
+        /**
+         * {@code "Content-Disposition"}
+         */
+        public static final String CONTENT_DISPOSITION = "Content-Disposition";
         /**
          * {@code "Content-Encoding"}
          */
@@ -915,60 +917,14 @@ public class HttpHeaders {
         }
     }
 
-    private static final int BUCKET_SIZE = 17;
-
-    private static int hash(String name) {
-        int h = 0;
-        for (int i = name.length() - 1; i >= 0; i --) {
-            char c = name.charAt(i);
-            if (c >= 'A' && c <= 'Z') {
-                c += 32;
-            }
-            h = 31 * h + c;
-        }
-
-        if (h > 0) {
-            return h;
-        } else if (h == Integer.MIN_VALUE) {
-            return Integer.MAX_VALUE;
-        } else {
-            return -h;
-        }
-    }
-
-    private static boolean eq(String name1, String name2) {
-        int nameLen = name1.length();
-        if (nameLen != name2.length()) {
-            return false;
-        }
-
-        for (int i = nameLen - 1; i >= 0; i --) {
-            char c1 = name1.charAt(i);
-            char c2 = name2.charAt(i);
-            if (c1 != c2) {
-                if (c1 >= 'A' && c1 <= 'Z') {
-                    c1 += 32;
-                }
-                if (c2 >= 'A' && c2 <= 'Z') {
-                    c2 += 32;
-                }
-                if (c1 != c2) {
-                    return false;
-                }
-            }
+    private final HeaderMap headers = new HeaderMap() {
+        @Override
+        protected void validateValue(String value) {
+            HttpCodecUtil.validateHeaderValue(value);
         }
-        return true;
-    }
-
-    private static int index(int hash) {
-        return hash % BUCKET_SIZE;
-    }
-
-    private final Entry[] entries = new Entry[BUCKET_SIZE];
-    private final Entry head = new Entry(-1, null, null);
+    };
 
     HttpHeaders() {
-        head.before = head.after = head;
     }
 
     void validateHeaderName(String name) {
@@ -979,75 +935,21 @@ public class HttpHeaders {
         validateHeaderName(name);
         String strVal = toString(value);
         HttpCodecUtil.validateHeaderValue(strVal);
-        int h = hash(name);
-        int i = index(h);
-        addHeader0(h, i, name, strVal);
-    }
-
-    private void addHeader0(int h, int i, final String name, final String value) {
-        // Update the hash table.
-        Entry e = entries[i];
-        Entry newEntry;
-        entries[i] = newEntry = new Entry(h, name, value);
-        newEntry.next = e;
-
-        // Update the linked list.
-        newEntry.addBefore(head);
+        headers.add(name, strVal);
     }
 
     void removeHeader(final String name) {
         if (name == null) {
             throw new NullPointerException("name");
         }
-        int h = hash(name);
-        int i = index(h);
-        removeHeader0(h, i, name);
-    }
-
-    private void removeHeader0(int h, int i, String name) {
-        Entry e = entries[i];
-        if (e == null) {
-            return;
-        }
-
-        for (;;) {
-            if (e.hash == h && eq(name, e.key)) {
-                e.remove();
-                Entry next = e.next;
-                if (next != null) {
-                    entries[i] = next;
-                    e = next;
-                } else {
-                    entries[i] = null;
-                    return;
-                }
-            } else {
-                break;
-            }
-        }
-
-        for (;;) {
-            Entry next = e.next;
-            if (next == null) {
-                break;
-            }
-            if (next.hash == h && eq(name, next.key)) {
-                e.next = next.next;
-                next.remove();
-            } else {
-                e = next;
-            }
-        }
+        headers.remove(name);
     }
 
     void setHeader(final String name, final Object value) {
         validateHeaderName(name);
         String strVal = toString(value);
         HttpCodecUtil.validateHeaderValue(strVal);
-        int h = hash(name);
-        int i = index(h);
-        removeHeader0(h, i, name);
-        addHeader0(h, i, name, strVal);
+        headers.set(name, strVal);
     }
 
     void setHeader(final String name, final Iterable<?> values) {
@@ -1057,74 +959,37 @@ public class HttpHeaders {
 
         validateHeaderName(name);
 
-        int h = hash(name);
-        int i = index(h);
-
-        removeHeader0(h, i, name);
+        headers.remove(name);
         for (Object v: values) {
             if (v == null) {
                 break;
             }
             String strVal = toString(v);
             HttpCodecUtil.validateHeaderValue(strVal);
-            addHeader0(h, i, name, strVal);
+            headers.add(name, strVal);
         }
     }
 
     void clearHeaders() {
-        for (int i = 0; i < entries.length; i ++) {
-            entries[i] = null;
-        }
-        head.before = head.after = head;
+        headers.clear();
     }
 
     String getHeader(final String name) {
         if (name == null) {
             throw new NullPointerException("name");
         }
-
-        int h = hash(name);
-        int i = index(h);
-        Entry e = entries[i];
-        while (e != null) {
-            if (e.hash == h && eq(name, e.key)) {
-                return e.value;
-            }
-
-            e = e.next;
-        }
-        return null;
+        return headers.get(name);
     }
 
     List<String> getHeaders(final String name) {
         if (name == null) {
             throw new NullPointerException("name");
         }
-
-        LinkedList<String> values = new LinkedList<String>();
-
-        int h = hash(name);
-        int i = index(h);
-        Entry e = entries[i];
-        while (e != null) {
-            if (e.hash == h && eq(name, e.key)) {
-                values.addFirst(e.value);
-            }
-            e = e.next;
-        }
-        return values;
+        return headers.getAll(name);
     }
 
     List<Map.Entry<String, String>> getHeaders() {
-        List<Map.Entry<String, String>> all =
-            new LinkedList<Map.Entry<String, String>>();
-
-        Entry e = head.after;
-        while (e != head) {
-            all.add(e);
-            e = e.after;
-        }
-        return all;
+        return headers.entries();
     }
 
     boolean containsHeader(String name) {
@@ -1132,15 +997,7 @@ public class HttpHeaders {
     }
 
     Set<String> getHeaderNames() {
-
-        Set<String> names = new TreeSet<String>(String.CASE_INSENSITIVE_ORDER);
-
-        Entry e = head.after;
-        while (e != head) {
-            names.add(e.key);
-            e = e.after;
-        }
-        return names;
+        return headers.names();
     }
 
     private static String toString(Object value) {
@@ -1161,56 +1018,4 @@ public class HttpHeaders {
         }
         return value.toString();
     }
-
-    private static final class Entry implements Map.Entry<String, String> {
-        final int hash;
-        final String key;
-        String value;
-        Entry next;
-        Entry before, after;
-
-        Entry(int hash, String key, String value) {
-            this.hash = hash;
-            this.key = key;
-            this.value = value;
-        }
-
-        void remove() {
-            before.after = after;
-            after.before = before;
-        }
-
-        void addBefore(Entry e) {
-            after  = e;
-            before = e.before;
-            before.after = this;
-            after.before = this;
-        }
-
-        @Override
-        public String getKey() {
-            return key;
-        }
-
-        @Override
-        public String getValue() {
-            return value;
-        }
-
-        @Override
-        public String setValue(String value) {
-            if (value == null) {
-                throw new NullPointerException("value");
-            }
-            HttpCodecUtil.validateHeaderValue(value);
-            String oldValue = this.value;
-            this.value = value;
-            return oldValue;
-        }
-
-        @Override
-        public String toString() {
-            return key + "=" + value;
-        }
-    }
 }
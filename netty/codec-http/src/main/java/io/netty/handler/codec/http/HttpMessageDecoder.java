@@ -19,11 +19,9 @@ import io.netty.buffer.ByteBuf;
 import io.netty.buffer.Unpooled;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelPipeline;
-import io.netty.handler.codec.ReplayingDecoder;
+import io.netty.handler.codec.ByteToMessageDecoder;
 import io.netty.handler.codec.TooLongFrameException;
 
-import java.util.List;
-
 /**
  * Decodes {@link ByteBuf}s into {@link HttpMessage}s and
  * {@link HttpChunk}s.
@@ -97,16 +95,23 @@ import java.util.List;
  * implement all abstract methods properly.
  * @apiviz.landmark
  */
-public abstract class HttpMessageDecoder extends ReplayingDecoder<Object, HttpMessageDecoder.State> {
+public abstract class HttpMessageDecoder extends ByteToMessageDecoder<Object> {
 
     private final int maxInitialLineLength;
     private final int maxHeaderSize;
     private final int maxChunkSize;
+    // The line being read.  A partial line is kept here between reads so that
+    // no byte is scanned twice.
+    private final StringBuilder line = new StringBuilder(128);
+    private boolean lineComplete;
+    private State state = State.SKIP_CONTROL_CHARS;
     private HttpMessage message;
+    private HttpChunkTrailer trailer;
+    private String name;
+    private String value;
     private ByteBuf content;
     private long chunkSize;
     private int headerSize;
-    private int contentRead;
 
     /**
      * The internal state of {@link HttpMessageDecoder}.
@@ -143,8 +148,6 @@ public abstract class HttpMessageDecoder extends ReplayingDecoder<Object, HttpMe
     protected HttpMessageDecoder(
             int maxInitialLineLength, int maxHeaderSize, int maxChunkSize) {
 
-        super(State.SKIP_CONTROL_CHARS);
-
         if (maxInitialLineLength <= 0) {
             throw new IllegalArgumentException(
                     "maxInitialLineLength must be a positive integer: " +
@@ -167,29 +170,35 @@ public abstract class HttpMessageDecoder extends ReplayingDecoder<Object, HttpMe
 
     @Override
     public Object decode(ChannelHandlerContext ctx, ByteBuf buffer) throws Exception {
-        switch (state()) {
+        switch (state) {
         case SKIP_CONTROL_CHARS: {
-            try {
-                skipControlCharacters(buffer);
-                checkpoint(State.READ_INITIAL);
-            } finally {
-                checkpoint();
+            if (!skipControlCharacters(buffer)) {
+                return null;
             }
+            state = State.READ_INITIAL;
         }
         case READ_INITIAL: {
-            String[] initialLine = splitInitialLine(readLine(buffer, maxInitialLineLength));
+            StringBuilder line = readLine(buffer, maxInitialLineLength);
+            if (line == null) {
+                return null;
+            }
+            String[] initialLine = splitInitialLine(line);
             if (initialLine.length < 3) {
                 // Invalid initial line - ignore.
-                checkpoint(State.SKIP_CONTROL_CHARS);
+                state = State.SKIP_CONTROL_CHARS;
                 return null;
             }
 
             message = createMessage(initialLine);
-            checkpoint(State.READ_HEADER);
+            headerSize = 0;
+            state = State.READ_HEADER;
         }
         case READ_HEADER: {
             State nextState = readHeaders(buffer);
-            checkpoint(nextState);
+            if (nextState == null) {
+                return null;
+            }
+            state = nextState;
             if (nextState == State.READ_CHUNK_SIZE) {
                 // Chunked encoding
                 message.setChunked(true);
@@ -200,7 +209,7 @@ public abstract class HttpMessageDecoder extends ReplayingDecoder<Object, HttpMe
                 // Remove the headers which are not supposed to be present not
                 // to confuse subsequent handlers.
                 message.removeHeader(HttpHeaders.Names.TRANSFER_ENCODING);
-                return message;
+                return reset();
             } else {
                 long contentLength = HttpHeaders.getContentLength(message, -1);
                 if (contentLength == 0 || contentLength == -1 && isDecodingRequest()) {
@@ -212,18 +221,18 @@ public abstract class HttpMessageDecoder extends ReplayingDecoder<Object, HttpMe
                 case READ_FIXED_LENGTH_CONTENT:
                     if (contentLength > maxChunkSize || HttpHeaders.is100ContinueExpected(message)) {
                         // Generate HttpMessage first.  HttpChunks will follow.
-                        checkpoint(State.READ_FIXED_LENGTH_CONTENT_AS_CHUNKS);
+                        state = State.READ_FIXED_LENGTH_CONTENT_AS_CHUNKS;
                         message.setChunked(true);
                         // chunkSize will be decreased as the READ_FIXED_LENGTH_CONTENT_AS_CHUNKS
                         // state reads data chunk by chunk.
-                        chunkSize = HttpHeaders.getContentLength(message, -1);
+                        chunkSize = contentLength;
                         return message;
                     }
                     break;
                 case READ_VARIABLE_LENGTH_CONTENT:
                     if (buffer.readableBytes() > maxChunkSize || HttpHeaders.is100ContinueExpected(message)) {
                         // Generate HttpMessage first.  HttpChunks will follow.
-                        checkpoint(State.READ_VARIABLE_LENGTH_CONTENT_AS_CHUNKS);
+                        state = State.READ_VARIABLE_LENGTH_CONTENT_AS_CHUNKS;
                         message.setChunked(true);
                         return message;
                     }
@@ -232,11 +241,15 @@ public abstract class HttpMessageDecoder extends ReplayingDecoder<Object, HttpMe
                     throw new IllegalStateException("Unexpected state: " + nextState);
                 }
             }
-            // We return null here, this forces decode to be called again where we will decode the content
+            // The headers have been consumed, so returning null makes the caller
+            // call decode again to read the content.
             return null;
         }
         case READ_VARIABLE_LENGTH_CONTENT: {
-            int toRead = actualReadableBytes();
+            int toRead = buffer.readableBytes();
+            if (toRead == 0) {
+                return null;
+            }
             if (toRead > maxChunkSize) {
                 toRead = maxChunkSize;
             }
@@ -249,21 +262,15 @@ public abstract class HttpMessageDecoder extends ReplayingDecoder<Object, HttpMe
         }
         case READ_VARIABLE_LENGTH_CONTENT_AS_CHUNKS: {
             // Keep reading data as a chunk until the end of connection is reached.
-            int toRead = actualReadableBytes();
+            // The last chunk is generated by decodeLast().
+            int toRead = buffer.readableBytes();
+            if (toRead == 0) {
+                return null;
+            }
             if (toRead > maxChunkSize) {
                 toRead = maxChunkSize;
             }
-            HttpChunk chunk = new DefaultHttpChunk(buffer.readBytes(toRead));
-
-            if (!buffer.readable()) {
-                // Reached to the end of the connection.
-                reset();
-                if (!chunk.isLast()) {
-                    // Append the last chunk.
-                    return new Object[] { chunk, HttpChunk.LAST_CHUNK };
-                }
-            }
-            return chunk;
+            return new DefaultHttpChunk(buffer.readBytes(toRead));
         }
         case READ_FIXED_LENGTH_CONTENT: {
             return readFixedLengthContent(buffer);
@@ -271,7 +278,7 @@ public abstract class HttpMessageDecoder extends ReplayingDecoder<Object, HttpMe
         case READ_FIXED_LENGTH_CONTENT_AS_CHUNKS: {
             assert chunkSize <= Integer.MAX_VALUE;
             int chunkSize = (int) this.chunkSize;
-            int readLimit = actualReadableBytes();
+            int readLimit = buffer.readableBytes();
 
             // Check if the buffer is readable first as we use the readable byte count
             // to create the HttpChunk. This is needed as otherwise we may end up with
@@ -313,29 +320,37 @@ public abstract class HttpMessageDecoder extends ReplayingDecoder<Object, HttpMe
          * read chunk, read and ignore the CRLF and repeat until 0
          */
         case READ_CHUNK_SIZE: {
-            String line = readLine(buffer, maxInitialLineLength);
+            StringBuilder line = readLine(buffer, maxInitialLineLength);
+            if (line == null) {
+                return null;
+            }
             int chunkSize = getChunkSize(line);
             this.chunkSize = chunkSize;
             if (chunkSize == 0) {
-                checkpoint(State.READ_CHUNK_FOOTER);
+                headerSize = 0;
+                state = State.READ_CHUNK_FOOTER;
                 return null;
             } else if (chunkSize > maxChunkSize) {
                 // A chunk is too large. Split them into multiple chunks again.
-                checkpoint(State.READ_CHUNKED_CONTENT_AS_CHUNKS);
+                state = State.READ_CHUNKED_CONTENT_AS_CHUNKS;
+                return null;
             } else {
-                checkpoint(State.READ_CHUNKED_CONTENT);
+                state = State.READ_CHUNKED_CONTENT;
             }
         }
         case READ_CHUNKED_CONTENT: {
             assert chunkSize <= Integer.MAX_VALUE;
+            if (buffer.readableBytes() < chunkSize) {
+                return null;
+            }
             HttpChunk chunk = new DefaultHttpChunk(buffer.readBytes((int) chunkSize));
-            checkpoint(State.READ_CHUNK_DELIMITER);
+            state = State.READ_CHUNK_DELIMITER;
             return chunk;
         }
         case READ_CHUNKED_CONTENT_AS_CHUNKS: {
             assert chunkSize <= Integer.MAX_VALUE;
             int chunkSize = (int) this.chunkSize;
-            int readLimit = actualReadableBytes();
+            int readLimit = buffer.readableBytes();
 
             // Check if the buffer is readable first as we use the readable byte count
             // to create the HttpChunk. This is needed as otherwise we may end up with
@@ -364,29 +379,26 @@ public abstract class HttpMessageDecoder extends ReplayingDecoder<Object, HttpMe
 
             if (chunkSize == 0) {
                 // Read all content.
-                checkpoint(State.READ_CHUNK_DELIMITER);
-            }
-
-            if (!chunk.isLast()) {
-                return chunk;
+                state = State.READ_CHUNK_DELIMITER;
             }
+            return chunk;
         }
         case READ_CHUNK_DELIMITER: {
-            for (;;) {
-                byte next = buffer.readByte();
-                if (next == HttpConstants.CR) {
-                    if (buffer.readByte() == HttpConstants.LF) {
-                        checkpoint(State.READ_CHUNK_SIZE);
-                        return null;
-                    }
-                } else if (next == HttpConstants.LF) {
-                    checkpoint(State.READ_CHUNK_SIZE);
-                    return null;
-                }
+            // Skip everything up to and including the LF of the CRLF.
+            int length = buffer.bytesBefore(HttpConstants.LF);
+            if (length < 0) {
+                buffer.skipBytes(buffer.readableBytes());
+                return null;
             }
+            buffer.skipBytes(length + 1);
+            state = State.READ_CHUNK_SIZE;
+            return null;
         }
         case READ_CHUNK_FOOTER: {
             HttpChunkTrailer trailer = readTrailingHeaders(buffer);
+            if (trailer == null) {
+                return null;
+            }
             if (maxChunkSize == 0) {
                 // Chunked encoding disabled.
                 return reset();
@@ -403,6 +415,25 @@ public abstract class HttpMessageDecoder extends ReplayingDecoder<Object, HttpMe
         }
     }
 
+    @Override
+    public Object decodeLast(ChannelHandlerContext ctx, ByteBuf buffer) throws Exception {
+        switch (state) {
+        case READ_VARIABLE_LENGTH_CONTENT:
+        case READ_VARIABLE_LENGTH_CONTENT_AS_CHUNKS: {
+            // Reached to the end of the connection, which is the end of the content.
+            HttpMessage message = this.message;
+            reset();
+            if (!message.isChunked()) {
+                message.setChunked(true);
+                return new Object[] { message, HttpChunk.LAST_CHUNK };
+            }
+            return HttpChunk.LAST_CHUNK;
+        }
+        default:
+            return decode(ctx, buffer);
+        }
+    }
+
     protected boolean isContentAlwaysEmpty(HttpMessage msg) {
         if (msg instanceof HttpResponse) {
             HttpResponse res = (HttpResponse) msg;
@@ -439,97 +470,67 @@ public abstract class HttpMessageDecoder extends ReplayingDecoder<Object, HttpMe
         }
         this.message = null;
 
-        checkpoint(State.SKIP_CONTROL_CHARS);
+        state = State.SKIP_CONTROL_CHARS;
         return message;
     }
 
-    private static void skipControlCharacters(ByteBuf buffer) {
-        for (;;) {
-            char c = (char) buffer.readUnsignedByte();
+    private static boolean skipControlCharacters(ByteBuf buffer) {
+        while (buffer.readable()) {
+            char c = (char) buffer.getUnsignedByte(buffer.readerIndex());
             if (!Character.isISOControl(c) &&
                 !Character.isWhitespace(c)) {
-                buffer.readerIndex(buffer.readerIndex() - 1);
-                break;
+                return true;
             }
+            buffer.skipBytes(1);
         }
+        return false;
     }
 
     private Object readFixedLengthContent(ByteBuf buffer) {
         //we have a content-length so we just read the correct number of bytes
         long length = HttpHeaders.getContentLength(message, -1);
         assert length <= Integer.MAX_VALUE;
-        int toRead = (int) length - contentRead;
-        if (toRead > actualReadableBytes()) {
-            toRead = actualReadableBytes();
-        }
-        contentRead += toRead;
-        if (length < contentRead) {
-            if (!message.isChunked()) {
-                message.setChunked(true);
-                return new Object[] {message, new DefaultHttpChunk(read(buffer, toRead))};
-            } else {
-                return new DefaultHttpChunk(read(buffer, toRead));
-            }
-        }
-        if (content == null) {
-            content = read(buffer, (int) length);
-        } else {
-            content.writeBytes(buffer.readBytes((int) length));
+        if (buffer.readableBytes() < length) {
+            // The content is not larger than maxChunkSize, so just wait for the rest.
+            return null;
         }
+        content = buffer.readBytes((int) length);
         return reset();
     }
 
-
     /**
-     * Try to do an optimized "read" of len from the given {@link ByteBuf}.
-     *
-     * This is part of #412 to safe byte copies
-     *
+     * Reads the headers of {@link #message}.  Returns the next state, or
+     * {@code null} if the headers did not arrive completely yet.
      */
-    private ByteBuf read(ByteBuf buffer, int len) {
-        ByteBuf internal = internalBuffer();
-        if (internal.readableBytes() >= len) {
-            int index = internal.readerIndex();
-            ByteBuf buf = internal.slice(index, len);
-
-            // update the readerindex so an the next read its on the correct position
-            buffer.readerIndex(index + len);
-            return buf;
-        } else {
-            return buffer.readBytes(len);
-        }
-    }
-
     private State readHeaders(ByteBuf buffer) throws TooLongFrameException {
-        headerSize = 0;
         final HttpMessage message = this.message;
-        String line = readHeader(buffer);
-        String name = null;
-        String value = null;
-        if (line.length() != 0) {
-            message.clearHeaders();
-            do {
-                char firstChar = line.charAt(0);
-                if (name != null && (firstChar == ' ' || firstChar == '\t')) {
-                    value = value + ' ' + line.trim();
-                } else {
-                    if (name != null) {
-                        message.addHeader(name, value);
-                    }
-                    String[] header = splitHeader(line);
-                    name = header[0];
-                    value = header[1];
-                }
-
-                line = readHeader(buffer);
-            } while (line.length() != 0);
+        for (;;) {
+            StringBuilder line = readHeader(buffer);
+            if (line == null) {
+                return null;
+            }
+            if (line.length() == 0) {
+                break;
+            }
 
-            // Add the last header.
-            if (name != null) {
-                message.addHeader(name, value);
+            char firstChar = line.charAt(0);
+            if (name != null && (firstChar == ' ' || firstChar == '\t')) {
+                value = value + ' ' + line.substring(findNonWhitespace(line, 0), findEndOfString(line));
+            } else {
+                if (name != null) {
+                    message.addHeader(name, value);
+                }
+                splitHeader(line);
             }
         }
 
+        // Add the last header.
+        if (name != null) {
+            message.addHeader(name, value);
+            name = null;
+            value = null;
+        }
+
         State nextState;
 
         if (isContentAlwaysEmpty(message)) {
@@ -550,128 +551,180 @@ public abstract class HttpMessageDecoder extends ReplayingDecoder<Object, HttpMe
         return nextState;
     }
 
+    /**
+     * Reads the trailing headers of the last chunk.  Returns {@code null} if
+     * they did not arrive completely yet.
+     */
     private HttpChunkTrailer readTrailingHeaders(ByteBuf buffer) throws TooLongFrameException {
-        headerSize = 0;
-        String line = readHeader(buffer);
-        String lastHeader = null;
-        if (line.length() != 0) {
-            HttpChunkTrailer trailer = new DefaultHttpChunkTrailer();
-            do {
-                char firstChar = line.charAt(0);
-                if (lastHeader != null && (firstChar == ' ' || firstChar == '\t')) {
-                    List<String> current = trailer.getHeaders(lastHeader);
-                    if (current.size() != 0) {
-                        int lastPos = current.size() - 1;
-                        String newString = current.get(lastPos) + line.trim();
-                        current.set(lastPos, newString);
-                    } else {
-                        // Content-Length, Transfer-Encoding, or Trailer
-                    }
-                } else {
-                    String[] header = splitHeader(line);
-                    String name = header[0];
-                    if (!name.equalsIgnoreCase(HttpHeaders.Names.CONTENT_LENGTH) &&
-                        !name.equalsIgnoreCase(HttpHeaders.Names.TRANSFER_ENCODING) &&
-                        !name.equalsIgnoreCase(HttpHeaders.Names.TRAILER)) {
-                        trailer.addHeader(name, header[1]);
-                    }
-                    lastHeader = name;
-                }
-
-                line = readHeader(buffer);
-            } while (line.length() != 0);
+        for (;;) {
+            StringBuilder line = readHeader(buffer);
+            if (line == null) {
+                return null;
+            }
+            if (line.length() == 0) {
+                break;
+            }
 
-            return trailer;
+            char firstChar = line.charAt(0);
+            if (name != null && (firstChar == ' ' || firstChar == '\t')) {
+                value = value + line.substring(findNonWhitespace(line, 0), findEndOfString(line));
+            } else {
+                addTrailingHeader();
+                splitHeader(line);
+            }
         }
+        addTrailingHeader();
 
-        return HttpChunk.LAST_CHUNK;
+        HttpChunkTrailer trailer = this.trailer;
+        if (trailer == null) {
+            return HttpChunk.LAST_CHUNK;
+        }
+        this.trailer = null;
+        return trailer;
     }
 
-    private String readHeader(ByteBuf buffer) throws TooLongFrameException {
-        StringBuilder sb = new StringBuilder(64);
-        int headerSize = this.headerSize;
-
-        loop:
-        for (;;) {
-            char nextByte = (char) buffer.readByte();
-            headerSize ++;
-
-            switch (nextByte) {
-            case HttpConstants.CR:
-                nextByte = (char) buffer.readByte();
-                headerSize ++;
-                if (nextByte == HttpConstants.LF) {
-                    break loop;
-                }
-                break;
-            case HttpConstants.LF:
-                break loop;
-            }
-
-            // Abort decoding if the header part is too large.
-            if (headerSize >= maxHeaderSize) {
-                // TODO: Respond with Bad Request and discard the traffic
-                //    or close the connection.
-                //       No need to notify the upstream handlers - just log.
-                //       If decoding a response, just throw an exception.
-                throw new TooLongFrameException(
-                        "HTTP header is larger than " +
-                        maxHeaderSize + " bytes.");
+    private void addTrailingHeader() {
+        String name = this.name;
+        if (name == null) {
+            return;
+        }
 
-            }
+        if (trailer == null) {
+            trailer = new DefaultHttpChunkTrailer();
+        }
+        // Content-Length, Transfer-Encoding, or Trailer are not allowed in the trailer.
+        if (!name.equalsIgnoreCase(HttpHeaders.Names.CONTENT_LENGTH) &&
+            !name.equalsIgnoreCase(HttpHeaders.Names.TRANSFER_ENCODING) &&
+            !name.equalsIgnoreCase(HttpHeaders.Names.TRAILER)) {
+            trailer.addHeader(name, value);
+        }
+        this.name = null;
+        value = null;
+    }
 
-            sb.append(nextByte);
+    /**
+     * Reads a header line.  Returns {@code null} if the line is not complete yet.
+     */
+    private StringBuilder readHeader(ByteBuf buffer) throws TooLongFrameException {
+        // The sum of the length of each header must stay below maxHeaderSize.
+        int maxLineLength = maxHeaderSize - headerSize - 1;
+        boolean complete = appendLine(buffer, maxLineLength);
+        int lineLength = lineLength(complete);
+        if (lineLength != 0 && lineLength > maxLineLength) {
+            // Discard the line so that the same exception is not raised again.
+            line.setLength(0);
+            // TODO: Respond with Bad Request and discard the traffic
+            //    or close the connection.
+            //       No need to notify the upstream handlers - just log.
+            //       If decoding a response, just throw an exception.
+            throw new TooLongFrameException(
+                    "HTTP header is larger than " +
+                    maxHeaderSize + " bytes.");
+        }
+        if (!complete) {
+            return null;
         }
 
-        this.headerSize = headerSize;
-        return sb.toString();
+        // Count the CRLF as well.
+        headerSize += lineLength + 2;
+        return line;
     }
 
     protected abstract boolean isDecodingRequest();
     protected abstract HttpMessage createMessage(String[] initialLine) throws Exception;
 
-    private static int getChunkSize(String hex) {
-        hex = hex.trim();
-        for (int i = 0; i < hex.length(); i ++) {
-            char c = hex.charAt(i);
+    private static int getChunkSize(CharSequence hex) {
+        int start = findNonWhitespace(hex, 0);
+        int end;
+        for (end = start; end < hex.length(); end ++) {
+            char c = hex.charAt(end);
             if (c == ';' || Character.isWhitespace(c) || Character.isISOControl(c)) {
-                hex = hex.substring(0, i);
                 break;
             }
         }
 
-        return Integer.parseInt(hex, 16);
+        return Integer.parseInt(hex.subSequence(start, end).toString(), 16);
     }
 
-    private static String readLine(ByteBuf buffer, int maxLineLength) throws TooLongFrameException {
-        StringBuilder sb = new StringBuilder(64);
-        int lineLength = 0;
-        while (true) {
-            byte nextByte = buffer.readByte();
-            if (nextByte == HttpConstants.CR) {
-                nextByte = buffer.readByte();
-                if (nextByte == HttpConstants.LF) {
-                    return sb.toString();
-                }
-            } else if (nextByte == HttpConstants.LF) {
-                return sb.toString();
-            } else {
-                if (lineLength >= maxLineLength) {
-                    // TODO: Respond with Bad Request and discard the traffic
-                    //    or close the connection.
-                    //       No need to notify the upstream handlers - just log.
-                    //       If decoding a response, just throw an exception.
-                    throw new TooLongFrameException(
-                            "An HTTP line is larger than " + maxLineLength +
-                            " bytes.");
-                }
-                lineLength ++;
-                sb.append((char) nextByte);
+    /**
+     * Reads a line.  Returns {@code null} if the line is not complete yet.
+     */
+    private StringBuilder readLine(ByteBuf buffer, int maxLineLength) throws TooLongFrameException {
+        boolean complete = appendLine(buffer, maxLineLength);
+        if (lineLength(complete) > maxLineLength) {
+            line.setLength(0);
+            // TODO: Respond with Bad Request and discard the traffic
+            //    or close the connection.
+            //       No need to notify the upstream handlers - just log.
+            //       If decoding a response, just throw an exception.
+            throw new TooLongFrameException(
+                    "An HTTP line is larger than " + maxLineLength +
+                    " bytes.");
+        }
+        return complete? line : null;
+    }
+
+    /**
+     * Moves the readable bytes up to the next LF from the buffer into
+     * {@link #line}, and returns {@code true} if the LF was found.  The line
+     * then stays available until the next call.  No more characters than
+     * needed to tell that the line is longer than {@code maxLineLength} are
+     * kept.
+     */
+    private boolean appendLine(ByteBuf buffer, int maxLineLength) {
+        final StringBuilder line = this.line;
+        if (lineComplete) {
+            line.setLength(0);
+            lineComplete = false;
+        }
+
+        int length = buffer.bytesBefore(HttpConstants.LF);
+        boolean complete = length >= 0;
+        if (!complete) {
+            length = buffer.readableBytes();
+        }
+
+        int index = buffer.readerIndex();
+        // Leave room for a CR and one more character.
+        int toCopy = Math.min(length, Math.max(maxLineLength, 0) + 2 - line.length());
+        if (buffer.hasArray()) {
+            byte[] array = buffer.array();
+            int offset = buffer.arrayOffset() + index;
+            for (int i = offset; i < offset + toCopy; i ++) {
+                line.append((char) (array[i] & 0xFF));
             }
+        } else {
+            for (int i = index; i < index + toCopy; i ++) {
+                line.append((char) (buffer.getByte(i) & 0xFF));
+            }
+        }
+
+        if (complete) {
+            buffer.readerIndex(index + length + 1);
+            int last = line.length() - 1;
+            if (last >= 0 && line.charAt(last) == HttpConstants.CR) {
+                line.setLength(last);
+            }
+            lineComplete = true;
+        } else {
+            buffer.readerIndex(index + length);
+        }
+        return complete;
+    }
+
+    /**
+     * Returns the length of {@link #line}, not counting a trailing CR of an
+     * incomplete line, which might be followed by the LF in the next read.
+     */
+    private int lineLength(boolean complete) {
+        int length = line.length();
+        if (!complete && length != 0 && line.charAt(length - 1) == HttpConstants.CR) {
+            length --;
         }
+        return length;
     }
 
-    private static String[] splitInitialLine(String sb) {
+    private static String[] splitInitialLine(CharSequence sb) {
         int aStart;
         int aEnd;
         int bStart;
@@ -689,12 +742,15 @@ public abstract class HttpMessageDecoder extends ReplayingDecoder<Object, HttpMe
         cEnd = findEndOfString(sb);
 
         return new String[] {
-                sb.substring(aStart, aEnd),
-                sb.substring(bStart, bEnd),
-                cStart < cEnd? sb.substring(cStart, cEnd) : "" };
+                sb.subSequence(aStart, aEnd).toString(),
+                sb.subSequence(bStart, bEnd).toString(),
+                cStart < cEnd? sb.subSequence(cStart, cEnd).toString() : "" };
     }
 
-    private static String[] splitHeader(String sb) {
+    /**
+     * Splits a header line into {@link #name} and {@link #value}.
+     */
+    private void splitHeader(StringBuilder sb) {
         final int length = sb.length();
         int nameStart;
         int nameEnd;
@@ -717,22 +773,17 @@ public abstract class HttpMessageDecoder extends ReplayingDecoder<Object, HttpMe
             }
         }
 
+        name = sb.substring(nameStart, nameEnd);
         valueStart = findNonWhitespace(sb, colonEnd);
         if (valueStart == length) {
-            return new String[] {
-                    sb.substring(nameStart, nameEnd),
-                    ""
-            };
+            value = "";
+        } else {
+            valueEnd = findEndOfString(sb);
+            value = sb.substring(valueStart, valueEnd);
         }
-
-        valueEnd = findEndOfString(sb);
-        return new String[] {
-                sb.substring(nameStart, nameEnd),
-                sb.substring(valueStart, valueEnd)
-        };
     }
 
-    private static int findNonWhitespace(String sb, int offset) {
+    private static int findNonWhitespace(CharSequence sb, int offset) {
         int result;
         for (result = offset; result < sb.length(); result ++) {
             if (!Character.isWhitespace(sb.charAt(result))) {
@@ -742,7 +793,7 @@ public abstract class HttpMessageDecoder extends ReplayingDecoder<Object, HttpMe
         return result;
     }
 
-    private static int findWhitespace(String sb, int offset) {
+    private static int findWhitespace(CharSequence sb, int offset) {
         int result;
         for (result = offset; result < sb.length(); result ++) {
             if (Character.isWhitespace(sb.charAt(result))) {
@@ -752,7 +803,7 @@ public abstract class HttpMessageDecoder extends ReplayingDecoder<Object, HttpMe
         return result;
     }
 
-    private static int findEndOfString(String sb) {
+    private static int findEndOfString(CharSequence sb) {
         int result;
         for (result = sb.length(); result > 0; result --) {
             if (!Character.isWhitespace(sb.charAt(result - 1))) {
@@ -25,7 +25,6 @@ import io.netty.handler.codec.http.HttpHeaders.Names;
 import io.netty.handler.codec.http.HttpHeaders.Values;
 import io.netty.util.CharsetUtil;
 
-import java.io.UnsupportedEncodingException;
 import java.util.Map;
 
 /**
@@ -110,7 +109,7 @@ public abstract class HttpMessageEncoder extends MessageToByteEncoder<Object> {
                 } else {
                     ByteBuf content = chunk.getContent();
                     int contentLength = content.readableBytes();
-                    out.writeBytes(copiedBuffer(Integer.toHexString(contentLength), CharsetUtil.US_ASCII));
+                    HttpCodecUtil.encodeAscii(Integer.toHexString(contentLength), out);
                     out.writeByte(CR);
                     out.writeByte(LF);
                     out.writeBytes(content, content.readerIndex(), contentLength);
@@ -128,32 +127,32 @@ public abstract class HttpMessageEncoder extends MessageToByteEncoder<Object> {
         }
     }
 
+    @Override
+    protected void freeMessage(Object msg) throws Exception {
+        if (msg instanceof HttpMessage) {
+            ((HttpMessage) msg).getContent().release();
+        } else if (msg instanceof HttpChunk) {
+            ((HttpChunk) msg).getContent().release();
+        }
+    }
+
     private static void encodeHeaders(ByteBuf buf, HttpMessage message) {
-        try {
-            for (Map.Entry<String, String> h: message.getHeaders()) {
-                encodeHeader(buf, h.getKey(), h.getValue());
-            }
-        } catch (UnsupportedEncodingException e) {
-            throw (Error) new Error().initCause(e);
+        for (Map.Entry<String, String> h: message.getHeaders()) {
+            encodeHeader(buf, h.getKey(), h.getValue());
         }
     }
 
     private static void encodeTrailingHeaders(ByteBuf buf, HttpChunkTrailer trailer) {
-        try {
-            for (Map.Entry<String, String> h: trailer.getHeaders()) {
-                encodeHeader(buf, h.getKey(), h.getValue());
-            }
-        } catch (UnsupportedEncodingException e) {
-            throw (Error) new Error().initCause(e);
+        for (Map.Entry<String, String> h: trailer.getHeaders()) {
+            encodeHeader(buf, h.getKey(), h.getValue());
         }
     }
 
-    private static void encodeHeader(ByteBuf buf, String header, String value)
-            throws UnsupportedEncodingException {
-        buf.writeBytes(header.getBytes("ASCII"));
+    private static void encodeHeader(ByteBuf buf, String header, String value) {
+        HttpCodecUtil.encodeAscii(header, buf);
         buf.writeByte(COLON);
         buf.writeByte(SP);
-        buf.writeBytes(value.getBytes("ASCII"));
+        HttpCodecUtil.encodeAscii(value, buf);
         buf.writeByte(CR);
         buf.writeByte(LF);
     }
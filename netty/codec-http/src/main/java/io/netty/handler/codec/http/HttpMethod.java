@@ -15,6 +15,9 @@
  */
 package io.netty.handler.codec.http;
 
+import io.netty.buffer.ByteBuf;
+import io.netty.util.CharsetUtil;
+
 import java.util.HashMap;
 import java.util.Map;
 
@@ -123,6 +126,7 @@ public class HttpMethod implements Comparable<HttpMethod> {
     }
 
     private final String name;
+    private final byte[] bytes;
 
     /**
      * Creates a new HTTP method with the specified name.  You will not need to
@@ -149,6 +153,7 @@ public class HttpMethod implements Comparable<HttpMethod> {
         }
 
         this.name = name;
+        bytes = name.getBytes(CharsetUtil.US_ASCII);
     }
 
     /**
@@ -158,6 +163,13 @@ public class HttpMethod implements Comparable<HttpMethod> {
         return name;
     }
 
+    /**
+     * Writes the name of this method in ASCII.
+     */
+    void encode(ByteBuf buf) {
+        buf.writeBytes(bytes);
+    }
+
     @Override
     public int hashCode() {
         return getName().hashCode();
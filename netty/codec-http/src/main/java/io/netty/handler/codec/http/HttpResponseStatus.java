@@ -15,6 +15,9 @@
  */
 package io.netty.handler.codec.http;
 
+import io.netty.buffer.ByteBuf;
+import io.netty.util.CharsetUtil;
+
 /**
  * The response code and its description of HTTP or its derived protocols, such as
  * <a href="http://en.wikipedia.org/wiki/Real_Time_Streaming_Protocol">RTSP</a> and
@@ -415,6 +418,8 @@ public class HttpResponseStatus implements Comparable<HttpResponseStatus> {
 
     private final String reasonPhrase;
 
+    private final byte[] bytes;
+
     /**
      * Creates a new instance with the specified {@code code} and its
      * {@code reasonPhrase}.
@@ -442,6 +447,7 @@ public class HttpResponseStatus implements Comparable<HttpResponseStatus> {
 
         this.code = code;
         this.reasonPhrase = reasonPhrase;
+        bytes = (code + " " + reasonPhrase).getBytes(CharsetUtil.US_ASCII);
     }
 
     /**
@@ -458,6 +464,14 @@ public class HttpResponseStatus implements Comparable<HttpResponseStatus> {
         return reasonPhrase;
     }
 
+    /**
+     * Writes the code and the reason phrase of this status, separated by a
+     * space, in ASCII.
+     */
+    void encode(ByteBuf buf) {
+        buf.writeBytes(bytes);
+    }
+
     @Override
     public int hashCode() {
         return getCode();
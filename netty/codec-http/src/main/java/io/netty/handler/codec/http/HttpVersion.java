@@ -15,6 +15,9 @@
  */
 package io.netty.handler.codec.http;
 
+import io.netty.buffer.ByteBuf;
+import io.netty.util.CharsetUtil;
+
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -67,6 +70,7 @@ public class HttpVersion implements Comparable<HttpVersion> {
     private final int minorVersion;
     private final String text;
     private final boolean keepAliveDefault;
+    private final byte[] bytes;
 
     /**
      * Creates a new HTTP version with the specified version string.  You will
@@ -99,6 +103,7 @@ public class HttpVersion implements Comparable<HttpVersion> {
         minorVersion = Integer.parseInt(m.group(3));
         this.text = protocolName + '/' + majorVersion + '.' + minorVersion;
         this.keepAliveDefault = keepAliveDefault;
+        bytes = this.text.getBytes(CharsetUtil.US_ASCII);
     }
 
     /**
@@ -143,6 +148,7 @@ public class HttpVersion implements Comparable<HttpVersion> {
         this.minorVersion = minorVersion;
         text = protocolName + '/' + majorVersion + '.' + minorVersion;
         this.keepAliveDefault = keepAliveDefault;
+        bytes = text.getBytes(CharsetUtil.US_ASCII);
     }
 
     /**
@@ -181,6 +187,13 @@ public class HttpVersion implements Comparable<HttpVersion> {
         return keepAliveDefault;
     }
 
+    /**
+     * Writes the {@linkplain #getText() text} of this version in ASCII.
+     */
+    void encode(ByteBuf buf) {
+        buf.writeBytes(bytes);
+    }
+
     /**
      * Returns the full protocol version text such as {@code "HTTP/1.0"}.
      */
@@ -0,0 +1,206 @@
+/*
+ * Copyright 2012 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.http.multipart;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.Charset;
+
+/**
+ * The content of an {@link HttpData}, which is written into a heap buffer
+ * until it grows larger than the spill threshold and into a temporary file
+ * afterwards.
+ */
+abstract class AbstractHttpData implements HttpData {
+
+    private final String name;
+    private final long spillThreshold;
+    private final File tempDir;
+    private ByteBuf buffer = Unpooled.dynamicBuffer();
+    private File file;
+    private FileChannel fileChannel;
+    private boolean temporary;
+    private long length;
+
+    AbstractHttpData(String name, long spillThreshold, File tempDir) {
+        this.name = name;
+        this.spillThreshold = spillThreshold;
+        this.tempDir = tempDir;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public long length() {
+        return length;
+    }
+
+    @Override
+    public boolean isInMemory() {
+        return file == null;
+    }
+
+    @Override
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Appends the readable bytes of the specified buffer to the content.
+     */
+    void append(ByteBuf data) throws IOException {
+        int dataLen = data.readableBytes();
+        if (dataLen == 0) {
+            return;
+        }
+
+        if (file == null) {
+            if (length + dataLen <= spillThreshold) {
+                buffer.writeBytes(data);
+                length += dataLen;
+                return;
+            }
+            spill();
+        }
+
+        length += dataLen;
+        while (data.readable()) {
+            data.readBytes(fileChannel, data.readableBytes());
+        }
+    }
+
+    private void spill() throws IOException {
+        String prefix = getType() == Type.FILE_UPLOAD? "upload-" : "attribute-";
+        file = File.createTempFile(prefix, ".tmp", tempDir);
+        temporary = true;
+        fileChannel = new RandomAccessFile(file, "rw").getChannel();
+        while (buffer.readable()) {
+            buffer.readBytes(fileChannel, buffer.readableBytes());
+        }
+        buffer = null;
+    }
+
+    /**
+     * Closes the file which holds the content if any.  Called once the whole
+     * content has been appended.
+     */
+    void complete() throws IOException {
+        if (fileChannel != null) {
+            fileChannel.close();
+            fileChannel = null;
+        }
+    }
+
+    @Override
+    public ByteBuf getContent() throws IOException {
+        if (file == null) {
+            return buffer.duplicate();
+        }
+        if (length > Integer.MAX_VALUE) {
+            throw new IOException(
+                    "content too large to be mapped: " + length + " bytes (" + file + ')');
+        }
+
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            return Unpooled.wrappedBuffer(raf.getChannel().map(MapMode.READ_ONLY, 0, length));
+        } finally {
+            raf.close();
+        }
+    }
+
+    @Override
+    public String getString(Charset charset) throws IOException {
+        return getContent().toString(charset);
+    }
+
+    @Override
+    public void renameTo(File dest) throws IOException {
+        if (dest == null) {
+            throw new NullPointerException("dest");
+        }
+        complete();
+
+        if (file == null) {
+            FileChannel out = new FileOutputStream(dest).getChannel();
+            try {
+                ByteBuf content = buffer.duplicate();
+                while (content.readable()) {
+                    content.readBytes(out, content.readableBytes());
+                }
+            } finally {
+                out.close();
+            }
+            buffer = null;
+        } else if (!file.renameTo(dest)) {
+            // Probably on a different file system - copy and delete.
+            FileChannel in = new RandomAccessFile(file, "r").getChannel();
+            try {
+                FileChannel out = new FileOutputStream(dest).getChannel();
+                try {
+                    long position = 0;
+                    while (position < length) {
+                        position += in.transferTo(position, length - position, out);
+                    }
+                } finally {
+                    out.close();
+                }
+            } finally {
+                in.close();
+            }
+            if (temporary) {
+                file.delete();
+            }
+        }
+
+        file = dest;
+        temporary = false;
+    }
+
+    @Override
+    public void delete() {
+        try {
+            complete();
+        } catch (IOException e) {
+            // Ignore.
+        }
+        if (temporary) {
+            file.delete();
+            file = null;
+            temporary = false;
+        }
+        if (file == null) {
+            buffer = Unpooled.EMPTY_BUFFER;
+            length = 0;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "(name: " + name + ", length: " + length +
+                (file != null? ", file: " + file : "") + ')';
+    }
+}
@@ -0,0 +1,43 @@
+/*
+ * Copyright 2012 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.http.multipart;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+
+/**
+ * The default {@link Attribute} implementation.
+ */
+final class DefaultAttribute extends AbstractHttpData implements Attribute {
+
+    private final Charset charset;
+
+    DefaultAttribute(String name, Charset charset, long spillThreshold, File tempDir) {
+        super(name, spillThreshold, tempDir);
+        this.charset = charset;
+    }
+
+    @Override
+    public Type getType() {
+        return Type.ATTRIBUTE;
+    }
+
+    @Override
+    public String getValue() throws IOException {
+        return getString(charset);
+    }
+}
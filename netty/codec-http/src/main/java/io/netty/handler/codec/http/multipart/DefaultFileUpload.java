@@ -0,0 +1,57 @@
+/*
+ * Copyright 2012 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.http.multipart;
+
+import java.io.File;
+
+/**
+ * The default {@link FileUpload} implementation.
+ */
+final class DefaultFileUpload extends AbstractHttpData implements FileUpload {
+
+    private final String filename;
+    private final String contentType;
+    private final String contentTransferEncoding;
+
+    DefaultFileUpload(
+            String name, String filename, String contentType, String contentTransferEncoding,
+            long spillThreshold, File tempDir) {
+        super(name, spillThreshold, tempDir);
+        this.filename = filename;
+        this.contentType = contentType;
+        this.contentTransferEncoding = contentTransferEncoding;
+    }
+
+    @Override
+    public Type getType() {
+        return Type.FILE_UPLOAD;
+    }
+
+    @Override
+    public String getFilename() {
+        return filename;
+    }
+
+    @Override
+    public String getContentType() {
+        return contentType;
+    }
+
+    @Override
+    public String getContentTransferEncoding() {
+        return contentTransferEncoding;
+    }
+}
@@ -0,0 +1,40 @@
+/*
+ * Copyright 2012 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.http.multipart;
+
+/**
+ * A file uploaded in a {@code multipart/form-data} body.
+ */
+public interface FileUpload extends HttpData {
+
+    /**
+     * Returns the file name given by the client, which is empty if the
+     * client did not choose a file.
+     */
+    String getFilename();
+
+    /**
+     * Returns the {@code Content-Type} of the file given by the client.
+     */
+    String getContentType();
+
+    /**
+     * Returns the {@code Content-Transfer-Encoding} given by the client, or
+     * {@code null} if the client did not give one.  The content is not
+     * decoded according to it.
+     */
+    String getContentTransferEncoding();
+}
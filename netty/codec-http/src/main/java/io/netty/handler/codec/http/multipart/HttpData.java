@@ -0,0 +1,101 @@
+/*
+ * Copyright 2012 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.http.multipart;
+
+import io.netty.buffer.ByteBuf;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+
+/**
+ * A field of an HTML form decoded by {@link HttpPostRequestDecoder}.  Its
+ * content is kept in memory until it grows larger than the spill threshold of
+ * the decoder, and in a temporary file afterwards.
+ *
+ * @apiviz.landmark
+ */
+public interface HttpData {
+
+    /**
+     * The type of an {@link HttpData}.
+     */
+    enum Type {
+        /**
+         * An {@link Attribute}.
+         */
+        ATTRIBUTE,
+        /**
+         * A {@link FileUpload}.
+         */
+        FILE_UPLOAD
+    }
+
+    /**
+     * Returns the type of this data.
+     */
+    Type getType();
+
+    /**
+     * Returns the name of the form field.
+     */
+    String getName();
+
+    /**
+     * Returns the length of the content in bytes.
+     */
+    long length();
+
+    /**
+     * Returns {@code true} if and only if the content is held in memory, and
+     * {@code false} if it is held in a file.
+     */
+    boolean isInMemory();
+
+    /**
+     * Returns the file which holds the content, or {@code null} if the
+     * content is {@linkplain #isInMemory() held in memory}.
+     */
+    File getFile();
+
+    /**
+     * Returns the content.  If the content is held in a file, the file is
+     * memory-mapped rather than read into the heap.
+     *
+     * @throws IOException
+     *         if the file could not be mapped, for example because it is
+     *         larger than 2 GiB
+     */
+    ByteBuf getContent() throws IOException;
+
+    /**
+     * Returns the content decoded with the specified {@link Charset}.
+     */
+    String getString(Charset charset) throws IOException;
+
+    /**
+     * Moves the content to the specified file, which will not be deleted by
+     * {@link #delete()} or {@link HttpPostRequestDecoder#destroy()}.  The file
+     * is renamed when possible and copied otherwise.
+     */
+    void renameTo(File dest) throws IOException;
+
+    /**
+     * Releases the content, deleting the temporary file which holds it if
+     * any.
+     */
+    void delete();
+}
@@ -0,0 +1,578 @@
+/*
+ * Copyright 2012 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.http.multipart;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.CorruptedFrameException;
+import io.netty.handler.codec.TooLongFrameException;
+import io.netty.handler.codec.http.HttpChunk;
+import io.netty.handler.codec.http.HttpConstants;
+import io.netty.handler.codec.http.HttpHeaders;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.QueryStringDecoder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Queue;
+
+/**
+ * Decodes the body of an HTTP {@code POST} request which carries an HTML form,
+ * either {@code application/x-www-form-urlencoded} or
+ * {@code multipart/form-data}, into {@link HttpData}s as the body arrives.
+ * <p>
+ * The body is not aggregated.  Each {@link HttpChunk} which is
+ * {@linkplain #offer(HttpChunk) offered} is decoded immediately, and only the
+ * bytes which might belong to an unfinished line or delimiter are kept until
+ * the next chunk.  The content of a field is written into a heap buffer until
+ * it grows larger than the spill threshold, and into a temporary file
+ * afterwards, so that a large upload never occupies the heap.  The fields of an
+ * {@code application/x-www-form-urlencoded} body are decoded into strings, so
+ * a field longer than the maximum field length is rejected instead.
+ * <pre>
+ * HttpPostRequestDecoder decoder = new HttpPostRequestDecoder(request);
+ * ...
+ * decoder.offer(chunk);
+ * while (decoder.hasNext()) {
+ *     HttpData data = decoder.next();
+ *     ...
+ * }
+ * ...
+ * decoder.destroy();
+ * </pre>
+ * The temporary files are deleted by {@link #destroy()} unless they have been
+ * {@linkplain HttpData#renameTo(File) moved} elsewhere.  The parts of a
+ * {@code multipart/form-data} body are not decoded according to their
+ * {@code Content-Transfer-Encoding}, and a nested {@code multipart/mixed}
+ * part is decoded as a single field.
+ * <p>
+ * This class is not thread-safe, and it cannot be used anymore once it has
+ * thrown an exception.
+ *
+ * @apiviz.landmark
+ * @apiviz.has io.netty.handler.codec.http.multipart.HttpData oneway - - creates
+ */
+public class HttpPostRequestDecoder {
+
+    /**
+     * The default spill threshold, in bytes.
+     */
+    public static final long DEFAULT_SPILL_THRESHOLD = 16384;
+
+    /**
+     * The default maximum length of a field of a urlencoded body, in bytes.
+     */
+    public static final int DEFAULT_MAX_FIELD_LENGTH = 65536;
+
+    private static final int MAX_HEADER_LINE_LENGTH = 8192;
+    private static final String DEFAULT_CONTENT_TYPE = "application/octet-stream";
+
+    private enum State {
+        PREAMBLE,
+        DELIMITER,
+        HEADERS,
+        BODY,
+        EPILOGUE
+    }
+
+    private final long spillThreshold;
+    private final int maxFieldLength;
+    private final File tempDir;
+    private final Charset charset;
+    /**
+     * {@code "\r\n--" + boundary} of a {@code multipart/form-data} body, or
+     * {@code null} for an {@code application/x-www-form-urlencoded} body.
+     */
+    private final byte[] delimiter;
+    private final ByteBuf undecoded = Unpooled.dynamicBuffer();
+    private final Queue<HttpData> decoded = new ArrayDeque<HttpData>();
+    private final List<HttpData> created = new ArrayList<HttpData>();
+    private boolean done;
+
+    // The state of a urlencoded body
+    private int scanned;
+
+    // The state of a multipart body
+    private State state = State.PREAMBLE;
+    private String partName;
+    private String partFilename;
+    private String partContentType;
+    private String partTransferEncoding;
+    private Charset partCharset;
+    private AbstractHttpData partData;
+
+    /**
+     * Creates a new decoder with the {@linkplain #DEFAULT_SPILL_THRESHOLD
+     * default spill threshold} and the {@linkplain #DEFAULT_MAX_FIELD_LENGTH
+     * default maximum field length}, which writes the temporary files into the
+     * default temporary-file directory and decodes the body with
+     * {@link HttpConstants#DEFAULT_CHARSET} unless the request specifies a
+     * charset.
+     *
+     * @throws IllegalArgumentException
+     *         if the request does not carry a form
+     */
+    public HttpPostRequestDecoder(HttpRequest request) throws IOException {
+        this(request, DEFAULT_SPILL_THRESHOLD, null, HttpConstants.DEFAULT_CHARSET);
+    }
+
+    /**
+     * Creates a new decoder with the {@linkplain #DEFAULT_MAX_FIELD_LENGTH
+     * default maximum field length}.
+     *
+     * @param spillThreshold the length of the content of a field above which
+     *                       the content is written into a temporary file
+     * @param tempDir        the directory of the temporary files, or
+     *                       {@code null} for the default temporary-file
+     *                       directory
+     * @param charset        the charset of the body unless the request
+     *                       specifies one
+     *
+     * @throws IllegalArgumentException
+     *         if the request does not carry a form
+     */
+    public HttpPostRequestDecoder(
+            HttpRequest request, long spillThreshold, File tempDir, Charset charset) throws IOException {
+        this(request, spillThreshold, DEFAULT_MAX_FIELD_LENGTH, tempDir, charset);
+    }
+
+    /**
+     * Creates a new decoder.
+     *
+     * @param spillThreshold the length of the content of a field above which
+     *                       the content is written into a temporary file
+     * @param maxFieldLength the maximum length of a field of an
+     *                       {@code application/x-www-form-urlencoded} body,
+     *                       including its name.  If a longer field is
+     *                       found, a {@link TooLongFrameException} is raised.
+     * @param tempDir        the directory of the temporary files, or
+     *                       {@code null} for the default temporary-file
+     *                       directory
+     * @param charset        the charset of the body unless the request
+     *                       specifies one
+     *
+     * @throws IllegalArgumentException
+     *         if the request does not carry a form
+     */
+    public HttpPostRequestDecoder(
+            HttpRequest request, long spillThreshold, int maxFieldLength,
+            File tempDir, Charset charset) throws IOException {
+        if (request == null) {
+            throw new NullPointerException("request");
+        }
+        if (spillThreshold < 0) {
+            throw new IllegalArgumentException(
+                    "spillThreshold must be a non-negative value: " + spillThreshold);
+        }
+        if (maxFieldLength <= 0) {
+            throw new IllegalArgumentException(
+                    "maxFieldLength must be a positive integer: " + maxFieldLength);
+        }
+        if (charset == null) {
+            throw new NullPointerException("charset");
+        }
+
+        String contentType = request.getHeader(HttpHeaders.Names.CONTENT_TYPE);
+        if (contentType == null) {
+            throw new IllegalArgumentException("missing " + HttpHeaders.Names.CONTENT_TYPE);
+        }
+        int semicolon = contentType.indexOf(';');
+        String mimeType = (semicolon < 0? contentType : contentType.substring(0, semicolon)).trim();
+        if (mimeType.equalsIgnoreCase(HttpHeaders.Values.MULTIPART_FORM_DATA)) {
+            String boundary = getParameter(contentType, HttpHeaders.Values.BOUNDARY);
+            if (boundary == null || boundary.length() == 0) {
+                throw new IllegalArgumentException("missing boundary: " + contentType);
+            }
+            delimiter = ("\r\n--" + boundary).getBytes(HttpConstants.DEFAULT_CHARSET);
+            // Let the first delimiter be found even if the body starts with it.
+            undecoded.writeByte(HttpConstants.CR);
+            undecoded.writeByte(HttpConstants.LF);
+        } else if (mimeType.equalsIgnoreCase(HttpHeaders.Values.APPLICATION_X_WWW_FORM_URLENCODED)) {
+            delimiter = null;
+        } else {
+            throw new IllegalArgumentException("unsupported content type: " + contentType);
+        }
+
+        this.spillThreshold = spillThreshold;
+        this.maxFieldLength = maxFieldLength;
+        this.tempDir = tempDir;
+        this.charset = toCharset(getParameter(contentType, HttpHeaders.Values.CHARSET), charset);
+
+        if (!request.isChunked()) {
+            decode(request.getContent(), true);
+        }
+    }
+
+    /**
+     * Decodes the specified chunk of the body.  The fields which have been
+     * completed by the chunk are returned by {@link #next()}.
+     *
+     * @throws CorruptedFrameException
+     *         if the body is malformed or the last chunk ends the body
+     *         prematurely
+     * @throws TooLongFrameException
+     *         if a field of a urlencoded body is longer than the maximum
+     *         field length
+     * @throws IOException
+     *         if the content of a field could not be written into a file
+     */
+    public void offer(HttpChunk chunk) throws IOException {
+        if (done) {
+            throw new IllegalStateException("the last chunk has been offered already");
+        }
+        decode(chunk.getContent(), chunk.isLast());
+    }
+
+    private void decode(ByteBuf content, boolean last) throws IOException {
+        undecoded.writeBytes(content, content.readerIndex(), content.readableBytes());
+        if (delimiter == null) {
+            decodeUrlEncoded(last);
+        } else {
+            decodeMultipart(last);
+        }
+        undecoded.discardReadBytes();
+        if (last) {
+            done = true;
+        }
+    }
+
+    /**
+     * Returns {@code true} if and only if there is a decoded field which has
+     * not been returned by {@link #next()} yet.
+     */
+    public boolean hasNext() {
+        return !decoded.isEmpty();
+    }
+
+    /**
+     * Returns the next decoded field.
+     *
+     * @throws NoSuchElementException
+     *         if there is no such field
+     */
+    public HttpData next() {
+        HttpData data = decoded.poll();
+        if (data == null) {
+            throw new NoSuchElementException();
+        }
+        return data;
+    }
+
+    /**
+     * Returns {@code true} if and only if the whole body has been decoded.
+     */
+    public boolean isDone() {
+        return done;
+    }
+
+    /**
+     * Releases the content of all fields created by this decoder, deleting
+     * their temporary files.  The fields cannot be used anymore except for
+     * the files they have been {@linkplain HttpData#renameTo(File) moved to}.
+     */
+    public void destroy() {
+        for (HttpData data: created) {
+            data.delete();
+        }
+        created.clear();
+        decoded.clear();
+        partData = null;
+        undecoded.clear();
+    }
+
+    private void decodeUrlEncoded(boolean last) throws IOException {
+        final ByteBuf buf = undecoded;
+        for (;;) {
+            int readable = buf.readableBytes();
+            int length = buf.bytesBefore(buf.readerIndex() + scanned, readable - scanned, (byte) '&');
+            if (length < 0) {
+                checkFieldLength(readable);
+                if (!last) {
+                    // Do not scan the same bytes again when the next chunk arrives.
+                    scanned = readable;
+                    return;
+                }
+                addUrlEncoded(buf.readSlice(readable));
+                scanned = 0;
+                return;
+            }
+
+            checkFieldLength(scanned + length);
+            addUrlEncoded(buf.readSlice(scanned + length));
+            buf.skipBytes(1);
+            scanned = 0;
+        }
+    }
+
+    private void checkFieldLength(int length) {
+        if (length > maxFieldLength) {
+            throw new TooLongFrameException(
+                    "form field is larger than " + maxFieldLength + " bytes.");
+        }
+    }
+
+    private void addUrlEncoded(ByteBuf pair) throws IOException {
+        if (!pair.readable()) {
+            return;
+        }
+
+        String name;
+        String value;
+        int nameLength = pair.bytesBefore((byte) '=');
+        if (nameLength < 0) {
+            name = pair.toString(charset);
+            value = "";
+        } else {
+            name = pair.toString(pair.readerIndex(), nameLength, charset);
+            pair.skipBytes(nameLength + 1);
+            value = pair.toString(charset);
+        }
+
+        DefaultAttribute attribute = new DefaultAttribute(
+                QueryStringDecoder.decodeComponent(name, charset), charset, spillThreshold, tempDir);
+        created.add(attribute);
+        attribute.append(Unpooled.wrappedBuffer(
+                QueryStringDecoder.decodeComponent(value, charset).getBytes(charset)));
+        attribute.complete();
+        decoded.add(attribute);
+    }
+
+    private void decodeMultipart(boolean last) throws IOException {
+        final ByteBuf buf = undecoded;
+        loop: for (;;) {
+            switch (state) {
+            case PREAMBLE: {
+                int index = indexOfDelimiter();
+                if (index < 0) {
+                    // Keep only the bytes which might be the beginning of the delimiter.
+                    buf.skipBytes(Math.max(0, buf.readableBytes() - (delimiter.length - 1)));
+                    break loop;
+                }
+                buf.skipBytes(index + delimiter.length);
+                state = State.DELIMITER;
+                break;
+            }
+            case DELIMITER: {
+                if (buf.readableBytes() < 2) {
+                    break loop;
+                }
+                int readerIndex = buf.readerIndex();
+                if (buf.getByte(readerIndex) == '-' && buf.getByte(readerIndex + 1) == '-') {
+                    state = State.EPILOGUE;
+                    break;
+                }
+                // Skip the transport padding and the CRLF which follow the delimiter.
+                int length = lineLength();
+                if (length < 0) {
+                    break loop;
+                }
+                buf.skipBytes(length + 1);
+                partName = null;
+                partFilename = null;
+                partContentType = null;
+                partTransferEncoding = null;
+                partCharset = null;
+                state = State.HEADERS;
+                break;
+            }
+            case HEADERS: {
+                int length = lineLength();
+                if (length < 0) {
+                    break loop;
+                }
+                String line = buf.toString(buf.readerIndex(), length, charset).trim();
+                buf.skipBytes(length + 1);
+                if (line.length() == 0) {
+                    startPart();
+                    state = State.BODY;
+                } else {
+                    readPartHeader(line);
+                }
+                break;
+            }
+            case BODY: {
+                int index = indexOfDelimiter();
+                if (index < 0) {
+                    int length = buf.readableBytes() - (delimiter.length - 1);
+                    if (length > 0) {
+                        partData.append(buf.readSlice(length));
+                    }
+                    break loop;
+                }
+                partData.append(buf.readSlice(index));
+                partData.complete();
+                decoded.add(partData);
+                partData = null;
+                buf.skipBytes(delimiter.length);
+                state = State.DELIMITER;
+                break;
+            }
+            case EPILOGUE:
+                buf.skipBytes(buf.readableBytes());
+                break loop;
+            default:
+                throw new Error("Shouldn't reach here.");
+            }
+        }
+
+        if (last && state != State.EPILOGUE) {
+            throw new CorruptedFrameException("multipart body ended before its closing delimiter");
+        }
+    }
+
+    /**
+     * Returns the number of the bytes before the next {@code LF}, or
+     * {@code -1} if the buffer does not contain it yet.
+     */
+    private int lineLength() {
+        final ByteBuf buf = undecoded;
+        int length = buf.bytesBefore(HttpConstants.LF);
+        if (length < 0 && buf.readableBytes() > MAX_HEADER_LINE_LENGTH ||
+            length > MAX_HEADER_LINE_LENGTH) {
+            throw new CorruptedFrameException(
+                    "multipart header line is larger than " + MAX_HEADER_LINE_LENGTH + " bytes.");
+        }
+        return length;
+    }
+
+    /**
+     * Returns the offset of the first delimiter from the reader index, or
+     * {@code -1} if the buffer does not contain the whole delimiter.
+     */
+    private int indexOfDelimiter() {
+        final ByteBuf buf = undecoded;
+        final byte[] delimiter = this.delimiter;
+        final int start = buf.readerIndex();
+        final int end = buf.writerIndex() - delimiter.length;
+        int i = start;
+        while (i <= end) {
+            int length = buf.bytesBefore(i, end - i + 1, delimiter[0]);
+            if (length < 0) {
+                return -1;
+            }
+            i += length;
+
+            int j = 1;
+            while (j < delimiter.length && buf.getByte(i + j) == delimiter[j]) {
+                j ++;
+            }
+            if (j == delimiter.length) {
+                return i - start;
+            }
+            i ++;
+        }
+        return -1;
+    }
+
+    private void readPartHeader(String line) {
+        int colon = line.indexOf(':');
+        if (colon <= 0) {
+            throw new CorruptedFrameException("invalid multipart header: " + line);
+        }
+        String name = line.substring(0, colon).trim();
+        String value = line.substring(colon + 1).trim();
+        if (name.equalsIgnoreCase(HttpHeaders.Names.CONTENT_DISPOSITION)) {
+            partName = getParameter(value, "name");
+            partFilename = getParameter(value, "filename");
+        } else if (name.equalsIgnoreCase(HttpHeaders.Names.CONTENT_TYPE)) {
+            int semicolon = value.indexOf(';');
+            partContentType = (semicolon < 0? value : value.substring(0, semicolon)).trim();
+            partCharset = toCharset(getParameter(value, HttpHeaders.Values.CHARSET), null);
+        } else if (name.equalsIgnoreCase(HttpHeaders.Names.CONTENT_TRANSFER_ENCODING)) {
+            partTransferEncoding = value;
+        }
+    }
+
+    private void startPart() {
+        if (partName == null) {
+            throw new CorruptedFrameException(
+                    "multipart part without the name in its " + HttpHeaders.Names.CONTENT_DISPOSITION);
+        }
+        if (partFilename != null) {
+            partData = new DefaultFileUpload(
+                    partName, partFilename,
+                    partContentType != null? partContentType : DEFAULT_CONTENT_TYPE,
+                    partTransferEncoding, spillThreshold, tempDir);
+        } else {
+            partData = new DefaultAttribute(
+                    partName, partCharset != null? partCharset : charset, spillThreshold, tempDir);
+        }
+        created.add(partData);
+    }
+
+    /**
+     * Returns the value of the specified parameter of a header value such as
+     * {@code form-data; name="field"}, or {@code null} if there is no such
+     * parameter.  A quoted value ends at the next quote; a backslash is not
+     * an escape character because browsers send Windows paths unescaped.
+     */
+    private static String getParameter(String value, String name) {
+        final int length = value.length();
+        int i = value.indexOf(';');
+        while (i >= 0) {
+            i ++;
+            int equals = value.indexOf('=', i);
+            int semicolon = value.indexOf(';', i);
+            if (equals < 0) {
+                return null;
+            }
+            if (semicolon >= 0 && semicolon < equals) {
+                // A parameter without a value
+                i = semicolon;
+                continue;
+            }
+
+            boolean found = value.substring(i, equals).trim().equalsIgnoreCase(name);
+            int start = equals + 1;
+            while (start < length && value.charAt(start) == ' ') {
+                start ++;
+            }
+            if (start < length && value.charAt(start) == '"') {
+                int end = value.indexOf('"', start + 1);
+                if (end < 0) {
+                    end = length;
+                }
+                if (found) {
+                    return value.substring(start + 1, end);
+                }
+                i = value.indexOf(';', end);
+            } else {
+                if (found) {
+                    return value.substring(start, semicolon < 0? length : semicolon).trim();
+                }
+                i = semicolon;
+            }
+        }
+        return null;
+    }
+
+    private static Charset toCharset(String name, Charset defaultValue) {
+        if (name == null) {
+            return defaultValue;
+        }
+        try {
+            return Charset.forName(name);
+        } catch (IllegalArgumentException e) {
+            // Unknown or illegal charset name
+            return defaultValue;
+        }
+    }
+}
@@ -89,4 +89,12 @@ public class WebSocket00FrameEncoder extends MessageToByteEncoder<WebSocketFrame
             out.writeBytes(data, data.readerIndex(), dataLen);
         }
     }
+
+    @Override
+    protected void freeMessage(WebSocketFrame msg) throws Exception {
+        ByteBuf data = msg.getBinaryData();
+        if (data != null) {
+            data.release();
+        }
+    }
 }
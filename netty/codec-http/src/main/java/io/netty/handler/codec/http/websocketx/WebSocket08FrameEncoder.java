@@ -177,4 +177,12 @@ public class WebSocket08FrameEncoder extends MessageToByteEncoder<WebSocketFrame
             out.writeBytes(data, data.readerIndex(), data.readableBytes());
         }
     }
+
+    @Override
+    protected void freeMessage(WebSocketFrame msg) throws Exception {
+        ByteBuf data = msg.getBinaryData();
+        if (data != null) {
+            data.release();
+        }
+    }
 }
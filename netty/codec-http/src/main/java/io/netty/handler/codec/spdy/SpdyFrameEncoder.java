@@ -88,6 +88,13 @@ public class SpdyFrameEncoder extends MessageToByteEncoder<Object> {
                 msg instanceof SpdyWindowUpdateFrame;
     }
 
+    @Override
+    protected void freeMessage(Object msg) throws Exception {
+        if (msg instanceof SpdyDataFrame) {
+            ((SpdyDataFrame) msg).getData().release();
+        }
+    }
+
     @Override
     public void encode(ChannelHandlerContext ctx, Object msg, ByteBuf out) throws Exception {
         if (msg instanceof SpdyDataFrame) {
@@ -15,15 +15,14 @@
  */
 package io.netty.handler.codec.spdy;
 
+import io.netty.handler.codec.http.HeaderMap;
 import io.netty.handler.codec.http.HttpMethod;
 import io.netty.handler.codec.http.HttpResponseStatus;
 import io.netty.handler.codec.http.HttpVersion;
 
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.TreeSet;
 
 /**
  * Provides the constants for the standard SPDY HTTP header names and commonly
@@ -478,60 +477,14 @@ public class SpdyHeaders {
     }
 
 
-    private static final int BUCKET_SIZE = 17;
-
-    private static int hash(String name) {
-        int h = 0;
-        for (int i = name.length() - 1; i >= 0; i --) {
-            char c = name.charAt(i);
-            if (c >= 'A' && c <= 'Z') {
-                c += 32;
-            }
-            h = 31 * h + c;
-        }
-
-        if (h > 0) {
-            return h;
-        } else if (h == Integer.MIN_VALUE) {
-            return Integer.MAX_VALUE;
-        } else {
-            return -h;
-        }
-    }
-
-    private static boolean eq(String name1, String name2) {
-        int nameLen = name1.length();
-        if (nameLen != name2.length()) {
-            return false;
-        }
-
-        for (int i = nameLen - 1; i >= 0; i --) {
-            char c1 = name1.charAt(i);
-            char c2 = name2.charAt(i);
-            if (c1 != c2) {
-                if (c1 >= 'A' && c1 <= 'Z') {
-                    c1 += 32;
-                }
-                if (c2 >= 'A' && c2 <= 'Z') {
-                    c2 += 32;
-                }
-                if (c1 != c2) {
-                    return false;
-                }
-            }
+    private final HeaderMap headers = new HeaderMap() {
+        @Override
+        protected void validateValue(String value) {
+            SpdyCodecUtil.validateHeaderValue(value);
         }
-        return true;
-    }
-
-    private static int index(int hash) {
-        return hash % BUCKET_SIZE;
-    }
-
-    private final Entry[] entries = new Entry[BUCKET_SIZE];
-    private final Entry head = new Entry(-1, null, null);
+    };
 
     SpdyHeaders() {
-        head.before = head.after = head;
     }
 
     void addHeader(final String name, final Object value) {
@@ -539,66 +492,14 @@ public class SpdyHeaders {
         SpdyCodecUtil.validateHeaderName(lowerCaseName);
         String strVal = toString(value);
         SpdyCodecUtil.validateHeaderValue(strVal);
-        int h = hash(lowerCaseName);
-        int i = index(h);
-        addHeader0(h, i, lowerCaseName, strVal);
-    }
-
-    private void addHeader0(int h, int i, final String name, final String value) {
-        // Update the hash table.
-        Entry e = entries[i];
-        Entry newEntry;
-        entries[i] = newEntry = new Entry(h, name, value);
-        newEntry.next = e;
-
-        // Update the linked list.
-        newEntry.addBefore(head);
+        headers.add(lowerCaseName, strVal);
     }
 
     void removeHeader(final String name) {
         if (name == null) {
             throw new NullPointerException("name");
         }
-        String lowerCaseName = name.toLowerCase();
-        int h = hash(lowerCaseName);
-        int i = index(h);
-        removeHeader0(h, i, lowerCaseName);
-    }
-
-    private void removeHeader0(int h, int i, String name) {
-        Entry e = entries[i];
-        if (e == null) {
-            return;
-        }
-
-        for (;;) {
-            if (e.hash == h && eq(name, e.key)) {
-                e.remove();
-                Entry next = e.next;
-                if (next != null) {
-                    entries[i] = next;
-                    e = next;
-                } else {
-                    entries[i] = null;
-                    return;
-                }
-            } else {
-                break;
-            }
-        }
-
-        for (;;) {
-            Entry next = e.next;
-            if (next == null) {
-                break;
-            }
-            if (next.hash == h && eq(name, next.key)) {
-                e.next = next.next;
-                next.remove();
-            } else {
-                e = next;
-            }
-        }
+        headers.remove(name);
     }
 
     void setHeader(final String name, final Object value) {
@@ -606,10 +507,7 @@ public class SpdyHeaders {
         SpdyCodecUtil.validateHeaderName(lowerCaseName);
         String strVal = toString(value);
         SpdyCodecUtil.validateHeaderValue(strVal);
-        int h = hash(lowerCaseName);
-        int i = index(h);
-        removeHeader0(h, i, lowerCaseName);
-        addHeader0(h, i, lowerCaseName, strVal);
+        headers.set(lowerCaseName, strVal);
     }
 
     void setHeader(final String name, final Iterable<?> values) {
@@ -620,74 +518,37 @@ public class SpdyHeaders {
         String lowerCaseName = name.toLowerCase();
         SpdyCodecUtil.validateHeaderName(lowerCaseName);
 
-        int h = hash(lowerCaseName);
-        int i = index(h);
-
-        removeHeader0(h, i, lowerCaseName);
+        headers.remove(lowerCaseName);
         for (Object v: values) {
             if (v == null) {
                 break;
             }
             String strVal = toString(v);
             SpdyCodecUtil.validateHeaderValue(strVal);
-            addHeader0(h, i, lowerCaseName, strVal);
+            headers.add(lowerCaseName, strVal);
         }
     }
 
     void clearHeaders() {
-        for (int i = 0; i < entries.length; i ++) {
-            entries[i] = null;
-        }
-        head.before = head.after = head;
+        headers.clear();
     }
 
     String getHeader(final String name) {
         if (name == null) {
             throw new NullPointerException("name");
         }
-
-        int h = hash(name);
-        int i = index(h);
-        Entry e = entries[i];
-        while (e != null) {
-            if (e.hash == h && eq(name, e.key)) {
-                return e.value;
-            }
-
-            e = e.next;
-        }
-        return null;
+        return headers.get(name);
     }
 
     List<String> getHeaders(final String name) {
         if (name == null) {
             throw new NullPointerException("name");
         }
-
-        LinkedList<String> values = new LinkedList<String>();
-
-        int h = hash(name);
-        int i = index(h);
-        Entry e = entries[i];
-        while (e != null) {
-            if (e.hash == h && eq(name, e.key)) {
-                values.addFirst(e.value);
-            }
-            e = e.next;
-        }
-        return values;
+        return headers.getAll(name);
     }
 
     List<Map.Entry<String, String>> getHeaders() {
-        List<Map.Entry<String, String>> all =
-            new LinkedList<Map.Entry<String, String>>();
-
-        Entry e = head.after;
-        while (e != head) {
-            all.add(e);
-            e = e.after;
-        }
-        return all;
+        return headers.entries();
     }
 
     boolean containsHeader(String name) {
@@ -695,14 +556,8 @@ public class SpdyHeaders {
     }
 
     Set<String> getHeaderNames() {
-        Set<String> names = new TreeSet<String>();
-
-        Entry e = head.after;
-        while (e != head) {
-            names.add(e.key);
-            e = e.after;
-        }
-        return names;
+        // The names are in lower case, so the case-insensitive order is the natural order.
+        return headers.names();
     }
 
     private static String toString(Object value) {
@@ -711,56 +566,4 @@ public class SpdyHeaders {
         }
         return value.toString();
     }
-
-    private static final class Entry implements Map.Entry<String, String> {
-        final int hash;
-        final String key;
-        String value;
-        Entry next;
-        Entry before, after;
-
-        Entry(int hash, String key, String value) {
-            this.hash = hash;
-            this.key = key;
-            this.value = value;
-        }
-
-        void remove() {
-            before.after = after;
-            after.before = before;
-        }
-
-        void addBefore(Entry e) {
-            after  = e;
-            before = e.before;
-            before.after = this;
-            after.before = this;
-        }
-
-        @Override
-        public String getKey() {
-            return key;
-        }
-
-        @Override
-        public String getValue() {
-            return value;
-        }
-
-        @Override
-        public String setValue(String value) {
-            if (value == null) {
-                throw new NullPointerException("value");
-            }
-            SpdyCodecUtil.validateHeaderValue(value);
-            String oldValue = this.value;
-            this.value = value;
-            return oldValue;
-        }
-
-        @Override
-        public String toString() {
-            return key + "=" + value;
-        }
-    }
 }
@@ -0,0 +1,154 @@
+/*
+ * Copyright 2012 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.http;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+public class HeaderMapTest {
+
+    @Test
+    public void testCaseInsensitiveLookup() {
+        HeaderMap map = new HeaderMap();
+        map.add("Content-Type", "text/plain");
+        assertEquals("text/plain", map.get("content-type"));
+        assertEquals("text/plain", map.get("CONTENT-TYPE"));
+        assertTrue(map.contains("Content-type"));
+        assertFalse(map.contains("Content-Length"));
+        assertNull(map.get("Content-Length"));
+    }
+
+    @Test
+    public void testMultipleValues() {
+        HeaderMap map = new HeaderMap();
+        map.add("Set-Cookie", "a");
+        map.add("Host", "localhost");
+        map.add("set-cookie", "b");
+        map.add("SET-COOKIE", "c");
+
+        assertEquals(4, map.size());
+        assertEquals("c", map.get("Set-Cookie"));
+        assertEquals(Arrays.asList("a", "b", "c"), map.getAll("Set-Cookie"));
+        assertEquals(Arrays.asList("Host", "Set-Cookie"), new ArrayList<String>(map.names()));
+
+        List<Map.Entry<String, String>> entries = map.entries();
+        assertEquals(4, entries.size());
+        assertEquals("Set-Cookie", entries.get(0).getKey());
+        assertEquals("Host", entries.get(1).getKey());
+        assertEquals("set-cookie", entries.get(2).getKey());
+
+        map.set("set-cookie", "d");
+        assertEquals(2, map.size());
+        assertEquals(Collections.singletonList("d"), map.getAll("Set-Cookie"));
+        assertEquals("Host", map.entries().get(0).getKey());
+
+        map.clear();
+        assertEquals(0, map.size());
+        assertTrue(map.entries().isEmpty());
+        assertNull(map.get("Host"));
+    }
+
+    @Test
+    public void testSetValueIsValidated() {
+        HeaderMap map = new HeaderMap() {
+            @Override
+            protected void validateValue(String value) {
+                HttpCodecUtil.validateHeaderValue(value);
+            }
+        };
+        map.add("Host", "localhost");
+        Map.Entry<String, String> e = map.entries().get(0);
+        assertEquals("localhost", e.setValue("example.com"));
+        assertEquals("example.com", map.get("host"));
+        try {
+            e.setValue("a\rb");
+            fail();
+        } catch (IllegalArgumentException expected) {
+            // Expected
+        }
+    }
+
+    @Test
+    public void testHashCoversAllCharacters() {
+        assertEquals(HeaderMap.hash("Content-Type"), HeaderMap.hash("content-TYPE"));
+
+        // The names share their length and their first, middle and last characters.
+        Set<Integer> hashes = new HashSet<Integer>();
+        for (char c = 'a'; c <= 'z'; c ++) {
+            for (char d = 'a'; d <= 'z'; d ++) {
+                hashes.add(HeaderMap.hash("x" + c + "-m-" + d + 'y'));
+            }
+        }
+        assertEquals(26 * 26, hashes.size());
+    }
+
+    @Test
+    public void testManyNamesAddedAndRemoved() {
+        HeaderMap map = new HeaderMap();
+        // The distinct names which are present, in lower case, with the number of their values.
+        List<String> present = new ArrayList<String>();
+        List<Integer> counts = new ArrayList<Integer>();
+        Random random = new Random(42);
+        for (int i = 0; i < 20000; i ++) {
+            // Many short names of the same shape share the clusters of the table.
+            String name = "x-h" + random.nextInt(64) + 'z';
+            if (random.nextBoolean()) {
+                name = name.toUpperCase();
+            }
+            String key = name.toLowerCase();
+            int idx = present.indexOf(key);
+            if (random.nextInt(3) == 0) {
+                map.remove(name);
+                if (idx >= 0) {
+                    present.remove(idx);
+                    counts.remove(idx);
+                }
+            } else {
+                map.add(name, String.valueOf(i));
+                if (idx >= 0) {
+                    counts.set(idx, counts.get(idx) + 1);
+                } else {
+                    present.add(key);
+                    counts.add(1);
+                }
+            }
+
+            if (i % 100 == 0) {
+                int size = 0;
+                for (int j = 0; j < present.size(); j ++) {
+                    assertEquals(counts.get(j).intValue(), map.getAll(present.get(j)).size());
+                    size += counts.get(j);
+                }
+                assertEquals(size, map.size());
+                assertEquals(present.size(), map.names().size());
+                for (int j = 0; j < 64; j ++) {
+                    String k = "x-h" + j + 'z';
+                    assertEquals(present.contains(k), map.contains(k));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2012 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.http;
+
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedMessageChannel;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ * Measures how many megabytes per second {@link HttpChunkAggregator}
+ * aggregates when a large message arrives in small chunks.
+ * <p>
+ * Not run as part of the build.  Run it with
+ * {@code mvn test -Dtest=HttpChunkAggregatorBenchmark}.
+ */
+public class HttpChunkAggregatorBenchmark {
+
+    private static final long WARMUP_MILLIS = 1000;
+    private static final long MEASURE_MILLIS = 3000;
+
+    private static final int CHUNK_SIZE = 8192;
+    private static final int CONTENT_LENGTH = 16 * 1024 * 1024;
+
+    @Test
+    public void benchmark() {
+        run(WARMUP_MILLIS);
+        System.err.println(
+                HttpChunkAggregator.class.getSimpleName() + ": " + run(MEASURE_MILLIS) + " MiB/s");
+    }
+
+    private static long run(long millis) {
+        EmbeddedMessageChannel ch = new EmbeddedMessageChannel(new HttpChunkAggregator(CONTENT_LENGTH));
+        byte[] data = new byte[CHUNK_SIZE];
+
+        long bytes = 0;
+        long startTime = System.nanoTime();
+        long deadline = startTime + TimeUnit.MILLISECONDS.toNanos(millis);
+        do {
+            HttpMessage message = new DefaultHttpMessage(HttpVersion.HTTP_1_1);
+            message.setChunked(true);
+            ch.writeInbound(message);
+            for (int i = 0; i < CONTENT_LENGTH / CHUNK_SIZE; i ++) {
+                // A decoder produces a new buffer for every chunk.
+                ch.writeInbound(new DefaultHttpChunk(Unpooled.copiedBuffer(data)));
+            }
+            ch.writeInbound(HttpChunk.LAST_CHUNK);
+
+            HttpMessage aggregated = (HttpMessage) ch.readInbound();
+            if (aggregated.getContent().readableBytes() != CONTENT_LENGTH) {
+                throw new IllegalStateException("message not aggregated");
+            }
+            aggregated.getContent().release();
+            bytes += CONTENT_LENGTH;
+        } while (System.nanoTime() < deadline);
+        long elapsed = System.nanoTime() - startTime;
+        ch.finish();
+        return bytes * 1000000000L / elapsed / (1024 * 1024);
+    }
+}
@@ -103,6 +103,89 @@ public class HttpChunkAggregatorTest {
     }
 
 
+    @Test
+    public void testConsolidateComponents() {
+        HttpChunkAggregator aggr = new HttpChunkAggregator(1024 * 1024);
+        aggr.setMaxCumulationBufferComponents(3);
+        EmbeddedMessageChannel embedder = new EmbeddedMessageChannel(aggr);
+        HttpMessage message = new DefaultHttpMessage(HttpVersion.HTTP_1_1);
+        message.setChunked(true);
+        assertFalse(embedder.writeInbound(message));
+
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 5; i ++) {
+            String s = "chunk" + i;
+            expected.append(s);
+            assertFalse(embedder.writeInbound(
+                    new DefaultHttpChunk(Unpooled.copiedBuffer(s, CharsetUtil.US_ASCII))));
+        }
+        assertTrue(embedder.writeInbound(HttpChunk.LAST_CHUNK));
+        assertTrue(embedder.finish());
+
+        HttpMessage aggregatedMessage = (HttpMessage) embedder.readInbound();
+        assertEquals(expected.length(), HttpHeaders.getContentLength(aggregatedMessage));
+        assertEquals(expected.toString(), aggregatedMessage.getContent().toString(CharsetUtil.US_ASCII));
+
+        // The first three chunks have been copied into a single component.
+        CompositeByteBuf buffer = (CompositeByteBuf) aggregatedMessage.getContent();
+        assertEquals(3, buffer.numComponents());
+        assertNull(embedder.readInbound());
+    }
+
+    @Test
+    public void testConsolidateNewestComponents() {
+        HttpChunkAggregator aggr = new HttpChunkAggregator(1024 * 1024);
+        aggr.setMaxCumulationBufferComponents(4);
+        EmbeddedMessageChannel embedder = new EmbeddedMessageChannel(aggr);
+        HttpMessage message = new DefaultHttpMessage(HttpVersion.HTTP_1_1);
+        message.setChunked(true);
+        assertFalse(embedder.writeInbound(message));
+
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 10; i ++) {
+            String s = "chunk" + i;
+            expected.append(s);
+            assertFalse(embedder.writeInbound(
+                    new DefaultHttpChunk(Unpooled.copiedBuffer(s, CharsetUtil.US_ASCII))));
+        }
+        assertTrue(embedder.writeInbound(HttpChunk.LAST_CHUNK));
+        assertTrue(embedder.finish());
+
+        HttpMessage aggregatedMessage = (HttpMessage) embedder.readInbound();
+        assertEquals(expected.toString(), aggregatedMessage.getContent().toString(CharsetUtil.US_ASCII));
+
+        // The components consolidated earlier are not copied again.
+        CompositeByteBuf buffer = (CompositeByteBuf) aggregatedMessage.getContent();
+        List<ByteBuf> components = buffer.decompose(0, buffer.capacity());
+        assertEquals(4, components.size());
+        assertEquals(24, components.get(0).readableBytes());
+        assertEquals(18, components.get(1).readableBytes());
+        assertEquals(12, components.get(2).readableBytes());
+        assertEquals(6, components.get(3).readableBytes());
+    }
+
+    @Test
+    public void testReleaseEmptyChunk() {
+        HttpChunkAggregator aggr = new HttpChunkAggregator(1024 * 1024);
+        EmbeddedMessageChannel embedder = new EmbeddedMessageChannel(aggr);
+        HttpMessage message = new DefaultHttpMessage(HttpVersion.HTTP_1_1);
+        message.setChunked(true);
+        assertFalse(embedder.writeInbound(message));
+
+        HttpChunk chunk1 = new DefaultHttpChunk(Unpooled.copiedBuffer("test", CharsetUtil.US_ASCII));
+        // An empty buffer of its own, as a decoder may allocate for the last chunk
+        HttpChunk last = new DefaultHttpChunk(Unpooled.buffer(16));
+        assertTrue(last.isLast());
+        assertFalse(embedder.writeInbound(chunk1));
+        assertTrue(embedder.writeInbound(last));
+        assertEquals(0, last.getContent().refCnt());
+        assertTrue(embedder.finish());
+
+        HttpMessage aggregatedMessage = (HttpMessage) embedder.readInbound();
+        assertEquals("test", aggregatedMessage.getContent().toString(CharsetUtil.US_ASCII));
+        assertEquals(1, chunk1.getContent().refCnt());
+    }
+
     @Test(expected = TooLongFrameException.class)
     public void testTooLongFrameException() {
         HttpChunkAggregator aggr = new HttpChunkAggregator(4);
@@ -118,6 +201,44 @@ public class HttpChunkAggregatorTest {
 
     }
 
+    @Test
+    public void testDiscardTooLongContent() {
+        HttpChunkAggregator aggr = new HttpChunkAggregator(4);
+        EmbeddedMessageChannel embedder = new EmbeddedMessageChannel(aggr);
+        HttpMessage message = new DefaultHttpMessage(HttpVersion.HTTP_1_1);
+        message.setChunked(true);
+        HttpChunk chunk1 = new DefaultHttpChunk(Unpooled.copiedBuffer("test", CharsetUtil.US_ASCII));
+        HttpChunk chunk2 = new DefaultHttpChunk(Unpooled.copiedBuffer("test2", CharsetUtil.US_ASCII));
+        HttpChunk chunk3 = new DefaultHttpChunk(Unpooled.copiedBuffer("test3", CharsetUtil.US_ASCII));
+        assertFalse(embedder.writeInbound(message));
+        assertFalse(embedder.writeInbound(chunk1));
+        try {
+            embedder.writeInbound(chunk2);
+            fail();
+        } catch (TooLongFrameException e) {
+            // Expected
+        }
+        assertEquals(0, chunk1.getContent().refCnt());
+        assertEquals(0, chunk2.getContent().refCnt());
+
+        // The rest of the message is discarded.
+        assertFalse(embedder.writeInbound(chunk3));
+        assertEquals(0, chunk3.getContent().refCnt());
+        assertFalse(embedder.writeInbound(HttpChunk.LAST_CHUNK));
+
+        // The next message is aggregated again.
+        HttpMessage message2 = new DefaultHttpMessage(HttpVersion.HTTP_1_1);
+        message2.setChunked(true);
+        assertFalse(embedder.writeInbound(message2));
+        assertFalse(embedder.writeInbound(
+                new DefaultHttpChunk(Unpooled.copiedBuffer("ok", CharsetUtil.US_ASCII))));
+        assertTrue(embedder.writeInbound(HttpChunk.LAST_CHUNK));
+        assertTrue(embedder.finish());
+        HttpMessage aggregatedMessage = (HttpMessage) embedder.readInbound();
+        assertEquals("ok", aggregatedMessage.getContent().toString(CharsetUtil.US_ASCII));
+        assertNull(embedder.readInbound());
+    }
+
     @Test(expected = IllegalArgumentException.class)
     public void testInvalidConstructorUsage() {
         new HttpChunkAggregator(0);
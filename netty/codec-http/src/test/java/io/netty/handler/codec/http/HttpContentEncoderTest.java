@@ -0,0 +1,71 @@
+/*
+ * Copyright 2012 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.http;
+
+import static org.junit.Assert.*;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.DefaultFileRegion;
+import io.netty.channel.FileRegion;
+import io.netty.channel.embedded.EmbeddedByteChannel;
+import io.netty.channel.embedded.EmbeddedMessageChannel;
+import io.netty.handler.codec.ByteToByteEncoder;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+
+import org.junit.Test;
+
+public class HttpContentEncoderTest {
+
+    @Test
+    public void testRejectFileRegionWhileEncoding() throws Exception {
+        EmbeddedMessageChannel ch = new EmbeddedMessageChannel(new TestEncoder());
+        HttpRequest req = new DefaultHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, "/");
+        req.setHeader(HttpHeaders.Names.ACCEPT_ENCODING, "test");
+        ch.writeInbound(req);
+
+        HttpResponse res = new DefaultHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK);
+        res.setChunked(true);
+        ch.writeOutbound(res);
+        assertEquals("test", ((HttpResponse) ch.readOutbound()).getHeader(HttpHeaders.Names.CONTENT_ENCODING));
+
+        File file = File.createTempFile("netty-", ".tmp");
+        file.deleteOnExit();
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            FileRegion region = new DefaultFileRegion(raf.getChannel(), 0, 0);
+            ChannelFuture future = ch.sendFile(region);
+            assertTrue(future.cause() instanceof IllegalStateException);
+            assertEquals(0, region.refCnt());
+        } finally {
+            raf.close();
+        }
+    }
+
+    private static final class TestEncoder extends HttpContentEncoder {
+        @Override
+        protected Result beginEncode(HttpMessage msg, String acceptEncoding) throws Exception {
+            return new Result("test", new EmbeddedByteChannel(new ByteToByteEncoder() {
+                @Override
+                public void encode(ChannelHandlerContext ctx, ByteBuf in, ByteBuf out) throws Exception {
+                    out.writeBytes(in);
+                }
+            }));
+        }
+    }
+}
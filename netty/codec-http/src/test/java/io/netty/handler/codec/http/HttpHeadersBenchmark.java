@@ -0,0 +1,89 @@
+/*
+ * Copyright 2012 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.http;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ * Measures how many messages with 32 headers per second can be populated,
+ * looked up by a handler and iterated by an encoder, which is what happens to
+ * every request a server receives.
+ * <p>
+ * Not run as part of the build.  Run it with
+ * {@code mvn test -Dtest=HttpHeadersBenchmark}.
+ */
+public class HttpHeadersBenchmark {
+
+    private static final long WARMUP_MILLIS = 1000;
+    private static final long MEASURE_MILLIS = 3000;
+
+    private static final String[] NAMES = new String[32];
+    private static final String[] LOOKUPS = new String[NAMES.length];
+
+    static {
+        String[] standard = {
+                "Host", "User-Agent", "Accept", "Accept-Language", "Accept-Encoding", "Accept-Charset",
+                "Connection", "Referer", "Cookie", "Cache-Control", "Pragma", "If-Modified-Since",
+                "If-None-Match", "Authorization", "Content-Type", "Content-Length", "Origin", "Via",
+                "X-Forwarded-For", "X-Forwarded-Proto", "X-Requested-With", "DNT", "Upgrade", "TE" };
+        for (int i = 0; i < NAMES.length; i ++) {
+            NAMES[i] = i < standard.length? standard[i] : "X-Custom-Header-" + i;
+            // A handler rarely uses the same case as the client.
+            LOOKUPS[i] = NAMES[i].toLowerCase();
+        }
+    }
+
+    @Test
+    public void benchmark() {
+        run(WARMUP_MILLIS);
+        System.err.println(HttpHeaders.class.getSimpleName() + ": " + run(MEASURE_MILLIS) + " messages/s");
+    }
+
+    private static long run(long millis) {
+        long messages = 0;
+        long found = 0;
+        long startTime = System.nanoTime();
+        long deadline = startTime + TimeUnit.MILLISECONDS.toNanos(millis);
+        do {
+            for (int i = 0; i < 256; i ++) {
+                HttpMessage msg = new DefaultHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, "/");
+                for (String name: NAMES) {
+                    msg.addHeader(name, "value");
+                }
+                for (String name: LOOKUPS) {
+                    if (msg.getHeader(name) != null) {
+                        found ++;
+                    }
+                }
+                if (msg.containsHeader(HttpHeaders.Names.TRANSFER_ENCODING)) {
+                    found ++;
+                }
+                for (Map.Entry<String, String> h: msg.getHeaders()) {
+                    found += h.getValue().length();
+                }
+                messages ++;
+            }
+        } while (System.nanoTime() < deadline);
+        long elapsed = System.nanoTime() - startTime;
+        if (found == 0) {
+            throw new IllegalStateException();
+        }
+        return messages * 1000000000L / elapsed;
+    }
+}
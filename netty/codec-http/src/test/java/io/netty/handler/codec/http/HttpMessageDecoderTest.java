@@ -0,0 +1,132 @@
+/*
+ * Copyright 2012 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.http;
+
+import static org.junit.Assert.*;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedByteChannel;
+import io.netty.handler.codec.TooLongFrameException;
+import io.netty.util.CharsetUtil;
+
+import org.junit.Test;
+
+public class HttpMessageDecoderTest {
+
+    @Test
+    public void testRequestReceivedByteByByte() {
+        EmbeddedByteChannel ch = new EmbeddedByteChannel(new HttpRequestDecoder());
+        writeByteByByte(ch,
+                "\r\nPOST /upload HTTP/1.1\r\n" +
+                "Host: localhost\r\n" +
+                "X-Folded: a\r\n" +
+                "  b\r\n" +
+                "Content-Length: 5\r\n" +
+                "\r\n" +
+                "hello");
+
+        HttpRequest req = (HttpRequest) ch.readInbound();
+        assertEquals(HttpMethod.POST, req.getMethod());
+        assertEquals("/upload", req.getUri());
+        assertEquals(HttpVersion.HTTP_1_1, req.getProtocolVersion());
+        assertEquals("localhost", req.getHeader(HttpHeaders.Names.HOST));
+        assertEquals("a b", req.getHeader("X-Folded"));
+        assertFalse(req.isChunked());
+        assertEquals("hello", req.getContent().toString(CharsetUtil.US_ASCII));
+        assertNull(ch.readInbound());
+        assertFalse(ch.finish());
+    }
+
+    @Test
+    public void testChunkedRequestReceivedByteByByte() {
+        EmbeddedByteChannel ch = new EmbeddedByteChannel(new HttpRequestDecoder());
+        writeByteByByte(ch,
+                "PUT / HTTP/1.1\r\n" +
+                "Transfer-Encoding: chunked\r\n" +
+                "\r\n" +
+                "5;name=value\r\n" +
+                "hello\r\n" +
+                "0\r\n" +
+                "Content-MD5: abc\r\n" +
+                "Content-Length: 5\r\n" +
+                "\r\n");
+
+        HttpRequest req = (HttpRequest) ch.readInbound();
+        assertTrue(req.isChunked());
+        HttpChunk chunk = (HttpChunk) ch.readInbound();
+        assertEquals("hello", chunk.getContent().toString(CharsetUtil.US_ASCII));
+        HttpChunkTrailer trailer = (HttpChunkTrailer) ch.readInbound();
+        assertTrue(trailer.isLast());
+        assertEquals("abc", trailer.getHeader("Content-MD5"));
+        assertNull(trailer.getHeader(HttpHeaders.Names.CONTENT_LENGTH));
+        assertNull(ch.readInbound());
+    }
+
+    @Test
+    public void testPipelinedRequests() {
+        EmbeddedByteChannel ch = new EmbeddedByteChannel(new HttpRequestDecoder());
+        ch.writeInbound(Unpooled.copiedBuffer(
+                "GET /a HTTP/1.1\r\n\r\nGET /b HTTP/1.1\nHost: b\n\nGET /c HTTP/1.1\r\n",
+                CharsetUtil.US_ASCII));
+
+        assertEquals("/a", ((HttpRequest) ch.readInbound()).getUri());
+        HttpRequest req = (HttpRequest) ch.readInbound();
+        assertEquals("/b", req.getUri());
+        assertEquals("b", req.getHeader(HttpHeaders.Names.HOST));
+        assertNull(ch.readInbound());
+
+        ch.writeInbound(Unpooled.copiedBuffer("\r\n", CharsetUtil.US_ASCII));
+        assertEquals("/c", ((HttpRequest) ch.readInbound()).getUri());
+    }
+
+    @Test
+    public void testResponseContentEndsWithConnection() {
+        EmbeddedByteChannel ch = new EmbeddedByteChannel(new HttpResponseDecoder());
+        writeByteByByte(ch, "HTTP/1.0 200 OK\r\n\r\nabc");
+        assertTrue(ch.finish());
+
+        HttpResponse res = (HttpResponse) ch.readInbound();
+        assertEquals(HttpResponseStatus.OK, res.getStatus());
+        assertTrue(res.isChunked());
+        StringBuilder content = new StringBuilder();
+        for (;;) {
+            HttpChunk chunk = (HttpChunk) ch.readInbound();
+            if (chunk.isLast()) {
+                break;
+            }
+            content.append(chunk.getContent().toString(CharsetUtil.US_ASCII));
+        }
+        assertEquals("abc", content.toString());
+        assertNull(ch.readInbound());
+    }
+
+    @Test
+    public void testTooLongHeader() {
+        EmbeddedByteChannel ch = new EmbeddedByteChannel(new HttpRequestDecoder(4096, 32, 8192));
+        try {
+            writeByteByByte(ch, "GET / HTTP/1.1\r\nX-Long: 0123456789012345678901234567890123456789\r\n");
+            fail();
+        } catch (TooLongFrameException e) {
+            // Expected
+        }
+    }
+
+    private static void writeByteByByte(EmbeddedByteChannel ch, String data) {
+        byte[] bytes = data.getBytes(CharsetUtil.US_ASCII);
+        for (byte b: bytes) {
+            ch.writeInbound(Unpooled.wrappedBuffer(new byte[] { b }));
+        }
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright 2012 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.http;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedByteChannel;
+import io.netty.util.CharsetUtil;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ * Measures how many typical browser requests {@link HttpRequestDecoder} decodes
+ * per second, once with each request arriving in a single read and once with
+ * the request trickling in a few bytes at a time, which is where a decoder
+ * that re-parses a partial line on every read falls behind.
+ * <p>
+ * Not run as part of the build.  Run it with
+ * {@code mvn test -Dtest=HttpRequestDecoderBenchmark}.
+ */
+public class HttpRequestDecoderBenchmark {
+
+    private static final long WARMUP_MILLIS = 1000;
+    private static final long MEASURE_MILLIS = 3000;
+
+    private static final byte[] REQUEST = (
+            "GET /index.html?q=netty&lang=en HTTP/1.1\r\n" +
+            "Host: www.example.com\r\n" +
+            "User-Agent: Mozilla/5.0 (X11; Linux x86_64; rv:16.0) Gecko/20100101 Firefox/16.0\r\n" +
+            "Accept: text/html,application/xhtml+xml,application/xml;q=0.9,*/*;q=0.8\r\n" +
+            "Accept-Language: en-US,en;q=0.5\r\n" +
+            "Accept-Encoding: gzip, deflate\r\n" +
+            "Connection: keep-alive\r\n" +
+            "Referer: http://www.example.com/\r\n" +
+            "Cookie: JSESSIONID=5A3B4C5D6E7F8A9B0C1D2E3F4A5B6C7D; theme=dark\r\n" +
+            "Cache-Control: max-age=0\r\n" +
+            "\r\n").getBytes(CharsetUtil.US_ASCII);
+
+    @Test
+    public void benchmark() {
+        run(REQUEST.length, WARMUP_MILLIS);
+        report("whole", run(REQUEST.length, MEASURE_MILLIS));
+        run(8, WARMUP_MILLIS);
+        report("8-byte reads", run(8, MEASURE_MILLIS));
+    }
+
+    private static void report(String mode, long requestsPerSecond) {
+        System.err.println(
+                HttpRequestDecoder.class.getSimpleName() + " (" + mode + "): " +
+                requestsPerSecond + " requests/s");
+    }
+
+    private static long run(int readSize, long millis) {
+        EmbeddedByteChannel ch = new EmbeddedByteChannel(new HttpRequestDecoder());
+        ByteBuf request = Unpooled.wrappedBuffer(REQUEST);
+        long requests = 0;
+        long startTime = System.nanoTime();
+        long deadline = startTime + TimeUnit.MILLISECONDS.toNanos(millis);
+        do {
+            for (int i = 0; i < 64; i ++) {
+                for (int j = 0; j < REQUEST.length; j += readSize) {
+                    ch.writeInbound(request.slice(j, Math.min(readSize, REQUEST.length - j)));
+                }
+                if (!(ch.readInbound() instanceof HttpRequest)) {
+                    throw new IllegalStateException("request not decoded");
+                }
+                requests ++;
+            }
+        } while (System.nanoTime() < deadline);
+        long elapsed = System.nanoTime() - startTime;
+        ch.finish();
+        return requests * 1000000000L / elapsed;
+    }
+}
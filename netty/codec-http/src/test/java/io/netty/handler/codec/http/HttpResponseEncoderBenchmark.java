@@ -0,0 +1,81 @@
+/*
+ * Copyright 2012 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.http;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedByteChannel;
+import io.netty.util.CharsetUtil;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ * Measures how many small keep-alive responses {@link HttpResponseEncoder}
+ * encodes per second.  Most of the work is writing the status line and the
+ * headers, which are the same for every response.
+ * <p>
+ * Not run as part of the build.  Run it with
+ * {@code mvn test -Dtest=HttpResponseEncoderBenchmark}.
+ */
+public class HttpResponseEncoderBenchmark {
+
+    private static final long WARMUP_MILLIS = 1000;
+    private static final long MEASURE_MILLIS = 3000;
+
+    private static final ByteBuf CONTENT =
+            Unpooled.copiedBuffer("Hello, World!", CharsetUtil.US_ASCII);
+
+    @Test
+    public void benchmark() {
+        run(WARMUP_MILLIS);
+        System.err.println(
+                HttpResponseEncoder.class.getSimpleName() + ": " + run(MEASURE_MILLIS) + " responses/s");
+    }
+
+    private static long run(long millis) {
+        EmbeddedByteChannel ch = new EmbeddedByteChannel(new HttpResponseEncoder());
+        HttpResponse res = new DefaultHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK);
+        res.setHeader(HttpHeaders.Names.CONTENT_TYPE, "text/plain; charset=UTF-8");
+        res.setHeader(HttpHeaders.Names.CONTENT_LENGTH, CONTENT.readableBytes());
+        res.setHeader(HttpHeaders.Names.CONNECTION, HttpHeaders.Values.KEEP_ALIVE);
+        res.setHeader(HttpHeaders.Names.CACHE_CONTROL, HttpHeaders.Values.NO_CACHE);
+        res.setHeader(HttpHeaders.Names.SERVER, "Netty");
+        res.setHeader(HttpHeaders.Names.DATE, "Thu, 01 Nov 2012 12:00:00 GMT");
+        res.setContent(CONTENT);
+
+        long responses = 0;
+        long startTime = System.nanoTime();
+        long deadline = startTime + TimeUnit.MILLISECONDS.toNanos(millis);
+        do {
+            for (int i = 0; i < 256; i ++) {
+                // The encoder releases the content of every response.
+                CONTENT.retain();
+                ch.writeOutbound(res);
+                ByteBuf out = ch.lastOutboundBuffer();
+                if (!out.readable()) {
+                    throw new IllegalStateException("response not encoded");
+                }
+                out.clear();
+                responses ++;
+            }
+        } while (System.nanoTime() < deadline);
+        long elapsed = System.nanoTime() - startTime;
+        ch.finish();
+        return responses * 1000000000L / elapsed;
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2012 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.http;
+
+import static org.junit.Assert.*;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufFactory;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedByteChannel;
+import io.netty.util.CharsetUtil;
+
+import java.nio.ByteOrder;
+
+import org.junit.Test;
+
+public class HttpResponseEncoderTest {
+
+    @Test
+    public void testEncodeResponse() {
+        EmbeddedByteChannel ch = new EmbeddedByteChannel(new HttpResponseEncoder());
+        HttpResponse res = new DefaultHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.NOT_FOUND);
+        res.setHeader(HttpHeaders.Names.CONNECTION, HttpHeaders.Values.KEEP_ALIVE);
+        res.setHeader("X-Custom", "caf\u00e9");
+        res.setHeader(HttpHeaders.Names.CONTENT_LENGTH, 2);
+        res.setContent(Unpooled.copiedBuffer("ok", CharsetUtil.US_ASCII));
+
+        assertTrue(ch.writeOutbound(res));
+        assertEquals(
+                "HTTP/1.1 404 Not Found\r\n" +
+                "Connection: keep-alive\r\n" +
+                "X-Custom: caf?\r\n" +
+                "Content-Length: 2\r\n" +
+                "\r\n" +
+                "ok", readOutbound(ch));
+    }
+
+    @Test
+    public void testEncodeChunkedResponse() {
+        EmbeddedByteChannel ch = new EmbeddedByteChannel(new HttpResponseEncoder());
+        HttpResponse res = new DefaultHttpResponse(HttpVersion.HTTP_1_0, new HttpResponseStatus(299, "Custom"));
+        res.setChunked(true);
+
+        assertTrue(ch.writeOutbound(res));
+        assertTrue(ch.writeOutbound(new DefaultHttpChunk(Unpooled.wrappedBuffer(new byte[26]))));
+        assertTrue(ch.writeOutbound(HttpChunk.LAST_CHUNK));
+        assertEquals(
+                "HTTP/1.0 299 Custom\r\n" +
+                "Transfer-Encoding: chunked\r\n" +
+                "\r\n" +
+                "1a\r\n" + new String(new char[26]) + "\r\n" +
+                "0\r\n\r\n", readOutbound(ch));
+    }
+
+    @Test
+    public void testReleaseContent() {
+        EmbeddedByteChannel ch = new EmbeddedByteChannel(new HttpResponseEncoder());
+        ByteBuf content = PooledByteBufFactory.getHeapInstance().getBuffer(ByteOrder.BIG_ENDIAN, 16);
+        content.writeBytes("ok".getBytes(CharsetUtil.US_ASCII));
+        HttpResponse res = new DefaultHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK);
+        res.setHeader(HttpHeaders.Names.CONTENT_LENGTH, 2);
+        res.setContent(content);
+
+        assertTrue(ch.writeOutbound(res));
+        assertEquals(0, content.refCnt());
+        assertTrue(readOutbound(ch).endsWith("\r\n\r\nok"));
+
+        res = new DefaultHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK);
+        res.setChunked(true);
+        ByteBuf chunkContent = PooledByteBufFactory.getHeapInstance().getBuffer(ByteOrder.BIG_ENDIAN, 16);
+        chunkContent.writeBytes("ok".getBytes(CharsetUtil.US_ASCII));
+        assertTrue(ch.writeOutbound(res));
+        assertTrue(ch.writeOutbound(new DefaultHttpChunk(chunkContent)));
+        assertEquals(0, chunkContent.refCnt());
+        assertTrue(readOutbound(ch).endsWith("\r\n2\r\nok\r\n"));
+    }
+
+    private static String readOutbound(EmbeddedByteChannel ch) {
+        ByteBuf buf = ch.readOutbound();
+        return buf.toString(CharsetUtil.ISO_8859_1);
+    }
+}
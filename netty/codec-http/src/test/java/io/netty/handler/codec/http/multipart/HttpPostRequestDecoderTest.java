@@ -0,0 +1,223 @@
+/*
+ * Copyright 2012 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.http.multipart;
+
+import static org.junit.Assert.*;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.CorruptedFrameException;
+import io.netty.handler.codec.TooLongFrameException;
+import io.netty.handler.codec.http.DefaultHttpChunk;
+import io.netty.handler.codec.http.DefaultHttpRequest;
+import io.netty.handler.codec.http.HttpChunk;
+import io.netty.handler.codec.http.HttpHeaders;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.util.CharsetUtil;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+public class HttpPostRequestDecoderTest {
+
+    private static final String BOUNDARY = "----xyz";
+
+    @Test
+    public void testUrlEncodedChunks() throws IOException {
+        HttpPostRequestDecoder decoder = new HttpPostRequestDecoder(
+                newRequest(HttpHeaders.Values.APPLICATION_X_WWW_FORM_URLENCODED, true));
+
+        List<HttpData> data = offer(decoder, "a=1&na", 3);
+        assertEquals(1, data.size());
+        assertAttribute("a", "1", data.get(0));
+
+        data = offer(decoder, "me=caf%C3%A9+au+lait&&flag", 2);
+        assertEquals(1, data.size());
+        assertAttribute("name", "caf\u00e9 au lait", data.get(0));
+
+        decoder.offer(HttpChunk.LAST_CHUNK);
+        assertTrue(decoder.isDone());
+        assertAttribute("flag", "", decoder.next());
+        assertFalse(decoder.hasNext());
+        decoder.destroy();
+    }
+
+    @Test
+    public void testUrlEncodedFieldTooLong() throws IOException {
+        HttpPostRequestDecoder decoder = new HttpPostRequestDecoder(
+                newRequest(HttpHeaders.Values.APPLICATION_X_WWW_FORM_URLENCODED, true),
+                HttpPostRequestDecoder.DEFAULT_SPILL_THRESHOLD, 8, null, CharsetUtil.UTF_8);
+
+        // The name and the value together may be as long as the limit.
+        List<HttpData> data = offer(decoder, "a=123456&b", 3);
+        assertEquals(1, data.size());
+        assertAttribute("a", "123456", data.get(0));
+
+        // The field is rejected before its end is found.
+        try {
+            offer(decoder, "=12345678", 3);
+            fail();
+        } catch (TooLongFrameException e) {
+            // Expected
+        }
+        assertFalse(decoder.hasNext());
+        decoder.destroy();
+    }
+
+    @Test
+    public void testMultipartSpilledToFile() throws IOException {
+        StringBuilder file = new StringBuilder();
+        for (int i = 0; i < 1000; i ++) {
+            file.append(i).append(',');
+        }
+        String body =
+                "preamble\r\n" +
+                "--" + BOUNDARY + "\r\n" +
+                "Content-Disposition: form-data; name=\"title\"\r\n" +
+                "\r\n" +
+                "caf\u00e9\r\n" +
+                "--" + BOUNDARY + "  \r\n" +
+                "Content-Disposition: form-data; name=\"file\"; filename=\"C:\\tmp\\a;b.txt\"\r\n" +
+                "Content-Type: text/plain\r\n" +
+                "\r\n" +
+                file + "\r\n" +
+                "--" + BOUNDARY + "--\r\n" +
+                "epilogue";
+
+        HttpPostRequestDecoder decoder = new HttpPostRequestDecoder(
+                newRequest(HttpHeaders.Values.MULTIPART_FORM_DATA + "; boundary=\"" + BOUNDARY + '"', true),
+                16, null, CharsetUtil.UTF_8);
+        List<HttpData> data = offer(decoder, body, 7);
+        decoder.offer(HttpChunk.LAST_CHUNK);
+        assertTrue(decoder.isDone());
+        assertEquals(2, data.size());
+
+        assertAttribute("title", "caf\u00e9", data.get(0));
+        assertTrue(data.get(0).isInMemory());
+
+        FileUpload upload = (FileUpload) data.get(1);
+        assertEquals("file", upload.getName());
+        assertEquals("C:\\tmp\\a;b.txt", upload.getFilename());
+        assertEquals("text/plain", upload.getContentType());
+        assertNull(upload.getContentTransferEncoding());
+        assertFalse(upload.isInMemory());
+        assertEquals(file.length(), upload.length());
+        assertEquals(file.toString(), upload.getString(CharsetUtil.US_ASCII));
+
+        File tempFile = upload.getFile();
+        assertTrue(tempFile.exists());
+        decoder.destroy();
+        assertFalse(tempFile.exists());
+    }
+
+    @Test
+    public void testPartialDelimiterInContent() throws IOException {
+        String value = "x\r\n--" + BOUNDARY.substring(0, 4) + "\r\n-" +
+                "\r\n--" + BOUNDARY.substring(0, BOUNDARY.length() - 1) + "X";
+        String body =
+                "--" + BOUNDARY + "\r\n" +
+                "Content-Disposition: form-data; name=a\r\n" +
+                "\r\n" +
+                value + "\r\n" +
+                "--" + BOUNDARY + "--";
+
+        for (int chunkSize = 1; chunkSize <= body.length(); chunkSize ++) {
+            HttpPostRequestDecoder decoder = new HttpPostRequestDecoder(
+                    newRequest(HttpHeaders.Values.MULTIPART_FORM_DATA + "; boundary=" + BOUNDARY, true));
+            List<HttpData> data = offer(decoder, body, chunkSize);
+            decoder.offer(HttpChunk.LAST_CHUNK);
+            assertEquals(1, data.size());
+            assertAttribute("a", value, data.get(0));
+        }
+    }
+
+    @Test
+    public void testTruncatedMultipart() throws IOException {
+        HttpPostRequestDecoder decoder = new HttpPostRequestDecoder(
+                newRequest(HttpHeaders.Values.MULTIPART_FORM_DATA + "; boundary=" + BOUNDARY, true));
+        offer(decoder,
+                "--" + BOUNDARY + "\r\n" +
+                "Content-Disposition: form-data; name=a\r\n" +
+                "\r\n" +
+                "value", 64);
+        try {
+            decoder.offer(HttpChunk.LAST_CHUNK);
+            fail();
+        } catch (CorruptedFrameException e) {
+            // Expected
+        }
+        assertFalse(decoder.hasNext());
+        decoder.destroy();
+    }
+
+    @Test
+    public void testRenameTo() throws IOException {
+        HttpRequest request = newRequest(HttpHeaders.Values.MULTIPART_FORM_DATA + "; boundary=" + BOUNDARY, false);
+        request.setContent(Unpooled.copiedBuffer(
+                "--" + BOUNDARY + "\r\n" +
+                "Content-Disposition: form-data; name=\"f\"; filename=\"a.txt\"\r\n" +
+                "\r\n" +
+                "hello\r\n" +
+                "--" + BOUNDARY + "--\r\n", CharsetUtil.US_ASCII));
+
+        HttpPostRequestDecoder decoder = new HttpPostRequestDecoder(request);
+        assertTrue(decoder.isDone());
+        HttpData upload = decoder.next();
+        assertTrue(upload.isInMemory());
+
+        File dest = File.createTempFile("upload-", ".txt");
+        try {
+            upload.renameTo(dest);
+            decoder.destroy();
+            assertTrue(dest.exists());
+            assertEquals(dest, upload.getFile());
+            assertEquals("hello", upload.getString(CharsetUtil.US_ASCII));
+        } finally {
+            dest.delete();
+        }
+    }
+
+    private static HttpRequest newRequest(String contentType, boolean chunked) {
+        HttpRequest request = new DefaultHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.POST, "/");
+        request.setHeader(HttpHeaders.Names.CONTENT_TYPE, contentType);
+        request.setChunked(chunked);
+        return request;
+    }
+
+    private static List<HttpData> offer(HttpPostRequestDecoder decoder, String body, int chunkSize)
+            throws IOException {
+        List<HttpData> data = new ArrayList<HttpData>();
+        ByteBuf buf = Unpooled.copiedBuffer(body, CharsetUtil.UTF_8);
+        while (buf.readable()) {
+            decoder.offer(new DefaultHttpChunk(buf.readBytes(Math.min(chunkSize, buf.readableBytes()))));
+            while (decoder.hasNext()) {
+                data.add(decoder.next());
+            }
+        }
+        return data;
+    }
+
+    private static void assertAttribute(String name, String value, HttpData data) throws IOException {
+        assertEquals(HttpData.Type.ATTRIBUTE, data.getType());
+        assertEquals(name, data.getName());
+        assertEquals(value, ((Attribute) data).getValue());
+    }
+}
@@ -21,6 +21,7 @@ import io.netty.channel.ChannelHandlerAdapter;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInboundByteHandler;
 import io.netty.channel.ChannelOutboundByteHandler;
+import io.netty.channel.FileRegion;
 
 public abstract class ByteToByteCodec
         extends ChannelHandlerAdapter
@@ -65,6 +66,11 @@ public abstract class ByteToByteCodec
         encoder.flush(ctx, future);
     }
 
+    @Override
+    public void sendFile(ChannelHandlerContext ctx, FileRegion region, ChannelFuture future) throws Exception {
+        encoder.sendFile(ctx, region, future);
+    }
+
     public abstract void encode(
             ChannelHandlerContext ctx,
             ByteBuf in, ByteBuf out) throws Exception;
@@ -22,6 +22,7 @@ import io.netty.channel.ChannelHandlerAdapter;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInboundByteHandler;
 import io.netty.channel.ChannelOutboundMessageHandler;
+import io.netty.channel.FileRegion;
 
 public abstract class ByteToMessageCodec<INBOUND_OUT, OUTBOUND_IN>
         extends ChannelHandlerAdapter
@@ -69,6 +70,11 @@ public abstract class ByteToMessageCodec<INBOUND_OUT, OUTBOUND_IN>
         encoder.flush(ctx, future);
     }
 
+    @Override
+    public void sendFile(ChannelHandlerContext ctx, FileRegion region, ChannelFuture future) throws Exception {
+        encoder.sendFile(ctx, region, future);
+    }
+
     public abstract void encode(
             ChannelHandlerContext ctx,
             OUTBOUND_IN msg, ByteBuf out) throws Exception;
@@ -20,6 +20,8 @@ import io.netty.buffer.MessageBuf;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelOutboundMessageHandlerAdapter;
+import io.netty.util.ReferenceCountUtil;
+import io.netty.util.ReferenceCounted;
 
 public abstract class MessageToByteEncoder<I> extends ChannelOutboundMessageHandlerAdapter<I> {
 
@@ -49,6 +51,13 @@ public abstract class MessageToByteEncoder<I> extends ChannelOutboundMessageHand
                 } else {
                     ctx.fireExceptionCaught(new EncoderException(t));
                 }
+            } finally {
+                // The message never reaches the tail of the pipeline, so release it here.
+                try {
+                    freeMessage(imsg);
+                } catch (Throwable t) {
+                    ctx.fireExceptionCaught(new EncoderException(t));
+                }
             }
         }
 
@@ -65,4 +74,15 @@ public abstract class MessageToByteEncoder<I> extends ChannelOutboundMessageHand
     }
 
     public abstract void encode(ChannelHandlerContext ctx, I msg, ByteBuf out) throws Exception;
+
+    /**
+     * Releases the specified message once it has been encoded, whether the
+     * encoding succeeded or not.  The default implementation releases the
+     * message if it is {@link ReferenceCounted}.  Override this method if the
+     * message holds a {@link ByteBuf} without being {@link ReferenceCounted}
+     * itself.
+     */
+    protected void freeMessage(I msg) throws Exception {
+        ReferenceCountUtil.release(msg);
+    }
 }
@@ -801,6 +801,31 @@ class ReplayingDecoderBuffer implements ByteBuf {
         throw new UnreplayableOperationException();
     }
 
+    @Override
+    public int refCnt() {
+        return buffer.refCnt();
+    }
+
+    @Override
+    public ByteBuf retain() {
+        throw new UnreplayableOperationException();
+    }
+
+    @Override
+    public ByteBuf retain(int increment) {
+        throw new UnreplayableOperationException();
+    }
+
+    @Override
+    public boolean release() {
+        throw new UnreplayableOperationException();
+    }
+
+    @Override
+    public boolean release(int decrement) {
+        throw new UnreplayableOperationException();
+    }
+
     private void checkIndex(int index) {
         if (index > buffer.writerIndex()) {
             throw REPLAY;
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2012 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec;
+
+import static org.junit.Assert.*;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.DefaultFileRegion;
+import io.netty.channel.FileRegion;
+import io.netty.channel.embedded.EmbeddedByteChannel;
+import io.netty.util.CharsetUtil;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.RandomAccessFile;
+
+import org.junit.Test;
+
+public class ByteToByteEncoderTest {
+
+    @Test
+    public void testSendFileThroughEncoder() throws Exception {
+        byte[] data = new byte[20000];
+        for (int i = 0; i < data.length; i ++) {
+            data[i] = (byte) ('a' + i % 26);
+        }
+        File file = File.createTempFile("netty-", ".tmp");
+        file.deleteOnExit();
+        FileOutputStream out = new FileOutputStream(file);
+        out.write(data);
+        out.close();
+
+        // The message encoder holds a message which has not been flushed yet.
+        EmbeddedByteChannel ch = new EmbeddedByteChannel(new UpperCaseEncoder(), new StringEncoder());
+        ch.pipeline().outboundMessageBuffer().add("head:");
+
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            FileRegion region = new DefaultFileRegion(raf.getChannel(), 0, data.length);
+            ChannelFuture future = ch.sendFile(region);
+            assertTrue(future.isSuccess());
+            assertEquals(0, region.refCnt());
+        } finally {
+            raf.close();
+        }
+
+        // The file has been transformed by the byte encoder, after the bytes written before it.
+        ByteBuf buf = ch.readOutbound();
+        assertEquals(
+                ("head:" + new String(data, CharsetUtil.US_ASCII)).toUpperCase(),
+                buf.toString(CharsetUtil.US_ASCII));
+        assertFalse(ch.finish());
+    }
+
+    private static final class UpperCaseEncoder extends ByteToByteEncoder {
+        @Override
+        public void encode(ChannelHandlerContext ctx, ByteBuf in, ByteBuf out) throws Exception {
+            while (in.readable()) {
+                byte b = in.readByte();
+                out.writeByte(b >= 'a' && b <= 'z' ? b - 'a' + 'A' : b);
+            }
+        }
+    }
+
+    private static final class StringEncoder extends MessageToByteEncoder<String> {
+        @Override
+        public void encode(ChannelHandlerContext ctx, String msg, ByteBuf out) throws Exception {
+            out.writeBytes(msg.getBytes(CharsetUtil.US_ASCII));
+        }
+    }
+}
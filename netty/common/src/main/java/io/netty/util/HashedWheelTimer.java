@@ -18,22 +18,18 @@ package io.netty.util;
 import io.netty.logging.InternalLogger;
 import io.netty.logging.InternalLoggerFactory;
 import io.netty.util.internal.DetectionUtil;
+import io.netty.util.internal.MpscLinkedQueue;
 import io.netty.util.internal.SharedResourceMisuseDetector;
 
-import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashSet;
-import java.util.Iterator;
-import java.util.List;
+import java.util.Queue;
 import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.atomic.AtomicInteger;
-import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 
 /**
  * 
@@ -70,7 +66,10 @@ import java.util.concurrent.locks.ReentrantReadWriteLock;
  * To put simply, a wheel is a hash table of {@link TimerTask}s whose hash
  * function is 'dead line of the task'.  The default number of ticks per wheel
  * (i.e. the size of the wheel) is 512.  You could specify a larger value
- * if you are going to schedule a lot of timeouts.
+ * if you are going to schedule a lot of timeouts.  A timeout which does not
+ * fit in the wheel is kept in a coarser wheel of the same size whose tick is
+ * as long as a whole round of the finer one, so a timeout is never visited
+ * more than once per wheel on its way to expiration, however long its delay.
  *
  * <h3>Do not create many instances.</h3>
  *
@@ -88,14 +87,15 @@ import java.util.concurrent.locks.ReentrantReadWriteLock;
  * and Hierarchical Timing Wheels: data structures to efficiently implement a
  * timer facility'</a>.  More comprehensive slides are located
  * <a href="http://www.cse.wustl.edu/~cdgill/courses/cs6874/TimingWheels.ppt">here</a>.
+ * <p>
+ * The wheels are owned by the worker thread.  {@link #newTimeout(TimerTask, long, TimeUnit)}
+ * and {@link Timeout#cancel()} only append the timeout to a lock-free queue,
+ * which the worker thread drains on the next tick.  Each bucket is an intrusive
+ * doubly-linked list, so a cancelled timeout is unlinked in constant time.
  */
-// netty中的Timer管理，使用了的Hashed time Wheel的模式，Time Wheel翻译为时间轮，是用于实现定时器timer的经典算法
-// 如果管理了较多的距离当前时间很长的timer（此时的linux，会在除了第一个数组外的其他数组里也要存放timer；
-// 而netty中，则会在每个bucket的链表中，存放较多的round周期大于0的timer），那么这个时候，linux平时轮询时，;
-// 处理的都是确实需要被触发的timer，而netty，很可能会碰到很多不要触发的timer，然后把这些timer的round周期减一，
-// 这种情况下，对于平时的轮询，linux是要优于netty；而当碰到大周期时，linux的耗时会超过netty。相当与在这种情形下，
-// netty是把对长时间timer的处理分散在每次轮询中，而linux则是把它集中在一个周期里来做。linux的这种做法，
-// 在一般的情景下应该是ok的，但是在realtime os的情况下，应该是有问题的
+// 分层时间轮（和linux内核的timer类似）：第0层的每个bucket对应一个tick，第n层的每个bucket对应第n-1层转一圈的时间。
+// 当低层转完一圈时，把高层当前bucket里的timer重新分配到低层（cascade），所以很长的timer也不需要每一圈都扫描一次。
+// 只有worker线程访问时间轮，其他线程通过无锁队列提交新的timer和取消的timer。
 public class HashedWheelTimer implements Timer {
 
     static final InternalLogger logger =
@@ -104,16 +104,20 @@ public class HashedWheelTimer implements Timer {
     private static final SharedResourceMisuseDetector misuseDetector =
         new SharedResourceMisuseDetector(HashedWheelTimer.class);
 
+    static final AtomicIntegerFieldUpdater<HashedWheelTimeout> STATE_UPDATER =
+        AtomicIntegerFieldUpdater.newUpdater(HashedWheelTimeout.class, "state");
+
     private final Worker worker = new Worker();
     final Thread workerThread;
     final AtomicBoolean shutdown = new AtomicBoolean();
 
-    private final long roundDuration;
-    final long tickDuration;
-    final Set<HashedWheelTimeout>[] wheel; // 轮子
+    final long tickDuration; // in nanoseconds
+    final HashedWheelBucket[][] wheel; // 轮子，每一层是一个轮子，按需创建
     final int mask;
-    final ReadWriteLock lock = new ReentrantReadWriteLock();
-    volatile int wheelCursor;
+    final int shift;
+    final Queue<HashedWheelTimeout> timeouts = new MpscLinkedQueue<HashedWheelTimeout>();
+    final Queue<HashedWheelTimeout> cancelledTimeouts = new MpscLinkedQueue<HashedWheelTimeout>();
+    volatile long startTime;
 
 	public static void main(String[] argv) {
 		
@@ -223,29 +227,27 @@ public class HashedWheelTimer implements Timer {
 
         // Normalize ticksPerWheel to power of two and initialize the wheel.
         wheel = createWheel(ticksPerWheel);
-        mask = wheel.length - 1;
+        mask = wheel[0].length - 1;
+        shift = Integer.numberOfTrailingZeros(wheel[0].length);
 
-        // Convert tickDuration to milliseconds.
-        this.tickDuration = tickDuration = unit.toMillis(tickDuration);
+        // Convert tickDuration to nanoseconds.
+        this.tickDuration = tickDuration = unit.toNanos(tickDuration);
 
         // Prevent overflow.
         if (tickDuration == Long.MAX_VALUE ||
-                tickDuration >= Long.MAX_VALUE / wheel.length) {
+                tickDuration >= Long.MAX_VALUE / wheel[0].length) {
             throw new IllegalArgumentException(
                     "tickDuration is too long: " +
-                    tickDuration +  ' ' + unit);
+                    tickDuration +  ' ' + TimeUnit.NANOSECONDS);
         }
 
-        roundDuration = tickDuration * wheel.length;// 每一轮的时间
-
         workerThread = threadFactory.newThread(worker);// 创建一个线程
 
         // Misuse check
         misuseDetector.increase();// 增加一个实例计数
     }
 
-    @SuppressWarnings("unchecked")
-    private static Set<HashedWheelTimeout>[] createWheel(int ticksPerWheel) {
+    private static HashedWheelBucket[][] createWheel(int ticksPerWheel) {
         if (ticksPerWheel <= 0) {
             throw new IllegalArgumentException(
                     "ticksPerWheel must be greater than 0: " + ticksPerWheel);
@@ -256,16 +258,25 @@ public class HashedWheelTimer implements Timer {
         }
 
         ticksPerWheel = normalizeTicksPerWheel(ticksPerWheel);
-        Set<HashedWheelTimeout>[] wheel = new Set[ticksPerWheel];
-        for (int i = 0; i < wheel.length; i ++) {
-            wheel[i] = Collections.newSetFromMap(
-                    new ConcurrentHashMap<HashedWheelTimeout, Boolean>(16, 0.95f, 4));
-        }
+
+        // Enough levels to cover any tick, which never exceeds 2^63 - 1.
+        int shift = Integer.numberOfTrailingZeros(ticksPerWheel);
+        HashedWheelBucket[][] wheel = new HashedWheelBucket[62 / shift + 1][];
+        wheel[0] = createBuckets(ticksPerWheel);
         return wheel;
     }
 
+    private static HashedWheelBucket[] createBuckets(int ticksPerWheel) {
+        HashedWheelBucket[] buckets = new HashedWheelBucket[ticksPerWheel];
+        for (int i = 0; i < buckets.length; i ++) {
+            buckets[i] = new HashedWheelBucket();
+        }
+        return buckets;
+    }
+
     private static int normalizeTicksPerWheel(int ticksPerWheel) {
-        int normalizedTicksPerWheel = 1;
+        // A wheel of a single tick cannot be arranged in levels.
+        int normalizedTicksPerWheel = 2;
         while (normalizedTicksPerWheel < ticksPerWheel) {
             normalizedTicksPerWheel <<= 1;
         }
@@ -285,6 +296,13 @@ public class HashedWheelTimer implements Timer {
         }
 
         if (!workerThread.isAlive()) {
+            // The deadlines are relative to startTime, so it must be set before
+            // any timeout is created.  0 means 'not started yet'.
+            long startTime = System.nanoTime();
+            if (startTime == 0) {
+                startTime = 1;
+            }
+            this.startTime = startTime;
             workerThread.start();
         }
     }
@@ -318,19 +336,32 @@ public class HashedWheelTimer implements Timer {
 
         misuseDetector.decrease();
 
+        // The worker thread has terminated, so it is safe to access the wheel here.
         Set<Timeout> unprocessedTimeouts = new HashSet<Timeout>();
-        for (Set<HashedWheelTimeout> bucket: wheel) {
-            unprocessedTimeouts.addAll(bucket);
-            bucket.clear();
+        for (HashedWheelBucket[] buckets: wheel) {
+            if (buckets == null) {
+                continue;
+            }
+            for (HashedWheelBucket bucket: buckets) {
+                bucket.clear(unprocessedTimeouts);
+            }
         }
+        for (;;) {
+            HashedWheelTimeout timeout = timeouts.poll();
+            if (timeout == null) {
+                break;
+            }
+            if (!timeout.isCancelled()) {
+                unprocessedTimeouts.add(timeout);
+            }
+        }
+        cancelledTimeouts.clear();
 
         return Collections.unmodifiableSet(unprocessedTimeouts);
     }
 
     @Override
     public Timeout newTimeout(TimerTask task, long delay, TimeUnit unit) {
-        final long currentTime = System.currentTimeMillis();
-
         if (task == null) {
             throw new NullPointerException("task");
         }
@@ -338,48 +369,28 @@ public class HashedWheelTimer implements Timer {
             throw new NullPointerException("unit");
         }
 
-        if (!workerThread.isAlive()) {
+        long startTime = this.startTime;
+        if (startTime == 0 || !workerThread.isAlive()) {
             start();
+            startTime = this.startTime;
         }
 
-        delay = unit.toMillis(delay);
-        HashedWheelTimeout timeout = new HashedWheelTimeout(task, currentTime + delay);
-        scheduleTimeout(timeout, delay);
-        return timeout;
-    }
-
-    void scheduleTimeout(HashedWheelTimeout timeout, long delay) {
-        // delay must be equal to or greater than tickDuration so that the
-        // worker thread never misses the timeout.
-        if (delay < tickDuration) { // 如果延迟的时间小于tickDuration
-            delay = tickDuration;
+        // The deadline is relative to startTime. Clamp it in case of an overflow.
+        long deadline = System.nanoTime() - startTime + unit.toNanos(delay);
+        if (delay > 0 && deadline < 0) {
+            deadline = Long.MAX_VALUE;
         }
 
-        // Prepare the required parameters to schedule the timeout object.
-        final long lastRoundDelay = delay % roundDuration;
-        final long lastTickDelay = delay % tickDuration;
-        final long relativeIndex =
-            lastRoundDelay / tickDuration + (lastTickDelay != 0? 1 : 0);
-
-        final long remainingRounds =
-            delay / roundDuration - (delay % roundDuration == 0? 1 : 0);
-
-        // Add the timeout to the wheel.
-        lock.readLock().lock();
-        try {
-            int stopIndex = (int) (wheelCursor + relativeIndex & mask);
-            timeout.stopIndex = stopIndex;
-            timeout.remainingRounds = remainingRounds;
-
-            wheel[stopIndex].add(timeout);
-        } finally {
-            lock.readLock().unlock();
-        }
+        HashedWheelTimeout timeout = new HashedWheelTimeout(task, deadline);
+        // 只是放入队列，由worker线程在下一个tick放进时间轮
+        timeouts.add(timeout);
+        return timeout;
     }
+
     // 工作者
     private final class Worker implements Runnable {
 
-        private long startTime;
+        // The tick being processed. Only the worker thread accesses the wheel.
         private long tick;
 
         Worker() {
@@ -387,88 +398,104 @@ public class HashedWheelTimer implements Timer {
 
         @Override
         public void run() {
-            List<HashedWheelTimeout> expiredTimeouts =
-                new ArrayList<HashedWheelTimeout>();// 过期的TimeOuts
-
-            startTime = System.currentTimeMillis();
-            tick = 1;
-
             while (!shutdown.get()) {// 只要不关闭
-                final long deadline = waitForNextTick();// 等待下一个tick
-                if (deadline > 0) {
-                    fetchExpiredTimeouts(expiredTimeouts, deadline);// 获取已经过期的Timeouts
-                    notifyExpiredTimeouts(expiredTimeouts);// 通知已经过期的Timeouts
+                if (!waitForNextTick()) {// 等待下一个tick
+                    break;
                 }
+
+                cascadeTimeouts();// 高层轮子的timer重新分配到低层
+                transferTimeouts();// 新的timer放进时间轮
+                removeCancelledTimeouts();// 从时间轮中删除取消的timer
+                expireTimeouts();// 通知已经过期的Timeouts
+                tick ++;
             }
         }
 
-        private void fetchExpiredTimeouts(
-                List<HashedWheelTimeout> expiredTimeouts, long deadline) {
+        private void cascadeTimeouts() {
+            final long tick = this.tick;
+            final HashedWheelBucket[][] wheel = HashedWheelTimer.this.wheel;
+            // Start from the highest level so that a timeout can fall down more than one level.
+            for (int level = wheel.length - 1; level > 0; level --) {
+                int levelShift = level * shift;
+                if (wheel[level] == null || (tick & (1L << levelShift) - 1) != 0) {
+                    continue;
+                }
 
-            // Find the expired timeouts and decrease the round counter
-            // if necessary.  Note that we don't send the notification
-            // immediately to make sure the listeners are called without
-            // an exclusive lock.
-            lock.writeLock().lock();
-            try {
-                int newWheelCursor = wheelCursor = wheelCursor + 1 & mask;
-                fetchExpiredTimeouts(expiredTimeouts, wheel[newWheelCursor].iterator(), deadline);
-            } finally {
-                lock.writeLock().unlock();
+                HashedWheelBucket bucket = wheel[level][(int) (tick >>> levelShift) & mask];
+                for (;;) {
+                    HashedWheelTimeout timeout = bucket.poll();
+                    if (timeout == null) {
+                        break;
+                    }
+                    schedule(timeout);
+                }
             }
         }
 
-        private void fetchExpiredTimeouts(
-                List<HashedWheelTimeout> expiredTimeouts,
-                Iterator<HashedWheelTimeout> i, long deadline) {
-
-            List<HashedWheelTimeout> slipped = null;
-            while (i.hasNext()) {// 从cursor开始遍历wheel
-                HashedWheelTimeout timeout = i.next();
-                if (timeout.remainingRounds <= 0) {// 如果剩下的轮数小于0
-                    i.remove();// 删除自己
-                    if (timeout.deadline <= deadline) {
-                        expiredTimeouts.add(timeout);// 如果当前的timeout小于deadline，就添加进去
-                    } else {
-                        // Handle the case where the timeout is put into a wrong
-                        // place, usually one tick earlier.  For now, just add
-                        // it to a temporary list - we will reschedule it in a
-                        // separate loop.
-                        if (slipped == null) {
-                            slipped = new ArrayList<HashedWheelTimer.HashedWheelTimeout>();
-                        }
-                        slipped.add(timeout);
-                    }
-                } else {
-                    timeout.remainingRounds --;// 如果remaining round还没跑完则进一步减1
+        private void transferTimeouts() {
+            for (;;) {
+                HashedWheelTimeout timeout = timeouts.poll();
+                if (timeout == null) {
+                    break;
                 }
+                if (timeout.isCancelled()) {
+                    // Cancelled before it reached the wheel.
+                    continue;
+                }
+
+                // The timeout expires at the end of the first tick past its deadline.
+                long deadline = timeout.deadline;
+                long expireTick = deadline / tickDuration + (deadline % tickDuration != 0? 1 : 0) - 1;
+                timeout.expireTick = Math.max(expireTick, tick);
+                schedule(timeout);
             }
+        }
 
-            // Reschedule the slipped timeouts.
-            if (slipped != null) {
-                for (HashedWheelTimeout timeout: slipped) {
-                    scheduleTimeout(timeout, timeout.deadline - deadline);// 启动timeout
+        private void removeCancelledTimeouts() {
+            for (;;) {
+                HashedWheelTimeout timeout = cancelledTimeouts.poll();
+                if (timeout == null) {
+                    break;
+                }
+                HashedWheelBucket bucket = timeout.bucket;
+                if (bucket != null) {
+                    bucket.remove(timeout);
                 }
             }
         }
 
-        private void notifyExpiredTimeouts(
-                List<HashedWheelTimeout> expiredTimeouts) {
-            // Notify the expired timeouts.
-            for (int i = expiredTimeouts.size() - 1; i >= 0; i --) {
-                expiredTimeouts.get(i).expire();
+        private void expireTimeouts() {
+            HashedWheelBucket bucket = wheel[0][(int) tick & mask];
+            for (;;) {
+                HashedWheelTimeout timeout = bucket.poll();
+                if (timeout == null) {
+                    break;
+                }
+                timeout.expire();
             }
+        }
 
-            // Clean up the temporary list.
-            expiredTimeouts.clear();
+        private void schedule(HashedWheelTimeout timeout) {
+            final long expireTick = timeout.expireTick;
+
+            // The highest bit where the expiration tick differs from the current
+            // tick decides the level; lower levels turn faster.
+            long diff = expireTick ^ tick;
+            int level = diff == 0? 0 : (63 - Long.numberOfLeadingZeros(diff)) / shift;
+            HashedWheelBucket[] buckets = wheel[level];
+            if (buckets == null) {
+                buckets = wheel[level] = createBuckets(mask + 1);
+            }
+            buckets[(int) (expireTick >>> level * shift) & mask].add(timeout);
         }
 
-        private long waitForNextTick() {
-            long deadline = startTime + tickDuration * tick;
+        private boolean waitForNextTick() {
+            // The current tick ends at this time, relative to startTime.
+            final long deadline = tickDuration * (tick + 1);
 
             for (;;) {
-                final long currentTime = System.currentTimeMillis();
-                long sleepTime = tickDuration * tick - (currentTime - startTime);
+                final long currentTime = System.nanoTime() - startTime;
+                long sleepTime = (deadline - currentTime + 999999) / 1000000;
 
                 // Check if we run on windows, as if thats the case we will need
                 // to round the sleepTime as workaround for a bug that only affect
@@ -480,35 +507,97 @@ public class HashedWheelTimer implements Timer {
                 }
 
                 if (sleepTime <= 0) {
-                    break;
+                    return true;
                 }
 
                 try {
                     Thread.sleep(sleepTime);
                 } catch (InterruptedException e) {
                     if (shutdown.get()) {
-                        return -1;
+                        return false;
                     }
                 }
             }
+        }
+    }
+
+    /**
+     * A doubly-linked list of {@link HashedWheelTimeout}s, accessed only by the
+     * worker thread.
+     */
+    static final class HashedWheelBucket {
+
+        private HashedWheelTimeout head;
+        private HashedWheelTimeout tail;
+
+        HashedWheelBucket() {
+        }
+
+        void add(HashedWheelTimeout timeout) {
+            timeout.bucket = this;
+            if (head == null) {
+                head = tail = timeout;
+            } else {
+                tail.next = timeout;
+                timeout.prev = tail;
+                tail = timeout;
+            }
+        }
+
+        void remove(HashedWheelTimeout timeout) {
+            HashedWheelTimeout next = timeout.next;
+            if (timeout.prev != null) {
+                timeout.prev.next = next;
+            } else {
+                head = next;
+            }
+            if (next != null) {
+                next.prev = timeout.prev;
+            } else {
+                tail = timeout.prev;
+            }
 
-            // Increase the tick.
-            tick ++;
-            return deadline;
+            timeout.prev = null;
+            timeout.next = null;
+            timeout.bucket = null;
+        }
+
+        HashedWheelTimeout poll() {
+            HashedWheelTimeout head = this.head;
+            if (head != null) {
+                remove(head);
+            }
+            return head;
+        }
+
+        void clear(Set<Timeout> unprocessedTimeouts) {
+            for (;;) {
+                HashedWheelTimeout timeout = poll();
+                if (timeout == null) {
+                    return;
+                }
+                if (!timeout.isCancelled()) {
+                    unprocessedTimeouts.add(timeout);
+                }
+            }
         }
     }
 
-    private final class HashedWheelTimeout implements Timeout {
+    final class HashedWheelTimeout implements Timeout {
 
         private static final int ST_INIT = 0;
         private static final int ST_CANCELLED = 1;
         private static final int ST_EXPIRED = 2;
 
         private final TimerTask task;
-        final long deadline;
-        volatile int stopIndex;
-        volatile long remainingRounds;
-        private final AtomicInteger state = new AtomicInteger(ST_INIT);
+        final long deadline; // relative to startTime, in nanoseconds
+        volatile int state = ST_INIT;
+
+        // Accessed only by the worker thread.
+        long expireTick;
+        HashedWheelTimeout prev;
+        HashedWheelTimeout next;
+        HashedWheelBucket bucket;
 
         HashedWheelTimeout(TimerTask task, long deadline) {
             this.task = task;
@@ -527,26 +616,27 @@ public class HashedWheelTimer implements Timer {
 
         @Override
         public boolean cancel() {
-            if (!state.compareAndSet(ST_INIT, ST_CANCELLED)) {
+            if (!STATE_UPDATER.compareAndSet(this, ST_INIT, ST_CANCELLED)) {
                 return false;
             }
 
-            wheel[stopIndex].remove(this);
+            // 由worker线程从bucket中删除
+            cancelledTimeouts.add(this);
             return true;
         }
 
         @Override
         public boolean isCancelled() {
-            return state.get() == ST_CANCELLED;
+            return state == ST_CANCELLED;
         }
 
         @Override
         public boolean isExpired() {
-            return state.get() != ST_INIT;
+            return state != ST_INIT;
         }
 
         public void expire() {
-            if (!state.compareAndSet(ST_INIT, ST_EXPIRED)) {
+            if (!STATE_UPDATER.compareAndSet(this, ST_INIT, ST_EXPIRED)) {
                 return;
             }
 
@@ -564,8 +654,8 @@ public class HashedWheelTimer implements Timer {
 
         @Override
         public String toString() {
-            long currentTime = System.currentTimeMillis();
-            long remaining = deadline - currentTime;
+            long currentTime = System.nanoTime() - startTime;
+            long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - currentTime);
 
             StringBuilder buf = new StringBuilder(192);
             buf.append(getClass().getSimpleName());
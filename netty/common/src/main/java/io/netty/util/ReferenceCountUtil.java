@@ -0,0 +1,52 @@
+/*
+ * Copyright 2012 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.util;
+
+/**
+ * Collection of method to handle objects that may implement
+ * {@link ReferenceCounted}.
+ */
+public final class ReferenceCountUtil {
+
+    /**
+     * Try to call {@link ReferenceCounted#retain()} if the specified message
+     * implements {@link ReferenceCounted}.  If the specified message doesn't
+     * implement {@link ReferenceCounted}, this method does nothing.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> T retain(T msg) {
+        if (msg instanceof ReferenceCounted) {
+            return (T) ((ReferenceCounted) msg).retain();
+        }
+        return msg;
+    }
+
+    /**
+     * Try to call {@link ReferenceCounted#release()} if the specified message
+     * implements {@link ReferenceCounted}.  If the specified message doesn't
+     * implement {@link ReferenceCounted}, this method does nothing.
+     */
+    public static boolean release(Object msg) {
+        if (msg instanceof ReferenceCounted) {
+            return ((ReferenceCounted) msg).release();
+        }
+        return false;
+    }
+
+    private ReferenceCountUtil() {
+        // Unused
+    }
+}
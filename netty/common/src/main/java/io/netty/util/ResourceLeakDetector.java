@@ -0,0 +1,255 @@
+/*
+ * Copyright 2012 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.util;
+
+import io.netty.logging.InternalLogger;
+import io.netty.logging.InternalLoggerFactory;
+import io.netty.util.internal.StringUtil;
+import io.netty.util.internal.SystemPropertyUtil;
+
+import java.lang.ref.PhantomReference;
+import java.lang.ref.ReferenceQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Detects the resources which are garbage-collected without being
+ * deallocated explicitly, such as a direct or pooled buffer which was never
+ * released.
+ * <p>
+ * Tracking a resource costs a stack trace, so only one out of every
+ * {@linkplain #getSamplingInterval() sampling interval} resources is tracked.
+ * The sampling interval is {@code 0} (disabled) by default, and can be
+ * changed with the {@code io.netty.leakDetection.samplingInterval} system
+ * property or {@link #setSamplingInterval(int)}.  When disabled,
+ * {@link #open(Object)} returns {@code null} immediately.
+ * <p>
+ * A leak is reported via {@link InternalLogger} together with the stack trace
+ * of the allocation of the leaked resource.  The same allocation stack trace
+ * is reported only once.
+ *
+ * @param <T> the type of the tracked resources
+ */
+public class ResourceLeakDetector<T> {
+
+    private static final InternalLogger logger =
+            InternalLoggerFactory.getInstance(ResourceLeakDetector.class);
+
+    private static final String DETECTOR_CLASS_NAME = ResourceLeakDetector.class.getName();
+    private static final String PROP_SAMPLING_INTERVAL = "io.netty.leakDetection.samplingInterval";
+
+    private static volatile int samplingInterval;
+
+    static {
+        int interval = SystemPropertyUtil.get(PROP_SAMPLING_INTERVAL, 0);
+        if (interval < 0) {
+            interval = 0;
+        }
+        samplingInterval = interval;
+
+        if (interval > 0 && logger.isDebugEnabled()) {
+            logger.debug("-D" + PROP_SAMPLING_INTERVAL + ": " + interval);
+        }
+    }
+
+    /**
+     * Returns the sampling interval.  One out of every {@code interval}
+     * resources is tracked.  {@code 0} means the leak detection is disabled.
+     */
+    public static int getSamplingInterval() {
+        return samplingInterval;
+    }
+
+    /**
+     * Sets the sampling interval.  {@code 1} tracks every resource, and
+     * {@code 0} disables the leak detection.
+     */
+    public static void setSamplingInterval(int interval) {
+        if (interval < 0) {
+            throw new IllegalArgumentException("interval: " + interval + " (expected: 0+)");
+        }
+        samplingInterval = interval;
+    }
+
+    /**
+     * Returns {@code true} if and only if the leak detection is enabled.
+     */
+    public static boolean isEnabled() {
+        return samplingInterval > 0;
+    }
+
+    private final String resourceType;
+    private final ReferenceQueue<Object> refQueue = new ReferenceQueue<Object>();
+    private final ConcurrentMap<String, Boolean> reportedLeaks = new ConcurrentHashMap<String, Boolean>();
+
+    // The open leaks are linked to keep them strongly reachable until closed.
+    private final DefaultResourceLeak head = new DefaultResourceLeak();
+    private final DefaultResourceLeak tail = new DefaultResourceLeak();
+    private long active;
+
+    private int sampleCnt;
+
+    /**
+     * Creates a new detector for the resources of the specified type.
+     */
+    public ResourceLeakDetector(Class<?> resourceType) {
+        this(resourceType == null? null : resourceType.getSimpleName());
+    }
+
+    /**
+     * Creates a new detector for the resources of the specified type name.
+     */
+    public ResourceLeakDetector(String resourceType) {
+        if (resourceType == null) {
+            throw new NullPointerException("resourceType");
+        }
+        this.resourceType = resourceType;
+        head.next = tail;
+        tail.prev = head;
+    }
+
+    /**
+     * Starts tracking the specified resource if it is sampled, and reports
+     * the leaks detected so far.
+     *
+     * @return the {@link ResourceLeak} whose {@link ResourceLeak#close()} must
+     *         be called when the resource is deallocated, or {@code null} if
+     *         the resource is not tracked
+     */
+    public final ResourceLeak open(T obj) {
+        int interval = samplingInterval;
+        if (interval <= 0) {
+            return null;
+        }
+
+        // Not thread-safe, but a lost update merely changes the sampling slightly.
+        if (++ sampleCnt < interval) {
+            return null;
+        }
+        sampleCnt = 0;
+
+        pollLeaks();
+        return new DefaultResourceLeak(obj);
+    }
+
+    /**
+     * Returns the number of the resources which are being tracked.
+     */
+    public final long activeCount() {
+        synchronized (head) {
+            return active;
+        }
+    }
+
+    private void pollLeaks() {
+        for (;;) {
+            DefaultResourceLeak ref = (DefaultResourceLeak) refQueue.poll();
+            if (ref == null) {
+                break;
+            }
+
+            ref.clear();
+            if (!ref.close()) {
+                continue;
+            }
+
+            String records = ref.creationRecord;
+            if (reportedLeaks.putIfAbsent(records, Boolean.TRUE) == null) {
+                reportLeak(resourceType, records);
+            }
+        }
+    }
+
+    /**
+     * Invoked when a leak of a tracked resource has been detected.  The
+     * default implementation logs it at the {@code ERROR} level.
+     *
+     * @param resourceType the type of the leaked resource
+     * @param records      the stack trace of the allocation of the resource
+     */
+    protected void reportLeak(String resourceType, String records) {
+        if (logger.isErrorEnabled()) {
+            logger.error(
+                    "LEAK: " + resourceType + " was garbage-collected without being released.  " +
+                    "Allocated at:" + StringUtil.NEWLINE + records);
+        }
+    }
+
+    private final class DefaultResourceLeak extends PhantomReference<Object> implements ResourceLeak {
+
+        private final String creationRecord;
+        private DefaultResourceLeak prev;
+        private DefaultResourceLeak next;
+        private boolean freed;
+
+        DefaultResourceLeak() {
+            super(null, null);
+            creationRecord = null;
+            freed = true;
+        }
+
+        DefaultResourceLeak(Object referent) {
+            super(referent, refQueue);
+            creationRecord = newRecord();
+
+            synchronized (head) {
+                prev = head;
+                next = head.next;
+                head.next.prev = this;
+                head.next = this;
+                active ++;
+            }
+        }
+
+        @Override
+        public boolean close() {
+            synchronized (head) {
+                if (freed) {
+                    return false;
+                }
+                freed = true;
+                prev.next = next;
+                next.prev = prev;
+                prev = null;
+                next = null;
+                active --;
+                return true;
+            }
+        }
+    }
+
+    private static String newRecord() {
+        StackTraceElement[] array = new Throwable().getStackTrace();
+        StringBuilder buf = new StringBuilder(4096);
+        boolean recordStarted = false;
+        for (StackTraceElement e: array) {
+            if (!recordStarted) {
+                // Skip the frames of the detector itself.
+                String className = e.getClassName();
+                if (className.equals(DETECTOR_CLASS_NAME) ||
+                    className.startsWith(DETECTOR_CLASS_NAME + '$')) {
+                    continue;
+                }
+                recordStarted = true;
+            }
+
+            buf.append('\t');
+            buf.append(e);
+            buf.append(StringUtil.NEWLINE);
+        }
+        return buf.toString();
+    }
+}
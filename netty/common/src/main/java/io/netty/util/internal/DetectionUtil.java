@@ -35,11 +35,13 @@ public final class DetectionUtil {
     private static final int JAVA_VERSION = javaVersion0();
     private static final boolean HAS_UNSAFE = hasUnsafe(AtomicInteger.class.getClassLoader());
     private static final boolean IS_WINDOWS;
+    private static final boolean IS_LINUX;
 
     static {
         String os = System.getProperty("os.name").toLowerCase();
         // windows
         IS_WINDOWS = os.contains("win");
+        IS_LINUX = os.contains("linux");
     }
 
     /**
@@ -49,6 +51,13 @@ public final class DetectionUtil {
         return IS_WINDOWS;
     }
 
+    /**
+     * Return <code>true</code> if the JVM is running on Linux
+     */
+    public static boolean isLinux() {
+        return IS_LINUX;
+    }
+
     public static boolean hasUnsafe() {
         return HAS_UNSAFE;
     }
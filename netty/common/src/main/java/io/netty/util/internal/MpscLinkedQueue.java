@@ -0,0 +1,162 @@
+/*
+ * Copyright 2012 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.util.internal;
+
+import java.util.AbstractQueue;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A lock-free, unbounded, non-blocking multi-producer single-consumer queue
+ * based on Dmitry Vyukov's MPSC node-based queue.
+ * <p>
+ * Any thread can {@link #offer(Object)} an element with a single atomic swap,
+ * but only one thread at a time may consume the queue, which means
+ * {@link #poll()}, {@link #peek()}, {@link #isEmpty()}, {@link #size()} and
+ * {@link #iterator()} must be called by the consumer thread only.  Removing an
+ * arbitrary element is not supported.
+ * <p>
+ * Unlike {@link java.util.concurrent.BlockingQueue}, this queue never blocks,
+ * so the consumer must be woken up by other means when an element is added,
+ * such as {@link java.nio.channels.Selector#wakeup()}.
+ */
+public final class MpscLinkedQueue<E> extends AbstractQueue<E> {
+
+    // The consumer reads from head, which is always a consumed (stub) node.
+    private Node<E> head;
+    // The producers swap the tail and then link the previous tail to the new node.
+    private final AtomicReference<Node<E>> tail;
+
+    public MpscLinkedQueue() {
+        Node<E> stub = new Node<E>(null);
+        head = stub;
+        tail = new AtomicReference<Node<E>>(stub);
+    }
+
+    @Override
+    public boolean offer(E value) {
+        if (value == null) {
+            throw new NullPointerException("value");
+        }
+
+        Node<E> newTail = new Node<E>(value);
+        Node<E> oldTail = tail.getAndSet(newTail);
+        // Until this write, the consumer sees a non-empty queue without a next node.
+        oldTail.next = newTail;
+        return true;
+    }
+
+    @Override
+    public E poll() {
+        Node<E> next = nextNode();
+        if (next == null) {
+            return null;
+        }
+
+        E value = next.value;
+        // The node becomes the new stub; release the value for GC.
+        next.value = null;
+        head = next;
+        return value;
+    }
+
+    @Override
+    public E peek() {
+        Node<E> next = nextNode();
+        if (next == null) {
+            return null;
+        }
+        return next.value;
+    }
+
+    /**
+     * Unsupported.
+     *
+     * @throws UnsupportedOperationException always
+     */
+    @Override
+    public boolean remove(Object o) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return head == tail.get();
+    }
+
+    /**
+     * Returns the number of the elements by traversing the queue.  This is an
+     * O(n) operation.
+     */
+    @Override
+    public int size() {
+        int size = 0;
+        for (Node<E> n = nextNode(); n != null; n = n.next) {
+            size ++;
+        }
+        return size;
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        return new Iterator<E>() {
+            private Node<E> next = nextNode();
+
+            @Override
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            @Override
+            public E next() {
+                Node<E> n = next;
+                if (n == null) {
+                    throw new NoSuchElementException();
+                }
+                next = n.next;
+                return n.value;
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    private Node<E> nextNode() {
+        Node<E> head = this.head;
+        Node<E> next = head.next;
+        if (next == null && head != tail.get()) {
+            // A producer has swapped the tail but not linked the node yet.
+            do {
+                Thread.yield();
+                next = head.next;
+            } while (next == null);
+        }
+        return next;
+    }
+
+    private static final class Node<E> {
+        E value;
+        volatile Node<E> next;
+
+        Node(E value) {
+            this.value = value;
+        }
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2012 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.util;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+/**
+ * Measures the throughput of {@link HashedWheelTimer#newTimeout(TimerTask, long, TimeUnit)}
+ * followed by {@link Timeout#cancel()} from many threads, which is what an
+ * idle state handler does for every I/O event of every connection.  The
+ * timeouts are long enough not to expire during the run, so the worker thread
+ * keeps many of them in the wheel while the producers contend.
+ * <p>
+ * Not run as part of the build.  Run it with
+ * {@code mvn test -Dtest=HashedWheelTimerBenchmark}.
+ */
+public class HashedWheelTimerBenchmark {
+
+    private static final int THREADS = 8;
+    private static final int LIVE_TIMEOUTS_PER_THREAD = 16384;
+    private static final long WARMUP_MILLIS = 1000;
+    private static final long MEASURE_MILLIS = 3000;
+
+    private static final TimerTask NOOP = new TimerTask() {
+        @Override
+        public void run(Timeout timeout) {
+            // NOOP
+        }
+    };
+
+    @Test
+    public void benchmark() throws Exception {
+        HashedWheelTimer timer = new HashedWheelTimer(10, TimeUnit.MILLISECONDS);
+        try {
+            run(timer, WARMUP_MILLIS);
+            long opsPerSecond = run(timer, MEASURE_MILLIS);
+            System.err.println(
+                    HashedWheelTimer.class.getSimpleName() + ": " + opsPerSecond + " newTimeout+cancel/s (" +
+                    THREADS + " threads)");
+        } finally {
+            timer.stop();
+        }
+    }
+
+    private static long run(final Timer timer, final long millis) throws Exception {
+        final AtomicLong ops = new AtomicLong();
+        final CountDownLatch startLatch = new CountDownLatch(1);
+        Thread[] threads = new Thread[THREADS];
+        for (int i = 0; i < threads.length; i ++) {
+            threads[i] = new Thread() {
+                @Override
+                public void run() {
+                    // A ring of live timeouts, each replaced as if the connection became active.
+                    Timeout[] live = new Timeout[LIVE_TIMEOUTS_PER_THREAD];
+                    long n = 0;
+                    try {
+                        startLatch.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+
+                    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis);
+                    do {
+                        for (int j = 0; j < 256; j ++) {
+                            int idx = (int) (n ++ % live.length);
+                            if (live[idx] != null) {
+                                live[idx].cancel();
+                            }
+                            // Spread the deadlines over many rounds of the wheel.
+                            live[idx] = timer.newTimeout(NOOP, 30000 + idx, TimeUnit.MILLISECONDS);
+                        }
+                    } while (System.nanoTime() < deadline);
+
+                    for (Timeout t: live) {
+                        if (t != null) {
+                            t.cancel();
+                        }
+                    }
+                    ops.addAndGet(n);
+                }
+            };
+            threads[i].start();
+        }
+
+        long startTime = System.nanoTime();
+        startLatch.countDown();
+        for (Thread t: threads) {
+            t.join();
+        }
+        long elapsed = System.nanoTime() - startTime;
+        return ops.get() * 1000000000L / elapsed;
+    }
+}
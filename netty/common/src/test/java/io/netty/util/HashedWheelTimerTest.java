@@ -0,0 +1,158 @@
+/*
+ * Copyright 2012 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.util;
+
+import static org.junit.Assert.*;
+
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Test;
+
+public class HashedWheelTimerTest {
+
+    @Test
+    public void testExpireInDeadlineOrder() throws Exception {
+        HashedWheelTimer timer = new HashedWheelTimer(10, TimeUnit.MILLISECONDS);
+        try {
+            final BlockingQueue<long[]> expired = new LinkedBlockingQueue<long[]>();
+            final long startTime = System.nanoTime();
+            for (long delay: new long[] { 300, 100, 200 }) {
+                final long d = delay;
+                timer.newTimeout(new TimerTask() {
+                    @Override
+                    public void run(Timeout timeout) {
+                        expired.add(new long[] { d, System.nanoTime() - startTime });
+                    }
+                }, d, TimeUnit.MILLISECONDS);
+            }
+
+            for (long delay: new long[] { 100, 200, 300 }) {
+                long[] e = expired.poll(5, TimeUnit.SECONDS);
+                assertNotNull(e);
+                assertEquals(delay, e[0]);
+                // Never expires before its deadline.
+                assertTrue(e[1] >= TimeUnit.MILLISECONDS.toNanos(delay));
+            }
+        } finally {
+            timer.stop();
+        }
+    }
+
+    @Test
+    public void testCancel() throws Exception {
+        HashedWheelTimer timer = new HashedWheelTimer(10, TimeUnit.MILLISECONDS);
+        try {
+            final CountDownLatch latch = new CountDownLatch(2);
+            final AtomicBoolean cancelledRun = new AtomicBoolean();
+            Timeout cancelled = timer.newTimeout(new TimerTask() {
+                @Override
+                public void run(Timeout timeout) {
+                    cancelledRun.set(true);
+                }
+            }, 100, TimeUnit.MILLISECONDS);
+            // Scheduled with the same deadline and kept in the same bucket.
+            Timeout other = timer.newTimeout(new TimerTask() {
+                @Override
+                public void run(Timeout timeout) {
+                    latch.countDown();
+                }
+            }, 100, TimeUnit.MILLISECONDS);
+
+            assertTrue(cancelled.cancel());
+            assertTrue(cancelled.isCancelled());
+            assertTrue(cancelled.isExpired());
+            assertFalse(cancelled.cancel());
+
+            timer.newTimeout(new TimerTask() {
+                @Override
+                public void run(Timeout timeout) {
+                    latch.countDown();
+                }
+            }, 300, TimeUnit.MILLISECONDS);
+
+            assertTrue(latch.await(5, TimeUnit.SECONDS));
+            assertFalse(cancelledRun.get());
+            assertTrue(other.isExpired());
+            assertFalse(other.isCancelled());
+            assertFalse(other.cancel());
+        } finally {
+            timer.stop();
+        }
+    }
+
+    @Test
+    public void testLongDelays() throws Exception {
+        // A tiny wheel, so that most timeouts are cascaded down from several levels.
+        HashedWheelTimer timer = new HashedWheelTimer(1, TimeUnit.MILLISECONDS, 4);
+        try {
+            final BlockingQueue<Integer> expired = new LinkedBlockingQueue<Integer>();
+            final int count = 50;
+            for (int i = count - 1; i >= 0; i --) {
+                final int index = i;
+                timer.newTimeout(new TimerTask() {
+                    @Override
+                    public void run(Timeout timeout) {
+                        expired.add(index);
+                    }
+                }, 100 + i * 7, TimeUnit.MILLISECONDS);
+            }
+
+            for (int i = 0; i < count; i ++) {
+                assertEquals(Integer.valueOf(i), expired.poll(5, TimeUnit.SECONDS));
+            }
+        } finally {
+            timer.stop();
+        }
+    }
+
+    @Test
+    public void testStopReturnsUnprocessedTimeouts() throws Exception {
+        HashedWheelTimer timer = new HashedWheelTimer(10, TimeUnit.MILLISECONDS);
+        TimerTask task = new TimerTask() {
+            @Override
+            public void run(Timeout timeout) {
+                // NOOP
+            }
+        };
+
+        Timeout a = timer.newTimeout(task, 1, TimeUnit.HOURS);
+        Timeout b = timer.newTimeout(task, Long.MAX_VALUE, TimeUnit.DAYS);
+        Timeout c = timer.newTimeout(task, 1, TimeUnit.HOURS);
+        // Let the worker thread move them into the wheel.
+        Thread.sleep(100);
+        Timeout d = timer.newTimeout(task, 1, TimeUnit.HOURS);
+        assertTrue(c.cancel());
+
+        Set<Timeout> unprocessed = timer.stop();
+        assertEquals(3, unprocessed.size());
+        assertTrue(unprocessed.contains(a));
+        assertTrue(unprocessed.contains(b));
+        assertTrue(unprocessed.contains(d));
+
+        assertTrue(timer.stop().isEmpty());
+        try {
+            timer.newTimeout(task, 1, TimeUnit.SECONDS);
+            fail();
+        } catch (IllegalStateException e) {
+            // Expected
+        }
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2012 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.util;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ResourceLeakDetectorTest {
+
+    private int oldSamplingInterval;
+
+    @Before
+    public void saveSamplingInterval() {
+        oldSamplingInterval = ResourceLeakDetector.getSamplingInterval();
+    }
+
+    @After
+    public void restoreSamplingInterval() {
+        ResourceLeakDetector.setSamplingInterval(oldSamplingInterval);
+    }
+
+    @Test
+    public void testDisabled() {
+        ResourceLeakDetector.setSamplingInterval(0);
+        assertFalse(ResourceLeakDetector.isEnabled());
+
+        ResourceLeakDetector<Object> detector = new ResourceLeakDetector<Object>(Object.class);
+        assertNull(detector.open(new Object()));
+        assertEquals(0, detector.activeCount());
+    }
+
+    @Test
+    public void testOpenAndClose() {
+        ResourceLeakDetector.setSamplingInterval(1);
+        ResourceLeakDetector<Object> detector = new ResourceLeakDetector<Object>(Object.class);
+
+        Object a = new Object();
+        Object b = new Object();
+        ResourceLeak leakA = detector.open(a);
+        ResourceLeak leakB = detector.open(b);
+        assertEquals(2, detector.activeCount());
+
+        assertTrue(leakA.close());
+        assertFalse(leakA.close());
+        assertEquals(1, detector.activeCount());
+        assertTrue(leakB.close());
+        assertEquals(0, detector.activeCount());
+    }
+
+    @Test
+    public void testSampling() {
+        ResourceLeakDetector.setSamplingInterval(4);
+        ResourceLeakDetector<Object> detector = new ResourceLeakDetector<Object>(Object.class);
+
+        List<Object> resources = new ArrayList<Object>();
+        int tracked = 0;
+        for (int i = 0; i < 16; i ++) {
+            Object resource = new Object();
+            resources.add(resource);
+            if (detector.open(resource) != null) {
+                tracked ++;
+            }
+        }
+        assertEquals(4, tracked);
+        assertEquals(4, detector.activeCount());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeSamplingInterval() {
+        ResourceLeakDetector.setSamplingInterval(-1);
+    }
+
+    @Test(timeout = 10000)
+    public void testLeakIsReportedOnce() throws Exception {
+        ResourceLeakDetector.setSamplingInterval(1);
+        final List<String> leaks = new ArrayList<String>();
+        ResourceLeakDetector<Object> detector = new ResourceLeakDetector<Object>("TestResource") {
+            @Override
+            protected void reportLeak(String resourceType, String records) {
+                assertEquals("TestResource", resourceType);
+                assertTrue(records.contains(ResourceLeakDetectorTest.class.getName()));
+                leaks.add(records);
+            }
+        };
+
+        for (int i = 0; i < 4; i ++) {
+            leak(detector);
+        }
+
+        // The leaks are reported when a new resource is opened.
+        while (detector.activeCount() > 0) {
+            System.gc();
+            Thread.sleep(10);
+            detector.open(new Object()).close();
+        }
+
+        assertEquals(1, leaks.size());
+    }
+
+    private static void leak(ResourceLeakDetector<Object> detector) {
+        detector.open(new Object());
+    }
+}
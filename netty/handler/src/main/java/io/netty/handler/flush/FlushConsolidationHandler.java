@@ -0,0 +1,262 @@
+/*
+ * Copyright 2012 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.flush;
+
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerAdapter;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelPipeline;
+import io.netty.channel.EventLoop;
+import io.netty.channel.FileRegion;
+import io.netty.channel.VoidChannelFuture;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Merges the flushes requested while the {@link Channel} is handling an
+ * inbound event into a single flush, so that a peer which pipelines its
+ * requests gets all the responses with as few writes as possible:
+ *
+ * <pre>
+ * public class MyChannelInitializer extends {@link ChannelInitializer}&lt;{@link Channel}&gt; {
+ *     {@code @Override}
+ *     public void initChannel({@link Channel} channel) {
+ *         {@link ChannelPipeline} pipeline = channel.pipeline();
+ *         // Must be placed between the transport and the encoder.
+ *         pipeline.addLast("flusher", <b>new {@link FlushConsolidationHandler}()</b>);
+ *         pipeline.addLast("decoder", new MyRequestDecoder());
+ *         pipeline.addLast("encoder", new MyResponseEncoder());
+ *         pipeline.addLast("handler", new MyRpcHandler());
+ *     }
+ * }
+ * </pre>
+ *
+ * A flush requested while {@code inboundBufferUpdated} is being handled is
+ * held back until the event has been handled by the whole pipeline, or until
+ * the number of the held flushes or the number of the bytes waiting in the
+ * next outbound buffer reaches its limit.  A flush requested at any other time,
+ * such as a write from another thread or from a scheduled task, is forwarded
+ * immediately unless {@code consolidateWhenNoReadInProgress} is {@code true},
+ * in which case it is held back until the {@link EventLoop} has run the tasks
+ * submitted before it.  Therefore, the latency of an idle connection does not
+ * change by default.
+ * <p>
+ * A close, a disconnect and a file transfer flush the held flushes first, so
+ * the order of the operations is preserved.  The {@link ChannelFuture}s of
+ * the merged flushes are notified when the single flush completes.  When all
+ * of them are {@linkplain ChannelHandlerContext#voidFuture() void}, no future
+ * is allocated at all.
+ * <p>
+ * This handler only sees the flushes which go through it.  A {@link io.netty.buffer.ByteBuf}
+ * written to the pipeline without an encoder between this handler and the
+ * writer goes to the transport directly.
+ */
+public class FlushConsolidationHandler extends ChannelHandlerAdapter {
+
+    public static final int DEFAULT_MAX_PENDING_FLUSHES = 256;
+    public static final int DEFAULT_MAX_PENDING_BYTES = 65536;
+
+    private final int maxPendingFlushes;
+    private final int maxPendingBytes;
+    private final boolean consolidateWhenNoReadInProgress;
+
+    // 以下字段只在channel的EventLoop里访问
+    private final List<ChannelFuture> pendingFutures = new ArrayList<ChannelFuture>();
+    private int pendingFlushes;
+    private boolean readInProgress;
+    private boolean flushScheduled;
+    private ChannelHandlerContext ctx;
+
+    private final Runnable flushTask = new Runnable() {
+        @Override
+        public void run() {
+            flushScheduled = false;
+            if (!readInProgress) {
+                flushPending(ctx);
+            }
+        }
+    };
+
+    /**
+     * Creates a new instance with the default limits which forwards the
+     * flushes requested outside of an inbound event immediately.
+     */
+    public FlushConsolidationHandler() {
+        this(DEFAULT_MAX_PENDING_FLUSHES, DEFAULT_MAX_PENDING_BYTES, false);
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param maxPendingFlushes
+     *        the maximum number of flushes merged into one flush
+     * @param maxPendingBytes
+     *        the number of bytes in the next outbound buffer which triggers
+     *        a flush regardless of the number of the held flushes
+     * @param consolidateWhenNoReadInProgress
+     *        {@code true} if the flushes requested outside of an inbound event
+     *        should be merged until the {@link EventLoop} runs the task
+     *        scheduled by the first one
+     */
+    public FlushConsolidationHandler(
+            int maxPendingFlushes, int maxPendingBytes, boolean consolidateWhenNoReadInProgress) {
+        if (maxPendingFlushes <= 0) {
+            throw new IllegalArgumentException(
+                    "maxPendingFlushes: " + maxPendingFlushes + " (expected: > 0)");
+        }
+        if (maxPendingBytes <= 0) {
+            throw new IllegalArgumentException(
+                    "maxPendingBytes: " + maxPendingBytes + " (expected: > 0)");
+        }
+        this.maxPendingFlushes = maxPendingFlushes;
+        this.maxPendingBytes = maxPendingBytes;
+        this.consolidateWhenNoReadInProgress = consolidateWhenNoReadInProgress;
+    }
+
+    @Override
+    public void beforeAdd(ChannelHandlerContext ctx) throws Exception {
+        this.ctx = ctx;
+    }
+
+    @Override
+    public void beforeRemove(ChannelHandlerContext ctx) throws Exception {
+        flushPending(ctx);
+    }
+
+    @Override
+    public void inboundBufferUpdated(ChannelHandlerContext ctx) throws Exception {
+        if (readInProgress) {
+            // Re-entered - the outermost call flushes.
+            ctx.fireInboundBufferUpdated();
+            return;
+        }
+
+        readInProgress = true;
+        try {
+            ctx.fireInboundBufferUpdated();
+        } finally {
+            readInProgress = false;
+            flushPending(ctx);
+        }
+    }
+
+    @Override
+    public void flush(ChannelHandlerContext ctx, ChannelFuture future) throws Exception {
+        if (!readInProgress && !consolidateWhenNoReadInProgress) {
+            if (pendingFlushes == 0) {
+                ctx.flush(future);
+            } else {
+                addPendingFlush(future);
+                flushPending(ctx);
+            }
+            return;
+        }
+
+        addPendingFlush(future);
+        if (pendingFlushes >= maxPendingFlushes || pendingBytes(ctx) >= maxPendingBytes) {
+            flushPending(ctx);
+        } else if (!readInProgress && !flushScheduled) {
+            flushScheduled = true;
+            ctx.executor().execute(flushTask);
+        }
+    }
+
+    @Override
+    public void disconnect(ChannelHandlerContext ctx, ChannelFuture future) throws Exception {
+        flushPending(ctx);
+        ctx.disconnect(future);
+    }
+
+    @Override
+    public void close(ChannelHandlerContext ctx, ChannelFuture future) throws Exception {
+        flushPending(ctx);
+        ctx.close(future);
+    }
+
+    @Override
+    public void sendFile(ChannelHandlerContext ctx, FileRegion region, ChannelFuture future) throws Exception {
+        flushPending(ctx);
+        ctx.sendFile(region, future);
+    }
+
+    private void addPendingFlush(ChannelFuture future) {
+        pendingFlushes ++;
+        if (!(future instanceof VoidChannelFuture)) {
+            pendingFutures.add(future);
+        }
+    }
+
+    private static int pendingBytes(ChannelHandlerContext ctx) {
+        if (ctx.hasNextOutboundByteBuffer()) {
+            return ctx.nextOutboundByteBuffer().readableBytes();
+        }
+        return 0;
+    }
+
+    private void flushPending(ChannelHandlerContext ctx) {
+        if (pendingFlushes == 0) {
+            return;
+        }
+        pendingFlushes = 0;
+
+        final ChannelFuture future;
+        switch (pendingFutures.size()) {
+        case 0:
+            future = ctx.voidFuture();
+            break;
+        case 1:
+            future = pendingFutures.get(0);
+            break;
+        default:
+            future = ctx.newFuture();
+            future.addListener(new PendingFuturesNotifier(
+                    pendingFutures.toArray(new ChannelFuture[pendingFutures.size()])));
+        }
+        pendingFutures.clear();
+
+        ctx.flush(future);
+    }
+
+    /**
+     * Notifies the futures of the merged flushes with the result of the
+     * flush they have been merged into.
+     */
+    private static final class PendingFuturesNotifier implements ChannelFutureListener {
+        private final ChannelFuture[] futures;
+
+        PendingFuturesNotifier(ChannelFuture[] futures) {
+            this.futures = futures;
+        }
+
+        @Override
+        public void operationComplete(ChannelFuture future) throws Exception {
+            if (future.isSuccess()) {
+                for (ChannelFuture f: futures) {
+                    f.setSuccess();
+                }
+            } else {
+                Throwable cause = future.cause();
+                for (ChannelFuture f: futures) {
+                    f.setFailure(cause);
+                }
+            }
+        }
+    }
+}
@@ -20,6 +20,7 @@ import io.netty.channel.ChannelHandler;
 import io.netty.channel.ChannelHandler.Sharable;
 import io.netty.channel.ChannelHandlerAdapter;
 import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.FileRegion;
 import io.netty.logging.InternalLogLevel;
 import io.netty.logging.InternalLogger;
 import io.netty.logging.InternalLoggerFactory;
@@ -233,6 +234,16 @@ public class LoggingHandler extends ChannelHandlerAdapter {
         super.deregister(ctx, future);
     }
 
+    @Override
+    public void sendFile(ChannelHandlerContext ctx, FileRegion region,
+            ChannelFuture future) throws Exception {
+        if (logger.isEnabled(internalLevel)) {
+            logger.log(internalLevel, format(ctx,
+                    "SENDFILE(" + region.position() + ", " + region.count() + ')'));
+        }
+        super.sendFile(ctx, region, future);
+    }
+
     @Override
     public void flush(ChannelHandlerContext ctx, ChannelFuture future)
             throws Exception {
@@ -25,8 +25,10 @@ import io.netty.channel.ChannelHandlerAdapter;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInboundByteHandler;
 import io.netty.channel.ChannelOutboundByteHandler;
+import io.netty.channel.ChannelOutboundByteHandlerAdapter;
 import io.netty.channel.ChannelPipeline;
 import io.netty.channel.DefaultChannelFuture;
+import io.netty.channel.FileRegion;
 import io.netty.logging.InternalLogger;
 import io.netty.logging.InternalLoggerFactory;
 import io.netty.util.internal.DetectionUtil;
@@ -142,6 +144,14 @@ import javax.net.ssl.SSLException;
  * <li>insert the {@link SslHandler} to the {@link ChannelPipeline}, and</li>
  * <li>Initiate SSL handshake by calling {@link SslHandler#handshake()}.</li>
  * </ol>
+ *
+ * <h3>Sending a file</h3>
+ * <p>
+ * A {@link FileRegion} can not be transferred to the socket directly because
+ * its content has to be encrypted.  {@link SslHandler} copies the region into
+ * its outbound buffer chunk by chunk instead, and sends the next chunk when
+ * the previous one has been flushed.  The progress of the transfer is
+ * reported to the {@link ChannelFuture} of the region.
  * @apiviz.landmark
  * @apiviz.uses io.netty.handler.ssl.SslBufferPool
  */
@@ -310,12 +320,12 @@ public class SslHandler
 
     @Override
     public ByteBuf newOutboundBuffer(ChannelHandlerContext ctx) throws Exception {
-        return Unpooled.dynamicBuffer();
+        return Unpooled.dynamicBuffer(ctx.channel().config().getBufferFactory());
     }
 
     @Override
     public ByteBuf newInboundBuffer(ChannelHandlerContext ctx) throws Exception {
-        return Unpooled.dynamicBuffer();
+        return Unpooled.dynamicBuffer(ctx.channel().config().getBufferFactory());
     }
 
     @Override
@@ -405,6 +415,13 @@ public class SslHandler
         }
     }
 
+    @Override
+    public void sendFile(
+            ChannelHandlerContext ctx, FileRegion region, ChannelFuture future) throws Exception {
+        // The content of the file must be encrypted like the other bytes.
+        ChannelOutboundByteHandlerAdapter.sendFileInChunks(this, ctx, region, future);
+    }
+
     private static SSLEngineResult wrap(SSLEngine engine, ByteBuf in, ByteBuf out) throws SSLException {
         ByteBuffer in0 = in.nioBuffer();
         for (;;) {
@@ -846,6 +863,4 @@ public class SslHandler
             return false;
         }
     }
-
-
 }
@@ -15,19 +15,17 @@
  */
 package io.netty.handler.timeout;
 
-import io.netty.bootstrap.ServerBootstrap;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelFutureListener;
-import io.netty.channel.ChannelHandler;
 import io.netty.channel.ChannelHandlerAdapter;
 import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInitializer;
 import io.netty.channel.ChannelPipeline;
 import io.netty.channel.EventExecutor;
-import io.netty.util.HashedWheelTimer;
-import io.netty.util.Timer;
+import io.netty.channel.EventLoop;
+import io.netty.channel.VoidChannelFuture;
 
-import java.nio.channels.Channels;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 
@@ -65,51 +63,46 @@ import java.util.concurrent.TimeUnit;
  * // for 30 seconds.  The connection is closed when there is no inbound traffic
  * // for 60 seconds.
  *
- * public class MyPipelineFactory implements {@link ChannelPipelineFactory} {
- *
- *     private final {@link Timer} timer;
- *     private final {@link ChannelHandler} idleStateHandler;
- *
- *     public MyPipelineFactory({@link Timer} timer) {
- *         this.timer = timer;
- *         this.idleStateHandler = <b>new {@link IdleStateHandler}(timer, 60, 30, 0), // timer must be shared.</b>
- *     }
- *
- *     public {@link ChannelPipeline} getPipeline() {
- *         return {@link Channels}.pipeline(
- *             idleStateHandler,
- *             new MyHandler());
+ * public class MyChannelInitializer extends {@link ChannelInitializer}&lt;{@link Channel}&gt; {
+ *     {@code @Override}
+ *     public void initChannel({@link Channel} channel) {
+ *         {@link ChannelPipeline} pipeline = channel.pipeline();
+ *         pipeline.addLast("idleStateHandler", <b>new {@link IdleStateHandler}(60, 30, 0)</b>);
+ *         pipeline.addLast("myHandler", new MyHandler());
  *     }
  * }
  *
  * // Handler should handle the {@link IdleStateEvent} triggered by {@link IdleStateHandler}.
- * public class MyHandler extends {@link IdleStateAwareChannelHandler} {
- *
+ * public class MyHandler extends {@link ChannelHandlerAdapter} {
  *     {@code @Override}
- *     public void channelIdle({@link ChannelHandlerContext} ctx, {@link IdleStateEvent} e) {
- *         if (e.getState() == {@link IdleState}.READER_IDLE) {
- *             e.getChannel().close();
- *         } else if (e.getState() == {@link IdleState}.WRITER_IDLE) {
- *             e.getChannel().write(new PingMessage());
+ *     public void userEventTriggered({@link ChannelHandlerContext} ctx, {@link Object} evt) throws {@link Exception} {
+ *         if (evt instanceof {@link IdleStateEvent}) {
+ *             {@link IdleStateEvent} e = ({@link IdleStateEvent}) evt;
+ *             if (e.getState() == {@link IdleState}.READER_IDLE) {
+ *                 ctx.close();
+ *             } else if (e.getState() == {@link IdleState}.WRITER_IDLE) {
+ *                 ctx.write(new PingMessage());
+ *             }
  *         }
  *     }
  * }
  *
- * {@link ServerBootstrap} bootstrap = ...;
- * {@link Timer} timer = new {@link HashedWheelTimer}();
+ * {@link io.netty.bootstrap.ServerBootstrap} bootstrap = ...;
  * ...
- * bootstrap.setPipelineFactory(new MyPipelineFactory(timer));
+ * bootstrap.childHandler(new MyChannelInitializer());
  * ...
  * </pre>
  *
- * The {@link Timer} which was specified when the {@link IdleStateHandler} is
- * created should be stopped manually by calling {@link #releaseExternalResources()}
- * or {@link Timer#stop()} when your application shuts down.
+ * The idle checks are scheduled on the {@link EventLoop} of the {@link Channel},
+ * so no timer thread is involved and the handler state is only touched by a
+ * single thread.  A single task per idle state is scheduled at a time; reads
+ * and writes only record their time, and the task reschedules itself for the
+ * remaining delay when it finds there was activity in the meantime.
+ *
  * @see ReadTimeoutHandler
  * @see WriteTimeoutHandler
  *
  * @apiviz.landmark
- * @apiviz.uses io.netty.util.HashedWheelTimer
  * @apiviz.has io.netty.handler.timeout.IdleStateEvent oneway - - triggers
  */
 public class IdleStateHandler extends ChannelHandlerAdapter {
@@ -131,6 +124,14 @@ public class IdleStateHandler extends ChannelHandlerAdapter {
 
     private volatile int state; // 0 - none, 1 - initialized, 2 - destroyed
 
+    // Shared by all flushes instead of creating a listener per flush.
+    private final ChannelFutureListener writeListener = new ChannelFutureListener() {
+        @Override
+        public void operationComplete(ChannelFuture future) throws Exception {
+            writePerformed();
+        }
+    };
+
     /**
      * Creates a new instance.
      *
@@ -274,18 +275,25 @@ public class IdleStateHandler extends ChannelHandlerAdapter {
     }
 
     @Override
-    public void flush(final ChannelHandlerContext ctx, ChannelFuture future) throws Exception {
-        future.addListener(new ChannelFutureListener() {
-            @Override
-            public void operationComplete(ChannelFuture future) throws Exception {
-                lastWriteTime = System.currentTimeMillis();
-                writerIdleCount = allIdleCount = 0;
+    public void flush(ChannelHandlerContext ctx, ChannelFuture future) throws Exception {
+        if (writerIdleTimeMillis > 0 || allIdleTimeMillis > 0) {
+            // A write is in progress from now on.  The time is recorded again
+            // when the flush completes unless its future is a void future,
+            // which does not accept a listener.
+            writePerformed();
+            if (!(future instanceof VoidChannelFuture)) {
+                future.addListener(writeListener);
             }
-        });
+        }
 
         super.flush(ctx, future);
     }
 
+    private void writePerformed() {
+        lastWriteTime = System.currentTimeMillis();
+        writerIdleCount = allIdleCount = 0;
+    }
+
     private void initialize(ChannelHandlerContext ctx) {
         // Avoid the case where destroy() is called before scheduling timeouts.
         // See: https://github.com/netty/netty/issues/143
@@ -15,15 +15,13 @@
  */
 package io.netty.handler.timeout;
 
-import io.netty.bootstrap.ServerBootstrap;
-import io.netty.channel.ChannelHandler;
+import io.netty.channel.Channel;
 import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInitializer;
 import io.netty.channel.ChannelPipeline;
 import io.netty.channel.ChannelStateHandlerAdapter;
-import io.netty.util.HashedWheelTimer;
-import io.netty.util.Timer;
+import io.netty.channel.EventLoop;
 
-import java.nio.channels.Channels;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 
@@ -31,39 +29,30 @@ import java.util.concurrent.TimeUnit;
  * 当一段时间内无法读到数据的情况下，抛出ReadTimeoutException
  *
  * <pre>
- * public class MyPipelineFactory implements {@link ChannelPipelineFactory} {
- *
- *     private final {@link Timer} timer;
- *     private final {@link ChannelHandler} timeoutHandler;
- *
- *     public MyPipelineFactory({@link Timer} timer) {
- *         this.timer = timer;
- *         this.timeoutHandler = <b>new {@link ReadTimeoutHandler}(timer, 30), // timer must be shared.</b>
- *     }
- *
- *     public {@link ChannelPipeline} getPipeline() {
- *         // An example configuration that implements 30-second read timeout:
- *         return {@link Channels}.pipeline(
- *             timeoutHandler,
- *             new MyHandler());
+ * // An example configuration that implements 30-second read timeout:
+ * public class MyChannelInitializer extends {@link ChannelInitializer}&lt;{@link Channel}&gt; {
+ *     {@code @Override}
+ *     public void initChannel({@link Channel} channel) {
+ *         {@link ChannelPipeline} pipeline = channel.pipeline();
+ *         pipeline.addLast("readTimeoutHandler", <b>new {@link ReadTimeoutHandler}(30)</b>);
+ *         pipeline.addLast("myHandler", new MyHandler());
  *     }
  * }
  *
- * {@link ServerBootstrap} bootstrap = ...;
- * {@link Timer} timer = new {@link HashedWheelTimer}();
+ * {@link io.netty.bootstrap.ServerBootstrap} bootstrap = ...;
  * ...
- * bootstrap.setPipelineFactory(new MyPipelineFactory(timer));
+ * bootstrap.childHandler(new MyChannelInitializer());
  * ...
  * </pre>
  *
- * The {@link Timer} which was specified when the {@link ReadTimeoutHandler} is
- * created should be stopped manually by calling {@link #releaseExternalResources()}
- * or {@link Timer#stop()} when your application shuts down.
+ * The timeout is checked by a single task scheduled on the {@link EventLoop}
+ * of the {@link Channel}.  A read only records its time, and the task
+ * reschedules itself for the remaining delay when it finds a read happened.
+ *
  * @see WriteTimeoutHandler
  * @see IdleStateHandler
  *
  * @apiviz.landmark
- * @apiviz.uses io.netty.util.HashedWheelTimer
  * @apiviz.has io.netty.handler.timeout.TimeoutException oneway - - raises
  */
 public class ReadTimeoutHandler extends ChannelStateHandlerAdapter {
@@ -15,16 +15,17 @@
  */
 package io.netty.handler.timeout;
 
-import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.Channel;
 import io.netty.channel.ChannelFuture;
-import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInitializer;
 import io.netty.channel.ChannelOperationHandlerAdapter;
 import io.netty.channel.ChannelPipeline;
-import io.netty.util.HashedWheelTimer;
-import io.netty.util.Timer;
+import io.netty.channel.EventLoop;
+import io.netty.channel.VoidChannelFuture;
 
-import java.nio.channels.Channels;
+import java.util.ArrayDeque;
+import java.util.Queue;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 
@@ -33,41 +34,46 @@ import java.util.concurrent.TimeUnit;
  * certain period of time.
  *
  * <pre>
- * public class MyPipelineFactory implements {@link ChannelPipelineFactory} {
- *
- *     private final {@link Timer} timer;
- *
- *     public MyPipelineFactory({@link Timer} timer) {
- *         this.timer = timer;
- *     }
- *
- *     public {@link ChannelPipeline} getPipeline() {
- *         // An example configuration that implements 30-second write timeout:
- *         return {@link Channels}.pipeline(
- *             <b>new {@link WriteTimeoutHandler}(timer, 30), // timer must be shared.</b>
- *             new MyHandler());
+ * // An example configuration that implements 30-second write timeout:
+ * public class MyChannelInitializer extends {@link ChannelInitializer}&lt;{@link Channel}&gt; {
+ *     {@code @Override}
+ *     public void initChannel({@link Channel} channel) {
+ *         {@link ChannelPipeline} pipeline = channel.pipeline();
+ *         pipeline.addLast("writeTimeoutHandler", <b>new {@link WriteTimeoutHandler}(30)</b>);
+ *         pipeline.addLast("myHandler", new MyHandler());
  *     }
  * }
  *
- * {@link ServerBootstrap} bootstrap = ...;
- * {@link Timer} timer = new {@link HashedWheelTimer}();
+ * {@link io.netty.bootstrap.ServerBootstrap} bootstrap = ...;
+ * ...
+ * bootstrap.childHandler(new MyChannelInitializer());
  * ...
- * bootstrap.setPipelineFactory(new MyPipelineFactory(timer));
  * </pre>
  *
- * The {@link Timer} which was specified when the {@link ReadTimeoutHandler} is
- * created should be stopped manually by calling {@link #releaseExternalResources()}
- * or {@link Timer#stop()} when your application shuts down.
+ * The timeouts are checked on the {@link EventLoop} of the {@link Channel}.
+ * Instead of scheduling a task per flush, the pending flushes are kept in the
+ * order of their deadlines and a single task is scheduled for the earliest one.
+ * <p>
+ * A flush requested with a {@linkplain Channel#voidFuture() void future} is not
+ * given a future of its own.  Instead, the task issues a single flush with a
+ * new future for all the flushes with a void future requested since its last
+ * run, so that at most one future is created per timeout period.  Hence, a
+ * timeout of such a flush is raised within twice the timeout.
+ *
  * @see ReadTimeoutHandler
  * @see IdleStateHandler
  *
  * @apiviz.landmark
- * @apiviz.uses io.netty.util.HashedWheelTimer
  * @apiviz.has io.netty.handler.timeout.TimeoutException oneway - - raises
  */
 public class WriteTimeoutHandler extends ChannelOperationHandlerAdapter {
 
-    private final long timeoutMillis;
+    private final long timeoutNanos;
+
+    // 按deadline排序（timeout是固定的，所以就是flush的顺序），只在channel的EventLoop里访问
+    private final Queue<PendingFlush> pendingFlushes = new ArrayDeque<PendingFlush>();
+    private ScheduledFuture<?> timeout;
+    private boolean voidFlushes;
 
     private boolean closed;
 
@@ -95,43 +101,55 @@ public class WriteTimeoutHandler extends ChannelOperationHandlerAdapter {
         }
 
         if (timeout <= 0) {
-            timeoutMillis = 0;
+            timeoutNanos = 0;
         } else {
-            timeoutMillis = Math.max(unit.toMillis(timeout), 1);
+            timeoutNanos = Math.max(unit.toNanos(timeout), TimeUnit.MILLISECONDS.toNanos(1));
         }
     }
 
     @Override
-    public void flush(final ChannelHandlerContext ctx, final ChannelFuture future) throws Exception {
-        if (timeoutMillis > 0) {
-            // Schedule a timeout.
-            final ScheduledFuture<?> sf = ctx.executor().schedule(new Runnable() {
-                @Override
-                public void run() {
-                    if (future.setFailure(WriteTimeoutException.INSTANCE)) {
-                        // If succeeded to mark as failure, notify the pipeline, too.
-                        try {
-                            writeTimedOut(ctx);
-                        } catch (Throwable t) {
-                            ctx.fireExceptionCaught(t);
-                        }
-                    }
-                }
-
-            }, timeoutMillis, TimeUnit.MILLISECONDS);
+    public void flush(ChannelHandlerContext ctx, ChannelFuture future) throws Exception {
+        if (timeoutNanos > 0) {
+            // Forget the flushes which have completed already, so that the queue
+            // does not grow while the scheduled task is waiting.
+            removeCompletedFlushes();
 
-            // Cancel the scheduled timeout if the flush future is complete.
-            future.addListener(new ChannelFutureListener() {
-                @Override
-                public void operationComplete(ChannelFuture future) throws Exception {
-                    sf.cancel(false);
-                }
-            });
+            if (future instanceof VoidChannelFuture) {
+                // A void future never completes, so it is checked later by
+                // the task instead.
+                voidFlushes = true;
+            } else {
+                pendingFlushes.add(new PendingFlush(future, System.nanoTime() + timeoutNanos));
+            }
+            if (timeout == null) {
+                timeout = ctx.executor().schedule(
+                        new WriteTimeoutTask(ctx), timeoutNanos, TimeUnit.NANOSECONDS);
+            }
         }
 
         super.flush(ctx, future);
     }
 
+    @Override
+    public void beforeRemove(ChannelHandlerContext ctx) throws Exception {
+        if (timeout != null) {
+            timeout.cancel(false);
+            timeout = null;
+        }
+        pendingFlushes.clear();
+        voidFlushes = false;
+    }
+
+    private void removeCompletedFlushes() {
+        for (;;) {
+            PendingFlush pendingFlush = pendingFlushes.peek();
+            if (pendingFlush == null || !pendingFlush.future.isDone()) {
+                break;
+            }
+            pendingFlushes.remove();
+        }
+    }
+
     protected void writeTimedOut(ChannelHandlerContext ctx) throws Exception {
         if (!closed) {
             ctx.fireExceptionCaught(WriteTimeoutException.INSTANCE);
@@ -139,4 +157,66 @@ public class WriteTimeoutHandler extends ChannelOperationHandlerAdapter {
             closed = true;
         }
     }
+
+    private static final class PendingFlush {
+
+        final ChannelFuture future;
+        final long deadline;
+
+        PendingFlush(ChannelFuture future, long deadline) {
+            this.future = future;
+            this.deadline = deadline;
+        }
+    }
+
+    private final class WriteTimeoutTask implements Runnable {
+
+        private final ChannelHandlerContext ctx;
+
+        WriteTimeoutTask(ChannelHandlerContext ctx) {
+            this.ctx = ctx;
+        }
+
+        @Override
+        public void run() {
+            timeout = null;
+
+            long currentTime = System.nanoTime();
+            if (voidFlushes) {
+                // This flush completes once the flushes with a void future
+                // requested before have completed.  Its deadline is not
+                // earlier than theirs.
+                voidFlushes = false;
+                ChannelFuture future = ctx.newFuture();
+                pendingFlushes.add(new PendingFlush(future, currentTime + timeoutNanos));
+                ctx.flush(future);
+            }
+
+            for (;;) {
+                removeCompletedFlushes();
+                PendingFlush pendingFlush = pendingFlushes.peek();
+                if (pendingFlush == null) {
+                    // Nothing to wait for - flush() will schedule a new task.
+                    return;
+                }
+
+                long nextDelay = pendingFlush.deadline - currentTime;
+                if (nextDelay > 0) {
+                    // The earliest pending flush has not timed out yet.
+                    timeout = ctx.executor().schedule(this, nextDelay, TimeUnit.NANOSECONDS);
+                    return;
+                }
+
+                pendingFlushes.remove();
+                if (pendingFlush.future.setFailure(WriteTimeoutException.INSTANCE)) {
+                    // If succeeded to mark as failure, notify the pipeline, too.
+                    try {
+                        writeTimedOut(ctx);
+                    } catch (Throwable t) {
+                        ctx.fireExceptionCaught(t);
+                    }
+                }
+            }
+        }
+    }
 }
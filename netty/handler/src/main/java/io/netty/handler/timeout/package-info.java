@@ -16,7 +16,7 @@
 
 /**
  * Adds support for read and write timeout and idle connection notification
- * using a {@link io.netty.util.Timer}.
+ * using the {@link io.netty.channel.EventLoop} of each channel.
  *
  * @apiviz.exclude \.channel\.
  * @apiviz.exclude \.DefaultIdleStateEvent$
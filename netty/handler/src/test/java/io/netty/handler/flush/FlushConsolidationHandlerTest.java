@@ -0,0 +1,269 @@
+/*
+ * Copyright 2012 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.flush;
+
+import static org.junit.Assert.*;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.MessageBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundByteHandlerAdapter;
+import io.netty.channel.ChannelInboundMessageHandlerAdapter;
+import io.netty.channel.ChannelOperationHandlerAdapter;
+import io.netty.channel.ChannelOutboundMessageHandlerAdapter;
+import io.netty.channel.EventLoop;
+import io.netty.channel.embedded.EmbeddedByteChannel;
+import io.netty.channel.embedded.EmbeddedMessageChannel;
+import io.netty.channel.local.LocalChannel;
+import io.netty.channel.local.LocalEventLoop;
+import io.netty.util.CharsetUtil;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class FlushConsolidationHandlerTest {
+
+    @Test
+    public void testConsolidateWhileReading() {
+        FlushCounter counter = new FlushCounter();
+        Responder responder = new Responder();
+        EmbeddedMessageChannel ch = newChannel(counter, new FlushConsolidationHandler(), responder);
+
+        assertTrue(writeInbound(ch, "a", "b", "c"));
+        assertEquals(1, counter.flushes);
+        assertEquals("a", ch.readOutbound());
+        assertEquals("b", ch.readOutbound());
+        assertEquals("c", ch.readOutbound());
+        assertNull(ch.readOutbound());
+
+        assertEquals(3, responder.futures.size());
+        for (ChannelFuture f: responder.futures) {
+            assertTrue(f.isSuccess());
+        }
+    }
+
+    @Test
+    public void testMaxPendingFlushes() {
+        FlushCounter counter = new FlushCounter();
+        EmbeddedMessageChannel ch = newChannel(
+                counter, new FlushConsolidationHandler(2, FlushConsolidationHandler.DEFAULT_MAX_PENDING_BYTES, false),
+                new Responder());
+
+        assertTrue(writeInbound(ch, "a", "b", "c", "d", "e"));
+        assertEquals(3, counter.flushes);
+        for (String s: new String[] { "a", "b", "c", "d", "e" }) {
+            assertEquals(s, ch.readOutbound());
+        }
+    }
+
+    @Test
+    public void testFlushImmediatelyWhenNotReading() {
+        FlushCounter counter = new FlushCounter();
+        EmbeddedMessageChannel ch = newChannel(counter, new FlushConsolidationHandler(), new Responder());
+
+        ChannelFuture future = ch.write("a");
+        assertEquals(1, counter.flushes);
+        assertTrue(future.isSuccess());
+        assertEquals("a", ch.readOutbound());
+
+        ch.write("b", ch.voidFuture());
+        assertEquals(2, counter.flushes);
+        assertEquals("b", ch.readOutbound());
+    }
+
+    @Test
+    public void testConsolidateWhenNoReadInProgress() throws Exception {
+        // The embedded event loop runs a task immediately, so the flush task
+        // could not be deferred.  Use a real one instead.
+        EventLoop loop = new LocalEventLoop(1);
+        try {
+            final FlushCounter counter = new FlushCounter();
+            final Channel ch = new LocalChannel();
+            // The channel is not connected, so complete the flushes before they reach it.
+            ch.pipeline().addLast(new ChannelOperationHandlerAdapter() {
+                @Override
+                public void flush(ChannelHandlerContext ctx, ChannelFuture future) {
+                    future.setSuccess();
+                }
+            });
+            ch.pipeline().addLast(
+                    counter, new FlushConsolidationHandler(16, FlushConsolidationHandler.DEFAULT_MAX_PENDING_BYTES, true),
+                    new Encoder());
+            loop.register(ch).sync();
+
+            final List<ChannelFuture> futures = ch.eventLoop().submit(new Callable<List<ChannelFuture>>() {
+                @Override
+                public List<ChannelFuture> call() {
+                    List<ChannelFuture> futures = new ArrayList<ChannelFuture>();
+                    futures.add(ch.write("a"));
+                    futures.add(ch.write("b"));
+                    futures.add(ch.write("c"));
+                    // Held until the event loop runs the flush task.
+                    assertEquals(0, counter.flushes);
+                    return futures;
+                }
+            }).get(5, TimeUnit.SECONDS);
+
+            int flushes = ch.eventLoop().submit(new Callable<Integer>() {
+                @Override
+                public Integer call() {
+                    return counter.flushes;
+                }
+            }).get(5, TimeUnit.SECONDS);
+            assertEquals(1, flushes);
+            for (ChannelFuture f: futures) {
+                assertTrue(f.await(5, TimeUnit.SECONDS));
+                assertTrue(f.isSuccess());
+            }
+            ch.close().sync();
+        } finally {
+            loop.shutdown();
+        }
+    }
+
+    @Test
+    public void testMaxPendingBytes() {
+        FlushCounter counter = new FlushCounter();
+        ByteResponder responder = new ByteResponder(counter);
+        EmbeddedByteChannel ch = new EmbeddedByteChannel(
+                counter, new FlushConsolidationHandler(FlushConsolidationHandler.DEFAULT_MAX_PENDING_FLUSHES, 100, false),
+                new ByteEncoder(), responder);
+
+        // The second response is encoded into more than 100 bytes, which forces a flush.
+        ch.writeInbound(Unpooled.wrappedBuffer(new byte[] { 10, 120, 10 }));
+        assertEquals(Arrays.asList(0, 1, 1), responder.flushes);
+        assertEquals(2, counter.flushes);
+        assertEquals(140, ch.readOutbound().readableBytes());
+        for (ChannelFuture f: responder.futures) {
+            assertTrue(f.isSuccess());
+        }
+    }
+
+    @Test
+    public void testCloseFlushesPending() {
+        FlushCounter counter = new FlushCounter();
+        Responder responder = new Responder() {
+            @Override
+            public void messageReceived(ChannelHandlerContext ctx, Object msg) throws Exception {
+                super.messageReceived(ctx, msg);
+                ctx.close();
+            }
+        };
+        EmbeddedMessageChannel ch = newChannel(counter, new FlushConsolidationHandler(), responder);
+
+        writeInbound(ch, "a");
+        assertFalse(ch.isOpen());
+        assertEquals(1, counter.flushes);
+        assertEquals("a", ch.readOutbound());
+        assertTrue(responder.futures.get(0).isSuccess());
+    }
+
+    private static EmbeddedMessageChannel newChannel(
+            FlushCounter counter, FlushConsolidationHandler handler, Responder responder) {
+        return new EmbeddedMessageChannel(counter, handler, new Encoder(), responder);
+    }
+
+    private static boolean writeInbound(EmbeddedMessageChannel ch, Object... msgs) {
+        for (Object m: msgs) {
+            ch.inboundBuffer().add(m);
+        }
+        ch.pipeline().fireInboundBufferUpdated();
+        ch.checkException();
+        return !ch.lastOutboundBuffer().isEmpty();
+    }
+
+    private static final class FlushCounter extends ChannelOperationHandlerAdapter {
+        int flushes;
+
+        @Override
+        public void flush(ChannelHandlerContext ctx, ChannelFuture future) throws Exception {
+            flushes ++;
+            ctx.flush(future);
+        }
+    }
+
+    private static final class Encoder extends ChannelOutboundMessageHandlerAdapter<Object> {
+        @Override
+        public void flush(ChannelHandlerContext ctx, ChannelFuture future) throws Exception {
+            MessageBuf<Object> in = ctx.outboundMessageBuffer();
+            MessageBuf<Object> out = ctx.nextOutboundMessageBuffer();
+            for (;;) {
+                Object msg = in.poll();
+                if (msg == null) {
+                    break;
+                }
+                out.add(msg);
+            }
+            ctx.flush(future);
+        }
+    }
+
+    private static final class ByteEncoder extends ChannelOutboundMessageHandlerAdapter<Object> {
+        @Override
+        public void flush(ChannelHandlerContext ctx, ChannelFuture future) throws Exception {
+            MessageBuf<Object> in = ctx.outboundMessageBuffer();
+            ByteBuf out = ctx.nextOutboundByteBuffer();
+            for (;;) {
+                Object msg = in.poll();
+                if (msg == null) {
+                    break;
+                }
+                out.writeBytes(((String) msg).getBytes(CharsetUtil.US_ASCII));
+            }
+            ctx.flush(future);
+        }
+    }
+
+    /**
+     * Responds to each inbound byte with a message of as many characters, and
+     * records the number of flushes seen by the transport after each write.
+     */
+    private static final class ByteResponder extends ChannelInboundByteHandlerAdapter {
+        final List<ChannelFuture> futures = new ArrayList<ChannelFuture>();
+        final List<Integer> flushes = new ArrayList<Integer>();
+        private final FlushCounter counter;
+
+        ByteResponder(FlushCounter counter) {
+            this.counter = counter;
+        }
+
+        @Override
+        public void inboundBufferUpdated(ChannelHandlerContext ctx, ByteBuf in) throws Exception {
+            while (in.readable()) {
+                char[] response = new char[in.readByte()];
+                Arrays.fill(response, 'x');
+                futures.add(ctx.write(new String(response)));
+                flushes.add(counter.flushes);
+            }
+        }
+    }
+
+    private static class Responder extends ChannelInboundMessageHandlerAdapter<Object> {
+        final List<ChannelFuture> futures = new ArrayList<ChannelFuture>();
+
+        @Override
+        public void messageReceived(ChannelHandlerContext ctx, Object msg) throws Exception {
+            futures.add(ctx.write(msg));
+        }
+    }
+}
@@ -0,0 +1,380 @@
+/*
+ * Copyright 2012 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.timeout;
+
+import static org.junit.Assert.*;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOperationHandlerAdapter;
+import io.netty.channel.ChannelStateHandlerAdapter;
+import io.netty.channel.EventExecutor;
+import io.netty.channel.EventLoop;
+import io.netty.channel.local.LocalChannel;
+import io.netty.channel.local.LocalEventLoop;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests {@link WriteTimeoutHandler} on a real {@link EventLoop}, as the
+ * embedded one cannot schedule tasks.  The flushes do not reach the transport;
+ * {@link FlushHolder} keeps their futures so that a test decides when they
+ * complete.
+ */
+public class WriteTimeoutHandlerTest {
+
+    private static final long TIMEOUT_MILLIS = 200;
+
+    private EventLoop loop;
+    private Channel ch;
+    private FlushHolder holder;
+    private WriteTimeoutHandler handler;
+    private ExceptionRecorder recorder;
+
+    @Before
+    public void setUp() throws Exception {
+        loop = new LocalEventLoop(1);
+        ch = new LocalChannel();
+        holder = new FlushHolder();
+        handler = new WriteTimeoutHandler(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        recorder = new ExceptionRecorder();
+        ch.pipeline().addLast("holder", holder);
+        ch.pipeline().addLast("timeout", handler);
+        ch.pipeline().addLast("recorder", recorder);
+        loop.register(ch).sync();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        ch.close().sync();
+        loop.shutdown();
+    }
+
+    @Test
+    public void testTimeout() throws Exception {
+        long startTime = System.nanoTime();
+        final ChannelFuture a = flush();
+        final ChannelFuture b = flush();
+
+        assertTrue(recorder.latch.await(5, TimeUnit.SECONDS));
+        assertTrue(System.nanoTime() - startTime >= TimeUnit.MILLISECONDS.toNanos(TIMEOUT_MILLIS));
+        assertTrue(a.await(5, TimeUnit.SECONDS));
+        assertTrue(b.await(5, TimeUnit.SECONDS));
+        assertTrue(a.cause() instanceof WriteTimeoutException);
+        assertTrue(b.cause() instanceof WriteTimeoutException);
+        assertFalse(ch.isOpen());
+
+        // Raised only once although both flushes timed out.
+        Thread.sleep(TIMEOUT_MILLIS);
+        assertEquals(1, recorder.causes.size());
+        assertTrue(recorder.causes.get(0) instanceof WriteTimeoutException);
+    }
+
+    @Test
+    public void testNoTimeoutWhenFlushCompletes() throws Exception {
+        final ChannelFuture a = flush();
+        inLoop(new Callable<Object>() {
+            @Override
+            public Object call() {
+                holder.futures.get(0).setSuccess();
+                return null;
+            }
+        });
+
+        Thread.sleep(TIMEOUT_MILLIS * 2);
+        assertTrue(a.isSuccess());
+        assertTrue(recorder.causes.isEmpty());
+        assertTrue(ch.isOpen());
+    }
+
+    @Test
+    public void testTimeoutsInFlushOrder() throws Exception {
+        final List<String> timedOut = Collections.synchronizedList(new ArrayList<String>());
+        final CountDownLatch latch = new CountDownLatch(2);
+        String[] names = { "a", "b", "c" };
+        long[] flushTimes = new long[names.length];
+        final long[] timeoutTimes = new long[names.length];
+        List<ChannelFuture> futures = new ArrayList<ChannelFuture>();
+        for (int i = 0; i < names.length; i ++) {
+            final String name = names[i];
+            final int index = i;
+            flushTimes[i] = System.nanoTime();
+            ChannelFuture f = flush();
+            f.addListener(new ChannelFutureListener() {
+                @Override
+                public void operationComplete(ChannelFuture future) {
+                    if (future.cause() instanceof WriteTimeoutException) {
+                        timeoutTimes[index] = System.nanoTime();
+                        timedOut.add(name);
+                        latch.countDown();
+                    }
+                }
+            });
+            futures.add(f);
+            Thread.sleep(TIMEOUT_MILLIS / 4);
+        }
+
+        // The second flush completes before the first one times out.
+        inLoop(new Callable<Object>() {
+            @Override
+            public Object call() {
+                holder.futures.get(1).setSuccess();
+                return null;
+            }
+        });
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList("a", "c"), timedOut);
+        assertTrue(futures.get(1).isSuccess());
+        for (int i: new int[] { 0, 2 }) {
+            assertTrue(timeoutTimes[i] - flushTimes[i] >= TimeUnit.MILLISECONDS.toNanos(TIMEOUT_MILLIS));
+        }
+        assertEquals(1, recorder.causes.size());
+    }
+
+    @Test
+    public void testVoidFlushTimeout() throws Exception {
+        long startTime = System.nanoTime();
+        voidFlush();
+        voidFlush();
+
+        assertTrue(recorder.latch.await(5, TimeUnit.SECONDS));
+        assertTrue(System.nanoTime() - startTime >= TimeUnit.MILLISECONDS.toNanos(TIMEOUT_MILLIS));
+        assertTrue(recorder.causes.get(0) instanceof WriteTimeoutException);
+        assertFalse(ch.isOpen());
+
+        // The void futures were not replaced, and a single flush checked both.
+        assertEquals(3, holder.futures.size());
+        assertSame(ch.voidFuture(), holder.futures.get(0));
+        assertSame(ch.voidFuture(), holder.futures.get(1));
+        assertTrue(holder.futures.get(2).cause() instanceof WriteTimeoutException);
+    }
+
+    @Test
+    public void testNoTimeoutWhenVoidFlushCompletes() throws Exception {
+        voidFlush();
+
+        // Complete the flush which checks the void flush once it is issued.
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (inLoop(new Callable<Integer>() {
+            @Override
+            public Integer call() {
+                return holder.futures.size();
+            }
+        }) < 2) {
+            assertTrue(System.nanoTime() < deadline);
+            Thread.sleep(10);
+        }
+        inLoop(new Callable<Object>() {
+            @Override
+            public Object call() {
+                holder.futures.get(1).setSuccess();
+                return null;
+            }
+        });
+
+        Thread.sleep(TIMEOUT_MILLIS * 3);
+        assertEquals(2, holder.futures.size());
+        assertTrue(recorder.causes.isEmpty());
+        assertTrue(ch.isOpen());
+    }
+
+    @Test
+    public void testCancelTimeoutWhenRemoved() throws Exception {
+        // Add the handler again with an executor which records the scheduled tasks.
+        final RecordingExecutor executor = new RecordingExecutor(ch.eventLoop());
+        inLoop(new Callable<Object>() {
+            @Override
+            public Object call() {
+                ch.pipeline().remove(handler);
+                handler = new WriteTimeoutHandler(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+                ch.pipeline().addAfter(executor, "holder", "timeout", handler);
+                return null;
+            }
+        });
+
+        final ChannelFuture a = flush();
+        flush();
+        assertEquals(1, executor.scheduled.size());
+        assertFalse(executor.scheduled.get(0).isCancelled());
+
+        inLoop(new Callable<Object>() {
+            @Override
+            public Object call() {
+                ch.pipeline().remove(handler);
+                return null;
+            }
+        });
+        assertTrue(executor.scheduled.get(0).isCancelled());
+
+        Thread.sleep(TIMEOUT_MILLIS * 2);
+        assertFalse(a.isDone());
+        assertTrue(recorder.causes.isEmpty());
+        assertTrue(ch.isOpen());
+    }
+
+    private ChannelFuture flush() throws Exception {
+        return inLoop(new Callable<ChannelFuture>() {
+            @Override
+            public ChannelFuture call() {
+                return ch.flush();
+            }
+        });
+    }
+
+    private void voidFlush() throws Exception {
+        inLoop(new Callable<Object>() {
+            @Override
+            public Object call() {
+                ch.flush(ch.voidFuture());
+                return null;
+            }
+        });
+    }
+
+    private <T> T inLoop(Callable<T> task) throws Exception {
+        return ch.eventLoop().submit(task).get(5, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Keeps the futures of the flushes instead of forwarding them to the
+     * transport.
+     */
+    private static final class FlushHolder extends ChannelOperationHandlerAdapter {
+        final List<ChannelFuture> futures = new ArrayList<ChannelFuture>();
+
+        @Override
+        public void flush(ChannelHandlerContext ctx, ChannelFuture future) {
+            futures.add(future);
+        }
+    }
+
+    /**
+     * Runs the tasks in the specified {@link EventLoop} and records the
+     * futures of the scheduled ones.
+     */
+    private static final class RecordingExecutor extends AbstractExecutorService
+            implements EventExecutor, EventExecutor.Unsafe {
+        final List<ScheduledFuture<?>> scheduled =
+                Collections.synchronizedList(new ArrayList<ScheduledFuture<?>>());
+        private final EventLoop loop;
+
+        RecordingExecutor(EventLoop loop) {
+            this.loop = loop;
+        }
+
+        @Override
+        public ScheduledFuture<?> schedule(Runnable command, long delay, TimeUnit unit) {
+            return record(loop.schedule(command, delay, unit));
+        }
+
+        @Override
+        public <V> ScheduledFuture<V> schedule(Callable<V> callable, long delay, TimeUnit unit) {
+            return record(loop.schedule(callable, delay, unit));
+        }
+
+        @Override
+        public ScheduledFuture<?> scheduleAtFixedRate(
+                Runnable command, long initialDelay, long period, TimeUnit unit) {
+            return record(loop.scheduleAtFixedRate(command, initialDelay, period, unit));
+        }
+
+        @Override
+        public ScheduledFuture<?> scheduleWithFixedDelay(
+                Runnable command, long initialDelay, long delay, TimeUnit unit) {
+            return record(loop.scheduleWithFixedDelay(command, initialDelay, delay, unit));
+        }
+
+        private <V> ScheduledFuture<V> record(ScheduledFuture<V> future) {
+            scheduled.add(future);
+            return future;
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            loop.execute(command);
+        }
+
+        @Override
+        public boolean inEventLoop() {
+            return loop.inEventLoop();
+        }
+
+        @Override
+        public boolean inEventLoop(Thread thread) {
+            return loop.inEventLoop(thread);
+        }
+
+        @Override
+        public Unsafe unsafe() {
+            return this;
+        }
+
+        @Override
+        public EventExecutor nextChild() {
+            return this;
+        }
+
+        @Override
+        public void shutdown() {
+            // The loop is shut down by the test.
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return loop.isShutdown();
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return loop.isTerminated();
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+            return loop.awaitTermination(timeout, unit);
+        }
+    }
+
+    private static final class ExceptionRecorder extends ChannelStateHandlerAdapter {
+        final List<Throwable> causes = Collections.synchronizedList(new ArrayList<Throwable>());
+        final CountDownLatch latch = new CountDownLatch(1);
+
+        @Override
+        public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+            causes.add(cause);
+            latch.countDown();
+        }
+    }
+}
@@ -0,0 +1,230 @@
+/*
+ * Copyright 2012 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.testsuite.transport.socket;
+
+import static org.junit.Assert.*;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureProgressListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundByteHandlerAdapter;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.DefaultFileRegion;
+import io.netty.channel.FileRegion;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.oio.OioSocketChannel;
+import io.netty.handler.ssl.SslHandler;
+import io.netty.testsuite.transport.socket.SocketSslEchoTest.BogusSslContextFactory;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.net.ssl.SSLEngine;
+
+import org.junit.Test;
+
+public class SocketFileRegionTest extends AbstractSocketTest {
+
+    private static final Random random = new Random();
+    static final byte[] data = new byte[1048576 * 2];
+    static final int HEADER_LENGTH = 1024;
+    static final int REGION_OFFSET = 4096;
+    static final int REGION_LENGTH = 1048576 + 12345;
+
+    static {
+        random.nextBytes(data);
+    }
+
+    @Test
+    public void testFileRegion() throws Throwable {
+        run();
+    }
+
+    public void testFileRegion(ServerBootstrap sb, Bootstrap cb) throws Throwable {
+        testFileRegion0(sb, cb, false);
+    }
+
+    @Test
+    public void testSslFileRegion() throws Throwable {
+        run();
+    }
+
+    public void testSslFileRegion(ServerBootstrap sb, Bootstrap cb) throws Throwable {
+        testFileRegion0(sb, cb, true);
+    }
+
+    private static void testFileRegion0(ServerBootstrap sb, Bootstrap cb, final boolean ssl) throws Throwable {
+        File file = File.createTempFile("netty-", ".tmp");
+        file.deleteOnExit();
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(data);
+        } finally {
+            out.close();
+        }
+
+        // The header and the trailer surround the content of the region.
+        final byte[] expected = new byte[HEADER_LENGTH + REGION_LENGTH + HEADER_LENGTH];
+        System.arraycopy(data, 0, expected, 0, HEADER_LENGTH);
+        System.arraycopy(data, REGION_OFFSET, expected, HEADER_LENGTH, REGION_LENGTH);
+        System.arraycopy(data, 0, expected, HEADER_LENGTH + REGION_LENGTH, HEADER_LENGTH);
+
+        final TestHandler sh = new TestHandler(expected);
+        final ChannelInboundByteHandlerAdapter ch = new ChannelInboundByteHandlerAdapter() {
+            @Override
+            public void inboundBufferUpdated(ChannelHandlerContext ctx, ByteBuf in) throws Exception {
+                in.clear();
+            }
+        };
+
+        if (ssl) {
+            final SSLEngine sse = BogusSslContextFactory.getServerContext().createSSLEngine();
+            final SSLEngine cse = BogusSslContextFactory.getClientContext().createSSLEngine();
+            sse.setUseClientMode(false);
+            cse.setUseClientMode(true);
+
+            sb.childHandler(new ChannelInitializer<SocketChannel>() {
+                @Override
+                public void initChannel(SocketChannel sch) throws Exception {
+                    sch.pipeline().addFirst("ssl", new SslHandler(sse));
+                    sch.pipeline().addLast("handler", sh);
+                }
+            });
+            cb.handler(new ChannelInitializer<SocketChannel>() {
+                @Override
+                public void initChannel(SocketChannel sch) throws Exception {
+                    sch.pipeline().addFirst("ssl", new SslHandler(cse));
+                    sch.pipeline().addLast("handler", ch);
+                }
+            });
+        } else {
+            sb.childHandler(sh);
+            cb.handler(ch);
+        }
+
+        Channel sc = sb.bind().sync().channel();
+        Channel cc = cb.connect().sync().channel();
+        if (!ssl && !cc.metadata().hasFileRegion() || cc instanceof OioSocketChannel) {
+            // The transport can not send a file region without the help of a handler.
+            // An OIO channel interrupts its I/O thread, which closes the file.
+            cc.close().sync();
+            sc.close().sync();
+            return;
+        }
+        if (ssl) {
+            cc.pipeline().get(SslHandler.class).handshake().sync();
+        }
+
+        final AtomicLong progress = new AtomicLong();
+        FileRegion region = new DefaultFileRegion(
+                new RandomAccessFile(file, "r").getChannel(), REGION_OFFSET, REGION_LENGTH);
+
+        ChannelFuture future = cc.newFuture();
+        future.addListener(new ChannelFutureProgressListener() {
+            @Override
+            public void operationProgressed(
+                    ChannelFuture future, long amount, long current, long total) throws Exception {
+                assertEquals(REGION_LENGTH, total);
+                progress.addAndGet(amount);
+            }
+
+            @Override
+            public void operationComplete(ChannelFuture future) throws Exception {
+                // NOOP
+            }
+        });
+
+        cc.write(Unpooled.wrappedBuffer(data, 0, HEADER_LENGTH));
+        cc.sendFile(region, future);
+        cc.write(Unpooled.wrappedBuffer(data, 0, HEADER_LENGTH));
+
+        while (sh.counter < expected.length) {
+            if (sh.exception.get() != null) {
+                break;
+            }
+
+            try {
+                Thread.sleep(1);
+            } catch (InterruptedException e) {
+                // Ignore.
+            }
+        }
+
+        future.sync();
+        assertEquals(REGION_LENGTH, progress.get());
+        assertEquals(0, region.refCnt());
+
+        sh.channel.close().sync();
+        cc.close().sync();
+        sc.close().sync();
+
+        if (sh.exception.get() != null && !(sh.exception.get() instanceof IOException)) {
+            throw sh.exception.get();
+        }
+        if (sh.exception.get() != null) {
+            throw sh.exception.get();
+        }
+    }
+
+    private static class TestHandler extends ChannelInboundByteHandlerAdapter {
+        private final byte[] expected;
+        volatile Channel channel;
+        final AtomicReference<Throwable> exception = new AtomicReference<Throwable>();
+        volatile int counter;
+
+        TestHandler(byte[] expected) {
+            this.expected = expected;
+        }
+
+        @Override
+        public void channelActive(ChannelHandlerContext ctx)
+                throws Exception {
+            channel = ctx.channel();
+        }
+
+        @Override
+        public void inboundBufferUpdated(
+                ChannelHandlerContext ctx, ByteBuf in)
+                throws Exception {
+            byte[] actual = new byte[in.readableBytes()];
+            in.readBytes(actual);
+
+            int lastIdx = counter;
+            for (int i = 0; i < actual.length; i ++) {
+                assertEquals(expected[i + lastIdx], actual[i]);
+            }
+
+            counter += actual.length;
+        }
+
+        @Override
+        public void exceptionCaught(ChannelHandlerContext ctx,
+                Throwable cause) throws Exception {
+            if (exception.compareAndSet(null, cause)) {
+                ctx.close();
+            }
+        }
+    }
+}
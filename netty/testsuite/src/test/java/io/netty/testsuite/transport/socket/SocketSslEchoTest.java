@@ -197,7 +197,7 @@ public class SocketSslEchoTest extends AbstractSocketTest {
         }
     }
 
-    private static class BogusSslContextFactory {
+    static class BogusSslContextFactory {
 
         private static final String PROTOCOL = "TLS";
         private static final SSLContext SERVER_CONTEXT;
@@ -22,6 +22,10 @@ import io.netty.channel.socket.InternetProtocolFamily;
 import io.netty.channel.socket.aio.AioEventLoop;
 import io.netty.channel.socket.aio.AioServerSocketChannel;
 import io.netty.channel.socket.aio.AioSocketChannel;
+import io.netty.channel.socket.epoll.Epoll;
+import io.netty.channel.socket.epoll.EpollEventLoop;
+import io.netty.channel.socket.epoll.EpollServerSocketChannel;
+import io.netty.channel.socket.epoll.EpollSocketChannel;
 import io.netty.channel.socket.nio.NioDatagramChannel;
 import io.netty.channel.socket.nio.NioEventLoop;
 import io.netty.channel.socket.nio.NioServerSocketChannel;
@@ -52,6 +56,16 @@ final class SocketTestPermutation {
                                 channel(new NioServerSocketChannel());
             }
         });
+        if (Epoll.isAvailable()) {
+            sbfs.add(new Factory<ServerBootstrap>() {
+                @Override
+                public ServerBootstrap newInstance() {
+                    return new ServerBootstrap().
+                                    eventLoop(new EpollEventLoop(), new EpollEventLoop()).
+                                    channel(new EpollServerSocketChannel());
+                }
+            });
+        }
         sbfs.add(new Factory<ServerBootstrap>() {
             @Override
             public ServerBootstrap newInstance() {
@@ -79,6 +93,14 @@ final class SocketTestPermutation {
                 return new Bootstrap().eventLoop(new NioEventLoop()).channel(new NioSocketChannel());
             }
         });
+        if (Epoll.isAvailable()) {
+            cbfs.add(new Factory<Bootstrap>() {
+                @Override
+                public Bootstrap newInstance() {
+                    return new Bootstrap().eventLoop(new EpollEventLoop()).channel(new EpollSocketChannel());
+                }
+            });
+        }
         cbfs.add(new Factory<Bootstrap>() {
             @Override
             public Bootstrap newInstance() {
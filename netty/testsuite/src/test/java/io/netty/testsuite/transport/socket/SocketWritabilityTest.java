@@ -0,0 +1,174 @@
+/*
+ * Copyright 2012 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.testsuite.transport.socket;
+
+import static org.junit.Assert.*;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundByteHandlerAdapter;
+import io.netty.channel.socket.oio.OioSocketChannel;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+public class SocketWritabilityTest extends AbstractSocketTest {
+
+    static final byte[] data = new byte[16 * 1048576];
+
+    @Test
+    public void testWritability() throws Throwable {
+        run();
+    }
+
+    public void testWritability(ServerBootstrap sb, Bootstrap cb) throws Throwable {
+        final TestHandler sh = new TestHandler();
+        final TestHandler ch = new TestHandler();
+
+        sb.childHandler(sh);
+        cb.handler(ch);
+
+        Channel sc = sb.bind().sync().channel();
+        Channel cc = cb.connect().sync().channel();
+        assertTrue(cc.isWritable());
+
+        // A blocking channel writes everything before returning, so it never becomes unwritable.
+        final int expectedChanges = cc instanceof OioSocketChannel? 0 : 2;
+        if (expectedChanges != 0) {
+            // Stop the server from reading until the client becomes unwritable.
+            CountDownLatch latch = new CountDownLatch(1);
+            sh.readLatch = latch;
+            ch.unwritableLatch = latch;
+        }
+
+        // Far more than what the socket send buffer can hold at once.
+        cc.write(Unpooled.wrappedBuffer(data));
+
+        while (sh.counter < data.length || ch.writabilityChanges.size() < expectedChanges) {
+            if (sh.exception.get() != null) {
+                break;
+            }
+            if (ch.exception.get() != null) {
+                break;
+            }
+
+            try {
+                Thread.sleep(1);
+            } catch (InterruptedException e) {
+                // Ignore.
+            }
+        }
+
+        sh.channel.close().sync();
+        ch.channel.close().sync();
+        sc.close().sync();
+
+        if (sh.exception.get() != null && !(sh.exception.get() instanceof IOException)) {
+            throw sh.exception.get();
+        }
+        if (ch.exception.get() != null && !(ch.exception.get() instanceof IOException)) {
+            throw ch.exception.get();
+        }
+        if (sh.exception.get() != null) {
+            throw sh.exception.get();
+        }
+        if (ch.exception.get() != null) {
+            throw ch.exception.get();
+        }
+
+        assertEquals(expectedChanges, ch.writabilityChanges.size());
+        if (expectedChanges != 0) {
+            assertFalse(ch.writabilityChanges.get(0));
+            assertTrue(ch.writabilityChanges.get(1));
+        }
+        assertTrue(sh.writabilityChanges.isEmpty());
+        assertTrue(cc.isWritable());
+    }
+
+    private static class TestHandler extends ChannelInboundByteHandlerAdapter {
+        volatile Channel channel;
+        final AtomicReference<Throwable> exception = new AtomicReference<Throwable>();
+        final List<Boolean> writabilityChanges = new CopyOnWriteArrayList<Boolean>();
+        volatile int counter;
+        volatile CountDownLatch readLatch;
+        volatile CountDownLatch unwritableLatch;
+
+        @Override
+        public void channelActive(ChannelHandlerContext ctx)
+                throws Exception {
+            channel = ctx.channel();
+        }
+
+        @Override
+        public void channelWritabilityChanged(ChannelHandlerContext ctx)
+                throws Exception {
+            boolean writable = ctx.channel().isWritable();
+            writabilityChanges.add(writable);
+            if (!writable && unwritableLatch != null) {
+                unwritableLatch.countDown();
+            }
+        }
+
+        @Override
+        public void inboundBufferUpdated(
+                ChannelHandlerContext ctx, ByteBuf in) throws Exception {
+            if (readLatch != null) {
+                awaitUninterruptibly(readLatch);
+                readLatch = null;
+            }
+            counter += in.readableBytes();
+            in.skipBytes(in.readableBytes());
+        }
+
+        private static void awaitUninterruptibly(CountDownLatch latch) {
+            // A blocking event loop is woken up by an interrupt.
+            final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            boolean interrupted = false;
+            try {
+                for (;;) {
+                    try {
+                        assertTrue(latch.await(deadline - System.nanoTime(), TimeUnit.NANOSECONDS));
+                        return;
+                    } catch (InterruptedException e) {
+                        interrupted = true;
+                    }
+                }
+            } finally {
+                if (interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+
+        @Override
+        public void exceptionCaught(
+                ChannelHandlerContext ctx, Throwable cause)
+                throws Exception {
+            if (exception.compareAndSet(null, cause)) {
+                ctx.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,584 @@
+/*
+ * Copyright 2012 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+/*
+ * The JNI part of io.netty.channel.socket.epoll.Native.  Every function
+ * works on a raw file descriptor, and reports an error by throwing an
+ * IOException whose message contains the name of the failed system call.
+ */
+#define _GNU_SOURCE
+#include <jni.h>
+#include <errno.h>
+#include <fcntl.h>
+#include <limits.h>
+#include <stdint.h>
+#include <string.h>
+#include <unistd.h>
+#include <arpa/inet.h>
+#include <netinet/in.h>
+#include <netinet/tcp.h>
+#include <sys/epoll.h>
+#include <sys/eventfd.h>
+#include <sys/socket.h>
+#include <sys/uio.h>
+
+#define NATIVE_CLASS(name) Java_io_netty_channel_socket_epoll_Native_##name
+
+#ifndef SO_REUSEPORT
+#define SO_REUSEPORT 15
+#endif
+
+#ifndef IOV_MAX
+#define IOV_MAX 1024
+#endif
+
+/* AF_INET6 (dual-stack) if the kernel supports IPv6, AF_INET otherwise. */
+static int socketFamily = AF_INET6;
+
+static void throwException(JNIEnv *env, const char *className, const char *syscall, int err) {
+    char message[256];
+    jclass cls = (*env)->FindClass(env, className);
+    if (cls == NULL) {
+        return;
+    }
+    snprintf(message, sizeof(message), "%s() failed: %s", syscall, strerror(err));
+    (*env)->ThrowNew(env, cls, message);
+}
+
+static void throwIOException(JNIEnv *env, const char *syscall, int err) {
+    throwException(env, "java/io/IOException", syscall, err);
+}
+
+static void throwConnectException(JNIEnv *env, int err) {
+    throwException(env, "java/net/ConnectException", "connect", err);
+}
+
+static void throwClosedChannelException(JNIEnv *env) {
+    jclass cls = (*env)->FindClass(env, "java/nio/channels/ClosedChannelException");
+    if (cls != NULL) {
+        (*env)->ThrowNew(env, cls, NULL);
+    }
+}
+
+/* Converts the result of read(2) or write(2) into the value returned to Java. */
+static jint ioResult(JNIEnv *env, const char *syscall, ssize_t res, int err) {
+    if (res >= 0) {
+        return (jint) res;
+    }
+    if (err == EAGAIN || err == EWOULDBLOCK) {
+        return 0;
+    }
+    if (err == EBADF) {
+        throwClosedChannelException(env);
+    } else {
+        throwIOException(env, syscall, err);
+    }
+    return -1;
+}
+
+JNIEXPORT jint JNICALL JNI_OnLoad(JavaVM *vm, void *reserved) {
+    int fd = socket(AF_INET6, SOCK_STREAM, 0);
+    if (fd < 0) {
+        socketFamily = AF_INET;
+    } else {
+        close(fd);
+    }
+    return JNI_VERSION_1_6;
+}
+
+/* epoll */
+
+JNIEXPORT jint JNICALL NATIVE_CLASS(epollCreate)(JNIEnv *env, jclass clazz) {
+    int efd = epoll_create1(EPOLL_CLOEXEC);
+    if (efd < 0) {
+        throwIOException(env, "epoll_create1", errno);
+    }
+    return efd;
+}
+
+JNIEXPORT jint JNICALL NATIVE_CLASS(epollWait)(
+        JNIEnv *env, jclass clazz, jint efd, jlongArray events, jint timeout) {
+    struct epoll_event ev[512];
+    int maxEvents = (*env)->GetArrayLength(env, events);
+    int ready;
+    int i;
+    if (maxEvents > 512) {
+        maxEvents = 512;
+    }
+
+    ready = epoll_wait(efd, ev, maxEvents, timeout);
+    if (ready < 0) {
+        if (errno == EINTR) {
+            return 0;
+        }
+        throwIOException(env, "epoll_wait", errno);
+        return -1;
+    }
+
+    if (ready > 0) {
+        jlong packed[512];
+        for (i = 0; i < ready; i ++) {
+            // The file descriptor in the upper 32 bits and the events in the lower 32 bits.
+            packed[i] = ((jlong) ev[i].data.fd) << 32 | (jlong) ev[i].events;
+        }
+        (*env)->SetLongArrayRegion(env, events, 0, ready, packed);
+    }
+    return ready;
+}
+
+static void epollCtl(JNIEnv *env, jint efd, int op, jint fd, jint flags) {
+    struct epoll_event ev;
+    memset(&ev, 0, sizeof(ev));
+    ev.events = (uint32_t) flags;
+    ev.data.fd = fd;
+    if (epoll_ctl(efd, op, fd, &ev) < 0) {
+        throwIOException(env, "epoll_ctl", errno);
+    }
+}
+
+JNIEXPORT void JNICALL NATIVE_CLASS(epollCtlAdd)(JNIEnv *env, jclass clazz, jint efd, jint fd, jint flags) {
+    epollCtl(env, efd, EPOLL_CTL_ADD, fd, flags);
+}
+
+JNIEXPORT void JNICALL NATIVE_CLASS(epollCtlMod)(JNIEnv *env, jclass clazz, jint efd, jint fd, jint flags) {
+    epollCtl(env, efd, EPOLL_CTL_MOD, fd, flags);
+}
+
+JNIEXPORT void JNICALL NATIVE_CLASS(epollCtlDel)(JNIEnv *env, jclass clazz, jint efd, jint fd) {
+    struct epoll_event ev;
+    memset(&ev, 0, sizeof(ev));
+    if (epoll_ctl(efd, EPOLL_CTL_DEL, fd, &ev) < 0 && errno != ENOENT && errno != EBADF) {
+        throwIOException(env, "epoll_ctl", errno);
+    }
+}
+
+/* eventfd */
+
+JNIEXPORT jint JNICALL NATIVE_CLASS(eventFd)(JNIEnv *env, jclass clazz) {
+    int fd = eventfd(0, EFD_NONBLOCK | EFD_CLOEXEC);
+    if (fd < 0) {
+        throwIOException(env, "eventfd", errno);
+    }
+    return fd;
+}
+
+JNIEXPORT void JNICALL NATIVE_CLASS(eventFdWrite)(JNIEnv *env, jclass clazz, jint fd, jlong value) {
+    uint64_t val = (uint64_t) value;
+    if (write(fd, &val, sizeof(val)) < 0 && errno != EAGAIN) {
+        throwIOException(env, "write", errno);
+    }
+}
+
+JNIEXPORT void JNICALL NATIVE_CLASS(eventFdRead)(JNIEnv *env, jclass clazz, jint fd) {
+    uint64_t val;
+    if (read(fd, &val, sizeof(val)) < 0 && errno != EAGAIN) {
+        throwIOException(env, "read", errno);
+    }
+}
+
+JNIEXPORT void JNICALL NATIVE_CLASS(close)(JNIEnv *env, jclass clazz, jint fd) {
+    if (close(fd) < 0 && errno != EINTR) {
+        throwIOException(env, "close", errno);
+    }
+}
+
+/* read and write */
+
+JNIEXPORT jint JNICALL NATIVE_CLASS(read)(
+        JNIEnv *env, jclass clazz, jint fd, jobject buffer, jint pos, jint limit) {
+    char *address = (*env)->GetDirectBufferAddress(env, buffer);
+    ssize_t res;
+    if (address == NULL) {
+        throwIOException(env, "GetDirectBufferAddress", EINVAL);
+        return -1;
+    }
+    do {
+        res = read(fd, address + pos, (size_t) (limit - pos));
+    } while (res < 0 && errno == EINTR);
+
+    if (res == 0) {
+        // End of the stream
+        return -1;
+    }
+    return ioResult(env, "read", res, errno);
+}
+
+JNIEXPORT jint JNICALL NATIVE_CLASS(readArray)(
+        JNIEnv *env, jclass clazz, jint fd, jbyteArray array, jint off, jint len) {
+    char buf[8192];
+    ssize_t res;
+    if (len > (jint) sizeof(buf)) {
+        len = sizeof(buf);
+    }
+    do {
+        res = read(fd, buf, (size_t) len);
+    } while (res < 0 && errno == EINTR);
+
+    if (res == 0) {
+        return -1;
+    }
+    if (res > 0) {
+        (*env)->SetByteArrayRegion(env, array, off, (jsize) res, (jbyte *) buf);
+    }
+    return ioResult(env, "read", res, errno);
+}
+
+JNIEXPORT jint JNICALL NATIVE_CLASS(write)(
+        JNIEnv *env, jclass clazz, jint fd, jobject buffer, jint pos, jint limit) {
+    char *address = (*env)->GetDirectBufferAddress(env, buffer);
+    ssize_t res;
+    if (address == NULL) {
+        throwIOException(env, "GetDirectBufferAddress", EINVAL);
+        return -1;
+    }
+    do {
+        res = write(fd, address + pos, (size_t) (limit - pos));
+    } while (res < 0 && errno == EINTR);
+    return ioResult(env, "write", res, errno);
+}
+
+JNIEXPORT jint JNICALL NATIVE_CLASS(writeArray)(
+        JNIEnv *env, jclass clazz, jint fd, jbyteArray array, jint off, jint len) {
+    char buf[8192];
+    ssize_t res;
+    if (len > (jint) sizeof(buf)) {
+        len = sizeof(buf);
+    }
+    (*env)->GetByteArrayRegion(env, array, off, len, (jbyte *) buf);
+    do {
+        res = write(fd, buf, (size_t) len);
+    } while (res < 0 && errno == EINTR);
+    return ioResult(env, "write", res, errno);
+}
+
+JNIEXPORT jlong JNICALL NATIVE_CLASS(writev)(
+        JNIEnv *env, jclass clazz, jint fd, jobjectArray buffers, jintArray positions,
+        jintArray limits, jint offset, jint length) {
+    struct iovec iov[IOV_MAX];
+    jint pos[IOV_MAX];
+    jint lim[IOV_MAX];
+    ssize_t res;
+    int i;
+    if (length > IOV_MAX) {
+        length = IOV_MAX;
+    }
+
+    (*env)->GetIntArrayRegion(env, positions, offset, length, pos);
+    (*env)->GetIntArrayRegion(env, limits, offset, length, lim);
+    for (i = 0; i < length; i ++) {
+        jobject buffer = (*env)->GetObjectArrayElement(env, buffers, offset + i);
+        char *address = (*env)->GetDirectBufferAddress(env, buffer);
+        (*env)->DeleteLocalRef(env, buffer);
+        if (address == NULL) {
+            throwIOException(env, "GetDirectBufferAddress", EINVAL);
+            return -1;
+        }
+        iov[i].iov_base = address + pos[i];
+        iov[i].iov_len = (size_t) (lim[i] - pos[i]);
+    }
+
+    do {
+        res = writev(fd, iov, length);
+    } while (res < 0 && errno == EINTR);
+    return ioResult(env, "writev", res, errno);
+}
+
+/* sockets */
+
+static int toSockaddr(JNIEnv *env, jbyteArray address, jint scopeId, jint port,
+                      struct sockaddr_storage *addr, socklen_t *addrLen) {
+    jsize len = (*env)->GetArrayLength(env, address);
+    jbyte bytes[16];
+    memset(addr, 0, sizeof(*addr));
+    if (len != 4 && len != 16) {
+        throwIOException(env, "sockaddr", EINVAL);
+        return -1;
+    }
+    (*env)->GetByteArrayRegion(env, address, 0, len, bytes);
+
+    if (socketFamily == AF_INET6) {
+        struct sockaddr_in6 *in6 = (struct sockaddr_in6 *) addr;
+        in6->sin6_family = AF_INET6;
+        in6->sin6_port = htons((uint16_t) port);
+        if (len == 4) {
+            // IPv4-mapped IPv6 address
+            in6->sin6_addr.s6_addr[10] = 0xff;
+            in6->sin6_addr.s6_addr[11] = 0xff;
+            memcpy(&in6->sin6_addr.s6_addr[12], bytes, 4);
+        } else {
+            memcpy(&in6->sin6_addr.s6_addr, bytes, 16);
+            in6->sin6_scope_id = (uint32_t) scopeId;
+        }
+        *addrLen = sizeof(struct sockaddr_in6);
+    } else {
+        struct sockaddr_in *in = (struct sockaddr_in *) addr;
+        in->sin_family = AF_INET;
+        in->sin_port = htons((uint16_t) port);
+        if (len == 4) {
+            memcpy(&in->sin_addr.s_addr, bytes, 4);
+        } else {
+            const unsigned char mappedPrefix[12] = { 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0xff, 0xff };
+            if (memcmp(bytes, mappedPrefix, 12) != 0) {
+                throwIOException(env, "sockaddr", EAFNOSUPPORT);
+                return -1;
+            }
+            memcpy(&in->sin_addr.s_addr, bytes + 12, 4);
+        }
+        *addrLen = sizeof(struct sockaddr_in);
+    }
+    return 0;
+}
+
+/*
+ * Encodes a socket address into a byte array:
+ *   IPv4 - 4 bytes of address + 4 bytes of port
+ *   IPv6 - 16 bytes of address + 4 bytes of scope ID + 4 bytes of port
+ */
+static jbyteArray fromSockaddr(JNIEnv *env, const struct sockaddr_storage *addr) {
+    jbyte buf[24];
+    jsize len;
+    uint32_t port;
+    uint32_t scopeId;
+    jbyteArray array;
+
+    if (addr->ss_family == AF_INET) {
+        const struct sockaddr_in *in = (const struct sockaddr_in *) addr;
+        memcpy(buf, &in->sin_addr.s_addr, 4);
+        port = htonl(ntohs(in->sin_port));
+        memcpy(buf + 4, &port, 4);
+        len = 8;
+    } else if (addr->ss_family == AF_INET6) {
+        const struct sockaddr_in6 *in6 = (const struct sockaddr_in6 *) addr;
+        port = htonl(ntohs(in6->sin6_port));
+        if (IN6_IS_ADDR_V4MAPPED(&in6->sin6_addr)) {
+            memcpy(buf, &in6->sin6_addr.s6_addr[12], 4);
+            memcpy(buf + 4, &port, 4);
+            len = 8;
+        } else {
+            memcpy(buf, &in6->sin6_addr.s6_addr, 16);
+            scopeId = htonl(in6->sin6_scope_id);
+            memcpy(buf + 16, &scopeId, 4);
+            memcpy(buf + 20, &port, 4);
+            len = 24;
+        }
+    } else {
+        return NULL;
+    }
+
+    array = (*env)->NewByteArray(env, len);
+    if (array != NULL) {
+        (*env)->SetByteArrayRegion(env, array, 0, len, buf);
+    }
+    return array;
+}
+
+JNIEXPORT jint JNICALL NATIVE_CLASS(socketStreamFd)(JNIEnv *env, jclass clazz) {
+    int fd = socket(socketFamily, SOCK_STREAM | SOCK_NONBLOCK | SOCK_CLOEXEC, 0);
+    if (fd < 0) {
+        throwIOException(env, "socket", errno);
+        return -1;
+    }
+    if (socketFamily == AF_INET6) {
+        // Accept both IPv4 and IPv6 connections.
+        int v6Only = 0;
+        setsockopt(fd, IPPROTO_IPV6, IPV6_V6ONLY, &v6Only, sizeof(v6Only));
+    }
+    return fd;
+}
+
+JNIEXPORT void JNICALL NATIVE_CLASS(bind)(
+        JNIEnv *env, jclass clazz, jint fd, jbyteArray address, jint scopeId, jint port) {
+    struct sockaddr_storage addr;
+    socklen_t addrLen;
+    if (toSockaddr(env, address, scopeId, port, &addr, &addrLen) < 0) {
+        return;
+    }
+    if (bind(fd, (struct sockaddr *) &addr, addrLen) < 0) {
+        throwIOException(env, "bind", errno);
+    }
+}
+
+JNIEXPORT void JNICALL NATIVE_CLASS(listen)(JNIEnv *env, jclass clazz, jint fd, jint backlog) {
+    if (listen(fd, backlog) < 0) {
+        throwIOException(env, "listen", errno);
+    }
+}
+
+JNIEXPORT jboolean JNICALL NATIVE_CLASS(connect)(
+        JNIEnv *env, jclass clazz, jint fd, jbyteArray address, jint scopeId, jint port) {
+    struct sockaddr_storage addr;
+    socklen_t addrLen;
+    int res;
+    if (toSockaddr(env, address, scopeId, port, &addr, &addrLen) < 0) {
+        return JNI_FALSE;
+    }
+
+    do {
+        res = connect(fd, (struct sockaddr *) &addr, addrLen);
+    } while (res < 0 && errno == EINTR);
+
+    if (res < 0) {
+        if (errno == EINPROGRESS) {
+            return JNI_FALSE;
+        }
+        throwConnectException(env, errno);
+        return JNI_FALSE;
+    }
+    return JNI_TRUE;
+}
+
+JNIEXPORT jboolean JNICALL NATIVE_CLASS(finishConnect)(JNIEnv *env, jclass clazz, jint fd) {
+    int err = 0;
+    socklen_t len = sizeof(err);
+    if (getsockopt(fd, SOL_SOCKET, SO_ERROR, &err, &len) < 0) {
+        throwIOException(env, "getsockopt", errno);
+        return JNI_FALSE;
+    }
+    if (err == EINPROGRESS || err == EALREADY) {
+        return JNI_FALSE;
+    }
+    if (err != 0) {
+        throwConnectException(env, err);
+        return JNI_FALSE;
+    }
+    return JNI_TRUE;
+}
+
+JNIEXPORT jint JNICALL NATIVE_CLASS(accept)(JNIEnv *env, jclass clazz, jint fd) {
+    int socketFd;
+    do {
+        socketFd = accept4(fd, NULL, NULL, SOCK_NONBLOCK | SOCK_CLOEXEC);
+    } while (socketFd < 0 && errno == EINTR);
+
+    if (socketFd < 0) {
+        if (errno == EAGAIN || errno == EWOULDBLOCK) {
+            return -1;
+        }
+        throwIOException(env, "accept", errno);
+        return -1;
+    }
+    return socketFd;
+}
+
+JNIEXPORT void JNICALL NATIVE_CLASS(shutdown)(
+        JNIEnv *env, jclass clazz, jint fd, jboolean read, jboolean write) {
+    int how;
+    if (read && write) {
+        how = SHUT_RDWR;
+    } else if (read) {
+        how = SHUT_RD;
+    } else if (write) {
+        how = SHUT_WR;
+    } else {
+        return;
+    }
+    if (shutdown(fd, how) < 0 && errno != ENOTCONN) {
+        throwIOException(env, "shutdown", errno);
+    }
+}
+
+JNIEXPORT jbyteArray JNICALL NATIVE_CLASS(getSockName)(JNIEnv *env, jclass clazz, jint fd) {
+    struct sockaddr_storage addr;
+    socklen_t len = sizeof(addr);
+    if (getsockname(fd, (struct sockaddr *) &addr, &len) < 0) {
+        return NULL;
+    }
+    return fromSockaddr(env, &addr);
+}
+
+JNIEXPORT jbyteArray JNICALL NATIVE_CLASS(getPeerName)(JNIEnv *env, jclass clazz, jint fd) {
+    struct sockaddr_storage addr;
+    socklen_t len = sizeof(addr);
+    if (getpeername(fd, (struct sockaddr *) &addr, &len) < 0) {
+        return NULL;
+    }
+    return fromSockaddr(env, &addr);
+}
+
+/* socket options */
+
+static void setOption(JNIEnv *env, jint fd, int level, int optname, int value) {
+    if (setsockopt(fd, level, optname, &value, sizeof(value)) < 0) {
+        throwIOException(env, "setsockopt", errno);
+    }
+}
+
+static jint getOption(JNIEnv *env, jint fd, int level, int optname) {
+    int value = 0;
+    socklen_t len = sizeof(value);
+    if (getsockopt(fd, level, optname, &value, &len) < 0) {
+        throwIOException(env, "getsockopt", errno);
+        return -1;
+    }
+    return value;
+}
+
+#define INT_OPTION(name, level, optname) \
+    JNIEXPORT void JNICALL NATIVE_CLASS(set##name)(JNIEnv *env, jclass clazz, jint fd, jint value) { \
+        setOption(env, fd, level, optname, value); \
+    } \
+    JNIEXPORT jint JNICALL NATIVE_CLASS(get##name)(JNIEnv *env, jclass clazz, jint fd) { \
+        return getOption(env, fd, level, optname); \
+    }
+
+INT_OPTION(ReuseAddress, SOL_SOCKET, SO_REUSEADDR)
+INT_OPTION(ReusePort, SOL_SOCKET, SO_REUSEPORT)
+INT_OPTION(KeepAlive, SOL_SOCKET, SO_KEEPALIVE)
+INT_OPTION(ReceiveBufferSize, SOL_SOCKET, SO_RCVBUF)
+INT_OPTION(SendBufferSize, SOL_SOCKET, SO_SNDBUF)
+INT_OPTION(TcpNoDelay, IPPROTO_TCP, TCP_NODELAY)
+INT_OPTION(TcpCork, IPPROTO_TCP, TCP_CORK)
+INT_OPTION(TcpQuickAck, IPPROTO_TCP, TCP_QUICKACK)
+
+JNIEXPORT void JNICALL NATIVE_CLASS(setTrafficClass)(JNIEnv *env, jclass clazz, jint fd, jint value) {
+    if (socketFamily == AF_INET6) {
+        // Also applies to the IPv4 traffic of a dual-stack socket.
+        setOption(env, fd, IPPROTO_IPV6, IPV6_TCLASS, value);
+    } else {
+        setOption(env, fd, IPPROTO_IP, IP_TOS, value);
+    }
+}
+
+JNIEXPORT jint JNICALL NATIVE_CLASS(getTrafficClass)(JNIEnv *env, jclass clazz, jint fd) {
+    if (socketFamily == AF_INET6) {
+        return getOption(env, fd, IPPROTO_IPV6, IPV6_TCLASS);
+    }
+    return getOption(env, fd, IPPROTO_IP, IP_TOS);
+}
+
+JNIEXPORT void JNICALL NATIVE_CLASS(setSoLinger)(JNIEnv *env, jclass clazz, jint fd, jint value) {
+    struct linger l;
+    if (value < 0) {
+        l.l_onoff = 0;
+        l.l_linger = 0;
+    } else {
+        l.l_onoff = 1;
+        l.l_linger = value;
+    }
+    if (setsockopt(fd, SOL_SOCKET, SO_LINGER, &l, sizeof(l)) < 0) {
+        throwIOException(env, "setsockopt", errno);
+    }
+}
+
+JNIEXPORT jint JNICALL NATIVE_CLASS(getSoLinger)(JNIEnv *env, jclass clazz, jint fd) {
+    struct linger l;
+    socklen_t len = sizeof(l);
+    if (getsockopt(fd, SOL_SOCKET, SO_LINGER, &l, &len) < 0) {
+        throwIOException(env, "getsockopt", errno);
+        return -1;
+    }
+    return l.l_onoff ? l.l_linger : -1;
+}
@@ -16,6 +16,7 @@
 package io.netty.channel;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
 import io.netty.buffer.MessageBuf;
 import io.netty.logging.InternalLogger;
 import io.netty.logging.InternalLoggerFactory;
@@ -35,6 +36,12 @@ import java.util.concurrent.ConcurrentMap;
 public abstract class AbstractChannel extends DefaultAttributeMap implements Channel {
 
     private static final InternalLogger logger = InternalLoggerFactory.getInstance(AbstractChannel.class);
+
+    /**
+     * The number of the consecutive read events after which an inbound byte
+     * buffer larger than the expected receive buffer size is shrunk.
+     */
+    private static final int SHRINK_INBOUND_BUFFER_THRESHOLD = 4;
     
     // 静态缓存所有的channel
     static final ConcurrentMap<Integer, Channel> allChannels = new ConcurrentHashMap<Integer, Channel>();
@@ -75,7 +82,8 @@ public abstract class AbstractChannel extends DefaultAttributeMap implements Cha
     private final DefaultChannelPipeline pipeline;// pipeline
     
     private final ChannelFuture succeededFuture = new SucceededChannelFuture(this);
-    private final ChannelFuture voidFuture = new VoidChannelFuture(this);
+    private final ChannelFuture voidFuture = new VoidChannelFuture(this, true);
+    private final ChannelFuture unsafeVoidFuture = new VoidChannelFuture(this);
     private final CloseFuture closeFuture = new CloseFuture(this);
 
     private volatile SocketAddress localAddress;
@@ -83,12 +91,16 @@ public abstract class AbstractChannel extends DefaultAttributeMap implements Cha
     
     private volatile EventLoop eventLoop; // 用来监听处理IO事件
     private volatile boolean registered;
+    private volatile boolean writable = true;
 
     private ClosedChannelException closedChannelException;
     private final Deque<FlushCheckpoint> flushCheckpoints = new ArrayDeque<FlushCheckpoint>();
     private long writeCounter;
     private boolean inFlushNow;
     private boolean flushNowPending;
+    private final Deque<PendingFileRegion> pendingFileRegions = new ArrayDeque<PendingFileRegion>();
+    private int pendingFileRegionBytes;
+    private int oversizedInboundBufferReads;
 
     /** Cache for the string representation of this channel */
     private boolean strValActive;
@@ -200,6 +212,11 @@ public abstract class AbstractChannel extends DefaultAttributeMap implements Cha
         return registered;
     }
 
+    @Override
+    public boolean isWritable() {
+        return writable;
+    }
+
     @Override
     public ChannelFuture bind(SocketAddress localAddress) {
         return pipeline.bind(localAddress);
@@ -240,6 +257,11 @@ public abstract class AbstractChannel extends DefaultAttributeMap implements Cha
         return pipeline.write(message);
     }
 
+    @Override
+    public ChannelFuture sendFile(FileRegion region) {
+        return pipeline.sendFile(region);
+    }
+
     @Override
     public ChannelFuture bind(SocketAddress localAddress, ChannelFuture future) {
         return pipeline.bind(localAddress, future);
@@ -285,6 +307,11 @@ public abstract class AbstractChannel extends DefaultAttributeMap implements Cha
         return pipeline.flush(future);
     }
 
+    @Override
+    public ChannelFuture sendFile(FileRegion region, ChannelFuture future) {
+        return pipeline.sendFile(region, future);
+    }
+
     @Override
     public ChannelFuture write(Object message, ChannelFuture future) {
         return pipeline.write(message, future);
@@ -305,6 +332,11 @@ public abstract class AbstractChannel extends DefaultAttributeMap implements Cha
         return new FailedChannelFuture(this, cause);
     }
 
+    @Override
+    public ChannelFuture voidFuture() {
+        return voidFuture;
+    }
+
     @Override
     public ChannelFuture closeFuture() {
         return closeFuture;
@@ -390,7 +422,7 @@ public abstract class AbstractChannel extends DefaultAttributeMap implements Cha
 
         @Override
         public final ChannelFuture voidFuture() {
-            return voidFuture;
+            return unsafeVoidFuture;
         }
 
         @Override
@@ -429,6 +461,9 @@ public abstract class AbstractChannel extends DefaultAttributeMap implements Cha
             	// 子类定义不同的注册方式
                 Runnable postRegisterTask = doRegister();
                 registered = true;
+                if (eventLoop instanceof SingleThreadEventLoop) {
+                    ((SingleThreadEventLoop) eventLoop).channelRegistered();
+                }
                 
                 // 通知future成功
                 future.setSuccess();
@@ -533,6 +568,7 @@ public abstract class AbstractChannel extends DefaultAttributeMap implements Cha
                     }
 
                     notifyFlushFutures(closedChannelException);
+                    failPendingFileRegions(new ClosedChannelException());
 
                     if (wasActive && !isActive()) {
                         pipeline.fireChannelInactive();
@@ -569,6 +605,9 @@ public abstract class AbstractChannel extends DefaultAttributeMap implements Cha
                 } finally {
                     if (registered) {
                         registered = false;
+                        if (eventLoop() instanceof SingleThreadEventLoop) {
+                            ((SingleThreadEventLoop) eventLoop()).channelDeregistered();
+                        }
                         future.setSuccess();
                         pipeline.fireChannelUnregistered();
                     } else {
@@ -592,7 +631,7 @@ public abstract class AbstractChannel extends DefaultAttributeMap implements Cha
         public void flush(final ChannelFuture future) {
             if (eventLoop().inEventLoop()) {
                 // Append flush future to the notification list.
-                if (future != voidFuture) {
+                if (!(future instanceof VoidChannelFuture)) {
                     final int bufSize;
                     final ChannelHandlerContext ctx = directOutboundContext();
                     if (ctx.hasOutboundByteBuffer()) {
@@ -635,6 +674,8 @@ public abstract class AbstractChannel extends DefaultAttributeMap implements Cha
                         eventLoop().execute(flushLaterTask);
                     }
                 }
+
+                updateWritability();
             } else {
                 eventLoop().execute(new Runnable() {
                     @Override
@@ -659,7 +700,11 @@ public abstract class AbstractChannel extends DefaultAttributeMap implements Cha
                     ByteBuf out = ctx.outboundByteBuffer();
                     int oldSize = out.readableBytes();
                     try {
-                        doFlushByteBuffer(out);
+                        if (pendingFileRegions.isEmpty()) {
+                            doFlushByteBuffer(out);
+                        } else {
+                            flushFileRegions(out);
+                        }
                     } catch (Throwable t) {
                         cause = t;
                     } finally {
@@ -696,6 +741,92 @@ public abstract class AbstractChannel extends DefaultAttributeMap implements Cha
             } finally {
                 inFlushNow = false;
             }
+
+            updateWritability();
+        }
+
+        @Override
+        public void sendFile(final FileRegion region, final ChannelFuture future) {
+            if (eventLoop().inEventLoop()) {
+                if (!ensureOpen(future)) {
+                    region.release();
+                    return;
+                }
+
+                ChannelHandlerContext ctx = directOutboundContext();
+                if (!metadata().hasFileRegion() || !ctx.hasOutboundByteBuffer()) {
+                    region.release();
+                    future.setFailure(new UnsupportedOperationException(
+                            "file region not supported by " + AbstractChannel.this.getClass().getName()));
+                    return;
+                }
+
+                // The bytes in the outbound buffer must be sent before the region.
+                int bytesBefore = ctx.outboundByteBuffer().readableBytes() - pendingFileRegionBytes;
+                pendingFileRegionBytes += bytesBefore;
+                pendingFileRegions.add(new PendingFileRegion(region, future, bytesBefore));
+                flush(unsafeVoidFuture);
+            } else {
+                eventLoop().execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        sendFile(region, future);
+                    }
+                });
+            }
+        }
+
+        private void flushFileRegions(ByteBuf out) throws Exception {
+            for (;;) {
+                PendingFileRegion pending = pendingFileRegions.peek();
+                if (pending == null) {
+                    // All regions have been sent.
+                    doFlushByteBuffer(out);
+                    return;
+                }
+
+                if (pending.bytesBefore > 0) {
+                    // Flush only the bytes which precede the region.
+                    ByteBuf prefix = out.slice(out.readerIndex(), pending.bytesBefore);
+                    try {
+                        doFlushByteBuffer(prefix);
+                    } finally {
+                        int writtenBytes = pending.bytesBefore - prefix.readableBytes();
+                        out.skipBytes(writtenBytes);
+                        pending.bytesBefore -= writtenBytes;
+                        pendingFileRegionBytes -= writtenBytes;
+                    }
+
+                    if (pending.bytesBefore > 0) {
+                        // The transport will flush again when the channel becomes writable.
+                        return;
+                    }
+                }
+
+                FileRegion region = pending.region;
+                long writtenBytes;
+                try {
+                    writtenBytes = doFlushFileRegion(region, pending.transferred);
+                } catch (Exception e) {
+                    pendingFileRegions.remove();
+                    region.release();
+                    pending.future.setFailure(e);
+                    throw e;
+                }
+
+                if (writtenBytes > 0) {
+                    pending.transferred += writtenBytes;
+                    pending.future.setProgress(writtenBytes, pending.transferred, region.count());
+                }
+
+                if (pending.transferred < region.count()) {
+                    return;
+                }
+
+                pendingFileRegions.remove();
+                region.release();
+                pending.future.setSuccess();
+            }
         }
 
         protected final boolean ensureOpen(ChannelFuture future) {
@@ -706,7 +837,10 @@ public abstract class AbstractChannel extends DefaultAttributeMap implements Cha
 
             Exception e = new ClosedChannelException();
             future.setFailure(e);
-            pipeline.fireExceptionCaught(e);
+            if (future != voidFuture) {
+                // The void future has fired it already.
+                pipeline.fireExceptionCaught(e);
+            }
             return false;
         }
 
@@ -722,7 +856,7 @@ public abstract class AbstractChannel extends DefaultAttributeMap implements Cha
         @Override
         public void run() {
             flushNowPending = false;
-            unsafe().flush(voidFuture);
+            unsafe().flush(unsafeVoidFuture);
         }
     }
 
@@ -747,8 +881,71 @@ public abstract class AbstractChannel extends DefaultAttributeMap implements Cha
         throw new UnsupportedOperationException();
     }
 
+    /**
+     * Transfers the specified {@link FileRegion} from the specified relative
+     * position.  Invoked only when {@link ChannelMetadata#hasFileRegion()} is
+     * {@code true}.
+     *
+     * @return the number of transferred bytes
+     */
+    protected long doFlushFileRegion(FileRegion region, long position) throws Exception {
+        throw new UnsupportedOperationException();
+    }
+
     protected abstract boolean isFlushPending();
 
+    /**
+     * Updates {@link #isWritable()} against the write buffer water marks, and
+     * triggers {@link ChannelPipeline#fireChannelWritabilityChanged()} if it
+     * has changed.  Must be called from the event loop whenever the number of
+     * the bytes in the outbound buffer could have changed.
+     */
+    protected final void updateWritability() {
+        ChannelHandlerContext ctx = unsafe().directOutboundContext();
+        if (!ctx.hasOutboundByteBuffer()) {
+            return;
+        }
+
+        int pendingBytes = ctx.outboundByteBuffer().readableBytes();
+        if (writable) {
+            if (pendingBytes > config().getWriteBufferHighWaterMark()) {
+                writable = false;
+                pipeline.fireChannelWritabilityChanged();
+            }
+        } else {
+            if (pendingBytes < config().getWriteBufferLowWaterMark()) {
+                writable = true;
+                pipeline.fireChannelWritabilityChanged();
+            }
+        }
+    }
+
+    /**
+     * Shrinks the specified inbound byte buffer to the specified expected
+     * receive buffer size once the buffer has been larger than that after
+     * several consecutive read events, so that a buffer grown for a burst is
+     * not reallocated whenever the prediction drops for a moment.  Must be
+     * called from the event loop after every read event.
+     *
+     * @return {@code true} if and only if the buffer has been shrunk
+     *
+     * @see ByteBufUtil#shrink(ByteBuf, int)
+     */
+    protected final boolean shrinkInboundByteBuffer(ByteBuf buf, int expectedCapacity) {
+        if (buf.capacity() <= expectedCapacity) {
+            oversizedInboundBufferReads = 0;
+            return false;
+        }
+        if (++ oversizedInboundBufferReads < SHRINK_INBOUND_BUFFER_THRESHOLD) {
+            return false;
+        }
+        if (ByteBufUtil.shrink(buf, expectedCapacity)) {
+            oversizedInboundBufferReads = 0;
+            return true;
+        }
+        return false;
+    }
+
     protected void notifyFlushFutures() {
         notifyFlushFutures(0);
     }
@@ -793,6 +990,18 @@ public abstract class AbstractChannel extends DefaultAttributeMap implements Cha
         }
     }
 
+    private void failPendingFileRegions(Throwable cause) {
+        pendingFileRegionBytes = 0;
+        for (;;) {
+            PendingFileRegion pending = pendingFileRegions.poll();
+            if (pending == null) {
+                break;
+            }
+            pending.region.release();
+            pending.future.setFailure(cause);
+        }
+    }
+
     protected void notifyFlushFutures(Throwable cause) {
         notifyFlushFutures();
         for (;;) {
@@ -835,6 +1044,19 @@ public abstract class AbstractChannel extends DefaultAttributeMap implements Cha
         }
     }
 
+    private static final class PendingFileRegion {
+        final FileRegion region;
+        final ChannelFuture future;
+        int bytesBefore;
+        long transferred;
+
+        PendingFileRegion(FileRegion region, ChannelFuture future, int bytesBefore) {
+            this.region = region;
+            this.future = future;
+            this.bytesBefore = bytesBefore;
+        }
+    }
+
     private final class CloseFuture extends DefaultChannelFuture implements ChannelFuture.Unsafe {
 
         CloseFuture(AbstractChannel ch) {
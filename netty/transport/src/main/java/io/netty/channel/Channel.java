@@ -130,6 +130,19 @@ public interface Channel extends AttributeMap, ChannelOutboundInvoker, ChannelFu
     boolean isRegistered();
     boolean isActive();
 
+    /**
+     * Returns {@code true} if and only if the number of the bytes queued in
+     * the outbound buffer has not exceeded the
+     * {@linkplain ChannelConfig#getWriteBufferHighWaterMark() high water mark},
+     * or has dropped below the
+     * {@linkplain ChannelConfig#getWriteBufferLowWaterMark() low water mark}
+     * since then.  A producer is supposed to stop writing until the channel
+     * becomes writable again, which is notified via
+     * {@link ChannelStateHandler#channelWritabilityChanged(ChannelHandlerContext)}.
+     * A channel without an outbound byte buffer is always writable.
+     */
+    boolean isWritable();
+
     ChannelMetadata metadata();
 
     ByteBuf outboundByteBuffer();
@@ -186,5 +199,6 @@ public interface Channel extends AttributeMap, ChannelOutboundInvoker, ChannelFu
 
         void flush(ChannelFuture future);
         void flushNow();
+        void sendFile(FileRegion region, ChannelFuture future);
     }
 }
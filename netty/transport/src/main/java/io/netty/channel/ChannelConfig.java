@@ -15,9 +15,13 @@
  */
 package io.netty.channel;
 
+import io.netty.buffer.ByteBufFactory;
+import io.netty.buffer.HeapByteBufFactory;
+import io.netty.buffer.PooledByteBufFactory;
 import io.netty.channel.socket.SocketChannelConfig;
 
 import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
 import java.nio.channels.WritableByteChannel;
 import java.util.Map;
 
@@ -46,6 +50,26 @@ import java.util.Map;
  * <th>Name</th><th>Associated setter method</th>
  * </tr><tr>
  * <td>{@code "connectTimeoutMillis"}</td><td>{@link #setConnectTimeoutMillis(int)}</td>
+ * </tr><tr>
+ * <td>{@code "writeSpinCount"}</td><td>{@link #setWriteSpinCount(int)}</td>
+ * </tr><tr>
+ * <td>{@code "gatheringWriteLimit"}</td><td>{@link #setGatheringWriteLimit(int)}</td>
+ * </tr><tr>
+ * <td>{@code "maxMessagesPerRead"}</td><td>{@link #setMaxMessagesPerRead(int)}</td>
+ * </tr><tr>
+ * <td>{@code "maxBytesPerRead"}</td><td>{@link #setMaxBytesPerRead(int)}</td>
+ * </tr><tr>
+ * <td>{@code "writeBufferHighWaterMark"}</td><td>{@link #setWriteBufferHighWaterMark(int)}</td>
+ * </tr><tr>
+ * <td>{@code "writeBufferLowWaterMark"}</td><td>{@link #setWriteBufferLowWaterMark(int)}</td>
+ * </tr><tr>
+ * <td>{@code "bufferFactory"}</td><td>{@link #setBufferFactory(ByteBufFactory)}</td>
+ * </tr><tr>
+ * <td>{@code "receiveBufferSizePredictor"}</td>
+ * <td>{@link #setReceiveBufferSizePredictor(ReceiveBufferSizePredictor)}</td>
+ * </tr><tr>
+ * <td>{@code "receiveBufferSizePredictorFactory"}</td>
+ * <td>{@link #setReceiveBufferSizePredictorFactory(ReceiveBufferSizePredictorFactory)}</td>
  * </tr>
  * </table>
  * <p>
@@ -130,4 +154,154 @@ public interface ChannelConfig {
      *         if the specified value is {@code 0} or less than {@code 0}
      */
     void setWriteSpinCount(int writeSpinCount);
+
+    /**
+     * Returns the maximum number of buffers which are passed to a single
+     * {@link GatheringByteChannel#write(ByteBuffer[], int, int)} call when the
+     * outbound buffer consists of multiple components.  It corresponds to the
+     * maximum length of the I/O vector of a {@code writev()} system call.
+     * The default value is {@code 1024}.
+     */
+    int getGatheringWriteLimit();
+
+    /**
+     * Sets the maximum number of buffers which are passed to a single
+     * {@link GatheringByteChannel#write(ByteBuffer[], int, int)} call when the
+     * outbound buffer consists of multiple components.  It corresponds to the
+     * maximum length of the I/O vector of a {@code writev()} system call.
+     * The default value is {@code 1024}.
+     *
+     * @throws IllegalArgumentException
+     *         if the specified value is {@code 0} or less than {@code 0}
+     */
+    void setGatheringWriteLimit(int gatheringWriteLimit);
+
+    /**
+     * Returns the maximum number of read operations performed for a single
+     * readiness event, such as the number of the connections accepted by a
+     * server channel or the number of the datagrams received.  The remaining
+     * data is read in a later iteration of the event loop so that a busy
+     * channel does not starve the other channels of the same event loop.
+     * The default value is {@code 16}.
+     */
+    int getMaxMessagesPerRead();
+
+    /**
+     * Sets the maximum number of read operations performed for a single
+     * readiness event.  A smaller value improves the fairness between the
+     * channels of the same event loop at the cost of throughput.
+     *
+     * @throws IllegalArgumentException
+     *         if the specified value is {@code 0} or less than {@code 0}
+     */
+    void setMaxMessagesPerRead(int maxMessagesPerRead);
+
+    /**
+     * Returns the number of bytes after which a byte-oriented channel stops
+     * reading for a single readiness event.  The remaining bytes are read in a
+     * later iteration of the event loop.  The default value is
+     * {@link Integer#MAX_VALUE}, which leaves the limit to
+     * {@link #getMaxMessagesPerRead()}.
+     */
+    int getMaxBytesPerRead();
+
+    /**
+     * Sets the number of bytes after which a byte-oriented channel stops
+     * reading for a single readiness event.  A single read operation is not
+     * split, so slightly more bytes than the specified value can be read.
+     *
+     * @throws IllegalArgumentException
+     *         if the specified value is {@code 0} or less than {@code 0}
+     */
+    void setMaxBytesPerRead(int maxBytesPerRead);
+
+    /**
+     * Returns the high water mark of the outbound buffer.  If the number of
+     * the bytes queued in the outbound buffer exceeds this value,
+     * {@link Channel#isWritable()} will start to return {@code false}.
+     * The default value is {@code 65536}.
+     */
+    int getWriteBufferHighWaterMark();
+
+    /**
+     * Sets the high water mark of the outbound buffer.  If the number of
+     * the bytes queued in the outbound buffer exceeds this value,
+     * {@link Channel#isWritable()} will start to return {@code false}.
+     *
+     * @throws IllegalArgumentException
+     *         if the specified value is less than the
+     *         {@linkplain #getWriteBufferLowWaterMark() low water mark}
+     */
+    void setWriteBufferHighWaterMark(int writeBufferHighWaterMark);
+
+    /**
+     * Returns the low water mark of the outbound buffer.  Once the number of
+     * the bytes queued in the outbound buffer exceeded the
+     * {@linkplain #getWriteBufferHighWaterMark() high water mark} and then
+     * dropped down below this value, {@link Channel#isWritable()} will start
+     * to return {@code true} again.  The default value is {@code 32768}.
+     */
+    int getWriteBufferLowWaterMark();
+
+    /**
+     * Sets the low water mark of the outbound buffer.  Once the number of
+     * the bytes queued in the outbound buffer exceeded the
+     * {@linkplain #getWriteBufferHighWaterMark() high water mark} and then
+     * dropped down below this value, {@link Channel#isWritable()} will start
+     * to return {@code true} again.
+     *
+     * @throws IllegalArgumentException
+     *         if the specified value is less than {@code 0} or greater than
+     *         the {@linkplain #getWriteBufferHighWaterMark() high water mark}
+     */
+    void setWriteBufferLowWaterMark(int writeBufferLowWaterMark);
+
+    /**
+     * Returns the {@link ByteBufFactory} which is used by the handlers of the
+     * channel to allocate their byte buffers.  The default value is
+     * {@link HeapByteBufFactory#getInstance()}.
+     */
+    ByteBufFactory getBufferFactory();
+
+    /**
+     * Sets the {@link ByteBufFactory} which is used by the handlers of the
+     * channel to allocate their byte buffers.  Specify a
+     * {@link PooledByteBufFactory} to recycle the memory of the buffers
+     * instead of allocating a new one for every buffer expansion.
+     */
+    void setBufferFactory(ByteBufFactory bufferFactory);
+
+    /**
+     * Returns the {@link ReceiveBufferSizePredictor} which predicts the
+     * number of readable bytes in the socket receive buffer.  A byte-oriented
+     * channel makes room for the predicted number of bytes in its inbound
+     * buffer before each read, and shrinks the inbound buffer to the
+     * prediction once it has been consumed.  If no predictor was set, a new
+     * one is created from {@link #getReceiveBufferSizePredictorFactory()}.
+     */
+    ReceiveBufferSizePredictor getReceiveBufferSizePredictor();
+
+    /**
+     * Sets the {@link ReceiveBufferSizePredictor} which predicts the
+     * number of readable bytes in the socket receive buffer.  A predictor
+     * may keep the state of a single channel, so please use
+     * {@link #setReceiveBufferSizePredictorFactory(ReceiveBufferSizePredictorFactory)}
+     * to configure the child channels of a server.
+     */
+    void setReceiveBufferSizePredictor(ReceiveBufferSizePredictor predictor);
+
+    /**
+     * Returns the {@link ReceiveBufferSizePredictorFactory} which creates a new
+     * {@link ReceiveBufferSizePredictor} when no predictor was set explicitly.
+     * The default value is {@code new AdaptiveReceiveBufferSizePredictorFactory()}.
+     */
+    ReceiveBufferSizePredictorFactory getReceiveBufferSizePredictorFactory();
+
+    /**
+     * Sets the {@link ReceiveBufferSizePredictorFactory} which creates a new
+     * {@link ReceiveBufferSizePredictor} when no predictor was set explicitly.
+     * Setting a new factory discards the predictor created by the previous
+     * factory.
+     */
+    void setReceiveBufferSizePredictorFactory(ReceiveBufferSizePredictorFactory predictorFactory);
 }
@@ -20,5 +20,19 @@ public interface ChannelFutureFactory {
     ChannelFuture newFuture();
     ChannelFuture newSucceededFuture();
     ChannelFuture newFailedFuture(Throwable cause);
+
+    /**
+     * Returns a shared {@link ChannelFuture} which can be passed to
+     * {@code write()}, {@code flush()} and {@code sendFile()} when the caller
+     * does not need to be notified of the result, so that no future is
+     * allocated per operation.  A failure of such an operation is forwarded to
+     * {@link ChannelPipeline#fireExceptionCaught(Throwable)} instead.
+     * <p>
+     * The returned future never completes and does not accept any listener.
+     * Calling {@code addListener()}, {@code await()} or {@code sync()} on it
+     * raises an {@link IllegalStateException}.  It must not be passed to the
+     * other outbound operations.
+     */
+    ChannelFuture voidFuture();
     
 }
@@ -15,15 +15,19 @@
  */
 package io.netty.channel;
 
+import io.netty.channel.ChannelHandlerMask.Skip;
+
 import java.net.SocketAddress;
 
 public class ChannelHandlerAdapter extends ChannelStateHandlerAdapter implements ChannelOperationHandler {
 
+    @Skip
     @Override
     public void bind(ChannelHandlerContext ctx, SocketAddress localAddress, ChannelFuture future) throws Exception {
         ctx.bind(localAddress, future);
     }
 
+    @Skip
     @Override
     public void connect(
             ChannelHandlerContext ctx, SocketAddress remoteAddress, SocketAddress localAddress,
@@ -31,21 +35,25 @@ public class ChannelHandlerAdapter extends ChannelStateHandlerAdapter implements
         ctx.connect(remoteAddress, localAddress, future);
     }
 
+    @Skip
     @Override
     public void disconnect(ChannelHandlerContext ctx, ChannelFuture future) throws Exception {
         ctx.disconnect(future);
     }
 
+    @Skip
     @Override
     public void close(ChannelHandlerContext ctx, ChannelFuture future) throws Exception {
         ctx.close(future);
     }
 
+    @Skip
     @Override
     public void deregister(ChannelHandlerContext ctx, ChannelFuture future) throws Exception {
         ctx.deregister(future);
     }
 
+    @Skip
     @Override
     public void flush(ChannelHandlerContext ctx, ChannelFuture future) throws Exception {
         if (this instanceof ChannelOutboundHandler) {
@@ -55,4 +63,10 @@ public class ChannelHandlerAdapter extends ChannelStateHandlerAdapter implements
         }
         ctx.flush(future);
     }
+
+    @Skip
+    @Override
+    public void sendFile(ChannelHandlerContext ctx, FileRegion region, ChannelFuture future) throws Exception {
+        ctx.sendFile(region, future);
+    }
 }
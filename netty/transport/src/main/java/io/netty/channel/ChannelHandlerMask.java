@@ -0,0 +1,179 @@
+/*
+ * Copyright 2012 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.net.SocketAddress;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Computes which events a {@link ChannelHandler} handles, so that a
+ * {@link DefaultChannelHandlerContext} can skip the handlers which would
+ * merely forward an event to the next handler.
+ * <p>
+ * An event is considered unhandled when the handler inherits the method of an
+ * adapter which is annotated with {@link Skip}.  The mask is computed once per
+ * handler class.
+ */
+final class ChannelHandlerMask {
+
+    static final int MASK_EXCEPTION_CAUGHT = 1;
+    static final int MASK_USER_EVENT_TRIGGERED = 1 << 1;
+
+    // ChannelStateHandler
+    static final int MASK_CHANNEL_REGISTERED = 1 << 2;
+    static final int MASK_CHANNEL_UNREGISTERED = 1 << 3;
+    static final int MASK_CHANNEL_ACTIVE = 1 << 4;
+    static final int MASK_CHANNEL_INACTIVE = 1 << 5;
+    static final int MASK_CHANNEL_WRITABILITY_CHANGED = 1 << 6;
+    static final int MASK_INBOUND_BUFFER_UPDATED = 1 << 7;
+
+    // ChannelOperationHandler
+    static final int MASK_BIND = 1 << 8;
+    static final int MASK_CONNECT = 1 << 9;
+    static final int MASK_DISCONNECT = 1 << 10;
+    static final int MASK_CLOSE = 1 << 11;
+    static final int MASK_DEREGISTER = 1 << 12;
+    static final int MASK_FLUSH = 1 << 13;
+    static final int MASK_SEND_FILE = 1 << 14;
+
+    static final int MASK_ALL_STATE =
+            MASK_CHANNEL_REGISTERED | MASK_CHANNEL_UNREGISTERED | MASK_CHANNEL_ACTIVE |
+            MASK_CHANNEL_INACTIVE | MASK_CHANNEL_WRITABILITY_CHANGED | MASK_INBOUND_BUFFER_UPDATED;
+    static final int MASK_ALL_OPERATION =
+            MASK_BIND | MASK_CONNECT | MASK_DISCONNECT | MASK_CLOSE |
+            MASK_DEREGISTER | MASK_FLUSH | MASK_SEND_FILE;
+
+    // Weak keys so that the handler classes can be unloaded.
+    private static final ThreadLocal<Map<Class<?>, Integer>> MASKS =
+            new ThreadLocal<Map<Class<?>, Integer>>() {
+                @Override
+                protected Map<Class<?>, Integer> initialValue() {
+                    return new WeakHashMap<Class<?>, Integer>(32);
+                }
+            };
+
+    /**
+     * Returns the events handled by the specified {@link ChannelHandler} type.
+     */
+    static int mask(Class<? extends ChannelHandler> handlerType) {
+        Map<Class<?>, Integer> masks = MASKS.get();
+        Integer mask = masks.get(handlerType);
+        if (mask == null) {
+            mask = mask0(handlerType);
+            masks.put(handlerType, mask);
+        }
+        return mask;
+    }
+
+    private static int mask0(Class<? extends ChannelHandler> handlerType) {
+        int mask = 0;
+        if (!isSkippable(handlerType, "exceptionCaught", Throwable.class)) {
+            mask |= MASK_EXCEPTION_CAUGHT;
+        }
+        if (!isSkippable(handlerType, "userEventTriggered", Object.class)) {
+            mask |= MASK_USER_EVENT_TRIGGERED;
+        }
+
+        if (ChannelStateHandler.class.isAssignableFrom(handlerType)) {
+            mask |= MASK_ALL_STATE;
+            if (isSkippable(handlerType, "channelRegistered")) {
+                mask &= ~MASK_CHANNEL_REGISTERED;
+            }
+            if (isSkippable(handlerType, "channelUnregistered")) {
+                mask &= ~MASK_CHANNEL_UNREGISTERED;
+            }
+            if (isSkippable(handlerType, "channelActive")) {
+                mask &= ~MASK_CHANNEL_ACTIVE;
+            }
+            if (isSkippable(handlerType, "channelInactive")) {
+                mask &= ~MASK_CHANNEL_INACTIVE;
+            }
+            if (isSkippable(handlerType, "channelWritabilityChanged")) {
+                mask &= ~MASK_CHANNEL_WRITABILITY_CHANGED;
+            }
+            // A handler with an inbound buffer must consume it.
+            if (!ChannelInboundHandler.class.isAssignableFrom(handlerType) &&
+                    isSkippable(handlerType, "inboundBufferUpdated")) {
+                mask &= ~MASK_INBOUND_BUFFER_UPDATED;
+            }
+        }
+
+        if (ChannelOperationHandler.class.isAssignableFrom(handlerType)) {
+            mask |= MASK_ALL_OPERATION;
+            if (isSkippable(handlerType, "bind", SocketAddress.class, ChannelFuture.class)) {
+                mask &= ~MASK_BIND;
+            }
+            if (isSkippable(
+                    handlerType, "connect", SocketAddress.class, SocketAddress.class, ChannelFuture.class)) {
+                mask &= ~MASK_CONNECT;
+            }
+            if (isSkippable(handlerType, "disconnect", ChannelFuture.class)) {
+                mask &= ~MASK_DISCONNECT;
+            }
+            if (isSkippable(handlerType, "close", ChannelFuture.class)) {
+                mask &= ~MASK_CLOSE;
+            }
+            if (isSkippable(handlerType, "deregister", ChannelFuture.class)) {
+                mask &= ~MASK_DEREGISTER;
+            }
+            // A handler with an outbound buffer must consume it.
+            if (!ChannelOutboundHandler.class.isAssignableFrom(handlerType) &&
+                    isSkippable(handlerType, "flush", ChannelFuture.class)) {
+                mask &= ~MASK_FLUSH;
+            }
+            if (isSkippable(handlerType, "sendFile", FileRegion.class, ChannelFuture.class)) {
+                mask &= ~MASK_SEND_FILE;
+            }
+        }
+
+        return mask;
+    }
+
+    private static boolean isSkippable(
+            Class<?> handlerType, String methodName, Class<?>... paramTypes) {
+        Class<?>[] allParamTypes = new Class<?>[paramTypes.length + 1];
+        allParamTypes[0] = ChannelHandlerContext.class;
+        System.arraycopy(paramTypes, 0, allParamTypes, 1, paramTypes.length);
+        try {
+            return handlerType.getMethod(methodName, allParamTypes).isAnnotationPresent(Skip.class);
+        } catch (Exception e) {
+            // Not accessible - always invoke the handler to be safe.
+            return false;
+        }
+    }
+
+    /**
+     * Indicates that the annotated method of an adapter only forwards the event
+     * to the next handler, so the handler can be skipped unless a subclass
+     * overrides the method.
+     */
+    @Target(ElementType.METHOD)
+    @Retention(RetentionPolicy.RUNTIME)
+    @Documented
+    @interface Skip {
+        // no value
+    }
+
+    private ChannelHandlerMask() {
+        // Unused
+    }
+}
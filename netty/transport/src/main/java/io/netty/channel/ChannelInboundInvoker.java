@@ -21,6 +21,7 @@ public interface ChannelInboundInvoker {
     void fireChannelUnregistered();
     void fireChannelActive();
     void fireChannelInactive();
+    void fireChannelWritabilityChanged();
     void fireExceptionCaught(Throwable cause);
     void fireUserEventTriggered(Object event);
     void fireInboundBufferUpdated();
@@ -26,14 +26,20 @@ public final class ChannelMetadata {
 
     private final ChannelBufType bufferType;
     private final boolean hasDisconnect;
+    private final boolean hasFileRegion;
 
     public ChannelMetadata(ChannelBufType bufferType, boolean hasDisconnect) {
+        this(bufferType, hasDisconnect, false);
+    }
+
+    public ChannelMetadata(ChannelBufType bufferType, boolean hasDisconnect, boolean hasFileRegion) {
         if (bufferType == null) {
             throw new NullPointerException("bufferType");
         }
 
         this.bufferType = bufferType;
         this.hasDisconnect = hasDisconnect;
+        this.hasFileRegion = hasFileRegion;
     }
 
     public ChannelBufType bufferType() {
@@ -48,4 +54,12 @@ public final class ChannelMetadata {
     public boolean hasDisconnect() {
         return hasDisconnect;
     }
+
+    /**
+     * Returns {@code true} if and only if the channel can transfer a {@link FileRegion}
+     * without copying it into the outbound buffer, such as a TCP/IP socket.
+     */
+    public boolean hasFileRegion() {
+        return hasFileRegion;
+    }
 }
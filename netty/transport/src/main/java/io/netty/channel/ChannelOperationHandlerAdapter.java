@@ -15,6 +15,8 @@
  */
 package io.netty.channel;
 
+import io.netty.channel.ChannelHandlerMask.Skip;
+
 import java.net.SocketAddress;
 
 public class ChannelOperationHandlerAdapter implements ChannelOperationHandler {
@@ -39,48 +41,56 @@ public class ChannelOperationHandlerAdapter implements ChannelOperationHandler {
         // NOOP
     }
 
+    @Skip
     @Override
     public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause)
             throws Exception {
         ctx.fireExceptionCaught(cause);
     }
 
+    @Skip
     @Override
     public void userEventTriggered(ChannelHandlerContext ctx, Object evt)
             throws Exception {
         ctx.fireUserEventTriggered(evt);
     }
 
+    @Skip
     @Override
     public void bind(ChannelHandlerContext ctx, SocketAddress localAddress,
             ChannelFuture future) throws Exception {
         ctx.bind(localAddress, future);
     }
 
+    @Skip
     @Override
     public void connect(ChannelHandlerContext ctx, SocketAddress remoteAddress,
             SocketAddress localAddress, ChannelFuture future) throws Exception {
         ctx.connect(remoteAddress, localAddress, future);
     }
 
+    @Skip
     @Override
     public void disconnect(ChannelHandlerContext ctx, ChannelFuture future)
             throws Exception {
         ctx.disconnect(future);
     }
 
+    @Skip
     @Override
     public void close(ChannelHandlerContext ctx, ChannelFuture future)
             throws Exception {
         ctx.close(future);
     }
 
+    @Skip
     @Override
     public void deregister(ChannelHandlerContext ctx, ChannelFuture future)
             throws Exception {
         ctx.deregister(future);
     }
 
+    @Skip
     @Override
     public void flush(ChannelHandlerContext ctx, ChannelFuture future)
             throws Exception {
@@ -91,4 +101,11 @@ public class ChannelOperationHandlerAdapter implements ChannelOperationHandler {
         }
         ctx.flush(future);
     }
+
+    @Skip
+    @Override
+    public void sendFile(ChannelHandlerContext ctx, FileRegion region, ChannelFuture future)
+            throws Exception {
+        ctx.sendFile(region, future);
+    }
 }
@@ -15,6 +15,7 @@
  */
 package io.netty.channel;
 
+import io.netty.buffer.ByteBufFactory;
 import io.netty.util.UniqueName;
 
 import java.net.InetAddress;
@@ -32,6 +33,22 @@ public class ChannelOption<T> extends UniqueName {
             new ChannelOption<Integer>("CONNECT_TIMEOUT_MILLIS");
     public static final ChannelOption<Integer> WRITE_SPIN_COUNT =
             new ChannelOption<Integer>("WRITE_SPIN_COUNT");
+    public static final ChannelOption<Integer> GATHERING_WRITE_LIMIT =
+            new ChannelOption<Integer>("GATHERING_WRITE_LIMIT");
+    public static final ChannelOption<Integer> MAX_MESSAGES_PER_READ =
+            new ChannelOption<Integer>("MAX_MESSAGES_PER_READ");
+    public static final ChannelOption<Integer> MAX_BYTES_PER_READ =
+            new ChannelOption<Integer>("MAX_BYTES_PER_READ");
+    public static final ChannelOption<Integer> WRITE_BUFFER_HIGH_WATER_MARK =
+            new ChannelOption<Integer>("WRITE_BUFFER_HIGH_WATER_MARK");
+    public static final ChannelOption<Integer> WRITE_BUFFER_LOW_WATER_MARK =
+            new ChannelOption<Integer>("WRITE_BUFFER_LOW_WATER_MARK");
+    public static final ChannelOption<ByteBufFactory> BUFFER_FACTORY =
+            new ChannelOption<ByteBufFactory>("BUFFER_FACTORY");
+    public static final ChannelOption<ReceiveBufferSizePredictor> RECEIVE_BUFFER_SIZE_PREDICTOR =
+            new ChannelOption<ReceiveBufferSizePredictor>("RECEIVE_BUFFER_SIZE_PREDICTOR");
+    public static final ChannelOption<ReceiveBufferSizePredictorFactory> RECEIVE_BUFFER_SIZE_PREDICTOR_FACTORY =
+            new ChannelOption<ReceiveBufferSizePredictorFactory>("RECEIVE_BUFFER_SIZE_PREDICTOR_FACTORY");
 
     public static final ChannelOption<Boolean> SO_BROADCAST =
             new ChannelOption<Boolean>("SO_BROADCAST");
@@ -18,10 +18,163 @@ package io.netty.channel;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.Unpooled;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
 public abstract class ChannelOutboundByteHandlerAdapter
         extends ChannelOutboundHandlerAdapter implements ChannelOutboundByteHandler {
+
+    private static final int FILE_CHUNK_SIZE = 8192;
+
     @Override
     public ByteBuf newOutboundBuffer(ChannelHandlerContext ctx) throws Exception {
-        return Unpooled.dynamicBuffer();
+        return Unpooled.dynamicBuffer(ctx.channel().config().getBufferFactory());
+    }
+
+    /**
+     * Sends the content of the {@link FileRegion} through this handler with
+     * {@link #sendFileInChunks(ChannelOutboundByteHandler, ChannelHandlerContext, FileRegion, ChannelFuture)},
+     * because a handler with an outbound byte buffer may transform the bytes
+     * it sends, and the region must not overtake the bytes in its buffer.
+     */
+    @Override
+    public void sendFile(ChannelHandlerContext ctx, FileRegion region, ChannelFuture future) throws Exception {
+        sendFileInChunks(this, ctx, region, future);
+    }
+
+    /**
+     * Sends the content of the specified {@link FileRegion} as if it had been
+     * written to the outbound byte buffer of the specified handler.  The
+     * region is copied into the buffer in chunks of 8 KiB, and each chunk is
+     * flushed by the handler after the previous one has been flushed.  The
+     * region is released when the transfer completes or fails.
+     */
+    public static void sendFileInChunks(
+            ChannelOutboundByteHandler handler, ChannelHandlerContext ctx,
+            FileRegion region, ChannelFuture future) {
+        sendFileChunks(handler, ctx, region, 0, future);
+    }
+
+    private static void sendFileChunks(
+            final ChannelOutboundByteHandler handler, final ChannelHandlerContext ctx,
+            final FileRegion region, long position, final ChannelFuture future) {
+        for (;;) {
+            final long newPosition;
+            try {
+                long remaining = region.count() - position;
+                if (remaining <= 0) {
+                    region.release();
+                    future.setSuccess();
+                    return;
+                }
+
+                ByteBuf in = ctx.outboundByteBuffer();
+                int chunkSize = (int) Math.min(remaining, FILE_CHUNK_SIZE);
+                in.ensureWritableBytes(chunkSize);
+                WritableByteChannel target = new ByteBufChannel(in, chunkSize);
+                int copiedBytes = 0;
+                while (copiedBytes < chunkSize) {
+                    long localCopiedBytes = region.transferTo(target, position + copiedBytes);
+                    if (localCopiedBytes <= 0) {
+                        throw new IOException("file region ended unexpectedly at: " + (position + copiedBytes));
+                    }
+                    copiedBytes += localCopiedBytes;
+                }
+                newPosition = position + copiedBytes;
+            } catch (Throwable t) {
+                region.release();
+                future.setFailure(t);
+                return;
+            }
+
+            ChannelFuture chunkFuture = ctx.newFuture();
+            try {
+                handler.flush(ctx, chunkFuture);
+            } catch (Throwable t) {
+                chunkFuture.setFailure(t);
+            }
+
+            if (!chunkFuture.isDone()) {
+                // Copy the next chunk once the transport has written this one.
+                final long oldPosition = position;
+                chunkFuture.addListener(new ChannelFutureListener() {
+                    @Override
+                    public void operationComplete(ChannelFuture f) throws Exception {
+                        if (!chunkFlushed(f, region, oldPosition, newPosition, future)) {
+                            return;
+                        }
+                        if (ctx.executor().inEventLoop()) {
+                            sendFileChunks(handler, ctx, region, newPosition, future);
+                        } else {
+                            ctx.executor().execute(new Runnable() {
+                                @Override
+                                public void run() {
+                                    sendFileChunks(handler, ctx, region, newPosition, future);
+                                }
+                            });
+                        }
+                    }
+                });
+                return;
+            }
+
+            // Flushed already - continue without re-entering the flush of the transport.
+            if (!chunkFlushed(chunkFuture, region, position, newPosition, future)) {
+                return;
+            }
+            position = newPosition;
+        }
+    }
+
+    private static boolean chunkFlushed(
+            ChannelFuture chunkFuture, FileRegion region, long position, long newPosition, ChannelFuture future) {
+        if (!chunkFuture.isSuccess()) {
+            region.release();
+            future.setFailure(chunkFuture.cause());
+            return false;
+        }
+
+        future.setProgress(newPosition - position, newPosition, region.count());
+        return true;
+    }
+
+    /**
+     * Copies the content of a {@link FileRegion} into a {@link ByteBuf}, up to
+     * the specified number of bytes.
+     */
+    private static final class ByteBufChannel implements WritableByteChannel {
+        private final ByteBuf buf;
+        private int remaining;
+
+        ByteBufChannel(ByteBuf buf, int limit) {
+            this.buf = buf;
+            remaining = limit;
+        }
+
+        @Override
+        public int write(ByteBuffer src) {
+            int length = Math.min(src.remaining(), remaining);
+            if (length == 0) {
+                return 0;
+            }
+
+            ByteBuffer slice = src.duplicate();
+            slice.limit(slice.position() + length);
+            buf.writeBytes(slice);
+            src.position(src.position() + length);
+            remaining -= length;
+            return length;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+            // NOOP
+        }
     }
 }
@@ -24,4 +24,17 @@ public abstract class ChannelOutboundMessageHandlerAdapter<I>
     public MessageBuf<I> newOutboundBuffer(ChannelHandlerContext ctx) throws Exception {
         return Unpooled.messageBuffer();
     }
+
+    /**
+     * Flushes the messages in the outbound buffer of this handler before the
+     * {@link FileRegion} is passed on, so that the region is not sent ahead
+     * of the bytes they are encoded into.
+     */
+    @Override
+    public void sendFile(ChannelHandlerContext ctx, FileRegion region, ChannelFuture future) throws Exception {
+        if (!ctx.outboundMessageBuffer().isEmpty()) {
+            flush(ctx, ctx.voidFuture());
+        }
+        ctx.sendFile(region, future);
+    }
 }
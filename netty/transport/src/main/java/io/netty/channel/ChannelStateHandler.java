@@ -22,5 +22,14 @@ public interface ChannelStateHandler extends ChannelHandler {
     void channelActive(ChannelHandlerContext ctx) throws Exception;
     void channelInactive(ChannelHandlerContext ctx) throws Exception;
 
+    /**
+     * Invoked when {@link Channel#isWritable()} has changed because the amount of the
+     * pending outbound data crossed the write buffer water marks.
+     *
+     * @see ChannelConfig#getWriteBufferHighWaterMark()
+     * @see ChannelConfig#getWriteBufferLowWaterMark()
+     */
+    void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception;
+
     void inboundBufferUpdated(ChannelHandlerContext ctx) throws Exception;
 }
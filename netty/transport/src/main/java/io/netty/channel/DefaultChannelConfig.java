@@ -16,6 +16,8 @@
 package io.netty.channel;
 
 import static io.netty.channel.ChannelOption.*;
+import io.netty.buffer.ByteBufFactory;
+import io.netty.buffer.HeapByteBufFactory;
 import io.netty.channel.socket.SocketChannelConfig;
 
 import java.util.IdentityHashMap;
@@ -28,13 +30,27 @@ import java.util.Map.Entry;
 public class DefaultChannelConfig implements ChannelConfig {
 
     private static final int DEFAULT_CONNECT_TIMEOUT = 30000;
+    private static final ReceiveBufferSizePredictorFactory DEFAULT_PREDICTOR_FACTORY =
+            new AdaptiveReceiveBufferSizePredictorFactory();
 
     private volatile int connectTimeoutMillis = DEFAULT_CONNECT_TIMEOUT;
     private volatile int writeSpinCount = 16;
+    private volatile int gatheringWriteLimit = 1024;
+    private volatile int maxMessagesPerRead = 16;
+    private volatile int maxBytesPerRead = Integer.MAX_VALUE;
+    private volatile int writeBufferHighWaterMark = 64 * 1024;
+    private volatile int writeBufferLowWaterMark = 32 * 1024;
+    private volatile ByteBufFactory bufferFactory = HeapByteBufFactory.getInstance();
+    private volatile ReceiveBufferSizePredictor predictor;
+    private volatile ReceiveBufferSizePredictorFactory predictorFactory = DEFAULT_PREDICTOR_FACTORY;
 
     @Override
     public Map<ChannelOption<?>, Object> getOptions() {
-        return getOptions(null, CONNECT_TIMEOUT_MILLIS, WRITE_SPIN_COUNT);
+        return getOptions(
+                null, CONNECT_TIMEOUT_MILLIS, WRITE_SPIN_COUNT, GATHERING_WRITE_LIMIT,
+                MAX_MESSAGES_PER_READ, MAX_BYTES_PER_READ,
+                WRITE_BUFFER_HIGH_WATER_MARK, WRITE_BUFFER_LOW_WATER_MARK, BUFFER_FACTORY,
+                RECEIVE_BUFFER_SIZE_PREDICTOR, RECEIVE_BUFFER_SIZE_PREDICTOR_FACTORY);
     }
 
     protected Map<ChannelOption<?>, Object> getOptions(
@@ -74,6 +90,22 @@ public class DefaultChannelConfig implements ChannelConfig {
             return (T) Integer.valueOf(getConnectTimeoutMillis());
         } else if (option == WRITE_SPIN_COUNT) {
             return (T) Integer.valueOf(getWriteSpinCount());
+        } else if (option == GATHERING_WRITE_LIMIT) {
+            return (T) Integer.valueOf(getGatheringWriteLimit());
+        } else if (option == MAX_MESSAGES_PER_READ) {
+            return (T) Integer.valueOf(getMaxMessagesPerRead());
+        } else if (option == MAX_BYTES_PER_READ) {
+            return (T) Integer.valueOf(getMaxBytesPerRead());
+        } else if (option == WRITE_BUFFER_HIGH_WATER_MARK) {
+            return (T) Integer.valueOf(getWriteBufferHighWaterMark());
+        } else if (option == WRITE_BUFFER_LOW_WATER_MARK) {
+            return (T) Integer.valueOf(getWriteBufferLowWaterMark());
+        } else if (option == BUFFER_FACTORY) {
+            return (T) getBufferFactory();
+        } else if (option == RECEIVE_BUFFER_SIZE_PREDICTOR) {
+            return (T) getReceiveBufferSizePredictor();
+        } else if (option == RECEIVE_BUFFER_SIZE_PREDICTOR_FACTORY) {
+            return (T) getReceiveBufferSizePredictorFactory();
         }
 
         return null;
@@ -87,6 +119,22 @@ public class DefaultChannelConfig implements ChannelConfig {
             setConnectTimeoutMillis((Integer) value);
         } else if (option == WRITE_SPIN_COUNT) {
             setWriteSpinCount((Integer) value);
+        } else if (option == GATHERING_WRITE_LIMIT) {
+            setGatheringWriteLimit((Integer) value);
+        } else if (option == MAX_MESSAGES_PER_READ) {
+            setMaxMessagesPerRead((Integer) value);
+        } else if (option == MAX_BYTES_PER_READ) {
+            setMaxBytesPerRead((Integer) value);
+        } else if (option == WRITE_BUFFER_HIGH_WATER_MARK) {
+            setWriteBufferHighWaterMark((Integer) value);
+        } else if (option == WRITE_BUFFER_LOW_WATER_MARK) {
+            setWriteBufferLowWaterMark((Integer) value);
+        } else if (option == BUFFER_FACTORY) {
+            setBufferFactory((ByteBufFactory) value);
+        } else if (option == RECEIVE_BUFFER_SIZE_PREDICTOR) {
+            setReceiveBufferSizePredictor((ReceiveBufferSizePredictor) value);
+        } else if (option == RECEIVE_BUFFER_SIZE_PREDICTOR_FACTORY) {
+            setReceiveBufferSizePredictorFactory((ReceiveBufferSizePredictorFactory) value);
         } else {
             return false;
         }
@@ -128,4 +176,121 @@ public class DefaultChannelConfig implements ChannelConfig {
         }
         this.writeSpinCount = writeSpinCount;
     }
+
+    @Override
+    public int getGatheringWriteLimit() {
+        return gatheringWriteLimit;
+    }
+
+    @Override
+    public void setGatheringWriteLimit(int gatheringWriteLimit) {
+        if (gatheringWriteLimit <= 0) {
+            throw new IllegalArgumentException(
+                    "gatheringWriteLimit must be a positive integer.");
+        }
+        this.gatheringWriteLimit = gatheringWriteLimit;
+    }
+
+    @Override
+    public int getMaxMessagesPerRead() {
+        return maxMessagesPerRead;
+    }
+
+    @Override
+    public void setMaxMessagesPerRead(int maxMessagesPerRead) {
+        if (maxMessagesPerRead <= 0) {
+            throw new IllegalArgumentException(
+                    "maxMessagesPerRead must be a positive integer.");
+        }
+        this.maxMessagesPerRead = maxMessagesPerRead;
+    }
+
+    @Override
+    public int getMaxBytesPerRead() {
+        return maxBytesPerRead;
+    }
+
+    @Override
+    public void setMaxBytesPerRead(int maxBytesPerRead) {
+        if (maxBytesPerRead <= 0) {
+            throw new IllegalArgumentException(
+                    "maxBytesPerRead must be a positive integer.");
+        }
+        this.maxBytesPerRead = maxBytesPerRead;
+    }
+
+    @Override
+    public int getWriteBufferHighWaterMark() {
+        return writeBufferHighWaterMark;
+    }
+
+    @Override
+    public void setWriteBufferHighWaterMark(int writeBufferHighWaterMark) {
+        if (writeBufferHighWaterMark < getWriteBufferLowWaterMark()) {
+            throw new IllegalArgumentException(String.format(
+                    "writeBufferHighWaterMark: %d (expected: >= writeBufferLowWaterMark (%d))",
+                    writeBufferHighWaterMark, getWriteBufferLowWaterMark()));
+        }
+        this.writeBufferHighWaterMark = writeBufferHighWaterMark;
+    }
+
+    @Override
+    public int getWriteBufferLowWaterMark() {
+        return writeBufferLowWaterMark;
+    }
+
+    @Override
+    public void setWriteBufferLowWaterMark(int writeBufferLowWaterMark) {
+        if (writeBufferLowWaterMark < 0 || writeBufferLowWaterMark > getWriteBufferHighWaterMark()) {
+            throw new IllegalArgumentException(String.format(
+                    "writeBufferLowWaterMark: %d (expected: 0 <= writeBufferLowWaterMark <= %d)",
+                    writeBufferLowWaterMark, getWriteBufferHighWaterMark()));
+        }
+        this.writeBufferLowWaterMark = writeBufferLowWaterMark;
+    }
+
+    @Override
+    public ByteBufFactory getBufferFactory() {
+        return bufferFactory;
+    }
+
+    @Override
+    public void setBufferFactory(ByteBufFactory bufferFactory) {
+        if (bufferFactory == null) {
+            throw new NullPointerException("bufferFactory");
+        }
+        this.bufferFactory = bufferFactory;
+    }
+
+    @Override
+    public ReceiveBufferSizePredictor getReceiveBufferSizePredictor() {
+        ReceiveBufferSizePredictor predictor = this.predictor;
+        if (predictor == null) {
+            // Only the event loop of the channel reads the predictor.
+            this.predictor = predictor = getReceiveBufferSizePredictorFactory().getPredictor();
+        }
+        return predictor;
+    }
+
+    @Override
+    public void setReceiveBufferSizePredictor(ReceiveBufferSizePredictor predictor) {
+        if (predictor == null) {
+            throw new NullPointerException("predictor");
+        }
+        this.predictor = predictor;
+    }
+
+    @Override
+    public ReceiveBufferSizePredictorFactory getReceiveBufferSizePredictorFactory() {
+        return predictorFactory;
+    }
+
+    @Override
+    public void setReceiveBufferSizePredictorFactory(ReceiveBufferSizePredictorFactory predictorFactory) {
+        if (predictorFactory == null) {
+            throw new NullPointerException("predictorFactory");
+        }
+        this.predictorFactory = predictorFactory;
+        predictor = null;
+    }
 }
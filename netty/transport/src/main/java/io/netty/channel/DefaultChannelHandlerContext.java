@@ -15,12 +15,14 @@
  */
 package io.netty.channel;
 
+import static io.netty.channel.ChannelHandlerMask.*;
 import static io.netty.channel.DefaultChannelPipeline.*;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ChannelBuf;
 import io.netty.buffer.MessageBuf;
 import io.netty.buffer.Unpooled;
 import io.netty.util.DefaultAttributeMap;
+import io.netty.util.ReferenceCountUtil;
 import io.netty.util.internal.QueueFactory;
 
 import java.net.SocketAddress;
@@ -28,6 +30,7 @@ import java.util.Collections;
 import java.util.EnumSet;
 import java.util.Set;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.atomic.AtomicReference;
 
 final class DefaultChannelHandlerContext extends DefaultAttributeMap implements ChannelHandlerContext {
@@ -47,7 +50,8 @@ final class DefaultChannelHandlerContext extends DefaultAttributeMap implements
     private final String name;
     private final Set<ChannelHandlerType> type;
     
-    final int directions;// 方向
+    // 这个handler处理的事件，不处理的事件直接跳过这个context
+    final int executionMask;
     private final ChannelHandler handler;
 
     final MessageBuf<Object> inMsgBuf;
@@ -66,6 +70,9 @@ final class DefaultChannelHandlerContext extends DefaultAttributeMap implements
     final AtomicReference<ByteBridge> inByteBridge;
     final AtomicReference<ByteBridge> outByteBridge;
 
+    // Accessed only by executor().
+    boolean buffersReleased;
+
     // Runnables that calls handlers
     final Runnable fireChannelRegisteredTask = new Runnable() {
         @Override
@@ -112,6 +119,17 @@ final class DefaultChannelHandlerContext extends DefaultAttributeMap implements
             }
         }
     };
+    final Runnable fireChannelWritabilityChangedTask = new Runnable() {
+        @Override
+        public void run() {
+            DefaultChannelHandlerContext ctx = DefaultChannelHandlerContext.this;
+            try {
+                ((ChannelStateHandler) ctx.handler).channelWritabilityChanged(ctx);
+            } catch (Throwable t) {
+                pipeline.notifyHandlerException(t);
+            }
+        }
+    };
     final Runnable curCtxFireInboundBufferUpdatedTask = new Runnable() {
         @Override
         public void run() {
@@ -123,7 +141,7 @@ final class DefaultChannelHandlerContext extends DefaultAttributeMap implements
                 pipeline.notifyHandlerException(t);
             } finally {
                 ByteBuf buf = inByteBuf;
-                if (buf != null) {
+                if (buf != null && !buffersReleased) {
                     if (!buf.readable()) {
                         buf.discardReadBytes();
                     }
@@ -135,7 +153,7 @@ final class DefaultChannelHandlerContext extends DefaultAttributeMap implements
         @Override
         public void run() {
             DefaultChannelHandlerContext next = nextContext(
-                    DefaultChannelHandlerContext.this.next, DIR_INBOUND);
+                    DefaultChannelHandlerContext.this.next, DIR_INBOUND, MASK_INBOUND_BUFFER_UPDATED);
             if (next != null) {
                 next.fillBridge();
                 EventExecutor executor = next.executor();
@@ -162,32 +180,26 @@ final class DefaultChannelHandlerContext extends DefaultAttributeMap implements
         }
 
         // Determine the type of the specified handler.
-        int typeValue = 0;
-        
         // 保存channelhandler的类型
         EnumSet<ChannelHandlerType> type = EMPTY_TYPE.clone();
         
         // 如果是State类型的handler
         if (handler instanceof ChannelStateHandler) {
             type.add(ChannelHandlerType.STATE);
-            // 直接输入
-            typeValue |= DIR_INBOUND;
-            
+
             if (handler instanceof ChannelInboundHandler) {
                 type.add(ChannelHandlerType.INBOUND);
             }
         }
         if (handler instanceof ChannelOperationHandler) {
             type.add(ChannelHandlerType.OPERATION);
-            // 直接输出
-            typeValue |= DIR_OUTBOUND;
             if (handler instanceof ChannelOutboundHandler) {
                 type.add(ChannelHandlerType.OUTBOUND);
             }
         }
         // 转为不可修改的set
         this.type = Collections.unmodifiableSet(type);
-        directions = typeValue;
+        executionMask = mask(handler.getClass());
 
         this.prev = prev;
         this.next = next;
@@ -334,6 +346,65 @@ final class DefaultChannelHandlerContext extends DefaultAttributeMap implements
         }
     }
 
+    /**
+     * Releases the byte buffers of this context.  If {@code releaseMessages}
+     * is {@code true}, the reference-counted messages left in the message
+     * buffers of this context are released as well.  When called from
+     * {@link #executor()}, the buffers are released after the current event
+     * so that the handler which triggered this method can still access its
+     * buffers until it returns.
+     */
+    void releaseBuffers(final boolean releaseMessages) {
+        EventExecutor executor = this.executor;
+        if (executor == null || !executor.inEventLoop()) {
+            releaseBuffers0(releaseMessages);
+            return;
+        }
+
+        try {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    releaseBuffers0(releaseMessages);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            releaseBuffers0(releaseMessages);
+        }
+    }
+
+    private void releaseBuffers0(boolean releaseMessages) {
+        if (buffersReleased) {
+            return;
+        }
+        buffersReleased = true;
+
+        if (inByteBuf != null) {
+            inByteBuf.release();
+        }
+        if (outByteBuf != null) {
+            outByteBuf.release();
+        }
+        if (releaseMessages) {
+            if (inMsgBuf != null) {
+                releaseMessages(inMsgBuf);
+            }
+            if (outMsgBuf != null) {
+                releaseMessages(outMsgBuf);
+            }
+        }
+    }
+
+    private static void releaseMessages(MessageBuf<Object> buf) {
+        for (;;) {
+            Object msg = buf.poll();
+            if (msg == null) {
+                break;
+            }
+            ReferenceCountUtil.release(msg);
+        }
+    }
+
     @Override
     public Channel channel() {
         return channel;
@@ -525,7 +596,7 @@ final class DefaultChannelHandlerContext extends DefaultAttributeMap implements
 
     @Override
     public void fireChannelRegistered() {
-        DefaultChannelHandlerContext next = nextContext(this.next, DIR_INBOUND);
+        DefaultChannelHandlerContext next = nextContext(this.next, DIR_INBOUND, MASK_CHANNEL_REGISTERED);
         if (next != null) {
             EventExecutor executor = next.executor();
             if (executor.inEventLoop()) {
@@ -538,7 +609,7 @@ final class DefaultChannelHandlerContext extends DefaultAttributeMap implements
 
     @Override
     public void fireChannelUnregistered() {
-        DefaultChannelHandlerContext next = nextContext(this.next, DIR_INBOUND);
+        DefaultChannelHandlerContext next = nextContext(this.next, DIR_INBOUND, MASK_CHANNEL_UNREGISTERED);
         if (next != null) {
             EventExecutor executor = next.executor();
             if (executor.inEventLoop()) {
@@ -551,7 +622,7 @@ final class DefaultChannelHandlerContext extends DefaultAttributeMap implements
 
     @Override
     public void fireChannelActive() {
-        DefaultChannelHandlerContext next = nextContext(this.next, DIR_INBOUND);
+        DefaultChannelHandlerContext next = nextContext(this.next, DIR_INBOUND, MASK_CHANNEL_ACTIVE);
         if (next != null) {
             EventExecutor executor = next.executor();
             if (executor.inEventLoop()) {
@@ -564,7 +635,7 @@ final class DefaultChannelHandlerContext extends DefaultAttributeMap implements
 
     @Override
     public void fireChannelInactive() {
-        DefaultChannelHandlerContext next = nextContext(this.next, DIR_INBOUND);
+        DefaultChannelHandlerContext next = nextContext(this.next, DIR_INBOUND, MASK_CHANNEL_INACTIVE);
         if (next != null) {
             EventExecutor executor = next.executor();
             if (executor.inEventLoop()) {
@@ -575,13 +646,26 @@ final class DefaultChannelHandlerContext extends DefaultAttributeMap implements
         }
     }
 
+    @Override
+    public void fireChannelWritabilityChanged() {
+        DefaultChannelHandlerContext next = nextContext(this.next, DIR_INBOUND, MASK_CHANNEL_WRITABILITY_CHANGED);
+        if (next != null) {
+            EventExecutor executor = next.executor();
+            if (executor.inEventLoop()) {
+                next.fireChannelWritabilityChangedTask.run();
+            } else {
+                executor.execute(next.fireChannelWritabilityChangedTask);
+            }
+        }
+    }
+
     @Override
     public void fireExceptionCaught(final Throwable cause) {
         if (cause == null) {
             throw new NullPointerException("cause");
         }
 
-        DefaultChannelHandlerContext next = this.next;
+        DefaultChannelHandlerContext next = nextContext(this.next, DIR_INBOUND, MASK_EXCEPTION_CAUGHT);
         if (next != null) {
             EventExecutor executor = next.executor();
             if (executor.inEventLoop()) {
@@ -623,7 +707,7 @@ final class DefaultChannelHandlerContext extends DefaultAttributeMap implements
             throw new NullPointerException("event");
         }
 
-        DefaultChannelHandlerContext next = this.next;
+        DefaultChannelHandlerContext next = nextContext(this.next, DIR_INBOUND, MASK_USER_EVENT_TRIGGERED);
         if (next != null) {
             EventExecutor executor = next.executor();
             if (executor.inEventLoop()) {
@@ -693,9 +777,14 @@ final class DefaultChannelHandlerContext extends DefaultAttributeMap implements
         return write(message, newFuture());
     }
 
+    @Override
+    public ChannelFuture sendFile(FileRegion region) {
+        return sendFile(region, newFuture());
+    }
+
     @Override
     public ChannelFuture bind(SocketAddress localAddress, ChannelFuture future) {
-        return pipeline.bind(nextContext(prev, DIR_OUTBOUND), localAddress, future);
+        return pipeline.bind(nextContext(prev, DIR_OUTBOUND, MASK_BIND), localAddress, future);
     }
 
     @Override
@@ -705,29 +794,29 @@ final class DefaultChannelHandlerContext extends DefaultAttributeMap implements
 
     @Override
     public ChannelFuture connect(SocketAddress remoteAddress, SocketAddress localAddress, ChannelFuture future) {
-        return pipeline.connect(nextContext(prev, DIR_OUTBOUND), remoteAddress, localAddress, future);
+        return pipeline.connect(nextContext(prev, DIR_OUTBOUND, MASK_CONNECT), remoteAddress, localAddress, future);
     }
 
     @Override
     public ChannelFuture disconnect(ChannelFuture future) {
-        return pipeline.disconnect(nextContext(prev, DIR_OUTBOUND), future);
+        return pipeline.disconnect(nextContext(prev, DIR_OUTBOUND, MASK_DISCONNECT), future);
     }
 
     @Override
     public ChannelFuture close(ChannelFuture future) {
-        return pipeline.close(nextContext(prev, DIR_OUTBOUND), future);
+        return pipeline.close(nextContext(prev, DIR_OUTBOUND, MASK_CLOSE), future);
     }
 
     @Override
     public ChannelFuture deregister(ChannelFuture future) {
-        return pipeline.deregister(nextContext(prev, DIR_OUTBOUND), future);
+        return pipeline.deregister(nextContext(prev, DIR_OUTBOUND, MASK_DEREGISTER), future);
     }
 
     @Override
     public ChannelFuture flush(final ChannelFuture future) {
         EventExecutor executor = executor();
         if (executor.inEventLoop()) {
-            DefaultChannelHandlerContext prev = nextContext(this.prev, DIR_OUTBOUND);
+            DefaultChannelHandlerContext prev = nextContext(this.prev, DIR_OUTBOUND, MASK_FLUSH);
             prev.fillBridge();
             pipeline.flush(prev, future);
         } else {
@@ -747,6 +836,11 @@ final class DefaultChannelHandlerContext extends DefaultAttributeMap implements
         return pipeline.write(prev, message, future);
     }
 
+    @Override
+    public ChannelFuture sendFile(FileRegion region, ChannelFuture future) {
+        return pipeline.sendFile(nextContext(prev, DIR_OUTBOUND, MASK_SEND_FILE), region, future);
+    }
+
     @Override
     public ChannelFuture newFuture() {
         return channel.newFuture();
@@ -762,6 +856,11 @@ final class DefaultChannelHandlerContext extends DefaultAttributeMap implements
         return channel.newFailedFuture(cause);
     }
 
+    @Override
+    public ChannelFuture voidFuture() {
+        return channel.voidFuture();
+    }
+
     static final class MessageBridge {
         final MessageBuf<Object> msgBuf = Unpooled.messageBuffer();
         final BlockingQueue<Object[]> exchangeBuf = QueueFactory.createQueue();
@@ -808,6 +907,7 @@ final class DefaultChannelHandlerContext extends DefaultAttributeMap implements
                 }
 
                 out.writeBytes(data);
+                data.release();
             }
         }
     }
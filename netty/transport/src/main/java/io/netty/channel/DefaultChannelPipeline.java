@@ -15,18 +15,22 @@
  */
 package io.netty.channel;
 
+import static io.netty.channel.ChannelHandlerMask.*;
 import static io.netty.channel.DefaultChannelHandlerContext.*;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ChannelBuf;
 import io.netty.buffer.ChannelBufType;
+import io.netty.buffer.DynamicByteBuf;
 import io.netty.buffer.MessageBuf;
 import io.netty.buffer.Unpooled;
 import io.netty.channel.DefaultChannelHandlerContext.ByteBridge;
 import io.netty.channel.DefaultChannelHandlerContext.MessageBridge;
 import io.netty.logging.InternalLogger;
 import io.netty.logging.InternalLoggerFactory;
+import io.netty.util.ReferenceCountUtil;
 
 import java.net.SocketAddress;
+import java.nio.channels.ClosedChannelException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.IdentityHashMap;
@@ -44,6 +48,13 @@ public class DefaultChannelPipeline implements ChannelPipeline {
 
     static final InternalLogger logger = InternalLoggerFactory.getInstance(DefaultChannelPipeline.class);
 
+    /**
+     * A buffer written to the head is added as a component rather than copied
+     * if it has at least this many readable bytes, so that the transport can
+     * write it via a gathering write.  A smaller buffer is cheaper to copy.
+     */
+    private static final int MIN_COMPONENT_SIZE = 1024;
+
     final Channel channel;
     
     // pipeline持有channel的unsafe
@@ -467,6 +478,7 @@ public class DefaultChannelPipeline implements ChannelPipeline {
         name2ctx.remove(ctx.name());
 
         callAfterRemove(ctx);
+        ctx.releaseBuffers(true);
     }
 
     @Override
@@ -525,7 +537,8 @@ public class DefaultChannelPipeline implements ChannelPipeline {
         tail = oldTail.prev;
         name2ctx.remove(oldTail.name());
 
-        callBeforeRemove(oldTail);
+        callAfterRemove(oldTail);
+        oldTail.releaseBuffers(true);
     }
 
     @Override
@@ -646,6 +659,7 @@ public class DefaultChannelPipeline implements ChannelPipeline {
         } catch (ChannelHandlerLifeCycleException e) {
             removeException = e;
         }
+        ctx.releaseBuffers(true);
 
         boolean added = false;
         try {
@@ -999,6 +1013,20 @@ public class DefaultChannelPipeline implements ChannelPipeline {
     @Override
     public void fireChannelUnregistered() {
         head.fireChannelUnregistered();
+
+        // Release the buffers of all handlers once the channel is closed for good.
+        // The messages are left intact so that they can still be drained.
+        if (!channel.isOpen()) {
+            releaseBuffers();
+        }
+    }
+
+    private synchronized void releaseBuffers() {
+        DefaultChannelHandlerContext ctx = head;
+        while (ctx != null) {
+            ctx.releaseBuffers(false);
+            ctx = ctx.next;
+        }
     }
 
     @Override
@@ -1020,6 +1048,11 @@ public class DefaultChannelPipeline implements ChannelPipeline {
         head.fireChannelInactive();
     }
 
+    @Override
+    public void fireChannelWritabilityChanged() {
+        head.fireChannelWritabilityChanged();
+    }
+
     @Override
     public void fireExceptionCaught(Throwable cause) {
         head.fireExceptionCaught(cause);
@@ -1079,9 +1112,14 @@ public class DefaultChannelPipeline implements ChannelPipeline {
         return write(message, channel.newFuture());
     }
 
+    @Override
+    public ChannelFuture sendFile(FileRegion region) {
+        return sendFile(region, channel.newFuture());
+    }
+
     @Override
     public ChannelFuture bind(SocketAddress localAddress, ChannelFuture future) {
-        return bind(firstContext(DIR_OUTBOUND), localAddress, future);
+        return bind(firstContext(DIR_OUTBOUND, MASK_BIND), localAddress, future);
     }
 
     ChannelFuture bind(
@@ -1089,7 +1127,7 @@ public class DefaultChannelPipeline implements ChannelPipeline {
         if (localAddress == null) {
             throw new NullPointerException("localAddress");
         }
-        validateFuture(future);
+        validateFuture(future, false);
 
         EventExecutor executor = ctx.executor();
         if (executor.inEventLoop()) {
@@ -1116,7 +1154,7 @@ public class DefaultChannelPipeline implements ChannelPipeline {
 
     @Override
     public ChannelFuture connect(SocketAddress remoteAddress, SocketAddress localAddress, ChannelFuture future) {
-        return connect(firstContext(DIR_OUTBOUND), remoteAddress, localAddress, future);
+        return connect(firstContext(DIR_OUTBOUND, MASK_CONNECT), remoteAddress, localAddress, future);
     }
 
     ChannelFuture connect(
@@ -1125,7 +1163,7 @@ public class DefaultChannelPipeline implements ChannelPipeline {
         if (remoteAddress == null) {
             throw new NullPointerException("remoteAddress");
         }
-        validateFuture(future);
+        validateFuture(future, false);
 
         EventExecutor executor = ctx.executor();
         if (executor.inEventLoop()) {
@@ -1148,7 +1186,7 @@ public class DefaultChannelPipeline implements ChannelPipeline {
 
     @Override
     public ChannelFuture disconnect(ChannelFuture future) {
-        return disconnect(firstContext(DIR_OUTBOUND), future);
+        return disconnect(firstContext(DIR_OUTBOUND, MASK_DISCONNECT), future);
     }
 
     ChannelFuture disconnect(final DefaultChannelHandlerContext ctx, final ChannelFuture future) {
@@ -1158,7 +1196,7 @@ public class DefaultChannelPipeline implements ChannelPipeline {
             return close(ctx, future);
         }
 
-        validateFuture(future);
+        validateFuture(future, false);
         EventExecutor executor = ctx.executor();
         if (executor.inEventLoop()) {
             try {
@@ -1180,11 +1218,11 @@ public class DefaultChannelPipeline implements ChannelPipeline {
 
     @Override
     public ChannelFuture close(ChannelFuture future) {
-        return close(firstContext(DIR_OUTBOUND), future);
+        return close(firstContext(DIR_OUTBOUND, MASK_CLOSE), future);
     }
 
     ChannelFuture close(final DefaultChannelHandlerContext ctx, final ChannelFuture future) {
-        validateFuture(future);
+        validateFuture(future, false);
         EventExecutor executor = ctx.executor();
         if (executor.inEventLoop()) {
             try {
@@ -1206,11 +1244,11 @@ public class DefaultChannelPipeline implements ChannelPipeline {
 
     @Override
     public ChannelFuture deregister(final ChannelFuture future) {
-        return deregister(firstContext(DIR_OUTBOUND), future);
+        return deregister(firstContext(DIR_OUTBOUND, MASK_DEREGISTER), future);
     }
 
     ChannelFuture deregister(final DefaultChannelHandlerContext ctx, final ChannelFuture future) {
-        validateFuture(future);
+        validateFuture(future, false);
         EventExecutor executor = ctx.executor();
         if (executor.inEventLoop()) {
             try {
@@ -1232,11 +1270,11 @@ public class DefaultChannelPipeline implements ChannelPipeline {
 
     @Override
     public ChannelFuture flush(ChannelFuture future) {
-        return flush(firstContext(DIR_OUTBOUND), future);
+        return flush(firstContext(DIR_OUTBOUND, MASK_FLUSH), future);
     }
 
     ChannelFuture flush(final DefaultChannelHandlerContext ctx, final ChannelFuture future) {
-        validateFuture(future);
+        validateFuture(future, true);
         EventExecutor executor = ctx.executor();
         if (executor.inEventLoop()) {
             flush0(ctx, future);
@@ -1259,7 +1297,7 @@ public class DefaultChannelPipeline implements ChannelPipeline {
         } catch (Throwable t) {
             notifyHandlerException(t);
         } finally {
-            if (ctx.outByteBuf != null) {
+            if (ctx.outByteBuf != null && !ctx.buffersReleased) {
                 ByteBuf buf = ctx.outByteBuf;
                 if (!buf.readable()) {
                     buf.discardReadBytes();
@@ -1268,6 +1306,36 @@ public class DefaultChannelPipeline implements ChannelPipeline {
         }
     }
 
+    @Override
+    public ChannelFuture sendFile(FileRegion region, ChannelFuture future) {
+        return sendFile(firstContext(DIR_OUTBOUND, MASK_SEND_FILE), region, future);
+    }
+
+    ChannelFuture sendFile(
+            final DefaultChannelHandlerContext ctx, final FileRegion region, final ChannelFuture future) {
+        if (region == null) {
+            throw new NullPointerException("region");
+        }
+        validateFuture(future, true);
+        EventExecutor executor = ctx.executor();
+        if (executor.inEventLoop()) {
+            try {
+                ((ChannelOperationHandler) ctx.handler()).sendFile(ctx, region, future);
+            } catch (Throwable t) {
+                notifyHandlerException(t);
+            }
+        } else {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    sendFile(ctx, region, future);
+                }
+            });
+        }
+
+        return future;
+    }
+
     @Override
     public ChannelFuture write(Object message, ChannelFuture future) {
         return write(tail, message, future);
@@ -1277,7 +1345,7 @@ public class DefaultChannelPipeline implements ChannelPipeline {
         if (message == null) {
             throw new NullPointerException("message");
         }
-        validateFuture(future);
+        validateFuture(future, true);
 
         EventExecutor executor;
         boolean msgBuf = false;
@@ -1303,9 +1371,22 @@ public class DefaultChannelPipeline implements ChannelPipeline {
         if (executor.inEventLoop()) {
             if (msgBuf) {
                 ctx.outMsgBuf.add(message);
+            } else if (ctx.buffersReleased) {
+                // The channel has been closed and the byte buffer is gone.
+                ReferenceCountUtil.release(message);
+                future.setFailure(new ClosedChannelException());
+                return future;
             } else {
                 ByteBuf buf = (ByteBuf) message;
-                ctx.outByteBuf.writeBytes(buf, buf.readerIndex(), buf.readableBytes());
+                if (ctx == head && buf.readableBytes() >= MIN_COMPONENT_SIZE &&
+                    ctx.outByteBuf instanceof DynamicByteBuf) {
+                    // The head buffer takes the ownership of the message.
+                    ((DynamicByteBuf) ctx.outByteBuf).addComponent(buf);
+                } else {
+                    // The content is copied, so the message reached its end here.
+                    ctx.outByteBuf.writeBytes(buf, buf.readerIndex(), buf.readableBytes());
+                    buf.release();
+                }
             }
             flush0(ctx, future);
             return future;
@@ -1322,7 +1403,7 @@ public class DefaultChannelPipeline implements ChannelPipeline {
         return future;
     }
 
-    private void validateFuture(ChannelFuture future) {
+    private void validateFuture(ChannelFuture future, boolean allowVoidFuture) {
         if (future == null) {
             throw new NullPointerException("future");
         }
@@ -1330,6 +1411,12 @@ public class DefaultChannelPipeline implements ChannelPipeline {
             throw new IllegalArgumentException(String.format(
                     "future.channel does not match: %s (expected: %s)", future.channel(), channel));
         }
+        if (future == channel.voidFuture()) {
+            if (!allowVoidFuture) {
+                throw new IllegalArgumentException("void future not allowed for this operation");
+            }
+            return;
+        }
         if (future.isDone()) {
             throw new IllegalArgumentException("future already done");
         }
@@ -1338,17 +1425,22 @@ public class DefaultChannelPipeline implements ChannelPipeline {
         }
     }
 
-    private DefaultChannelHandlerContext firstContext(int direction) {
+    private DefaultChannelHandlerContext firstContext(int direction, int mask) {
         assert direction == DIR_INBOUND || direction == DIR_OUTBOUND;
         if (direction > 0) {
-            return nextContext(head.next, direction);
+            return nextContext(head.next, direction, mask);
         } else {
-            return nextContext(tail, direction);
+            return nextContext(tail, direction, mask);
         }
     }
 
+    /**
+     * Returns the first context, starting from {@code ctx} in the specified
+     * {@code direction}, whose handler handles any of the events in {@code mask}.
+     * The handlers which would only forward the events are skipped.
+     */
     static DefaultChannelHandlerContext nextContext(
-            DefaultChannelHandlerContext ctx, int direction) {
+            DefaultChannelHandlerContext ctx, int direction, int mask) {
         assert direction == DIR_INBOUND || direction == DIR_OUTBOUND;
         if (ctx == null) {
             return null;
@@ -1356,14 +1448,14 @@ public class DefaultChannelPipeline implements ChannelPipeline {
 
         DefaultChannelHandlerContext realCtx = ctx;
         if (direction > 0) {
-            while ((realCtx.directions & direction) == 0) {
+            while ((realCtx.executionMask & mask) == 0) {
                 realCtx = realCtx.next;
                 if (realCtx == null) {
                     return null;
                 }
             }
         } else {
-            while ((realCtx.directions & direction) == 0) {
+            while ((realCtx.executionMask & mask) == 0) {
                 realCtx = realCtx.prev;
                 if (realCtx == null) {
                     return null;
@@ -1503,6 +1595,11 @@ public class DefaultChannelPipeline implements ChannelPipeline {
             unsafe.deregister(future);
         }
 
+        @Override
+        public void sendFile(ChannelHandlerContext ctx, FileRegion region, ChannelFuture future) throws Exception {
+            unsafe.sendFile(region, future);
+        }
+
         @Override
         public void flush(ChannelHandlerContext ctx, ChannelFuture future) throws Exception {
             unsafe.flush(future);
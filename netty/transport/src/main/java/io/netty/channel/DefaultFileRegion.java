@@ -0,0 +1,158 @@
+/*
+ * Copyright 2012 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel;
+
+import io.netty.logging.InternalLogger;
+import io.netty.logging.InternalLoggerFactory;
+import io.netty.util.IllegalReferenceCountException;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+/**
+ * The default {@link FileRegion} implementation which transfers the content
+ * of a {@link FileChannel} via
+ * {@link FileChannel#transferTo(long, long, WritableByteChannel)}.  The
+ * {@link FileChannel} is closed when this region is deallocated.
+ */
+public class DefaultFileRegion implements FileRegion {
+
+    private static final InternalLogger logger = InternalLoggerFactory.getInstance(DefaultFileRegion.class);
+
+    private static final AtomicIntegerFieldUpdater<DefaultFileRegion> refCntUpdater =
+            AtomicIntegerFieldUpdater.newUpdater(DefaultFileRegion.class, "refCnt");
+
+    private final FileChannel file;
+    private final long position;
+    private final long count;
+    private volatile int refCnt = 1;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param file      the {@link FileChannel} to transfer
+     * @param position  the offset in the file where the transfer begins
+     * @param count     the number of bytes to transfer
+     */
+    public DefaultFileRegion(FileChannel file, long position, long count) {
+        if (file == null) {
+            throw new NullPointerException("file");
+        }
+        if (position < 0) {
+            throw new IllegalArgumentException("position: " + position + " (expected: 0+)");
+        }
+        if (count < 0) {
+            throw new IllegalArgumentException("count: " + count + " (expected: 0+)");
+        }
+        this.file = file;
+        this.position = position;
+        this.count = count;
+    }
+
+    @Override
+    public long position() {
+        return position;
+    }
+
+    @Override
+    public long count() {
+        return count;
+    }
+
+    @Override
+    public long transferTo(WritableByteChannel target, long position) throws IOException {
+        long count = this.count - position;
+        if (count < 0 || position < 0) {
+            throw new IllegalArgumentException(
+                    "position out of range: " + position +
+                    " (expected: 0 - " + (this.count - 1) + ')');
+        }
+        if (count == 0) {
+            return 0L;
+        }
+        if (refCnt == 0) {
+            throw new IllegalReferenceCountException(0);
+        }
+
+        return file.transferTo(this.position + position, count, target);
+    }
+
+    @Override
+    public int refCnt() {
+        return refCnt;
+    }
+
+    @Override
+    public FileRegion retain() {
+        return retain(1);
+    }
+
+    @Override
+    public FileRegion retain(int increment) {
+        if (increment <= 0) {
+            throw new IllegalArgumentException("increment: " + increment + " (expected: > 0)");
+        }
+
+        for (;;) {
+            int refCnt = this.refCnt;
+            if (refCnt == 0 || refCnt > Integer.MAX_VALUE - increment) {
+                throw new IllegalReferenceCountException(refCnt, increment);
+            }
+            if (refCntUpdater.compareAndSet(this, refCnt, refCnt + increment)) {
+                return this;
+            }
+        }
+    }
+
+    @Override
+    public boolean release() {
+        return release(1);
+    }
+
+    @Override
+    public boolean release(int decrement) {
+        if (decrement <= 0) {
+            throw new IllegalArgumentException("decrement: " + decrement + " (expected: > 0)");
+        }
+
+        for (;;) {
+            int refCnt = this.refCnt;
+            if (refCnt < decrement) {
+                throw new IllegalReferenceCountException(refCnt, -decrement);
+            }
+
+            if (refCntUpdater.compareAndSet(this, refCnt, refCnt - decrement)) {
+                if (refCnt == decrement) {
+                    deallocate();
+                    return true;
+                }
+                return false;
+            }
+        }
+    }
+
+    private void deallocate() {
+        try {
+            file.close();
+        } catch (IOException e) {
+            if (logger.isWarnEnabled()) {
+                logger.warn("Failed to close a file.", e);
+            }
+        }
+    }
+}
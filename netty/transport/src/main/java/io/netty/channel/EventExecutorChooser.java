@@ -0,0 +1,35 @@
+/*
+ * Copyright 2012 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel;
+
+/**
+ * Chooses the child {@link EventExecutor} of a {@link MultithreadEventExecutor}
+ * which is returned by {@link EventExecutor.Unsafe#nextChild()}, i.e. the
+ * {@link EventLoop} a new {@link Channel} is registered to.
+ *
+ * @see EventExecutorChoosers
+ * @see MultithreadEventExecutor#setChooser(EventExecutorChooser)
+ */
+public interface EventExecutorChooser {
+
+    /**
+     * Returns one of the specified executors.  Called concurrently by any
+     * thread which registers a {@link Channel}.
+     *
+     * @param executors the child executors, which must not be modified
+     */
+    EventExecutor next(EventExecutor[] executors);
+}
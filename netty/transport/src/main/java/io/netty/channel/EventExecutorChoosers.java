@@ -0,0 +1,119 @@
+/*
+ * Copyright 2012 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Provides the built-in {@link EventExecutorChooser}s.  The load of an
+ * {@link EventExecutor} is the number of the {@link Channel}s registered to it,
+ * as returned by {@link SingleThreadEventLoop#registeredChannels()}.  An
+ * executor which is not a {@link SingleThreadEventLoop} has no load.
+ */
+public final class EventExecutorChoosers {
+
+    /**
+     * Returns a new chooser which returns the executors in turn.  This is the
+     * default.
+     */
+    public static EventExecutorChooser roundRobin() {
+        return new RoundRobinChooser();
+    }
+
+    /**
+     * Returns a new chooser which returns the executor with the fewest
+     * registered {@link Channel}s.  The executors with the same load are
+     * returned in turn.  Every call visits all executors.
+     */
+    public static EventExecutorChooser leastRegisteredChannels() {
+        return new LeastRegisteredChannelsChooser();
+    }
+
+    /**
+     * Returns a new chooser which picks two executors at random and returns
+     * the one with fewer registered {@link Channel}s.  It balances nearly as well
+     * as {@link #leastRegisteredChannels()} while looking at two executors only.
+     */
+    public static EventExecutorChooser powerOfTwoChoices() {
+        return new PowerOfTwoChoicesChooser();
+    }
+
+    static int load(EventExecutor executor) {
+        if (executor instanceof SingleThreadEventLoop) {
+            return ((SingleThreadEventLoop) executor).registeredChannels();
+        }
+        return 0;
+    }
+
+    private static final class RoundRobinChooser implements EventExecutorChooser {
+        private final AtomicInteger index = new AtomicInteger();
+
+        @Override
+        public EventExecutor next(EventExecutor[] executors) {
+            return executors[Math.abs(index.getAndIncrement() % executors.length)];
+        }
+    }
+
+    private static final class LeastRegisteredChannelsChooser implements EventExecutorChooser {
+        private final AtomicInteger index = new AtomicInteger();
+
+        @Override
+        public EventExecutor next(EventExecutor[] executors) {
+            // Start from a different executor every time to break the ties in turn.
+            final int length = executors.length;
+            final int start = Math.abs(index.getAndIncrement() % length);
+            EventExecutor chosen = executors[start];
+            int minLoad = load(chosen);
+            for (int i = 1; i < length && minLoad > 0; i ++) {
+                EventExecutor e = executors[(start + i) % length];
+                int load = load(e);
+                if (load < minLoad) {
+                    chosen = e;
+                    minLoad = load;
+                }
+            }
+            return chosen;
+        }
+    }
+
+    private static final class PowerOfTwoChoicesChooser implements EventExecutorChooser {
+        private final Random random = new Random();
+
+        @Override
+        public EventExecutor next(EventExecutor[] executors) {
+            final int length = executors.length;
+            if (length == 1) {
+                return executors[0];
+            }
+
+            int a = random.nextInt(length);
+            int b = random.nextInt(length - 1);
+            if (b >= a) {
+                // Make sure two different executors are compared.
+                b ++;
+            }
+
+            EventExecutor first = executors[a];
+            EventExecutor second = executors[b];
+            return load(second) < load(first)? second : first;
+        }
+    }
+
+    private EventExecutorChoosers() {
+        // Unused
+    }
+}
@@ -35,18 +35,31 @@ public abstract class MultithreadEventExecutor implements EventExecutor {
     
     private static final AtomicInteger poolId = new AtomicInteger();
 
-    private final EventExecutor[] children;// 同类型的孩子，循环使用
+    private final EventExecutor[] children;// 同类型的孩子，由chooser选择
     
-    private final AtomicInteger childIndex = new AtomicInteger();
+    private volatile EventExecutorChooser chooser = EventExecutorChoosers.roundRobin();
     
     private final Unsafe unsafe = new Unsafe() {
         @Override
         public EventExecutor nextChild() {
-        	// 如果到达最后一个，就返回第一个，如此循环
-            return children[Math.abs(childIndex.getAndIncrement() % children.length)];
+            return chooser.next(children);
         }
     };
 
+    /**
+     * Creates a new instance.
+     * <p>
+     * The children are created in order by {@link #newChild(ThreadFactory, Object...)},
+     * and each child asks the specified {@link ThreadFactory} for exactly one
+     * {@link Thread}.  Therefore, the n-th {@link Thread} returned by the factory
+     * runs the n-th child, which allows the factory to pin the threads to
+     * specific CPU cores with a thread affinity library.
+     *
+     * @param nThreads      the number of the children, or {@code 0} to use the default
+     * @param threadFactory the {@link ThreadFactory} of the threads of the
+     *                      children, or {@code null} to use the default
+     * @param args          the arguments passed to {@link #newChild(ThreadFactory, Object...)}
+     */
     protected MultithreadEventExecutor(int nThreads, ThreadFactory threadFactory, Object... args) {
         if (nThreads < 0) {
             throw new IllegalArgumentException(String.format(
@@ -82,6 +95,27 @@ public abstract class MultithreadEventExecutor implements EventExecutor {
 
     protected abstract EventExecutor newChild(ThreadFactory threadFactory, Object... args) throws Exception;
 
+    /**
+     * Returns a copy of the child executors created by
+     * {@link #newChild(ThreadFactory, Object...)}, in the order of creation.
+     */
+    public EventExecutor[] children() {
+        return children.clone();
+    }
+
+    /**
+     * Sets the {@link EventExecutorChooser} which chooses the child returned by
+     * {@link EventExecutor.Unsafe#nextChild()}, such as the {@link EventLoop} a
+     * new {@link Channel} is registered to.  The default is
+     * {@link EventExecutorChoosers#roundRobin()}.
+     */
+    public void setChooser(EventExecutorChooser chooser) {
+        if (chooser == null) {
+            throw new NullPointerException("chooser");
+        }
+        this.chooser = chooser;
+    }
+
     @Override
     public Unsafe unsafe() {
         return unsafe;
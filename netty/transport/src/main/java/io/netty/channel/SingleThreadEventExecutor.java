@@ -15,6 +15,7 @@
  */
 package io.netty.channel;
 
+import io.netty.buffer.PooledByteBufFactory;
 import io.netty.logging.InternalLogger;
 import io.netty.logging.InternalLoggerFactory;
 import io.netty.util.internal.QueueFactory;
@@ -24,12 +25,12 @@ import java.util.Collections;
 import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.PriorityQueue;
 import java.util.Queue;
 import java.util.Set;
 import java.util.concurrent.AbstractExecutorService;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Callable;
-import java.util.concurrent.DelayQueue;
 import java.util.concurrent.Delayed;
 import java.util.concurrent.FutureTask;
 import java.util.concurrent.RejectedExecutionException;
@@ -37,6 +38,7 @@ import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
 public abstract class SingleThreadEventExecutor extends AbstractExecutorService implements EventExecutor {
@@ -44,8 +46,8 @@ public abstract class SingleThreadEventExecutor extends AbstractExecutorService
     private static final InternalLogger logger =
             InternalLoggerFactory.getInstance(SingleThreadEventExecutor.class);
 
-    private static final long SCHEDULE_CHECK_INTERVAL = TimeUnit.MILLISECONDS.toNanos(10);
     private static final long SCHEDULE_PURGE_INTERVAL = TimeUnit.SECONDS.toNanos(1);
+    private static final long MAX_DELAY_NANOS = TimeUnit.SECONDS.toNanos(1);
     private static final long START_TIME = System.nanoTime();
     
     // 任务id
@@ -77,6 +79,13 @@ public abstract class SingleThreadEventExecutor extends AbstractExecutorService
         return nanoTime() + delay;
     }
 
+    private static final Runnable NOOP_TASK = new Runnable() {
+        @Override
+        public void run() {
+            // Do nothing.
+        }
+    };
+
     private final Unsafe unsafe = new Unsafe() {
         @Override
         public EventExecutor nextChild() {
@@ -84,21 +93,27 @@ public abstract class SingleThreadEventExecutor extends AbstractExecutorService
         }
     };
     // 任务队列
-    private final BlockingQueue<Runnable> taskQueue = QueueFactory.createQueue();
+    private final Queue<Runnable> taskQueue;
+    // The number of the tasks in taskQueue, which the queue may only be able to count in the event loop.
+    private final AtomicInteger pendingTasks = new AtomicInteger();
     // 本执行器执行任务使用的线程，持有它用来判断是否在事件循环中
     private final Thread thread;
     private final Object stateLock = new Object();
     private final Semaphore threadLock = new Semaphore(0);
-    // TODO: Use PriorityQueue to reduce the locking overhead of DelayQueue.
     // 延迟执行的任务，取出的时候按照延迟时间排序
-    private final Queue<ScheduledFutureTask<?>> scheduledTasks = new DelayQueue<ScheduledFutureTask<?>>();
+    // Accessed only by the event loop thread; other threads hand over their tasks via taskQueue.
+    private final Queue<ScheduledFutureTask<?>> scheduledTasks = new PriorityQueue<ScheduledFutureTask<?>>();
     private final Set<Runnable> shutdownHooks = new LinkedHashSet<Runnable>();
     /** 0 - not started, 1 - started, 2 - shut down, 3 - terminated */
     private volatile int state;
-    private long lastCheckTimeNanos;
     private long lastPurgeTimeNanos;
+    // Written only by the event loop thread.
+    private volatile long taskBudgetExhaustedCount;
+    private volatile long iterationCount;
+    private volatile long iterationNanos;
 
     protected SingleThreadEventExecutor(ThreadFactory threadFactory) {
+        taskQueue = newTaskQueue();
     	// 线程工厂生成一个线程来执行run方法
         thread = threadFactory.newThread(new Runnable() {
             @Override
@@ -124,6 +139,8 @@ public abstract class SingleThreadEventExecutor extends AbstractExecutorService
                         try {
                             cleanup();
                         } finally {
+                            // Give the memory cached for this thread back to the buffer pools.
+                            PooledByteBufFactory.freeThreadCaches();
                             threadLock.release();
                             assert taskQueue.isEmpty();
                         }
@@ -145,6 +162,35 @@ public abstract class SingleThreadEventExecutor extends AbstractExecutorService
         });
     }
 
+    /**
+     * Creates the queue of the tasks.  Invoked by the constructor, so the
+     * implementation must not depend on the state of the subclass.  The
+     * default implementation returns a {@link BlockingQueue}, which is
+     * required by {@link #takeTask()}.  Override this method to return a
+     * non-blocking queue such as
+     * {@link io.netty.util.internal.MpscLinkedQueue} if the event loop
+     * never blocks on the queue but is woken up by {@link #wakeup(boolean)}.
+     * Only the event loop thread consumes the returned queue.  An
+     * implementation which returns a queue that does not support
+     * {@link Queue#remove(Object)} must override
+     * {@link #isTaskRemovalSupported()} as well.
+     */
+    protected Queue<Runnable> newTaskQueue() {
+        return QueueFactory.createQueue();
+    }
+
+    /**
+     * Returns {@code true} if and only if the queue returned by
+     * {@link #newTaskQueue()} supports {@link Queue#remove(Object)}.  If {@code true}, a task
+     * which was added while this executor was being shut down is removed and
+     * rejected unless the event loop has taken it already.  Otherwise, such a
+     * task is always rejected, although the event loop may still run it while
+     * it terminates.  The default implementation returns {@code true}.
+     */
+    protected boolean isTaskRemovalSupported() {
+        return true;
+    }
+
     @Override
     public Unsafe unsafe() {
         return unsafe;
@@ -158,32 +204,55 @@ public abstract class SingleThreadEventExecutor extends AbstractExecutorService
     	// 保证是在当前事件循环
         assert inEventLoop();
 
-        Runnable task = taskQueue.poll();
+        Runnable task = pollTaskQueue();
         if (task != null) {
             return task;
         }
 
         if (fetchScheduledTasks()) {
-            task = taskQueue.poll();
+            task = pollTaskQueue();
             return task;
         }
 
         return null;
     }
 
+    private Runnable pollTaskQueue() {
+        Runnable task = taskQueue.poll();
+        if (task != null) {
+            pendingTasks.decrementAndGet();
+        }
+        return task;
+    }
+
+    /**
+     * Waits for the next task.  Requires the queue returned by
+     * {@link #newTaskQueue()} to be a {@link BlockingQueue}.  Once this
+     * executor is shut down, a no-op task is returned when there is no task,
+     * so that the caller can notice the shutdown even if the wakeup was lost.
+     */
     protected Runnable takeTask() throws InterruptedException {
         assert inEventLoop();
+        if (!(taskQueue instanceof BlockingQueue)) {
+            throw new UnsupportedOperationException();
+        }
 
+        BlockingQueue<Runnable> taskQueue = (BlockingQueue<Runnable>) this.taskQueue;
         for (;;) {
-            Runnable task = taskQueue.poll(SCHEDULE_CHECK_INTERVAL * 2 / 3, TimeUnit.NANOSECONDS);
+            // A task scheduled by another thread arrives via taskQueue.
+            Runnable task = taskQueue.poll(delayNanos(), TimeUnit.NANOSECONDS);
             if (task != null) {
+                pendingTasks.decrementAndGet();
                 return task;
             }
             fetchScheduledTasks();
-            task = taskQueue.poll();
+            task = pollTaskQueue();
             if (task != null) {
                 return task;
             }
+            if (isShutdown()) {
+                return NOOP_TASK;
+            }
         }
     }
 
@@ -218,6 +287,29 @@ public abstract class SingleThreadEventExecutor extends AbstractExecutorService
         return false;
     }
 
+    /**
+     * Returns the amount of time until the deadline of the earliest scheduled
+     * task, which is how long the event loop can block waiting for I/O.
+     * Returns {@code 1} second if there is no scheduled task.  Must be called
+     * by the event loop thread.
+     */
+    protected long delayNanos() {
+        assert inEventLoop();
+
+        ScheduledFutureTask<?> task = scheduledTasks.peek();
+        if (task == null) {
+            return MAX_DELAY_NANOS;
+        }
+        return Math.min(task.delayNanos(), MAX_DELAY_NANOS);
+    }
+
+    /**
+     * Same as {@link #delayNanos()}, rounded to milliseconds.
+     */
+    protected long delayMillis() {
+        return (delayNanos() + 500000L) / 1000000L;
+    }
+
     protected void addTask(Runnable task) {
         if (task == null) {
             throw new NullPointerException("task");
@@ -225,14 +317,24 @@ public abstract class SingleThreadEventExecutor extends AbstractExecutorService
         if (isShutdown()) {
             reject();
         }
+        // Count the task first so that the consumer never makes the counter negative.
+        pendingTasks.incrementAndGet();
         taskQueue.add(task);
     }
 
+    /**
+     * Removes the specified task from the task queue.  Must not be called
+     * unless {@link #isTaskRemovalSupported()} returns {@code true}.
+     */
     protected boolean removeTask(Runnable task) {
         if (task == null) {
             throw new NullPointerException("task");
         }
-        return taskQueue.remove(task);
+        if (taskQueue.remove(task)) {
+            pendingTasks.decrementAndGet();
+            return true;
+        }
+        return false;
     }
 
     protected boolean runAllTasks() {
@@ -254,6 +356,92 @@ public abstract class SingleThreadEventExecutor extends AbstractExecutorService
         return ran;
     }
 
+    /**
+     * Runs the pending tasks until the task queue is empty or the specified
+     * amount of time has elapsed.  At least one pending task is run.  The
+     * time is checked only every 64 tasks, so a long task can exceed the
+     * budget.
+     *
+     * @return {@code true} if at least one task was run
+     */
+    protected boolean runAllTasks(long timeoutNanos) {
+        Runnable task = pollTask();
+        if (task == null) {
+            return false;
+        }
+
+        final long deadline = System.nanoTime() + timeoutNanos;
+        long runTasks = 0;
+        for (;;) {
+            try {
+                task.run();
+            } catch (Throwable t) {
+                logger.warn("A task raised an exception.", t);
+            }
+
+            runTasks ++;
+
+            // System.nanoTime() is relatively expensive - check every 64 tasks.
+            if ((runTasks & 0x3F) == 0 && System.nanoTime() >= deadline) {
+                if (hasTasks()) {
+                    taskBudgetExhaustedCount ++;
+                }
+                break;
+            }
+
+            task = pollTask();
+            if (task == null) {
+                break;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns how many times {@link #runAllTasks(long)} ran out of time
+     * while there were still pending tasks.
+     */
+    public long taskBudgetExhaustedCount() {
+        return taskBudgetExhaustedCount;
+    }
+
+    /**
+     * Records an iteration of the loop in {@link #run()} which took the
+     * specified amount of time.  Must be called by the event loop thread.
+     */
+    protected void iterationCompleted(long nanos) {
+        assert inEventLoop();
+        iterationCount ++;
+        iterationNanos += nanos;
+    }
+
+    /**
+     * Returns the number of the iterations recorded by
+     * {@link #iterationCompleted(long)}.  Together with {@link #iterationNanos()},
+     * sampling it twice gives the average iteration time in between.
+     */
+    public long iterationCount() {
+        return iterationCount;
+    }
+
+    /**
+     * Returns the total time spent in the iterations recorded by
+     * {@link #iterationCompleted(long)}, in nanoseconds.
+     */
+    public long iterationNanos() {
+        return iterationNanos;
+    }
+
+    /**
+     * Returns the number of the tasks waiting to be run, excluding the
+     * scheduled tasks which are not due yet.  This method can be called by
+     * any thread.  It reads a counter rather than the task queue, whose
+     * {@link Queue#size()} may be available only to the event loop thread.
+     */
+    public int pendingTasks() {
+        return pendingTasks.get();
+    }
+
     protected abstract void run();
 
     protected void cleanup() {
@@ -400,7 +588,9 @@ public abstract class SingleThreadEventExecutor extends AbstractExecutorService
                 }
             }
             addTask(task);
-            if (isShutdown() && removeTask(task)) {
+            // The event loop might have run its last tasks before the task
+            // was added, so never leave the task without telling the caller.
+            if (isShutdown() && (!isTaskRemovalSupported() || removeTask(task))) {
                 reject();
             }
             wakeup(false);
@@ -485,29 +675,25 @@ public abstract class SingleThreadEventExecutor extends AbstractExecutorService
 
     // 启动一个任务
     // 该方法有可能在另外一个线程启动，也可能在thread线程调用
-    private <V> ScheduledFuture<V> schedule(ScheduledFutureTask<V> task) {
-        
-    	if (isShutdown()) {
-            reject();
-        }
-        // 添加到任务队列
-        scheduledTasks.add(task);
-        
-        if (isShutdown()) {
-            task.cancel(false);
-        }
-
-        if (!inEventLoop()) {
-        	// 是从thread线程之外调用的，那么就启动thread，并把当前运行线程设置为thread
-            synchronized (stateLock) {
-                if (state == 0) {
-                    state = 1;// 1表示开启
-                    thread.start();
-                }
+    private <V> ScheduledFuture<V> schedule(final ScheduledFutureTask<V> task) {
+        if (inEventLoop()) {
+            if (isShutdown()) {
+                reject();
             }
+            // 添加到任务队列
+            scheduledTasks.add(task);
         } else {
-        	// 该schedule是从thread线程内调用的
-            fetchScheduledTasks();// 从scheduledTasks中取出放入到taskqueue
+            // 是从thread线程之外调用的，交给thread线程添加，同时会启动thread
+            execute(new Runnable() {
+                @Override
+                public void run() {
+                    if (isShutdown()) {
+                        task.cancel(false);
+                    } else {
+                        scheduledTasks.add(task);
+                    }
+                }
+            });
         }
 
         return task;
@@ -519,9 +705,10 @@ public abstract class SingleThreadEventExecutor extends AbstractExecutorService
         }
 
         long nanoTime = nanoTime();
-        
+
         //如果大于设定的清理间隔，用于清理cancelled任务
         if (nanoTime - lastPurgeTimeNanos >= SCHEDULE_PURGE_INTERVAL) {
+            lastPurgeTimeNanos = nanoTime;
             for (Iterator<ScheduledFutureTask<?>> i = scheduledTasks.iterator(); i.hasNext();) {
                 ScheduledFutureTask<?> task = i.next();
                 if (task.isCancelled()) {
@@ -530,30 +717,27 @@ public abstract class SingleThreadEventExecutor extends AbstractExecutorService
             }
         }
 
-        if (nanoTime - lastCheckTimeNanos >= SCHEDULE_CHECK_INTERVAL) {
-            boolean added = false;
-            // 死循环
-            for (;;) {
-            	// 取出队列头的元素
-                ScheduledFutureTask<?> task = scheduledTasks.poll();
-                if (task == null) {
-                    break;
-                }
-
-                if (!task.isCancelled()) {
-                    if (isShutdown()) {
-                        task.cancel(false);
-                    } else {
-                    	// 加到正在执行的队列
-                        taskQueue.add(task);
-                        added = true;
-                    }
+        boolean added = false;
+        for (;;) {
+            // 取出已到期的队列头的元素
+            ScheduledFutureTask<?> task = scheduledTasks.peek();
+            if (task == null || task.deadlineNanos() > nanoTime) {
+                break;
+            }
+            scheduledTasks.remove();
+
+            if (!task.isCancelled()) {
+                if (isShutdown()) {
+                    task.cancel(false);
+                } else {
+                    // 加到正在执行的队列
+                    pendingTasks.incrementAndGet();
+                    taskQueue.add(task);
+                    added = true;
                 }
             }
-            return added;
         }
-
-        return false;
+        return added;
     }
 
     private void cancelScheduledTasks() {
@@ -16,13 +16,38 @@
 package io.netty.channel;
 
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public abstract class SingleThreadEventLoop extends SingleThreadEventExecutor implements EventLoop {
 
+    // 还没在事件循环里完成注册的channel数，让chooser能看到刚分配的channel
+    private final AtomicInteger pendingRegistrations = new AtomicInteger();
+    // Written only by the event loop thread.
+    private volatile int registeredChannels;
+
     protected SingleThreadEventLoop(ThreadFactory threadFactory) {
         super(threadFactory);
     }
 
+    /**
+     * Returns the number of the {@link Channel}s registered to this event loop,
+     * including the ones whose registration has been requested but not
+     * completed yet.
+     */
+    public int registeredChannels() {
+        return registeredChannels + pendingRegistrations.get();
+    }
+
+    void channelRegistered() {
+        assert inEventLoop();
+        registeredChannels ++;
+    }
+
+    void channelDeregistered() {
+        assert inEventLoop();
+        registeredChannels --;
+    }
+
     @Override
     public ChannelFuture register(Channel channel) {
         if (channel == null) {
@@ -36,9 +61,12 @@ public abstract class SingleThreadEventLoop extends SingleThreadEventExecutor im
         if (inEventLoop()) {
             channel.unsafe().register(this, future);
         } else {
+            pendingRegistrations.incrementAndGet();
             execute(new Runnable() {
                 @Override
                 public void run() {
+                    // register() counts the channel in registeredChannels once it succeeds.
+                    pendingRegistrations.decrementAndGet();
                     channel.unsafe().register(SingleThreadEventLoop.this, future);
                 }
             });
@@ -17,20 +17,71 @@ package io.netty.channel;
 
 import java.util.concurrent.TimeUnit;
 
+/**
+ * A {@link ChannelFuture} which is shared by all operations it is passed to and
+ * which never completes.  It is used when the caller is not interested in the
+ * result of an operation, so that no future has to be allocated for it.
+ * Adding a listener to it or waiting for it raises an {@link IllegalStateException}.
+ *
+ * @see Channel#voidFuture()
+ */
 public class VoidChannelFuture implements ChannelFuture.Unsafe {
 
     private final Channel channel;
+    private final boolean fireException;
 
     /**
-     * Creates a new instance.
+     * Creates a new instance which discards the failures it is notified of.
      *
      * @param channel the {@link Channel} associated with this future
      */
     public VoidChannelFuture(Channel channel) {
+        this(channel, false);
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param channel the {@link Channel} associated with this future
+     * @param fireException {@code true} if a failure should be forwarded to
+     *                      {@link ChannelPipeline#fireExceptionCaught(Throwable)}
+     *                      because nobody else will ever see it
+     */
+    public VoidChannelFuture(Channel channel, boolean fireException) {
         if (channel == null) {
             throw new NullPointerException("channel");
         }
         this.channel = channel;
+        this.fireException = fireException;
+    }
+
+    /**
+     * Returns {@code true} if the failures this future is notified of are
+     * forwarded to {@link ChannelPipeline#fireExceptionCaught(Throwable)}.
+     */
+    public boolean isFireException() {
+        return fireException;
+    }
+
+    /**
+     * Returns a new {@link ChannelFuture} which can be used by a handler that
+     * needs to know the outcome of an operation it was given this future for.
+     * The returned future forwards its failure to the pipeline the same way
+     * this future does.
+     */
+    public ChannelFuture unvoid() {
+        ChannelFuture future = new DefaultChannelFuture(channel, false);
+        if (fireException) {
+            future.addListener(new ChannelFutureListener() {
+                @Override
+                public void operationComplete(ChannelFuture future) throws Exception {
+                    if (!future.isSuccess()) {
+                        channel.pipeline().fireExceptionCaught(future.cause());
+                    }
+                }
+            });
+        }
+        return future;
     }
 
     @Override
@@ -127,6 +178,9 @@ public class VoidChannelFuture implements ChannelFuture.Unsafe {
 
     @Override
     public boolean setFailure(Throwable cause) {
+        if (fireException) {
+            channel.pipeline().fireExceptionCaught(cause);
+        }
         return false;
     }
 
@@ -223,7 +223,8 @@ public abstract class AbstractEmbeddedChannel extends AbstractChannel {
     private final class LastInboundByteHandler extends ChannelInboundHandlerAdapter {
         @Override
         public ChannelBuf newInboundBuffer(ChannelHandlerContext ctx) throws Exception {
-            return lastInboundByteBuffer;
+            // Keep a reference for the channel so that the buffer can be read after close.
+            return lastInboundByteBuffer.retain();
         }
 
         @Override
@@ -212,8 +212,9 @@ public class DefaultChannelGroup extends AbstractSet<Channel> implements Channel
         if (message instanceof ByteBuf) {
             ByteBuf buf = (ByteBuf) message;
             for (Channel c: nonServerChannels.values()) {
-                futures.put(c.id(), c.write(buf.duplicate()));
+                futures.put(c.id(), c.write(buf.duplicate().retain()));
             }
+            buf.release();
         } else {
             for (Channel c: nonServerChannels.values()) {
                 futures.put(c.id(), c.write(message));
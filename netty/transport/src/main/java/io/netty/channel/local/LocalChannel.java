@@ -22,25 +22,49 @@ import io.netty.channel.Channel;
 import io.netty.channel.ChannelConfig;
 import io.netty.channel.ChannelException;
 import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelMetadata;
 import io.netty.channel.DefaultChannelConfig;
 import io.netty.channel.EventLoop;
 import io.netty.channel.SingleThreadEventExecutor;
 import io.netty.channel.SingleThreadEventLoop;
+import io.netty.util.ReferenceCountUtil;
+import io.netty.util.internal.MpscLinkedQueue;
 
 import java.net.SocketAddress;
 import java.nio.channels.AlreadyConnectedException;
 import java.nio.channels.ClosedChannelException;
 import java.nio.channels.ConnectionPendingException;
 import java.nio.channels.NotYetConnectedException;
+import java.util.Queue;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 
 /**
  * A {@link Channel} for the local transport.
+ * <p>
+ * The messages written to a {@link LocalChannel} are handed to its peer by
+ * reference.  When both channels are registered to the same {@link EventLoop},
+ * the peer's {@code inboundBufferUpdated} event is triggered immediately by the
+ * flush instead of by a new task.  Otherwise, the messages are added to a
+ * lock-free queue of the peer and a single task delivers all the messages
+ * queued until it runs.  The messages which have not been consumed when the
+ * channel is closed are released.
  */
 public class LocalChannel extends AbstractChannel {
 
     private static final ChannelMetadata METADATA = new ChannelMetadata(ChannelBufType.MESSAGE, false);
 
+    /**
+     * The maximum number of the successive {@code inboundBufferUpdated} events
+     * triggered by a peer on the same {@link EventLoop} before the delivery is
+     * continued by a new task, so that two channels which keep replying to each
+     * other do not starve the other tasks of the {@link EventLoop}.
+     */
+    private static final int MAX_INLINE_DELIVERIES = 16;
+
+    private static final AtomicIntegerFieldUpdater<LocalChannel> DELIVERY_SCHEDULED_UPDATER =
+            AtomicIntegerFieldUpdater.newUpdater(LocalChannel.class, "deliveryScheduled");
+
     private final ChannelConfig config = new DefaultChannelConfig();
     private final Runnable shutdownHook = new Runnable() {
         @Override
@@ -55,6 +79,20 @@ public class LocalChannel extends AbstractChannel {
     private volatile LocalAddress remoteAddress;
     private volatile ChannelFuture connectFuture;
 
+    // 对端在别的EventLoop上时写过来的消息，由deliveryTask在本channel的EventLoop上取出
+    private final Queue<Object> handoffQueue = new MpscLinkedQueue<Object>();
+    @SuppressWarnings("unused")
+    private volatile int deliveryScheduled;
+    private boolean inDelivery;
+    private boolean deliveryPending;
+    private final Runnable deliveryTask = new Runnable() {
+        @Override
+        public void run() {
+            deliveryScheduled = 0;
+            deliver();
+        }
+    };
+
     public LocalChannel() {
         this(null);
     }
@@ -182,7 +220,7 @@ public class LocalChannel extends AbstractChannel {
         }
 
         // Update all internal state before the closeFuture is notified.
-        if (parent() == null) {
+        if (parent() == null && localAddress != null) {
             LocalChannelRegistry.unregister(localAddress);
         }
         localAddress = null;
@@ -191,9 +229,10 @@ public class LocalChannel extends AbstractChannel {
 
     @Override
     protected void doClose() throws Exception {
-        if (peer.isActive()) {
+        LocalChannel peer = this.peer;
+        if (peer != null && peer.isActive()) {
             peer.unsafe().close(peer.unsafe().voidFuture());
-            peer = null;
+            this.peer = null;
         }
     }
 
@@ -203,6 +242,35 @@ public class LocalChannel extends AbstractChannel {
             unsafe().close(unsafe().voidFuture());
         }
         ((SingleThreadEventExecutor) eventLoop()).removeShutdownHook(shutdownHook);
+        releaseInboundMessages();
+    }
+
+    /**
+     * Releases the messages written by the peer which will never be
+     * consumed because this channel has been closed.
+     */
+    private void releaseInboundMessages() {
+        for (;;) {
+            Object msg = handoffQueue.poll();
+            if (msg == null) {
+                break;
+            }
+            ReferenceCountUtil.release(msg);
+        }
+
+        ChannelHandlerContext head = unsafe().directOutboundContext();
+        if (!head.hasNextInboundMessageBuffer()) {
+            // The pipeline has no inbound message buffer to release.
+            return;
+        }
+        MessageBuf<Object> in = head.nextInboundMessageBuffer();
+        for (;;) {
+            Object msg = in.poll();
+            if (msg == null) {
+                break;
+            }
+            ReferenceCountUtil.release(msg);
+        }
     }
 
     @Override
@@ -217,14 +285,63 @@ public class LocalChannel extends AbstractChannel {
         final LocalChannel peer = this.peer;
         assert peer != null;
 
-        buf.drainTo(peer.pipeline().inboundMessageBuffer());
+        if (peer.eventLoop().inEventLoop()) {
+            // The peer is on the same event loop - no need to hand the messages over.
+            buf.drainTo(peer.pipeline().inboundMessageBuffer());
+            peer.deliver();
+        } else {
+            buf.drainTo(peer.handoffQueue);
+            if (DELIVERY_SCHEDULED_UPDATER.compareAndSet(peer, 0, 1)) {
+                peer.eventLoop().execute(peer.deliveryTask);
+            }
+        }
+    }
+
+    /**
+     * Triggers {@code inboundBufferUpdated} for the messages written by the
+     * peer.  Must be called by the {@link EventLoop} of this channel.
+     */
+    private void deliver() {
+        if (!isOpen()) {
+            // Handed over by the peer after this channel has been closed.
+            releaseInboundMessages();
+            return;
+        }
+
+        if (inDelivery) {
+            // Called back by the handlers of this channel via the peer.
+            // The outer call triggers the event again once it returns.
+            deliveryPending = true;
+            return;
+        }
 
-        peer.eventLoop().execute(new Runnable() {
-            @Override
-            public void run() {
-                peer.pipeline().fireInboundBufferUpdated();
+        inDelivery = true;
+        try {
+            for (int i = 0; i < MAX_INLINE_DELIVERIES; i ++) {
+                deliveryPending = false;
+                if (!handoffQueue.isEmpty()) {
+                    // Queued by the peer while it was on another event loop.
+                    MessageBuf<Object> in = pipeline().inboundMessageBuffer();
+                    for (;;) {
+                        Object msg = handoffQueue.poll();
+                        if (msg == null) {
+                            break;
+                        }
+                        in.add(msg);
+                    }
+                }
+                pipeline().fireInboundBufferUpdated();
+                if (!deliveryPending) {
+                    return;
+                }
+            }
+
+            if (DELIVERY_SCHEDULED_UPDATER.compareAndSet(this, 0, 1)) {
+                eventLoop().execute(deliveryTask);
             }
-        });
+        } finally {
+            inDelivery = false;
+        }
     }
 
     @Override
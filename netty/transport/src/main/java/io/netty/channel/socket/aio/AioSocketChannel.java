@@ -128,25 +128,19 @@ public class AioSocketChannel extends AbstractAioChannel implements SocketChanne
      */
     void read() {
         ByteBuf byteBuf = pipeline().inboundByteBuffer();
+        int size = config().getReceiveBufferSizePredictor().nextReceiveBufferSize();
         if (!byteBuf.readable()) {
-            byteBuf.clear();
-        } else {
-            expandReadBuffer(byteBuf);
+            // Do not keep the memory for a burst while waiting for the next read.
+            if (!shrinkInboundByteBuffer(byteBuf, size)) {
+                byteBuf.clear();
+            }
         }
+        byteBuf.ensureWritableBytes(size);
         // Get a ByteBuffer view on the ByteBuf
         ByteBuffer buffer = byteBuf.nioBuffer(byteBuf.writerIndex(), byteBuf.writableBytes());
         javaChannel().read(buffer, this, READ_HANDLER);
     }
 
-    private static boolean expandReadBuffer(ByteBuf byteBuf) {
-        if (!byteBuf.writable()) {
-            // FIXME: Magic number
-            byteBuf.ensureWritableBytes(4096);
-            return true;
-        }
-        return false;
-    }
-
     @Override
     protected void doBind(SocketAddress localAddress) throws Exception {
         javaChannel().bind(localAddress);
@@ -179,7 +173,16 @@ public class AioSocketChannel extends AbstractAioChannel implements SocketChanne
         if (!flushing) {
             flushing = true;
             buf.discardReadBytes();
-            javaChannel().write(buf.nioBuffer(), this, WRITE_HANDLER);
+            ByteBuffer nioBuf;
+            if (buf.hasNioBuffer()) {
+                nioBuf = buf.nioBuffer();
+            } else {
+                // Merge the components of the buffer.
+                nioBuf = ByteBuffer.allocate(buf.readableBytes());
+                buf.getBytes(buf.readerIndex(), nioBuf);
+                nioBuf.flip();
+            }
+            javaChannel().write(nioBuf, this, WRITE_HANDLER);
         }
     }
 
@@ -202,6 +205,7 @@ public class AioSocketChannel extends AbstractAioChannel implements SocketChanne
             }
 
             channel.notifyFlushFutures(writtenBytes);
+            channel.updateWritability();
 
             // Allow to have the next write pending
             channel.flushing = false;
@@ -264,7 +268,7 @@ public class AioSocketChannel extends AbstractAioChannel implements SocketChanne
                     // This is needed as the ByteBuffer and the ByteBuf does not share
                     // each others index
                     byteBuf.writerIndex(byteBuf.writerIndex() + localReadAmount);
-                    expandReadBuffer(byteBuf);
+                    channel.config().getReceiveBufferSizePredictor().previousReceiveBufferSize(localReadAmount);
 
                     read = true;
                 } else if (localReadAmount < 0) {
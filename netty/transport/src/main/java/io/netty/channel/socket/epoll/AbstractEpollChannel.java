@@ -0,0 +1,150 @@
+/*
+ * Copyright 2012 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.socket.epoll;
+
+import io.netty.channel.AbstractChannel;
+import io.netty.channel.Channel;
+import io.netty.channel.EventLoop;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+
+abstract class AbstractEpollChannel extends AbstractChannel {
+
+    final int fd;
+
+    /**
+     * The events this channel is interested in.  Updated only by the event loop.
+     */
+    int flags = Native.EPOLLET;
+    volatile boolean active;
+    private volatile boolean open = true;
+
+    AbstractEpollChannel(Channel parent, Integer id, int fd, int flag, boolean active) {
+        super(parent, id);
+        this.fd = fd;
+        flags |= flag;
+        this.active = active;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+
+    @Override
+    public boolean isActive() {
+        return active;
+    }
+
+    @Override
+    public InetSocketAddress localAddress() {
+        return (InetSocketAddress) super.localAddress();
+    }
+
+    @Override
+    public InetSocketAddress remoteAddress() {
+        return (InetSocketAddress) super.remoteAddress();
+    }
+
+    @Override
+    public EpollUnsafe unsafe() {
+        return (EpollUnsafe) super.unsafe();
+    }
+
+    interface EpollUnsafe extends Unsafe {
+        /**
+         * Invoked when the file descriptor became readable, or the connection
+         * was closed or failed.
+         */
+        void epollInReady();
+
+        /**
+         * Invoked when the file descriptor became writable.
+         */
+        void epollOutReady();
+    }
+
+    protected abstract class AbstractEpollUnsafe extends AbstractUnsafe implements EpollUnsafe {
+        @Override
+        public void epollOutReady() {
+            flushNow();
+        }
+    }
+
+    @Override
+    protected boolean isCompatible(EventLoop loop) {
+        return loop instanceof EpollChildEventLoop;
+    }
+
+    @Override
+    protected boolean isFlushPending() {
+        return (flags & Native.EPOLLOUT) != 0;
+    }
+
+    protected final void setEpollOut() throws IOException {
+        if ((flags & Native.EPOLLOUT) == 0) {
+            flags |= Native.EPOLLOUT;
+            modifyEvents();
+        }
+    }
+
+    protected final void clearEpollOut() throws IOException {
+        if ((flags & Native.EPOLLOUT) != 0) {
+            flags &= ~Native.EPOLLOUT;
+            modifyEvents();
+        }
+    }
+
+    /**
+     * Updates the events of this channel.  Because of edge-triggering, this
+     * also makes the event loop report the current readiness again.
+     */
+    protected final void modifyEvents() throws IOException {
+        if (isRegistered()) {
+            ((EpollChildEventLoop) eventLoop()).modify(this);
+        }
+    }
+
+    @Override
+    protected Runnable doRegister() throws Exception {
+        ((EpollChildEventLoop) eventLoop()).add(this);
+        return null;
+    }
+
+    @Override
+    protected void doDeregister() throws Exception {
+        ((EpollChildEventLoop) eventLoop()).remove(this);
+    }
+
+    @Override
+    protected void doClose() throws Exception {
+        if (!open) {
+            // Never close the same file descriptor twice - it might have been reused.
+            return;
+        }
+
+        active = false;
+        open = false;
+        try {
+            if (isRegistered()) {
+                ((EpollChildEventLoop) eventLoop()).remove(this);
+            }
+        } finally {
+            Native.close(fd);
+        }
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2012 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.socket.epoll;
+
+import io.netty.logging.InternalLogger;
+import io.netty.logging.InternalLoggerFactory;
+import io.netty.util.internal.DetectionUtil;
+
+/**
+ * Tells if the epoll transport is available.  The transport requires Linux
+ * and the native library {@code netty-transport-native-epoll} in
+ * {@code java.library.path}.  When it is not available, use the NIO
+ * transport instead:
+ * <pre>
+ * {@link io.netty.channel.EventLoop} loop = Epoll.isAvailable()?
+ *         new {@link EpollEventLoop}() : new {@link io.netty.channel.socket.nio.NioEventLoop}();
+ * </pre>
+ */
+public final class Epoll {
+
+    private static final InternalLogger logger = InternalLoggerFactory.getInstance(Epoll.class);
+
+    static final String LIBRARY_NAME = "netty-transport-native-epoll";
+
+    private static final Throwable UNAVAILABILITY_CAUSE;
+
+    static {
+        Throwable cause = null;
+        if (!DetectionUtil.isLinux()) {
+            cause = new UnsupportedOperationException("epoll is supported only on Linux");
+        } else {
+            try {
+                System.loadLibrary(LIBRARY_NAME);
+
+                // Make sure the library actually works.
+                Native.close(Native.epollCreate());
+            } catch (Throwable t) {
+                cause = t;
+            }
+        }
+
+        UNAVAILABILITY_CAUSE = cause;
+        if (cause != null && logger.isDebugEnabled()) {
+            logger.debug("epoll transport is not available: " + cause);
+        }
+    }
+
+    /**
+     * Returns {@code true} if and only if the epoll transport can be used.
+     */
+    public static boolean isAvailable() {
+        return UNAVAILABILITY_CAUSE == null;
+    }
+
+    /**
+     * Ensures that the epoll transport can be used.
+     *
+     * @throws UnsatisfiedLinkError if the epoll transport is not available
+     */
+    public static void ensureAvailability() {
+        if (UNAVAILABILITY_CAUSE != null) {
+            throw (Error) new UnsatisfiedLinkError(
+                    "failed to load the native library: " + LIBRARY_NAME).initCause(UNAVAILABILITY_CAUSE);
+        }
+    }
+
+    /**
+     * Returns the reason why the epoll transport is not available, or
+     * {@code null} if it is available.
+     */
+    public static Throwable unavailabilityCause() {
+        return UNAVAILABILITY_CAUSE;
+    }
+
+    private Epoll() {
+        // Unused
+    }
+}
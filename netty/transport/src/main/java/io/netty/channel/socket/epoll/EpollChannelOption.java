@@ -0,0 +1,51 @@
+/*
+ * Copyright 2012 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.socket.epoll;
+
+import io.netty.channel.ChannelOption;
+
+/**
+ * The {@link ChannelOption}s which are available only in the epoll transport.
+ */
+public final class EpollChannelOption<T> extends ChannelOption<T> {
+
+    /**
+     * {@code TCP_CORK} - defers sending partial frames until the option is
+     * cleared, so that a response header and its body go out together.
+     */
+    public static final EpollChannelOption<Boolean> TCP_CORK =
+            new EpollChannelOption<Boolean>("TCP_CORK");
+
+    /**
+     * {@code TCP_QUICKACK} - sends the acknowledgements immediately rather
+     * than delaying them.  The kernel may clear this option by itself, so
+     * it is usually set again after each read.
+     */
+    public static final EpollChannelOption<Boolean> TCP_QUICKACK =
+            new EpollChannelOption<Boolean>("TCP_QUICKACK");
+
+    /**
+     * {@code SO_REUSEPORT} - allows more than one server socket to bind the
+     * same address and port, so that the kernel distributes the incoming
+     * connections among them.  Requires Linux 3.9 or above.
+     */
+    public static final EpollChannelOption<Boolean> SO_REUSEPORT =
+            new EpollChannelOption<Boolean>("SO_REUSEPORT");
+
+    private EpollChannelOption(String name) {
+        super(name);
+    }
+}
@@ -0,0 +1,227 @@
+/*
+ * Copyright 2012 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.socket.epoll;
+
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelException;
+import io.netty.channel.SingleThreadEventLoop;
+import io.netty.channel.socket.epoll.AbstractEpollChannel.EpollUnsafe;
+import io.netty.logging.InternalLogger;
+import io.netty.logging.InternalLoggerFactory;
+import io.netty.util.internal.MpscLinkedQueue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A {@link SingleThreadEventLoop} which waits for the events of its channels
+ * with {@code epoll_wait(2)}.  It is woken up by writing to an
+ * {@code eventfd(2)}, which stays readable until the loop reads it, so that
+ * no wake-up is lost between {@link #wakeup(boolean)} and the next wait.
+ */
+final class EpollChildEventLoop extends SingleThreadEventLoop {
+
+    private static final InternalLogger logger =
+            InternalLoggerFactory.getInstance(EpollChildEventLoop.class);
+
+    private static final int MAX_EVENTS = 512;
+
+    private final int epollFd;
+    private final int eventFd;
+    private final Map<Integer, AbstractEpollChannel> channels = new HashMap<Integer, AbstractEpollChannel>();
+    private final long[] events = new long[MAX_EVENTS];
+    private final AtomicBoolean wakenUp = new AtomicBoolean();
+    private volatile int ioRatio = 50;
+
+    EpollChildEventLoop(ThreadFactory threadFactory) {
+        super(threadFactory);
+
+        boolean success = false;
+        int epollFd = -1;
+        int eventFd = -1;
+        try {
+            epollFd = Native.epollCreate();
+            eventFd = Native.eventFd();
+            Native.epollCtlAdd(epollFd, eventFd, Native.EPOLLIN);
+            success = true;
+        } catch (IOException e) {
+            throw new ChannelException("failed to create an epoll file descriptor", e);
+        } finally {
+            if (!success) {
+                closeQuietly(epollFd);
+                closeQuietly(eventFd);
+            }
+        }
+
+        this.epollFd = epollFd;
+        this.eventFd = eventFd;
+    }
+
+    void add(AbstractEpollChannel ch) throws IOException {
+        Native.epollCtlAdd(epollFd, ch.fd, ch.flags);
+        channels.put(ch.fd, ch);
+    }
+
+    void modify(AbstractEpollChannel ch) throws IOException {
+        Native.epollCtlMod(epollFd, ch.fd, ch.flags);
+    }
+
+    void remove(AbstractEpollChannel ch) throws IOException {
+        if (channels.get(ch.fd) != ch) {
+            return;
+        }
+
+        channels.remove(ch.fd);
+        if (ch.isOpen()) {
+            // A closed file descriptor is removed from the epoll set automatically.
+            Native.epollCtlDel(epollFd, ch.fd);
+        }
+    }
+
+    @Override
+    protected Queue<Runnable> newTaskQueue() {
+        // Only the event loop consumes the tasks, and it is woken up by wakeup().
+        return new MpscLinkedQueue<Runnable>();
+    }
+
+    @Override
+    protected boolean isTaskRemovalSupported() {
+        // MpscLinkedQueue does not support removal.
+        return false;
+    }
+
+    /**
+     * @see EpollEventLoop#setIoRatio(int)
+     */
+    void setIoRatio(int ioRatio) {
+        this.ioRatio = ioRatio;
+    }
+
+    @Override
+    protected void run() {
+        for (;;) {
+            wakenUp.set(false);
+
+            try {
+                // Wait until the deadline of the earliest scheduled task at most.
+                int ready = Native.epollWait(epollFd, events, hasTasks()? 0 : (int) delayMillis());
+
+                final long ioStartTime = System.nanoTime();
+                if (ready > 0) {
+                    processReady(ready);
+                }
+                final long ioTime = System.nanoTime() - ioStartTime;
+
+                final int ioRatio = this.ioRatio;
+                if (ioRatio == 100) {
+                    runAllTasks();
+                } else {
+                    runAllTasks(ioTime * (100 - ioRatio) / ioRatio);
+                }
+                iterationCompleted(System.nanoTime() - ioStartTime);
+
+                if (isShutdown()) {
+                    closeAll();
+                    if (peekTask() == null) {
+                        break;
+                    }
+                }
+            } catch (Throwable t) {
+                logger.warn(
+                        "Unexpected exception in the epoll loop.", t);
+
+                // Prevent possible consecutive immediate failures that lead to
+                // excessive CPU consumption.
+                try {
+                    Thread.sleep(1000);
+                } catch (InterruptedException e) {
+                    // Ignore.
+                }
+            }
+        }
+    }
+
+    private void processReady(int ready) throws IOException {
+        for (int i = 0; i < ready; i ++) {
+            final long ev = events[i];
+            final int fd = (int) (ev >>> 32);
+            final int readyOps = (int) ev;
+
+            if (fd == eventFd) {
+                Native.eventFdRead(eventFd);
+                continue;
+            }
+
+            final AbstractEpollChannel ch = channels.get(fd);
+            if (ch == null) {
+                // Closed by the previous event.
+                continue;
+            }
+
+            final EpollUnsafe unsafe = ch.unsafe();
+            if ((readyOps & (Native.EPOLLOUT | Native.EPOLLERR)) != 0) {
+                unsafe.epollOutReady();
+                if (!ch.isOpen()) {
+                    continue;
+                }
+            }
+            if ((readyOps & (Native.EPOLLIN | Native.EPOLLRDHUP | Native.EPOLLHUP | Native.EPOLLERR)) != 0) {
+                unsafe.epollInReady();
+            }
+        }
+    }
+
+    private void closeAll() {
+        Collection<Channel> channels = new ArrayList<Channel>(this.channels.values());
+        for (Channel ch: channels) {
+            ch.unsafe().close(ch.unsafe().voidFuture());
+        }
+    }
+
+    @Override
+    protected void cleanup() {
+        closeQuietly(eventFd);
+        closeQuietly(epollFd);
+    }
+
+    private static void closeQuietly(int fd) {
+        if (fd < 0) {
+            return;
+        }
+        try {
+            Native.close(fd);
+        } catch (IOException e) {
+            logger.warn("Failed to close a file descriptor.", e);
+        }
+    }
+
+    @Override
+    protected void wakeup(boolean inEventLoop) {
+        if (!inEventLoop && wakenUp.compareAndSet(false, true)) {
+            try {
+                Native.eventFdWrite(eventFd, 1L);
+            } catch (IOException e) {
+                logger.warn("Failed to wake up the epoll loop.", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2012 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.socket.epoll;
+
+import io.netty.channel.EventExecutor;
+import io.netty.channel.MultithreadEventLoop;
+import io.netty.channel.SingleThreadEventExecutor;
+
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * A {@link MultithreadEventLoop} which uses Linux epoll in edge-triggered
+ * mode.  It can be used only with {@link EpollSocketChannel} and
+ * {@link EpollServerSocketChannel}.
+ *
+ * @see Epoll#isAvailable()
+ */
+public class EpollEventLoop extends MultithreadEventLoop {
+
+    public EpollEventLoop() {
+        this(0);
+    }
+
+    public EpollEventLoop(int nThreads) {
+        this(nThreads, null);
+    }
+
+    public EpollEventLoop(int nThreads, ThreadFactory threadFactory) {
+        super(nThreads, threadFactory);
+    }
+
+    /**
+     * Sets the desired percentage of the time each event loop spends on I/O.
+     *
+     * @see io.netty.channel.socket.nio.NioEventLoop#setIoRatio(int)
+     */
+    public void setIoRatio(int ioRatio) {
+        if (ioRatio <= 0 || ioRatio > 100) {
+            throw new IllegalArgumentException(
+                    String.format("ioRatio: %d (expected: 0 < ioRatio <= 100)", ioRatio));
+        }
+        for (EventExecutor l: children()) {
+            ((EpollChildEventLoop) l).setIoRatio(ioRatio);
+        }
+    }
+
+    /**
+     * @see io.netty.channel.socket.nio.NioEventLoop#taskBudgetExhaustedCount()
+     */
+    public long taskBudgetExhaustedCount() {
+        long count = 0;
+        for (EventExecutor l: children()) {
+            count += ((SingleThreadEventExecutor) l).taskBudgetExhaustedCount();
+        }
+        return count;
+    }
+
+    @Override
+    protected EventExecutor newChild(ThreadFactory threadFactory, Object... args) throws Exception {
+        Epoll.ensureAvailability();
+        return new EpollChildEventLoop(threadFactory);
+    }
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright 2012 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.socket.epoll;
+
+import io.netty.buffer.ChannelBufType;
+import io.netty.buffer.MessageBuf;
+import io.netty.channel.ChannelException;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelMetadata;
+import io.netty.channel.ChannelPipeline;
+import io.netty.channel.socket.ServerSocketChannel;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+
+/**
+ * A {@link ServerSocketChannel} which uses Linux epoll in edge-triggered
+ * mode.  It can be registered only to an {@link EpollEventLoop}, and its
+ * accepted {@link EpollSocketChannel}s must also be registered to an
+ * {@link EpollEventLoop}.
+ */
+public final class EpollServerSocketChannel extends AbstractEpollChannel implements ServerSocketChannel {
+
+    private static final ChannelMetadata METADATA = new ChannelMetadata(ChannelBufType.MESSAGE, false);
+
+    private static int newSocket() {
+        Epoll.ensureAvailability();
+        int fd = -1;
+        try {
+            fd = Native.socketStreamFd();
+            // Same as java.net.ServerSocket - allows to rebind the address in TIME_WAIT state.
+            Native.setReuseAddress(fd, 1);
+            return fd;
+        } catch (IOException e) {
+            if (fd >= 0) {
+                try {
+                    Native.close(fd);
+                } catch (IOException e2) {
+                    // Ignore.
+                }
+            }
+            throw new ChannelException("Failed to open a server socket.", e);
+        }
+    }
+
+    private final EpollServerSocketChannelConfig config;
+
+    public EpollServerSocketChannel() {
+        super(null, null, newSocket(), Native.EPOLLIN, false);
+        config = new EpollServerSocketChannelConfig(this);
+    }
+
+    @Override
+    public ChannelMetadata metadata() {
+        return METADATA;
+    }
+
+    @Override
+    public EpollServerSocketChannelConfig config() {
+        return config;
+    }
+
+    @Override
+    public InetSocketAddress remoteAddress() {
+        return null;
+    }
+
+    @Override
+    protected SocketAddress localAddress0() {
+        if (!isOpen()) {
+            return null;
+        }
+        return Native.localAddress(fd);
+    }
+
+    @Override
+    protected SocketAddress remoteAddress0() {
+        return null;
+    }
+
+    @Override
+    protected void doBind(SocketAddress localAddress) throws Exception {
+        Native.bind(fd, (InetSocketAddress) localAddress);
+        Native.listen(fd, config.getBacklog());
+        active = true;
+        modifyEvents();
+    }
+
+    @Override
+    protected void doDisconnect() throws Exception {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    protected Unsafe newUnsafe() {
+        return new EpollServerSocketUnsafe();
+    }
+
+    private final class EpollServerSocketUnsafe extends AbstractEpollUnsafe {
+
+        private final Runnable acceptTask = new Runnable() {
+            @Override
+            public void run() {
+                epollInReady();
+            }
+        };
+
+        @Override
+        public void connect(SocketAddress remoteAddress, SocketAddress localAddress, ChannelFuture future) {
+            future.setFailure(new UnsupportedOperationException());
+        }
+
+        @Override
+        public void epollOutReady() {
+            // Never interested in EPOLLOUT.
+        }
+
+        @Override
+        public void epollInReady() {
+            assert eventLoop().inEventLoop();
+            if (!isActive()) {
+                // A socket which is not listening yet reports EPOLLHUP.
+                return;
+            }
+
+            final ChannelPipeline pipeline = pipeline();
+            final MessageBuf<Object> msgBuf = pipeline.inboundMessageBuffer();
+            final int maxMessagesPerRead = config().getMaxMessagesPerRead();
+            boolean accepted = false;
+            try {
+                // Edge-triggered - accept until there is no pending connection.
+                for (int i = 0;; i ++) {
+                    if (i >= maxMessagesPerRead) {
+                        // Accept the rest in a task so that an accept storm
+                        // does not delay the other channels of the event loop.
+                        eventLoop().execute(acceptTask);
+                        break;
+                    }
+
+                    int socketFd = Native.accept(fd);
+                    if (socketFd < 0) {
+                        break;
+                    }
+                    msgBuf.add(new EpollSocketChannel(EpollServerSocketChannel.this, null, socketFd));
+                    accepted = true;
+                }
+            } catch (Throwable t) {
+                if (accepted) {
+                    accepted = false;
+                    pipeline.fireInboundBufferUpdated();
+                }
+                pipeline().fireExceptionCaught(t);
+            } finally {
+                if (accepted) {
+                    pipeline.fireInboundBufferUpdated();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,475 @@
+/*
+ * Copyright 2012 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.socket.epoll;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ChannelBufType;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelException;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelMetadata;
+import io.netty.channel.ChannelPipeline;
+import io.netty.channel.ReceiveBufferSizePredictor;
+import io.netty.channel.socket.SocketChannel;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.ScatteringByteChannel;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link SocketChannel} which uses Linux epoll in edge-triggered mode.
+ * It can be registered only to an {@link EpollEventLoop}.
+ */
+public final class EpollSocketChannel extends AbstractEpollChannel implements SocketChannel {
+
+    private static final ChannelMetadata METADATA = new ChannelMetadata(ChannelBufType.BYTE, false);
+
+    private final EpollSocketChannelConfig config;
+    private final FdChannel fdChannel = new FdChannel();
+
+    /**
+     * The future of the current connection attempt.  If not null, subsequent
+     * connection attempts will fail.
+     */
+    private ChannelFuture connectFuture;
+    private ScheduledFuture<?> connectTimeoutFuture;
+    private ConnectException connectTimeoutException;
+
+    private static int newSocket() {
+        Epoll.ensureAvailability();
+        try {
+            return Native.socketStreamFd();
+        } catch (IOException e) {
+            throw new ChannelException("Failed to open a socket.", e);
+        }
+    }
+
+    public EpollSocketChannel() {
+        super(null, null, newSocket(), Native.EPOLLIN | Native.EPOLLRDHUP, false);
+        config = new EpollSocketChannelConfig(this);
+    }
+
+    EpollSocketChannel(Channel parent, Integer id, int fd) {
+        super(parent, id, fd, Native.EPOLLIN | Native.EPOLLRDHUP, true);
+        config = new EpollSocketChannelConfig(this);
+    }
+
+    @Override
+    public ChannelMetadata metadata() {
+        return METADATA;
+    }
+
+    @Override
+    public EpollSocketChannelConfig config() {
+        return config;
+    }
+
+    @Override
+    protected SocketAddress localAddress0() {
+        if (!isOpen()) {
+            return null;
+        }
+        return Native.localAddress(fd);
+    }
+
+    @Override
+    protected SocketAddress remoteAddress0() {
+        if (!isOpen()) {
+            return null;
+        }
+        return Native.remoteAddress(fd);
+    }
+
+    @Override
+    protected Unsafe newUnsafe() {
+        return new EpollSocketUnsafe();
+    }
+
+    private final class EpollSocketUnsafe extends AbstractEpollUnsafe {
+
+        private final Runnable readTask = new Runnable() {
+            @Override
+            public void run() {
+                epollInReady();
+            }
+        };
+
+        @Override
+        public void connect(
+                final SocketAddress remoteAddress, final SocketAddress localAddress, final ChannelFuture future) {
+            if (eventLoop().inEventLoop()) {
+                if (!ensureOpen(future)) {
+                    return;
+                }
+
+                try {
+                    if (connectFuture != null) {
+                        throw new IllegalStateException("connection attempt already made");
+                    }
+
+                    boolean wasActive = isActive();
+                    if (doConnect(remoteAddress, localAddress)) {
+                        future.setSuccess();
+                        if (!wasActive && isActive()) {
+                            pipeline().fireChannelActive();
+                        }
+                    } else {
+                        connectFuture = future;
+
+                        // Schedule connect timeout.
+                        int connectTimeoutMillis = config().getConnectTimeoutMillis();
+                        if (connectTimeoutMillis > 0) {
+                            connectTimeoutFuture = eventLoop().schedule(new Runnable() {
+                                @Override
+                                public void run() {
+                                    if (connectTimeoutException == null) {
+                                        connectTimeoutException = new ConnectException("connection timed out");
+                                    }
+                                    ChannelFuture connectFuture = EpollSocketChannel.this.connectFuture;
+                                    if (connectFuture != null && connectFuture.setFailure(connectTimeoutException)) {
+                                        pipeline().fireExceptionCaught(connectTimeoutException);
+                                        close(voidFuture());
+                                    }
+                                }
+                            }, connectTimeoutMillis, TimeUnit.MILLISECONDS);
+                        }
+                    }
+                } catch (Throwable t) {
+                    future.setFailure(t);
+                    pipeline().fireExceptionCaught(t);
+                    closeIfClosed();
+                }
+            } else {
+                eventLoop().execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        connect(remoteAddress, localAddress, future);
+                    }
+                });
+            }
+        }
+
+        private void finishConnect() {
+            assert eventLoop().inEventLoop();
+            assert connectFuture != null;
+            boolean connected = false;
+            try {
+                boolean wasActive = isActive();
+                if (!doFinishConnect()) {
+                    // Not connected yet - wait for the next event.
+                    return;
+                }
+                connected = true;
+                connectFuture.setSuccess();
+                if (!wasActive && isActive()) {
+                    pipeline().fireChannelActive();
+                }
+            } catch (Throwable t) {
+                connected = true;
+                connectFuture.setFailure(t);
+                pipeline().fireExceptionCaught(t);
+                closeIfClosed();
+            } finally {
+                if (connected) {
+                    if (connectTimeoutFuture != null) {
+                        connectTimeoutFuture.cancel(false);
+                    }
+                    connectFuture = null;
+                }
+            }
+        }
+
+        @Override
+        public void epollOutReady() {
+            if (connectFuture != null) {
+                finishConnect();
+            } else if (isActive()) {
+                super.epollOutReady();
+            }
+        }
+
+        @Override
+        public void epollInReady() {
+            assert eventLoop().inEventLoop();
+            if (!isActive()) {
+                // An unconnected socket reports EPOLLHUP.
+                return;
+            }
+
+            final ChannelPipeline pipeline = pipeline();
+            final ByteBuf byteBuf = pipeline.inboundByteBuffer();
+            final ReceiveBufferSizePredictor predictor = config().getReceiveBufferSizePredictor();
+            final int maxMessagesPerRead = config().getMaxMessagesPerRead();
+            final int maxBytesPerRead = config().getMaxBytesPerRead();
+            boolean closed = false;
+            boolean read = false;
+            try {
+                // Edge-triggered - read until the socket is drained, or no
+                // event will be reported for the remaining bytes.
+                byteBuf.ensureWritableBytes(predictor.nextReceiveBufferSize());
+                int reads = 0;
+                int totalReadAmount = 0;
+                for (;;) {
+                    expandReadBuffer(byteBuf, predictor.nextReceiveBufferSize());
+                    int localReadAmount = doReadBytes(byteBuf);
+                    if (localReadAmount > 0) {
+                        read = true;
+                        totalReadAmount += localReadAmount;
+                        predictor.previousReceiveBufferSize(localReadAmount);
+                    } else {
+                        if (localReadAmount < 0) {
+                            closed = true;
+                        }
+                        break;
+                    }
+
+                    if (++ reads >= maxMessagesPerRead || totalReadAmount >= maxBytesPerRead) {
+                        // No event will be reported for the remaining bytes, so read them
+                        // in a task not to starve the other channels of the event loop.
+                        eventLoop().execute(readTask);
+                        break;
+                    }
+                }
+            } catch (Throwable t) {
+                if (read) {
+                    read = false;
+                    pipeline.fireInboundBufferUpdated();
+                }
+                pipeline().fireExceptionCaught(t);
+                if (t instanceof IOException) {
+                    close(voidFuture());
+                }
+            } finally {
+                if (read) {
+                    pipeline.fireInboundBufferUpdated();
+                    shrinkInboundByteBuffer(byteBuf, predictor.nextReceiveBufferSize());
+                }
+                if (closed && isOpen()) {
+                    close(voidFuture());
+                }
+            }
+        }
+    }
+
+    @Override
+    protected void doBind(SocketAddress localAddress) throws Exception {
+        Native.bind(fd, (InetSocketAddress) localAddress);
+    }
+
+    private boolean doConnect(SocketAddress remoteAddress, SocketAddress localAddress) throws Exception {
+        if (localAddress != null) {
+            Native.bind(fd, (InetSocketAddress) localAddress);
+        }
+
+        boolean success = false;
+        try {
+            boolean connected = Native.connect(fd, (InetSocketAddress) remoteAddress);
+            if (connected) {
+                active = true;
+                modifyEvents();
+            } else {
+                // EPOLLOUT is reported when the connection attempt is finished.
+                setEpollOut();
+            }
+            success = true;
+            return connected;
+        } finally {
+            if (!success) {
+                doClose();
+            }
+        }
+    }
+
+    private boolean doFinishConnect() throws Exception {
+        if (!Native.finishConnect(fd)) {
+            return false;
+        }
+        active = true;
+        clearEpollOut();
+        return true;
+    }
+
+    @Override
+    protected void doDisconnect() throws Exception {
+        doClose();
+    }
+
+    private int doReadBytes(ByteBuf byteBuf) throws Exception {
+        return byteBuf.writeBytes(fdChannel, byteBuf.writableBytes());
+    }
+
+    @Override
+    protected void doFlushByteBuffer(ByteBuf buf) throws Exception {
+        // Edge-triggered - write until the outbound buffer is empty or the
+        // socket send buffer is full, or no EPOLLOUT will be reported.
+        while (buf.readable()) {
+            int localFlushedAmount = buf.readBytes(fdChannel, buf.readableBytes());
+            if (localFlushedAmount == 0) {
+                // Let the event loop flush again when the socket becomes writable.
+                setEpollOut();
+                return;
+            }
+        }
+
+        // Reset reader/writerIndex to 0 if the buffer is empty.
+        buf.clear();
+        clearEpollOut();
+    }
+
+    private static boolean expandReadBuffer(ByteBuf byteBuf, int size) {
+        if (!byteBuf.writable()) {
+            byteBuf.ensureWritableBytes(size);
+            return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Reads and writes the socket directly.  Direct buffers are passed to
+     * the native code as they are, and at most
+     * {@link EpollSocketChannelConfig#getGatheringWriteLimit()} direct
+     * buffers are written with a single {@code writev(2)}.
+     */
+    private final class FdChannel implements GatheringByteChannel, ScatteringByteChannel {
+
+        @Override
+        public int read(ByteBuffer dst) throws IOException {
+            ensureOpen();
+            final int pos = dst.position();
+            final int limit = dst.limit();
+            final int localReadAmount;
+            if (dst.isDirect()) {
+                localReadAmount = Native.read(fd, dst, pos, limit);
+            } else {
+                localReadAmount = Native.readArray(fd, dst.array(), dst.arrayOffset() + pos, limit - pos);
+            }
+            if (localReadAmount > 0) {
+                dst.position(pos + localReadAmount);
+            }
+            return localReadAmount;
+        }
+
+        @Override
+        public long read(ByteBuffer[] dsts, int offset, int length) throws IOException {
+            long readBytes = 0;
+            for (int i = offset; i < offset + length; i ++) {
+                ByteBuffer dst = dsts[i];
+                int localReadAmount = read(dst);
+                if (localReadAmount < 0) {
+                    return readBytes == 0? -1 : readBytes;
+                }
+                readBytes += localReadAmount;
+                if (dst.hasRemaining()) {
+                    break;
+                }
+            }
+            return readBytes;
+        }
+
+        @Override
+        public long read(ByteBuffer[] dsts) throws IOException {
+            return read(dsts, 0, dsts.length);
+        }
+
+        @Override
+        public int write(ByteBuffer src) throws IOException {
+            ensureOpen();
+            final int pos = src.position();
+            final int limit = src.limit();
+            final int writtenBytes;
+            if (src.isDirect()) {
+                writtenBytes = Native.write(fd, src, pos, limit);
+            } else {
+                writtenBytes = Native.writeArray(fd, src.array(), src.arrayOffset() + pos, limit - pos);
+            }
+            if (writtenBytes > 0) {
+                src.position(pos + writtenBytes);
+            }
+            return writtenBytes;
+        }
+
+        @Override
+        public long write(ByteBuffer[] srcs, int offset, int length) throws IOException {
+            length = Math.min(length, config.getGatheringWriteLimit());
+            for (int i = offset; i < offset + length; i ++) {
+                if (!srcs[i].isDirect()) {
+                    return writeSequentially(srcs, offset, length);
+                }
+            }
+
+            ensureOpen();
+            int[] positions = new int[length];
+            int[] limits = new int[length];
+            for (int i = 0; i < length; i ++) {
+                positions[i] = srcs[offset + i].position();
+                limits[i] = srcs[offset + i].limit();
+            }
+
+            long writtenBytes = Native.writev(fd, srcs, positions, limits, offset, length);
+
+            // Update the positions of the written buffers.
+            long remaining = writtenBytes;
+            for (int i = 0; i < length && remaining > 0; i ++) {
+                ByteBuffer src = srcs[offset + i];
+                int localWrittenBytes = (int) Math.min(remaining, src.remaining());
+                src.position(src.position() + localWrittenBytes);
+                remaining -= localWrittenBytes;
+            }
+            return writtenBytes;
+        }
+
+        private long writeSequentially(ByteBuffer[] srcs, int offset, int length) throws IOException {
+            long writtenBytes = 0;
+            for (int i = offset; i < offset + length; i ++) {
+                ByteBuffer src = srcs[i];
+                writtenBytes += write(src);
+                if (src.hasRemaining()) {
+                    break;
+                }
+            }
+            return writtenBytes;
+        }
+
+        @Override
+        public long write(ByteBuffer[] srcs) throws IOException {
+            return write(srcs, 0, srcs.length);
+        }
+
+        @Override
+        public boolean isOpen() {
+            return EpollSocketChannel.this.isOpen();
+        }
+
+        @Override
+        public void close() throws IOException {
+            unsafe().close(unsafe().voidFuture());
+        }
+
+        private void ensureOpen() throws ClosedChannelException {
+            if (!isOpen()) {
+                throw new ClosedChannelException();
+            }
+        }
+    }
+}
@@ -0,0 +1,287 @@
+/*
+ * Copyright 2012 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.socket.epoll;
+
+import static io.netty.channel.ChannelOption.*;
+import static io.netty.channel.socket.epoll.EpollChannelOption.*;
+import io.netty.channel.ChannelException;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.DefaultChannelConfig;
+import io.netty.channel.socket.SocketChannelConfig;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * The {@link SocketChannelConfig} of {@link EpollSocketChannel}.  In addition
+ * to the options of {@link SocketChannelConfig}, it allows
+ * {@link EpollChannelOption#TCP_CORK} and {@link EpollChannelOption#TCP_QUICKACK}.
+ */
+public final class EpollSocketChannelConfig extends DefaultChannelConfig
+                                            implements SocketChannelConfig {
+
+    private final EpollSocketChannel channel;
+
+    EpollSocketChannelConfig(EpollSocketChannel channel) {
+        this.channel = channel;
+    }
+
+    @Override
+    public Map<ChannelOption<?>, Object> getOptions() {
+        return getOptions(
+                super.getOptions(),
+                SO_RCVBUF, SO_SNDBUF, TCP_NODELAY, SO_KEEPALIVE, SO_REUSEADDR, SO_LINGER, IP_TOS,
+                TCP_CORK, TCP_QUICKACK);
+    }
+
+    @Override
+    public <T> T getOption(ChannelOption<T> option) {
+        if (option == SO_RCVBUF) {
+            return (T) Integer.valueOf(getReceiveBufferSize());
+        }
+        if (option == SO_SNDBUF) {
+            return (T) Integer.valueOf(getSendBufferSize());
+        }
+        if (option == TCP_NODELAY) {
+            return (T) Boolean.valueOf(isTcpNoDelay());
+        }
+        if (option == SO_KEEPALIVE) {
+            return (T) Boolean.valueOf(isKeepAlive());
+        }
+        if (option == SO_REUSEADDR) {
+            return (T) Boolean.valueOf(isReuseAddress());
+        }
+        if (option == SO_LINGER) {
+            return (T) Integer.valueOf(getSoLinger());
+        }
+        if (option == IP_TOS) {
+            return (T) Integer.valueOf(getTrafficClass());
+        }
+        if (option == TCP_CORK) {
+            return (T) Boolean.valueOf(isTcpCork());
+        }
+        if (option == TCP_QUICKACK) {
+            return (T) Boolean.valueOf(isTcpQuickAck());
+        }
+
+        return super.getOption(option);
+    }
+
+    @Override
+    public <T> boolean setOption(ChannelOption<T> option, T value) {
+        validate(option, value);
+
+        if (option == SO_RCVBUF) {
+            setReceiveBufferSize((Integer) value);
+        } else if (option == SO_SNDBUF) {
+            setSendBufferSize((Integer) value);
+        } else if (option == TCP_NODELAY) {
+            setTcpNoDelay((Boolean) value);
+        } else if (option == SO_KEEPALIVE) {
+            setKeepAlive((Boolean) value);
+        } else if (option == SO_REUSEADDR) {
+            setReuseAddress((Boolean) value);
+        } else if (option == SO_LINGER) {
+            setSoLinger((Integer) value);
+        } else if (option == IP_TOS) {
+            setTrafficClass((Integer) value);
+        } else if (option == TCP_CORK) {
+            setTcpCork((Boolean) value);
+        } else if (option == TCP_QUICKACK) {
+            setTcpQuickAck((Boolean) value);
+        } else {
+            return super.setOption(option, value);
+        }
+
+        return true;
+    }
+
+    @Override
+    public int getReceiveBufferSize() {
+        try {
+            return Native.getReceiveBufferSize(channel.fd);
+        } catch (IOException e) {
+            throw new ChannelException(e);
+        }
+    }
+
+    @Override
+    public int getSendBufferSize() {
+        try {
+            return Native.getSendBufferSize(channel.fd);
+        } catch (IOException e) {
+            throw new ChannelException(e);
+        }
+    }
+
+    @Override
+    public int getSoLinger() {
+        try {
+            return Native.getSoLinger(channel.fd);
+        } catch (IOException e) {
+            throw new ChannelException(e);
+        }
+    }
+
+    @Override
+    public int getTrafficClass() {
+        try {
+            return Native.getTrafficClass(channel.fd);
+        } catch (IOException e) {
+            throw new ChannelException(e);
+        }
+    }
+
+    @Override
+    public boolean isKeepAlive() {
+        try {
+            return Native.getKeepAlive(channel.fd) != 0;
+        } catch (IOException e) {
+            throw new ChannelException(e);
+        }
+    }
+
+    @Override
+    public boolean isReuseAddress() {
+        try {
+            return Native.getReuseAddress(channel.fd) != 0;
+        } catch (IOException e) {
+            throw new ChannelException(e);
+        }
+    }
+
+    @Override
+    public boolean isTcpNoDelay() {
+        try {
+            return Native.getTcpNoDelay(channel.fd) != 0;
+        } catch (IOException e) {
+            throw new ChannelException(e);
+        }
+    }
+
+    /**
+     * Gets the {@link EpollChannelOption#TCP_CORK} option.
+     */
+    public boolean isTcpCork() {
+        try {
+            return Native.getTcpCork(channel.fd) != 0;
+        } catch (IOException e) {
+            throw new ChannelException(e);
+        }
+    }
+
+    /**
+     * Gets the {@link EpollChannelOption#TCP_QUICKACK} option.
+     */
+    public boolean isTcpQuickAck() {
+        try {
+            return Native.getTcpQuickAck(channel.fd) != 0;
+        } catch (IOException e) {
+            throw new ChannelException(e);
+        }
+    }
+
+    @Override
+    public void setKeepAlive(boolean keepAlive) {
+        try {
+            Native.setKeepAlive(channel.fd, keepAlive? 1 : 0);
+        } catch (IOException e) {
+            throw new ChannelException(e);
+        }
+    }
+
+    @Override
+    public void setPerformancePreferences(
+            int connectionTime, int latency, int bandwidth) {
+        // Not supported by Linux - same with java.net.Socket.
+    }
+
+    @Override
+    public void setReceiveBufferSize(int receiveBufferSize) {
+        try {
+            Native.setReceiveBufferSize(channel.fd, receiveBufferSize);
+        } catch (IOException e) {
+            throw new ChannelException(e);
+        }
+    }
+
+    @Override
+    public void setReuseAddress(boolean reuseAddress) {
+        try {
+            Native.setReuseAddress(channel.fd, reuseAddress? 1 : 0);
+        } catch (IOException e) {
+            throw new ChannelException(e);
+        }
+    }
+
+    @Override
+    public void setSendBufferSize(int sendBufferSize) {
+        try {
+            Native.setSendBufferSize(channel.fd, sendBufferSize);
+        } catch (IOException e) {
+            throw new ChannelException(e);
+        }
+    }
+
+    @Override
+    public void setSoLinger(int soLinger) {
+        try {
+            Native.setSoLinger(channel.fd, soLinger);
+        } catch (IOException e) {
+            throw new ChannelException(e);
+        }
+    }
+
+    @Override
+    public void setTcpNoDelay(boolean tcpNoDelay) {
+        try {
+            Native.setTcpNoDelay(channel.fd, tcpNoDelay? 1 : 0);
+        } catch (IOException e) {
+            throw new ChannelException(e);
+        }
+    }
+
+    @Override
+    public void setTrafficClass(int trafficClass) {
+        try {
+            Native.setTrafficClass(channel.fd, trafficClass);
+        } catch (IOException e) {
+            throw new ChannelException(e);
+        }
+    }
+
+    /**
+     * Sets the {@link EpollChannelOption#TCP_CORK} option.
+     */
+    public void setTcpCork(boolean tcpCork) {
+        try {
+            Native.setTcpCork(channel.fd, tcpCork? 1 : 0);
+        } catch (IOException e) {
+            throw new ChannelException(e);
+        }
+    }
+
+    /**
+     * Sets the {@link EpollChannelOption#TCP_QUICKACK} option.
+     */
+    public void setTcpQuickAck(boolean tcpQuickAck) {
+        try {
+            Native.setTcpQuickAck(channel.fd, tcpQuickAck? 1 : 0);
+        } catch (IOException e) {
+            throw new ChannelException(e);
+        }
+    }
+}
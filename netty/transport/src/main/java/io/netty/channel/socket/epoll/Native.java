@@ -0,0 +1,201 @@
+/*
+ * Copyright 2012 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.socket.epoll;
+
+import java.io.IOException;
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+
+/**
+ * The JNI methods of the epoll transport.  The library is loaded by
+ * {@link Epoll}, so do not touch this class unless {@link Epoll#isAvailable()}
+ * returns {@code true}.
+ * <p>
+ * The C source is located at {@code src/main/c} of this module.
+ */
+final class Native {
+
+    // Copied from sys/epoll.h
+    static final int EPOLLIN = 0x01;
+    static final int EPOLLOUT = 0x04;
+    static final int EPOLLERR = 0x08;
+    static final int EPOLLHUP = 0x10;
+    static final int EPOLLRDHUP = 0x2000;
+    static final int EPOLLET = 1 << 31;
+
+    // epoll
+    static native int epollCreate() throws IOException;
+
+    /**
+     * Waits for the events of the specified epoll file descriptor.  Each
+     * element of {@code events} is filled with the file descriptor (upper 32
+     * bits) and its ready events (lower 32 bits).
+     *
+     * @return the number of the ready file descriptors
+     */
+    static native int epollWait(int efd, long[] events, int timeoutMillis) throws IOException;
+    static native void epollCtlAdd(int efd, int fd, int flags) throws IOException;
+    static native void epollCtlMod(int efd, int fd, int flags) throws IOException;
+    static native void epollCtlDel(int efd, int fd) throws IOException;
+
+    // eventfd
+    static native int eventFd() throws IOException;
+    static native void eventFdWrite(int fd, long value) throws IOException;
+    static native void eventFdRead(int fd) throws IOException;
+
+    static native void close(int fd) throws IOException;
+
+    /**
+     * Reads into the specified direct buffer.
+     *
+     * @return the number of read bytes, {@code 0} if there was nothing to
+     *         read, or {@code -1} if the end of the stream has been reached
+     */
+    static native int read(int fd, ByteBuffer buf, int pos, int limit) throws IOException;
+    static native int readArray(int fd, byte[] array, int offset, int length) throws IOException;
+
+    /**
+     * Writes the specified direct buffer.
+     *
+     * @return the number of written bytes, or {@code 0} if the socket send
+     *         buffer is full
+     */
+    static native int write(int fd, ByteBuffer buf, int pos, int limit) throws IOException;
+    static native int writeArray(int fd, byte[] array, int offset, int length) throws IOException;
+    static native long writev(
+            int fd, ByteBuffer[] bufs, int[] positions, int[] limits, int offset, int length) throws IOException;
+
+    // socket
+    static native int socketStreamFd() throws IOException;
+    static native void listen(int fd, int backlog) throws IOException;
+    static native boolean finishConnect(int fd) throws IOException;
+
+    /**
+     * Accepts a new connection.
+     *
+     * @return the file descriptor of the accepted socket, or {@code -1} if
+     *         there is no pending connection
+     */
+    static native int accept(int fd) throws IOException;
+    static native void shutdown(int fd, boolean read, boolean write) throws IOException;
+
+    private static native void bind(int fd, byte[] address, int scopeId, int port) throws IOException;
+    private static native boolean connect(int fd, byte[] address, int scopeId, int port) throws IOException;
+    private static native byte[] getSockName(int fd);
+    private static native byte[] getPeerName(int fd);
+
+    static void bind(int fd, InetSocketAddress localAddress) throws IOException {
+        InetAddress addr = resolve(localAddress);
+        bind(fd, addr.getAddress(), scopeId(addr), localAddress.getPort());
+    }
+
+    static boolean connect(int fd, InetSocketAddress remoteAddress) throws IOException {
+        InetAddress addr = resolve(remoteAddress);
+        return connect(fd, addr.getAddress(), scopeId(addr), remoteAddress.getPort());
+    }
+
+    static InetSocketAddress localAddress(int fd) {
+        return decodeAddress(getSockName(fd));
+    }
+
+    static InetSocketAddress remoteAddress(int fd) {
+        return decodeAddress(getPeerName(fd));
+    }
+
+    private static InetAddress resolve(InetSocketAddress address) throws IOException {
+        if (address.isUnresolved()) {
+            throw new UnknownHostException(address.getHostName());
+        }
+        return address.getAddress();
+    }
+
+    private static int scopeId(InetAddress addr) {
+        if (addr instanceof Inet6Address) {
+            return ((Inet6Address) addr).getScopeId();
+        }
+        return 0;
+    }
+
+    /**
+     * Decodes the address encoded by the native code:
+     * <ul>
+     * <li>IPv4 - 4 bytes of address and 4 bytes of port</li>
+     * <li>IPv6 - 16 bytes of address, 4 bytes of scope ID and 4 bytes of port</li>
+     * </ul>
+     */
+    private static InetSocketAddress decodeAddress(byte[] encoded) {
+        if (encoded == null) {
+            return null;
+        }
+
+        int addrLen = encoded.length == 8? 4 : 16;
+        byte[] addr = new byte[addrLen];
+        System.arraycopy(encoded, 0, addr, 0, addrLen);
+        int port = decodeInt(encoded, encoded.length - 4);
+        try {
+            InetAddress address;
+            if (addrLen == 4) {
+                address = InetAddress.getByAddress(addr);
+            } else {
+                int scopeId = decodeInt(encoded, 16);
+                if (scopeId != 0) {
+                    address = Inet6Address.getByAddress(null, addr, scopeId);
+                } else {
+                    address = InetAddress.getByAddress(addr);
+                }
+            }
+            return new InetSocketAddress(address, port);
+        } catch (UnknownHostException e) {
+            // Never happens because the length of the address is always valid.
+            throw new Error(e);
+        }
+    }
+
+    private static int decodeInt(byte[] buf, int index) {
+        return (buf[index] & 0xff) << 24 | (buf[index + 1] & 0xff) << 16 |
+               (buf[index + 2] & 0xff) << 8 | buf[index + 3] & 0xff;
+    }
+
+    // socket options
+    static native void setReuseAddress(int fd, int reuseAddress) throws IOException;
+    static native void setReusePort(int fd, int reusePort) throws IOException;
+    static native void setKeepAlive(int fd, int keepAlive) throws IOException;
+    static native void setReceiveBufferSize(int fd, int receiveBufferSize) throws IOException;
+    static native void setSendBufferSize(int fd, int sendBufferSize) throws IOException;
+    static native void setTcpNoDelay(int fd, int tcpNoDelay) throws IOException;
+    static native void setTcpCork(int fd, int tcpCork) throws IOException;
+    static native void setTcpQuickAck(int fd, int tcpQuickAck) throws IOException;
+    static native void setSoLinger(int fd, int soLinger) throws IOException;
+    static native void setTrafficClass(int fd, int trafficClass) throws IOException;
+
+    static native int getReuseAddress(int fd) throws IOException;
+    static native int getReusePort(int fd) throws IOException;
+    static native int getKeepAlive(int fd) throws IOException;
+    static native int getReceiveBufferSize(int fd) throws IOException;
+    static native int getSendBufferSize(int fd) throws IOException;
+    static native int getTcpNoDelay(int fd) throws IOException;
+    static native int getTcpCork(int fd) throws IOException;
+    static native int getTcpQuickAck(int fd) throws IOException;
+    static native int getSoLinger(int fd) throws IOException;
+    static native int getTrafficClass(int fd) throws IOException;
+
+    private Native() {
+        // Unused
+    }
+}
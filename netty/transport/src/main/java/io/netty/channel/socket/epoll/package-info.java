@@ -0,0 +1,25 @@
+/*
+ * Copyright 2012 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+/**
+ * Linux <a href="http://en.wikipedia.org/wiki/Epoll">epoll</a>-based socket
+ * channel API implementation which uses edge-triggered notifications and
+ * exposes Linux-specific options such as {@code TCP_CORK} and
+ * {@code SO_REUSEPORT}.  Requires the {@code netty-transport-native-epoll}
+ * native library - check {@link io.netty.channel.socket.epoll.Epoll#isAvailable()}
+ * and fall back to the NIO transport if it is not available.
+ */
+package io.netty.channel.socket.epoll;
@@ -18,6 +18,8 @@ package io.netty.channel.socket.nio;
 import io.netty.buffer.ByteBuf;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelPipeline;
+import io.netty.channel.FileRegion;
+import io.netty.channel.ReceiveBufferSizePredictor;
 
 import java.io.IOException;
 import java.nio.channels.SelectableChannel;
@@ -45,21 +47,33 @@ abstract class AbstractNioByteChannel extends AbstractNioChannel {
             final ChannelPipeline pipeline = pipeline();
             // 获得ByteBuf
             final ByteBuf byteBuf = pipeline.inboundByteBuffer();
+            final ReceiveBufferSizePredictor predictor = config().getReceiveBufferSizePredictor();
+            final int maxMessagesPerRead = config().getMaxMessagesPerRead();
+            final int maxBytesPerRead = config().getMaxBytesPerRead();
             boolean closed = false;
             boolean read = false;
             try {
-            	// 如果不能写就扩展buffer
-                expandReadBuffer(byteBuf);
+            	// 按照预测的大小准备buffer
+                byteBuf.ensureWritableBytes(predictor.nextReceiveBufferSize());
+                int totalReadAmount = 0;
+                int reads = 0;
                 for (;;) {
                 	// 子类实现从buffer中读字节
                     int localReadAmount = doReadBytes(byteBuf);
                     if (localReadAmount > 0) {
                         read = true;
+                        totalReadAmount += localReadAmount;
+                        predictor.previousReceiveBufferSize(localReadAmount);
                     } else if (localReadAmount < 0) {
                         closed = true;
                         break;
                     }
-                    if (!expandReadBuffer(byteBuf)) {
+                    // 读的次数或字节数达到上限，剩下的数据等selector下次报告OP_READ时再读
+                    if (++ reads >= maxMessagesPerRead || totalReadAmount >= maxBytesPerRead) {
+                        break;
+                    }
+                    // 如果buffer被读满了就扩展buffer继续读
+                    if (!expandReadBuffer(byteBuf, predictor.nextReceiveBufferSize())) {
                         break;
                     }
                 }
@@ -75,6 +89,7 @@ abstract class AbstractNioByteChannel extends AbstractNioChannel {
             } finally {
                 if (read) {
                     pipeline.fireInboundBufferUpdated();
+                    shrinkInboundByteBuffer(byteBuf, predictor.nextReceiveBufferSize());
                 }
                 if (closed && isOpen()) {
                     close(voidFuture());
@@ -104,13 +119,28 @@ abstract class AbstractNioByteChannel extends AbstractNioChannel {
         }
     }
 
+    @Override
+    protected long doFlushFileRegion(FileRegion region, long position) throws Exception {
+        if (position >= region.count()) {
+            return 0;
+        }
+
+        for (int i = config().getWriteSpinCount() - 1; i >= 0; i --) {
+            long localFlushedAmount = doWriteFileRegion(region, position, i == 0);
+            if (localFlushedAmount > 0) {
+                return localFlushedAmount;
+            }
+        }
+        return 0;
+    }
+
     protected abstract int doReadBytes(ByteBuf buf) throws Exception;
     protected abstract int doWriteBytes(ByteBuf buf, boolean lastSpin) throws Exception;
+    protected abstract long doWriteFileRegion(FileRegion region, long position, boolean lastSpin) throws Exception;
 
-    private static boolean expandReadBuffer(ByteBuf byteBuf) {
+    private static boolean expandReadBuffer(ByteBuf byteBuf, int size) {
         if (!byteBuf.writable()) {
-            // FIXME: Magic number
-            byteBuf.ensureWritableBytes(4096);
+            byteBuf.ensureWritableBytes(size);
             return true;
         }
 
@@ -41,19 +41,27 @@ abstract class AbstractNioMessageChannel extends AbstractNioChannel {
 
             final ChannelPipeline pipeline = pipeline();
             final MessageBuf<Object> msgBuf = pipeline.inboundMessageBuffer();
+            final int maxMessagesPerRead = config().getMaxMessagesPerRead();
             boolean closed = false;
             boolean read = false;
             try {
+                int totalReadAmount = 0;
                 for (;;) {
                     int localReadAmount = doReadMessages(msgBuf);
                     if (localReadAmount > 0) {
                         read = true;
+                        totalReadAmount += localReadAmount;
                     } else if (localReadAmount == 0) {
                         break;
                     } else if (localReadAmount < 0) {
                         closed = true;
                         break;
                     }
+
+                    // The selector reports the remaining messages again in the next select.
+                    if (totalReadAmount >= maxMessagesPerRead) {
+                        break;
+                    }
                 }
             } catch (Throwable t) {
                 if (read) {
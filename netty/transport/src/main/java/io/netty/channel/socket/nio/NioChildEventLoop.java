@@ -21,6 +21,7 @@ import io.netty.channel.SingleThreadEventLoop;
 import io.netty.channel.socket.nio.AbstractNioChannel.NioUnsafe;
 import io.netty.logging.InternalLogger;
 import io.netty.logging.InternalLoggerFactory;
+import io.netty.util.internal.MpscLinkedQueue;
 
 import java.io.IOException;
 import java.nio.channels.CancelledKeyException;
@@ -30,6 +31,7 @@ import java.nio.channels.spi.SelectorProvider;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.Queue;
 import java.util.Set;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -55,6 +57,14 @@ final class NioChildEventLoop extends SingleThreadEventLoop {
      */
     protected final AtomicBoolean wakenUp = new AtomicBoolean();
 
+    /**
+     * The array-backed selected-key set installed into {@link #selector}, or
+     * {@code null} if the {@link Selector} implementation did not allow it.
+     */
+    private final SelectedSelectionKeySet selectedKeys;
+
+    // 处理IO事件的时间占比(%)，剩余的时间用来执行任务
+    private volatile int ioRatio = 50;
     private int cancelledKeys;
     private boolean cleanedCancelledKeys;
 
@@ -65,6 +75,7 @@ final class NioChildEventLoop extends SingleThreadEventLoop {
         }
         // 打开selector
         selector = openSelector(selectorProvider);
+        selectedKeys = SelectorUtil.optimizeSelectedKeys(selector);
     }
 
     private static Selector openSelector(SelectorProvider provider) {
@@ -75,6 +86,18 @@ final class NioChildEventLoop extends SingleThreadEventLoop {
         }
     }
 
+    @Override
+    protected Queue<Runnable> newTaskQueue() {
+        // Only the event loop consumes the tasks, and it is woken up by wakeup().
+        return new MpscLinkedQueue<Runnable>();
+    }
+
+    @Override
+    protected boolean isTaskRemovalSupported() {
+        // MpscLinkedQueue does not support removal.
+        return false;
+    }
+
     @Override
     protected void run() {
         Selector selector = this.selector;
@@ -85,7 +108,8 @@ final class NioChildEventLoop extends SingleThreadEventLoop {
             try {
             	// 在这里如果被 waken up 了，就一种被waken up太早的情况，是不好的
             	
-                SelectorUtil.select(selector);//  开始select，时间是10，监听任何IO事件？
+                // 开始select，最多阻塞到最早的定时任务到期
+                SelectorUtil.select(selector, hasTasks()? 0 : delayMillis());
 
                 // 'wakenUp.compareAndSet(false, true)' is always evaluated
                 // before calling 'selector.wakeup()' to 降低wake-up消耗。
@@ -127,12 +151,20 @@ final class NioChildEventLoop extends SingleThreadEventLoop {
                 }
 
                 cancelledKeys = 0;
-                
-                // 执行taskqueue里所有任务
-                runAllTasks();
-                
+
                 // 处理IO事件
+                final long ioStartTime = System.nanoTime();
                 processSelectedKeys();
+                final long ioTime = System.nanoTime() - ioStartTime;
+
+                // 执行taskqueue里的任务，按照ioRatio限制执行时间
+                final int ioRatio = this.ioRatio;
+                if (ioRatio == 100) {
+                    runAllTasks();
+                } else {
+                    runAllTasks(ioTime * (100 - ioRatio) / ioRatio);
+                }
+                iterationCompleted(System.nanoTime() - ioStartTime);
 
                 if (isShutdown()) {
                     closeAll();
@@ -156,6 +188,15 @@ final class NioChildEventLoop extends SingleThreadEventLoop {
         }
     }
 
+    /**
+     * Sets the desired percentage of the time spent on I/O in each iteration.
+     * The time spent on tasks is limited accordingly.  {@code 100} runs all
+     * pending tasks regardless of the time spent.
+     */
+    void setIoRatio(int ioRatio) {
+        this.ioRatio = ioRatio;
+    }
+
     @Override
     protected void cleanup() {
         try {
@@ -172,13 +213,24 @@ final class NioChildEventLoop extends SingleThreadEventLoop {
         if (cancelledKeys >= CLEANUP_INTERVAL) {
             cancelledKeys = 0;
             cleanedCancelledKeys = true;
+            if (selectedKeys != null) {
+                // cleanupKeys() adds the ready keys again.
+                selectedKeys.reset();
+            }
             SelectorUtil.cleanupKeys(selector);
         }
     }
 
     private void processSelectedKeys() {
+        if (selectedKeys != null) {
+            processSelectedKeysOptimized(selectedKeys);
+        } else {
+            processSelectedKeysPlain(selector.selectedKeys());
+        }
+    }
+
+    private void processSelectedKeysPlain(Set<SelectionKey> selectedKeys) {
     	// 任何channel的事件都可能在这里收到
-        Set<SelectionKey> selectedKeys = selector.selectedKeys();
         if (selectedKeys.isEmpty()) {
             return;
         }
@@ -188,34 +240,7 @@ final class NioChildEventLoop extends SingleThreadEventLoop {
         boolean clearSelectedKeys = true;
         try {
             for (i = selectedKeys.iterator(); i.hasNext();) {
-                final SelectionKey k = i.next();
-                // 获取Channels
-                final AbstractNioChannel ch = (AbstractNioChannel) k.attachment();
-                // 获取Unsafe
-                final NioUnsafe unsafe = ch.unsafe();
-                try {
-                	// 获取该channel可以进行的操作位
-                    int readyOps = k.readyOps();
-                    // channel可读或者链接建立
-                    if ((readyOps & (SelectionKey.OP_READ | SelectionKey.OP_ACCEPT)) != 0 || readyOps == 0) {
-                        // 实际地读
-                    	unsafe.read();
-                        if (!ch.isOpen()) {
-                            // Connection already closed - no need to handle write.
-                            continue;
-                        }
-                    }
-                    if ((readyOps & SelectionKey.OP_WRITE) != 0) {
-                    	// 实际地写
-                        unsafe.flushNow();
-                    }
-                    if ((readyOps & SelectionKey.OP_CONNECT) != 0) {
-                    	// 结束连接
-                        unsafe.finishConnect();
-                    }
-                } catch (CancelledKeyException ignored) {
-                    unsafe.close(unsafe.voidFuture());
-                }
+                processSelectedKey(i.next());
 
                 if (cleanedCancelledKeys) {
                     // Create the iterator again to avoid ConcurrentModificationException
@@ -234,6 +259,59 @@ final class NioChildEventLoop extends SingleThreadEventLoop {
         }
     }
 
+    private void processSelectedKeysOptimized(SelectedSelectionKeySet selectedKeys) {
+        cleanedCancelledKeys = false;
+        try {
+            for (int i = 0; i < selectedKeys.size(); i ++) {
+                // The array is replaced when the set grows in cleanupKeys().
+                final SelectionKey k = selectedKeys.keys()[i];
+                // The selector does not remove a cancelled key from the array.
+                // A key cancelled by deregistration must not close the channel.
+                if (k.isValid()) {
+                    processSelectedKey(k);
+                }
+
+                if (cleanedCancelledKeys) {
+                    // cancel() has refilled the set with selectNow() - start over.
+                    cleanedCancelledKeys = false;
+                    i = -1;
+                }
+            }
+        } finally {
+            selectedKeys.reset();
+        }
+    }
+
+    private static void processSelectedKey(SelectionKey k) {
+        // 获取Channels
+        final AbstractNioChannel ch = (AbstractNioChannel) k.attachment();
+        // 获取Unsafe
+        final NioUnsafe unsafe = ch.unsafe();
+        try {
+        	// 获取该channel可以进行的操作位
+            int readyOps = k.readyOps();
+            // channel可读或者链接建立
+            if ((readyOps & (SelectionKey.OP_READ | SelectionKey.OP_ACCEPT)) != 0 || readyOps == 0) {
+                // 实际地读
+            	unsafe.read();
+                if (!ch.isOpen()) {
+                    // Connection already closed - no need to handle write.
+                    return;
+                }
+            }
+            if ((readyOps & SelectionKey.OP_WRITE) != 0) {
+            	// 实际地写
+                unsafe.flushNow();
+            }
+            if ((readyOps & SelectionKey.OP_CONNECT) != 0) {
+            	// 结束连接
+                unsafe.finishConnect();
+            }
+        } catch (CancelledKeyException ignored) {
+            unsafe.close(unsafe.voidFuture());
+        }
+    }
+
     private void closeAll() {
         SelectorUtil.cleanupKeys(selector);
         Set<SelectionKey> keys = selector.keys();
@@ -18,6 +18,7 @@ package io.netty.channel.socket.nio;
 import io.netty.channel.EventExecutor;
 
 import io.netty.channel.MultithreadEventLoop;
+import io.netty.channel.SingleThreadEventExecutor;
 
 import java.nio.channels.spi.SelectorProvider;
 import java.util.concurrent.ThreadFactory;
@@ -42,6 +43,36 @@ public class NioEventLoop extends MultithreadEventLoop {
         super(nThreads, threadFactory, selectorProvider);
     }
 
+    /**
+     * Sets the desired percentage of the time each event loop spends on I/O.
+     * The time spent on the tasks in each iteration is limited to
+     * {@code ioTime * (100 - ioRatio) / ioRatio}.  The default is {@code 50}.
+     * {@code 100} disables the limit, so that all pending tasks are run in
+     * every iteration.
+     */
+    public void setIoRatio(int ioRatio) {
+        if (ioRatio <= 0 || ioRatio > 100) {
+            throw new IllegalArgumentException(
+                    String.format("ioRatio: %d (expected: 0 < ioRatio <= 100)", ioRatio));
+        }
+        for (EventExecutor l: children()) {
+            ((NioChildEventLoop) l).setIoRatio(ioRatio);
+        }
+    }
+
+    /**
+     * Returns how many times the event loops stopped running the pending
+     * tasks because the time budget given by {@link #setIoRatio(int)} was
+     * exhausted.
+     */
+    public long taskBudgetExhaustedCount() {
+        long count = 0;
+        for (EventExecutor l: children()) {
+            count += ((SingleThreadEventExecutor) l).taskBudgetExhaustedCount();
+        }
+        return count;
+    }
+
     @Override
     // 重写newChild方法，来定义单线程的Executor的创建方式
     protected EventExecutor newChild(ThreadFactory threadFactory, Object... args) throws Exception {
@@ -20,6 +20,7 @@ import io.netty.buffer.ChannelBufType;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelException;
 import io.netty.channel.ChannelMetadata;
+import io.netty.channel.FileRegion;
 import io.netty.channel.socket.DefaultSocketChannelConfig;
 import io.netty.channel.socket.SocketChannelConfig;
 import io.netty.logging.InternalLogger;
@@ -27,16 +28,19 @@ import io.netty.logging.InternalLoggerFactory;
 
 import java.io.IOException;
 import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.SocketChannel;
 
 public class NioSocketChannel extends AbstractNioByteChannel implements io.netty.channel.socket.SocketChannel {
 
-    private static final ChannelMetadata METADATA = new ChannelMetadata(ChannelBufType.BYTE, false);
+    private static final ChannelMetadata METADATA = new ChannelMetadata(ChannelBufType.BYTE, false, true);
 
     private static final InternalLogger logger = InternalLoggerFactory.getInstance(NioSocketChannel.class);
 
     private final SocketChannelConfig config;
+    private final GatheringByteChannel gatheringChannel = new LimitedGatheringChannel();
     // 建立一个SocketChannel此时还未连接
     private static SocketChannel newSocket() {
         try {
@@ -175,7 +179,13 @@ public class NioSocketChannel extends AbstractNioByteChannel implements io.netty
         
         // 慢的连接或者大的输出buffer，触发OP_WRITE可能导致不需要的重复的内存复制
         // 就buffer里可读到的数据，写入到buffer
-        final int writtenBytes = buf.readBytes(javaChannel(), expectedWrittenBytes);
+        final int writtenBytes;
+        if (buf.hasNioBuffer()) {
+            writtenBytes = buf.readBytes(javaChannel(), expectedWrittenBytes);
+        } else {
+            // The buffer consists of multiple components - write them with a single gathering write.
+            writtenBytes = buf.readBytes(gatheringChannel, expectedWrittenBytes);
+        }
 
         final SelectionKey key = selectionKey();
         final int interestOps = key.interestOps();
@@ -206,4 +216,57 @@ public class NioSocketChannel extends AbstractNioByteChannel implements io.netty
         // 返回已写入的字节
         return writtenBytes;
     }
+
+    @Override
+    protected long doWriteFileRegion(FileRegion region, long position, boolean lastSpin) throws Exception {
+        final long expectedWrittenBytes = region.count() - position;
+        final long writtenBytes = region.transferTo(javaChannel(), position);
+
+        final SelectionKey key = selectionKey();
+        final int interestOps = key.interestOps();
+        if (writtenBytes >= expectedWrittenBytes) {
+            // Transferred the region completely - clear OP_WRITE.
+            if ((interestOps & SelectionKey.OP_WRITE) != 0) {
+                key.interestOps(interestOps & ~SelectionKey.OP_WRITE);
+            }
+        } else if (writtenBytes > 0 || lastSpin) {
+            // Same as doWriteBytes() - let the event loop retry later.
+            if ((interestOps & SelectionKey.OP_WRITE) == 0) {
+                key.interestOps(interestOps | SelectionKey.OP_WRITE);
+            }
+        }
+        return writtenBytes;
+    }
+
+    /**
+     * Passes at most {@link SocketChannelConfig#getGatheringWriteLimit()}
+     * buffers to a gathering write of the underlying {@link SocketChannel}.
+     */
+    private final class LimitedGatheringChannel implements GatheringByteChannel {
+
+        @Override
+        public long write(ByteBuffer[] srcs, int offset, int length) throws IOException {
+            return javaChannel().write(srcs, offset, Math.min(length, config.getGatheringWriteLimit()));
+        }
+
+        @Override
+        public long write(ByteBuffer[] srcs) throws IOException {
+            return write(srcs, 0, srcs.length);
+        }
+
+        @Override
+        public int write(ByteBuffer src) throws IOException {
+            return javaChannel().write(src);
+        }
+
+        @Override
+        public boolean isOpen() {
+            return javaChannel().isOpen();
+        }
+
+        @Override
+        public void close() throws IOException {
+            javaChannel().close();
+        }
+    }
 }
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2012 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.socket.nio;
+
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A flat array-backed replacement of the selected-key set of a
+ * {@link Selector}.  Unlike the default {@link java.util.HashSet}, adding a
+ * key allocates nothing, and the event loop processes the keys by index
+ * rather than with an {@link Iterator}.
+ * <p>
+ * The {@link Selector} only adds the ready keys, so this set supports only
+ * {@link #add(SelectionKey)} and {@link #clear()}, and its
+ * {@link #iterator()} does not support {@link Iterator#remove()}.
+ * {@link #contains(Object)} always returns {@code false}, which means a key
+ * can be added more than once if the selector is invoked again before
+ * {@link #reset()}.  A key removed by the {@link Selector} on cancellation
+ * stays in the array, so the caller must skip the invalid keys.
+ */
+final class SelectedSelectionKeySet extends AbstractSet<SelectionKey> {
+
+    private SelectionKey[] keys = new SelectionKey[1024];
+    private int size;
+
+    @Override
+    public boolean add(SelectionKey key) {
+        if (key == null) {
+            return false;
+        }
+
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size << 1);
+        }
+        keys[size ++] = key;
+        return true;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        return false;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return false;
+    }
+
+    @Override
+    public Iterator<SelectionKey> iterator() {
+        return new Iterator<SelectionKey>() {
+            private int index;
+
+            @Override
+            public boolean hasNext() {
+                return index < size;
+            }
+
+            @Override
+            public SelectionKey next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return keys[index ++];
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    @Override
+    public void clear() {
+        reset();
+    }
+
+    /**
+     * Returns the backing array.  Only the first {@link #size()} elements are
+     * valid.  The array is replaced when the set grows, so do not keep it
+     * across a call to {@link Selector#select()}.
+     */
+    SelectionKey[] keys() {
+        return keys;
+    }
+
+    /**
+     * Removes all keys, releasing the references to them.
+     */
+    void reset() {
+        Arrays.fill(keys, 0, size, null);
+        size = 0;
+    }
+}
@@ -17,8 +17,10 @@ package io.netty.channel.socket.nio;
 
 import io.netty.logging.InternalLogger;
 import io.netty.logging.InternalLoggerFactory;
+import io.netty.util.internal.SystemPropertyUtil;
 
 import java.io.IOException;
+import java.lang.reflect.Field;
 import java.nio.channels.CancelledKeyException;
 import java.nio.channels.Selector;
 
@@ -26,6 +28,10 @@ final class SelectorUtil {
     private static final InternalLogger logger =
         InternalLoggerFactory.getInstance(SelectorUtil.class);
 
+    private static final String PROP_NO_KEY_SET_OPTIMIZATION = "io.netty.noKeySetOptimization";
+    private static final boolean DISABLE_KEY_SET_OPTIMIZATION =
+            "true".equalsIgnoreCase(SystemPropertyUtil.get(PROP_NO_KEY_SET_OPTIMIZATION));
+
     // Workaround for JDK NIO bug.
     //
     // See:
@@ -45,9 +51,17 @@ final class SelectorUtil {
         }
     }
 
-    static void select(Selector selector) throws IOException {
+    /**
+     * Selects the ready keys, blocking for the specified amount of time at
+     * most.  A non-positive {@code timeoutMillis} does not block at all.
+     */
+    static void select(Selector selector, long timeoutMillis) throws IOException {
         try {
-            selector.select(10);
+            if (timeoutMillis <= 0) {
+                selector.selectNow();
+            } else {
+                selector.select(timeoutMillis);
+            }
         } catch (CancelledKeyException e) {
             if (logger.isDebugEnabled()) {
                 logger.debug(
@@ -58,6 +72,49 @@ final class SelectorUtil {
         }
     }
 
+    /**
+     * Replaces the selected-key set of the specified {@link Selector} with a
+     * {@link SelectedSelectionKeySet}.  Disabled if the system property
+     * {@code io.netty.noKeySetOptimization} is {@code true}.
+     *
+     * @return the installed {@link SelectedSelectionKeySet}, or {@code null}
+     *         if the {@link Selector} implementation does not allow it, in
+     *         which case {@link Selector#selectedKeys()} must be used
+     */
+    static SelectedSelectionKeySet optimizeSelectedKeys(Selector selector) {
+        if (DISABLE_KEY_SET_OPTIMIZATION) {
+            return null;
+        }
+
+        try {
+            Class<?> selectorImplClass =
+                    Class.forName("sun.nio.ch.SelectorImpl", false, ClassLoader.getSystemClassLoader());
+            if (!selectorImplClass.isAssignableFrom(selector.getClass())) {
+                return null;
+            }
+
+            Field selectedKeysField = selectorImplClass.getDeclaredField("selectedKeys");
+            Field publicSelectedKeysField = selectorImplClass.getDeclaredField("publicSelectedKeys");
+            if (!selectedKeysField.getType().isAssignableFrom(SelectedSelectionKeySet.class) ||
+                !publicSelectedKeysField.getType().isAssignableFrom(SelectedSelectionKeySet.class)) {
+                return null;
+            }
+            selectedKeysField.setAccessible(true);
+            publicSelectedKeysField.setAccessible(true);
+
+            SelectedSelectionKeySet selectedKeySet = new SelectedSelectionKeySet();
+            selectedKeysField.set(selector, selectedKeySet);
+            publicSelectedKeysField.set(selector, selectedKeySet);
+            return selectedKeySet;
+        } catch (Throwable t) {
+            if (logger.isDebugEnabled()) {
+                logger.debug("Failed to replace the selected-key set of " + selector.getClass().getName() +
+                        " - use -D" + PROP_NO_KEY_SET_OPTIMIZATION + "=true to suppress this message", t);
+            }
+            return null;
+        }
+    }
+
     static void cleanupKeys(Selector selector) {
         try {
             selector.selectNow();
@@ -18,6 +18,7 @@ package io.netty.channel.socket.oio;
 import io.netty.buffer.ByteBuf;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelPipeline;
+import io.netty.channel.ReceiveBufferSizePredictor;
 
 import java.io.IOException;
 
@@ -39,13 +40,15 @@ abstract class AbstractOioByteChannel extends AbstractOioChannel {
 
             final ChannelPipeline pipeline = pipeline();
             final ByteBuf byteBuf = pipeline.inboundByteBuffer();
+            final ReceiveBufferSizePredictor predictor = config().getReceiveBufferSizePredictor();
             boolean closed = false;
             boolean read = false;
             try {
-                expandReadBuffer(byteBuf);
+                expandReadBuffer(byteBuf, predictor.nextReceiveBufferSize());
                 int localReadAmount = doReadBytes(byteBuf);
                 if (localReadAmount > 0) {
                     read = true;
+                    predictor.previousReceiveBufferSize(localReadAmount);
                 } else if (localReadAmount < 0) {
                     closed = true;
                 }
@@ -61,6 +64,7 @@ abstract class AbstractOioByteChannel extends AbstractOioChannel {
             } finally {
                 if (read) {
                     pipeline.fireInboundBufferUpdated();
+                    shrinkInboundByteBuffer(byteBuf, predictor.nextReceiveBufferSize());
                 }
                 if (closed && isOpen()) {
                     close(voidFuture());
@@ -68,13 +72,12 @@ abstract class AbstractOioByteChannel extends AbstractOioChannel {
             }
         }
 
-        private void expandReadBuffer(ByteBuf byteBuf) {
+        private void expandReadBuffer(ByteBuf byteBuf, int size) {
             int available = available();
             if (available > 0) {
                 byteBuf.ensureWritableBytes(available);
             } else if (!byteBuf.writable()) {
-                // FIXME: Magic number
-                byteBuf.ensureWritableBytes(4096);
+                byteBuf.ensureWritableBytes(size);
             }
         }
     }
@@ -0,0 +1,51 @@
+/*
+ * Copyright 2012 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel;
+
+import static org.junit.Assert.*;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.local.LocalChannel;
+
+import org.junit.Test;
+
+public class AbstractChannelTest {
+
+    @Test
+    public void testShrinkInboundByteBufferAfterConsecutiveReads() {
+        AbstractChannel ch = new LocalChannel();
+        ByteBuf buf = Unpooled.dynamicBuffer(16);
+        buf.writeBytes(new byte[4096]);
+        buf.skipBytes(4096);
+
+        // A single low prediction does not shrink the buffer.
+        assertFalse(ch.shrinkInboundByteBuffer(buf, 64));
+        assertFalse(ch.shrinkInboundByteBuffer(buf, 4096));
+        assertFalse(ch.shrinkInboundByteBuffer(buf, 64));
+        assertFalse(ch.shrinkInboundByteBuffer(buf, 64));
+        assertFalse(ch.shrinkInboundByteBuffer(buf, 64));
+        assertTrue(buf.capacity() >= 4096);
+
+        assertTrue(ch.shrinkInboundByteBuffer(buf, 64));
+        assertEquals(64, buf.capacity());
+
+        // The count starts over once the buffer has been shrunk.
+        buf.writeBytes(new byte[4096]);
+        buf.skipBytes(4096);
+        assertFalse(ch.shrinkInboundByteBuffer(buf, 64));
+        assertTrue(buf.capacity() >= 4096);
+    }
+}
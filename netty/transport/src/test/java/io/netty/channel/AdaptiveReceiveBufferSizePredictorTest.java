@@ -0,0 +1,84 @@
+/*
+ * Copyright 2012 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class AdaptiveReceiveBufferSizePredictorTest {
+
+    @Test
+    public void shouldStartWithInitialSize() {
+        assertEquals(1024, new AdaptiveReceiveBufferSizePredictor().nextReceiveBufferSize());
+        assertEquals(2048, new AdaptiveReceiveBufferSizePredictor(64, 2048, 65536).nextReceiveBufferSize());
+    }
+
+    @Test
+    public void shouldGrowWhenBufferIsFilled() {
+        ReceiveBufferSizePredictor predictor = new AdaptiveReceiveBufferSizePredictor(64, 1024, 65536);
+        predictor.previousReceiveBufferSize(1024);
+        assertEquals(16384, predictor.nextReceiveBufferSize());
+
+        // Never exceeds the maximum.
+        predictor.previousReceiveBufferSize(16384);
+        assertEquals(65536, predictor.nextReceiveBufferSize());
+        predictor.previousReceiveBufferSize(65536);
+        assertEquals(65536, predictor.nextReceiveBufferSize());
+    }
+
+    @Test
+    public void shouldShrinkAfterTwoSmallReads() {
+        ReceiveBufferSizePredictor predictor = new AdaptiveReceiveBufferSizePredictor(64, 1024, 65536);
+        predictor.previousReceiveBufferSize(16);
+        assertEquals(1024, predictor.nextReceiveBufferSize());
+        predictor.previousReceiveBufferSize(16);
+        assertEquals(512, predictor.nextReceiveBufferSize());
+
+        // A read which fills the buffer partially keeps the prediction.
+        predictor.previousReceiveBufferSize(500);
+        assertEquals(512, predictor.nextReceiveBufferSize());
+
+        // Never goes below the minimum.
+        for (int i = 0; i < 100; i ++) {
+            predictor.previousReceiveBufferSize(0);
+        }
+        assertEquals(64, predictor.nextReceiveBufferSize());
+    }
+
+    @Test
+    public void fixedPredictorShouldIgnoreFeedback() {
+        ReceiveBufferSizePredictor predictor = new FixedReceiveBufferSizePredictor(4096);
+        predictor.previousReceiveBufferSize(65536);
+        predictor.previousReceiveBufferSize(1);
+        assertEquals(4096, predictor.nextReceiveBufferSize());
+    }
+
+    @Test
+    public void configShouldCreatePredictorFromFactory() {
+        ChannelConfig config = new DefaultChannelConfig();
+        assertTrue(config.getReceiveBufferSizePredictor() instanceof AdaptiveReceiveBufferSizePredictor);
+
+        config.setOption(ChannelOption.RECEIVE_BUFFER_SIZE_PREDICTOR_FACTORY,
+                new FixedReceiveBufferSizePredictorFactory(128));
+        assertEquals(128, config.getReceiveBufferSizePredictor().nextReceiveBufferSize());
+
+        // Each channel gets its own adaptive predictor.
+        ChannelConfig a = new DefaultChannelConfig();
+        ChannelConfig b = new DefaultChannelConfig();
+        assertNotSame(a.getReceiveBufferSizePredictor(), b.getReceiveBufferSizePredictor());
+    }
+}
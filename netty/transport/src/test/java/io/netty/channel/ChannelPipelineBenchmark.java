@@ -0,0 +1,125 @@
+/*
+ * Copyright 2012 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel;
+
+import io.netty.channel.embedded.EmbeddedMessageChannel;
+
+import org.junit.Test;
+
+/**
+ * Measures the cost of passing an event through a pipeline of 10 handlers,
+ * where all but the last handler do not handle the event.  In the
+ * 'forwarding' pipeline, the handlers override the event handler method only
+ * to call {@code super}, so they cannot be skipped.  In the 'skipping'
+ * pipeline, the handlers inherit the method from the adapter, so the pipeline
+ * dispatches the event to the last handler directly.
+ * <p>
+ * Not run as part of the build.  Run it with
+ * {@code mvn test -Dtest=ChannelPipelineBenchmark}.
+ */
+public class ChannelPipelineBenchmark {
+
+    private static final int HANDLERS = 10;
+    private static final long WARMUP_MILLIS = 1000;
+    private static final long MEASURE_MILLIS = 3000;
+    private static final Object EVENT = new Object();
+
+    @Test
+    public void benchmark() throws Exception {
+        report("forwarding", run(new ForwardingHandlerFactory()));
+        report("skipping", run(new SkippableHandlerFactory()));
+    }
+
+    private static void report(String name, long eventsPerSecond) {
+        System.err.println(name + ": " + eventsPerSecond + " userEventTriggered/s (" + HANDLERS + " handlers)");
+    }
+
+    private static long run(HandlerFactory factory) {
+        ChannelHandler[] handlers = new ChannelHandler[HANDLERS];
+        for (int i = 0; i < HANDLERS - 1; i ++) {
+            handlers[i] = factory.newHandler();
+        }
+        CountingHandler counter = new CountingHandler();
+        handlers[HANDLERS - 1] = counter;
+
+        EmbeddedMessageChannel ch = new EmbeddedMessageChannel(handlers);
+        ChannelPipeline pipeline = ch.pipeline();
+        loop(pipeline, counter, WARMUP_MILLIS);
+        long eventsPerSecond = loop(pipeline, counter, MEASURE_MILLIS);
+        ch.finish();
+        return eventsPerSecond;
+    }
+
+    private static long loop(ChannelPipeline pipeline, CountingHandler counter, long millis) {
+        counter.count = 0;
+        long startTime = System.nanoTime();
+        long deadline = startTime + millis * 1000000L;
+        long currentTime;
+        do {
+            for (int i = 0; i < 1024; i ++) {
+                pipeline.fireUserEventTriggered(EVENT);
+            }
+            currentTime = System.nanoTime();
+        } while (currentTime < deadline);
+        return counter.count * 1000000000L / (currentTime - startTime);
+    }
+
+    private interface HandlerFactory {
+        ChannelHandler newHandler();
+    }
+
+    private static final class ForwardingHandlerFactory implements HandlerFactory {
+        @Override
+        public ChannelHandler newHandler() {
+            return new ChannelStateHandlerAdapter() {
+                @Override
+                public void userEventTriggered(ChannelHandlerContext ctx, Object evt) throws Exception {
+                    super.userEventTriggered(ctx, evt);
+                }
+            };
+        }
+    }
+
+    private static final class SkippableHandlerFactory implements HandlerFactory {
+        @Override
+        public ChannelHandler newHandler() {
+            return new ChannelStateHandlerAdapter() {
+                @Override
+                public void channelActive(ChannelHandlerContext ctx) throws Exception {
+                    super.channelActive(ctx);
+                }
+            };
+        }
+    }
+
+    private static final class CountingHandler extends ChannelInboundMessageHandlerAdapter<Object> {
+        long count;
+
+        @Override
+        public void messageReceived(ChannelHandlerContext ctx, Object msg) throws Exception {
+            // NOOP
+        }
+
+        @Override
+        public void userEventTriggered(ChannelHandlerContext ctx, Object evt) throws Exception {
+            if (evt == EVENT) {
+                count ++;
+            } else {
+                super.userEventTriggered(ctx, evt);
+            }
+        }
+    }
+}
@@ -16,7 +16,9 @@
 package io.netty.channel;
 
 import static org.junit.Assert.*;
+import io.netty.buffer.ByteBuf;
 import io.netty.channel.ChannelHandler.Sharable;
+import io.netty.channel.embedded.EmbeddedMessageChannel;
 import io.netty.channel.local.LocalChannel;
 
 import org.junit.Test;
@@ -47,6 +49,120 @@ public class DefaultChannelPipelineTest {
         assertTrue(pipeline.get("handler2") == newHandler2);
     }
 
+    @Test
+    public void testRemoveReleasesBuffers() {
+        DefaultChannelPipeline pipeline = new DefaultChannelPipeline(new LocalChannel());
+        ChannelHandlerContext ctx1 = addByteHandler(pipeline, "handler1");
+        ChannelHandlerContext ctx2 = addByteHandler(pipeline, "handler2");
+        ByteBuf buf1 = ctx1.inboundByteBuffer();
+        ByteBuf buf2 = ctx2.inboundByteBuffer();
+
+        pipeline.remove("handler1");
+        assertEquals(0, buf1.refCnt());
+        assertEquals(1, buf2.refCnt());
+
+        pipeline.removeLast();
+        assertEquals(0, buf2.refCnt());
+    }
+
+    @Test
+    public void testRemoveLastCallsAfterRemove() {
+        DefaultChannelPipeline pipeline = new DefaultChannelPipeline(new LocalChannel());
+        final int[] afterRemoveCount = new int[1];
+        pipeline.addLast("handler", new ChannelHandlerAdapter() {
+            @Override
+            public void afterRemove(ChannelHandlerContext ctx) throws Exception {
+                afterRemoveCount[0] ++;
+            }
+        });
+
+        pipeline.removeLast();
+        assertEquals(1, afterRemoveCount[0]);
+    }
+
+    @Test
+    public void testHandlerMask() {
+        assertEquals(0, ChannelHandlerMask.mask(ChannelStateHandlerAdapter.class));
+        assertEquals(0, ChannelHandlerMask.mask(ChannelOperationHandlerAdapter.class));
+        assertEquals(0, ChannelHandlerMask.mask(TestHandler.class));
+
+        ChannelHandler handler = new ChannelStateHandlerAdapter() {
+            @Override
+            public void userEventTriggered(ChannelHandlerContext ctx, Object evt) throws Exception {
+                super.userEventTriggered(ctx, evt);
+            }
+        };
+        assertEquals(ChannelHandlerMask.MASK_USER_EVENT_TRIGGERED, ChannelHandlerMask.mask(handler.getClass()));
+
+        // A handler with a buffer always consumes its buffer.
+        int mask = ChannelHandlerMask.mask(new ChannelInboundByteHandlerAdapter() {
+            @Override
+            public void inboundBufferUpdated(ChannelHandlerContext ctx, ByteBuf in) throws Exception {
+                // Dummy
+            }
+        }.getClass());
+        assertEquals(ChannelHandlerMask.MASK_INBOUND_BUFFER_UPDATED, mask);
+
+        mask = ChannelHandlerMask.mask(new ChannelOutboundMessageHandlerAdapter<Object>() {
+            @Override
+            public void flush(ChannelHandlerContext ctx, ChannelFuture future) throws Exception {
+                // Dummy
+            }
+        }.getClass());
+        // ... and flushes it before a file region is sent.
+        assertEquals(ChannelHandlerMask.MASK_FLUSH | ChannelHandlerMask.MASK_SEND_FILE, mask);
+    }
+
+    @Test
+    public void testSkipForwardingHandlers() {
+        final StringBuilder events = new StringBuilder();
+        EmbeddedMessageChannel ch = new EmbeddedMessageChannel(
+                new TestHandler(),
+                new ChannelHandlerAdapter() {
+                    @Override
+                    public void userEventTriggered(ChannelHandlerContext ctx, Object evt) throws Exception {
+                        events.append("A");
+                        super.userEventTriggered(ctx, evt);
+                    }
+
+                    @Override
+                    public void close(ChannelHandlerContext ctx, ChannelFuture future) throws Exception {
+                        events.append("C");
+                        super.close(ctx, future);
+                    }
+                },
+                new TestHandler(),
+                new ChannelInboundMessageHandlerAdapter<Object>() {
+                    @Override
+                    public void messageReceived(ChannelHandlerContext ctx, Object msg) throws Exception {
+                        // Dummy
+                    }
+
+                    @Override
+                    public void userEventTriggered(ChannelHandlerContext ctx, Object evt) throws Exception {
+                        events.append("B");
+                    }
+                },
+                new TestHandler());
+
+        ch.pipeline().fireUserEventTriggered("event");
+        assertEquals("AB", events.toString());
+
+        ch.close();
+        assertEquals("ABC", events.toString());
+        assertFalse(ch.isOpen());
+    }
+
+    private static ChannelHandlerContext addByteHandler(ChannelPipeline pipeline, String name) {
+        pipeline.addLast(name, new ChannelInboundByteHandlerAdapter() {
+            @Override
+            public void inboundBufferUpdated(ChannelHandlerContext ctx, ByteBuf in) throws Exception {
+                // Dummy
+            }
+        });
+        return pipeline.context(name);
+    }
+
     private static ChannelHandler newHandler() {
         return new TestHandler();
     }
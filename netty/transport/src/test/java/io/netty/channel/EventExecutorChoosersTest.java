@@ -0,0 +1,125 @@
+/*
+ * Copyright 2012 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel;
+
+import static org.junit.Assert.*;
+import io.netty.channel.local.LocalChannel;
+import io.netty.channel.local.LocalEventLoop;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class EventExecutorChoosersTest {
+
+    private final List<MultithreadEventLoop> groups = new ArrayList<MultithreadEventLoop>();
+
+    @After
+    public void shutdown() {
+        for (MultithreadEventLoop group: groups) {
+            group.shutdown();
+        }
+    }
+
+    @Test
+    public void testRoundRobin() {
+        MultithreadEventLoop group = newGroup(3);
+        EventExecutor[] children = group.children();
+        for (int i = 0; i < 6; i ++) {
+            assertSame(children[i % 3], group.unsafe().nextChild());
+        }
+    }
+
+    @Test
+    public void testLeastRegisteredChannels() throws Exception {
+        MultithreadEventLoop group = newGroup(4);
+        group.setChooser(EventExecutorChoosers.leastRegisteredChannels());
+        EventExecutor[] children = group.children();
+
+        List<Channel> channels = new ArrayList<Channel>();
+        for (int i = 0; i < 8; i ++) {
+            channels.add(register(group));
+        }
+        for (EventExecutor child: children) {
+            assertEquals(2, ((SingleThreadEventLoop) child).registeredChannels());
+        }
+
+        // Empty one of the event loops.
+        SingleThreadEventLoop emptied = (SingleThreadEventLoop) children[2];
+        for (Channel ch: channels) {
+            if (ch.eventLoop() == emptied) {
+                ch.close().sync();
+            }
+        }
+        emptied.submit(new Runnable() {
+            @Override
+            public void run() {
+                // Wait for the deregistration.
+            }
+        }).get();
+        assertEquals(0, emptied.registeredChannels());
+
+        assertSame(emptied, register(group).eventLoop());
+        assertSame(emptied, register(group).eventLoop());
+        assertEquals(2, emptied.registeredChannels());
+    }
+
+    @Test
+    public void testLeastRegisteredChannelsCountsPendingRegistrations() {
+        MultithreadEventLoop group = newGroup(2);
+        group.setChooser(EventExecutorChoosers.leastRegisteredChannels());
+        EventExecutor[] children = group.children();
+
+        // The registrations are not awaited, so the event loops may not have
+        // completed them yet when the next event loop is chosen.
+        for (int i = 0; i < 10; i ++) {
+            group.register(new LocalChannel());
+        }
+        for (EventExecutor child: children) {
+            assertEquals(5, ((SingleThreadEventLoop) child).registeredChannels());
+        }
+    }
+
+    @Test
+    public void testPowerOfTwoChoices() throws Exception {
+        // With two event loops, both are compared every time.
+        MultithreadEventLoop group = newGroup(2);
+        group.setChooser(EventExecutorChoosers.powerOfTwoChoices());
+        EventExecutor[] children = group.children();
+
+        for (int i = 0; i < 9; i ++) {
+            register(group);
+            int a = ((SingleThreadEventLoop) children[0]).registeredChannels();
+            int b = ((SingleThreadEventLoop) children[1]).registeredChannels();
+            assertEquals(i + 1, a + b);
+            assertTrue(Math.abs(a - b) <= 1);
+        }
+    }
+
+    private MultithreadEventLoop newGroup(int nThreads) {
+        MultithreadEventLoop group = new LocalEventLoop(nThreads);
+        groups.add(group);
+        return group;
+    }
+
+    private static Channel register(EventLoop group) throws Exception {
+        Channel ch = new LocalChannel();
+        group.register(ch).sync();
+        return ch;
+    }
+}
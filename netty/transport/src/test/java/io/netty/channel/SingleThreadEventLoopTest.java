@@ -21,6 +21,7 @@ import java.util.Queue;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executors;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -111,6 +112,54 @@ public class SingleThreadEventLoopTest {
         assertTrue(endTime.get() - startTime >= TimeUnit.MILLISECONDS.toNanos(500));
     }
 
+    @Test
+    public void scheduleTasksInDeadlineOrder() throws Exception {
+        final Queue<Integer> order = new LinkedBlockingQueue<Integer>();
+        final CountDownLatch latch = new CountDownLatch(4);
+        final int[] delays = { 300, 100, 0, 200 };
+        loop.execute(new Runnable() {
+            @Override
+            public void run() {
+                // Scheduled by the event loop itself.
+                for (final int delay: delays) {
+                    loop.schedule(new Runnable() {
+                        @Override
+                        public void run() {
+                            order.add(delay);
+                            latch.countDown();
+                        }
+                    }, delay, TimeUnit.MILLISECONDS);
+                }
+            }
+        });
+
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+        assertEquals(Integer.valueOf(0), order.poll());
+        assertEquals(Integer.valueOf(100), order.poll());
+        assertEquals(Integer.valueOf(200), order.poll());
+        assertEquals(Integer.valueOf(300), order.poll());
+    }
+
+    @Test
+    public void cancelScheduledTask() throws Exception {
+        final AtomicBoolean ran = new AtomicBoolean();
+        ScheduledFuture<?> f = loop.schedule(new Runnable() {
+            @Override
+            public void run() {
+                ran.set(true);
+            }
+        }, 100, TimeUnit.MILLISECONDS);
+        assertTrue(f.cancel(false));
+
+        loop.schedule(new Runnable() {
+            @Override
+            public void run() {
+                // Do nothing
+            }
+        }, 200, TimeUnit.MILLISECONDS).get();
+        assertFalse(ran.get());
+    }
+
     @Test
     public void scheduleTaskAtFixedRate() throws Exception {
         final Queue<Long> timestamps = new LinkedBlockingQueue<Long>();
@@ -214,6 +263,37 @@ public class SingleThreadEventLoopTest {
         }
     }
 
+    @Test
+    public void runAllTasksWithTimeout() throws Exception {
+        final AtomicInteger ranTasks = new AtomicInteger();
+        final AtomicInteger ranWithinBudget = new AtomicInteger();
+        final CountDownLatch latch = new CountDownLatch(128);
+        final Runnable task = new Runnable() {
+            @Override
+            public void run() {
+                ranTasks.incrementAndGet();
+                latch.countDown();
+            }
+        };
+
+        loop.execute(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < 128; i ++) {
+                    loop.execute(task);
+                }
+                // The deadline is checked every 64 tasks.
+                assertTrue(loop.runAllTasks(0));
+                ranWithinBudget.set(ranTasks.get());
+            }
+        });
+
+        // The remaining tasks are run by the event loop later.
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+        assertEquals(64, ranWithinBudget.get());
+        assertEquals(1, loop.taskBudgetExhaustedCount());
+    }
+
     @Test
     public void shutdownWithPendingTasks() throws Exception {
         final int NUM_TASKS = 3;
@@ -258,6 +338,99 @@ public class SingleThreadEventLoopTest {
         assertEquals(NUM_TASKS, ranTasks.get());
     }
 
+    @Test
+    public void pendingTasks() throws Exception {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch latch = new CountDownLatch(1);
+        loop.execute(new Runnable() {
+            @Override
+            public void run() {
+                started.countDown();
+                while (latch.getCount() > 0) {
+                    try {
+                        latch.await();
+                    } catch (InterruptedException e) {
+                        // Ignored
+                    }
+                }
+            }
+        });
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+        assertEquals(0, loop.pendingTasks());
+
+        final int NUM_TASKS = 5;
+        final CountDownLatch ran = new CountDownLatch(NUM_TASKS);
+        for (int i = 0; i < NUM_TASKS; i ++) {
+            loop.execute(new Runnable() {
+                @Override
+                public void run() {
+                    ran.countDown();
+                }
+            });
+        }
+        assertEquals(NUM_TASKS, loop.pendingTasks());
+
+        latch.countDown();
+        assertTrue(ran.await(10, TimeUnit.SECONDS));
+        assertEquals(0, loop.pendingTasks());
+    }
+
+    @Test
+    public void rejectTaskAddedDuringShutdown() throws Exception {
+        testRejectTaskAddedDuringShutdown(true);
+    }
+
+    @Test
+    public void rejectTaskAddedDuringShutdownWithoutRemoval() throws Exception {
+        testRejectTaskAddedDuringShutdown(false);
+    }
+
+    private void testRejectTaskAddedDuringShutdown(boolean removalSupported) throws Exception {
+        loop.shutdown();
+        ShutdownOnAddEventLoop loop = new ShutdownOnAddEventLoop(removalSupported);
+        this.loop = loop;
+
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch latch = new CountDownLatch(1);
+        loop.execute(new Runnable() {
+            @Override
+            public void run() {
+                started.countDown();
+                while (latch.getCount() > 0) {
+                    try {
+                        latch.await();
+                    } catch (InterruptedException e) {
+                        // Ignored
+                    }
+                }
+            }
+        });
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+
+        // The event loop is shut down right after the task is added.
+        final AtomicBoolean ran = new AtomicBoolean();
+        loop.shutdownOnAdd = true;
+        try {
+            loop.execute(new Runnable() {
+                @Override
+                public void run() {
+                    ran.set(true);
+                }
+            });
+            fail();
+        } catch (RejectedExecutionException e) {
+            // Expected
+        }
+
+        latch.countDown();
+        while (!loop.isTerminated()) {
+            loop.awaitTermination(1, TimeUnit.DAYS);
+        }
+        if (removalSupported) {
+            assertFalse(ran.get());
+        }
+    }
+
     private static class SingleThreadEventLoopImpl extends SingleThreadEventLoop {
 
         final AtomicInteger cleanedUp = new AtomicInteger();
@@ -301,4 +474,42 @@ public class SingleThreadEventLoopTest {
             return future;
         }
     }
+
+    private static final class ShutdownOnAddEventLoop extends SingleThreadEventLoopImpl {
+
+        private final boolean removalSupported;
+        volatile boolean shutdownOnAdd;
+
+        ShutdownOnAddEventLoop(boolean removalSupported) {
+            this.removalSupported = removalSupported;
+        }
+
+        @Override
+        protected Queue<Runnable> newTaskQueue() {
+            return new LinkedBlockingQueue<Runnable>() {
+                private static final long serialVersionUID = 4004366386924454813L;
+
+                @Override
+                public boolean remove(Object o) {
+                    if (!removalSupported) {
+                        throw new UnsupportedOperationException();
+                    }
+                    return super.remove(o);
+                }
+            };
+        }
+
+        @Override
+        protected boolean isTaskRemovalSupported() {
+            return removalSupported;
+        }
+
+        @Override
+        protected void addTask(Runnable task) {
+            super.addTask(task);
+            if (shutdownOnAdd) {
+                shutdown();
+            }
+        }
+    }
 }
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2012 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel;
+
+import static org.junit.Assert.*;
+import io.netty.channel.embedded.EmbeddedMessageChannel;
+
+import org.junit.Test;
+
+public class VoidChannelFutureTest {
+
+    @Test
+    public void testWrite() {
+        EmbeddedMessageChannel ch = new EmbeddedMessageChannel(new DummyHandler());
+        ChannelFuture future = ch.voidFuture();
+        assertSame(future, ch.voidFuture());
+        assertSame(future, ch.pipeline().context(DummyHandler.class).voidFuture());
+
+        assertSame(future, ch.write("a", future));
+        assertSame(future, ch.write("b", future));
+        ch.checkException();
+        assertEquals("a", ch.readOutbound());
+        assertEquals("b", ch.readOutbound());
+        assertFalse(future.isDone());
+    }
+
+    @Test
+    public void testFailureFiresExceptionCaught() {
+        final Exception cause = new Exception();
+        EmbeddedMessageChannel ch = new EmbeddedMessageChannel(
+                new DummyHandler(),
+                new ChannelOperationHandlerAdapter() {
+                    @Override
+                    public void flush(ChannelHandlerContext ctx, ChannelFuture future) throws Exception {
+                        future.setFailure(cause);
+                    }
+                });
+
+        ch.flush(ch.voidFuture());
+        try {
+            ch.checkException();
+            fail();
+        } catch (ChannelException e) {
+            assertSame(cause, e.getCause());
+        }
+    }
+
+    @Test
+    public void testUnvoid() {
+        final Exception cause = new Exception();
+        EmbeddedMessageChannel ch = new EmbeddedMessageChannel(new DummyHandler());
+        ChannelFuture future = ((VoidChannelFuture) ch.voidFuture()).unvoid();
+        assertNotSame(ch.voidFuture(), future);
+        assertFalse(future instanceof ChannelFuture.Unsafe);
+
+        future.setFailure(cause);
+        try {
+            ch.checkException();
+            fail();
+        } catch (ChannelException e) {
+            assertSame(cause, e.getCause());
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testAddListener() {
+        EmbeddedMessageChannel ch = new EmbeddedMessageChannel(new DummyHandler());
+        ch.voidFuture().addListener(ChannelFutureListener.CLOSE);
+    }
+
+    @Test
+    public void testCloseNotAllowed() {
+        EmbeddedMessageChannel ch = new EmbeddedMessageChannel(new DummyHandler());
+        try {
+            ch.close(ch.voidFuture());
+            fail();
+        } catch (IllegalArgumentException e) {
+            // Expected
+        }
+        assertTrue(ch.isOpen());
+    }
+
+    @Test
+    public void testInternalVoidFutureNotAllowed() {
+        EmbeddedMessageChannel ch = new EmbeddedMessageChannel(new DummyHandler());
+        try {
+            ch.write("a", ch.unsafe().voidFuture());
+            fail();
+        } catch (IllegalArgumentException e) {
+            // Expected
+        }
+    }
+
+    private static class DummyHandler extends ChannelInboundMessageHandlerAdapter<Object> {
+        @Override
+        public void messageReceived(ChannelHandlerContext ctx, Object msg) throws Exception {
+            // Dummy
+        }
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2012 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.local;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundMessageHandlerAdapter;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.EventLoop;
+
+import org.junit.Test;
+
+/**
+ * Measures the number of messages a pair of {@link LocalChannel}s can echo
+ * per second with 64 messages in flight, when both channels are registered
+ * to the same {@link EventLoop} and when they are registered to different
+ * ones.  The messages are written with the void future, so that the cost of
+ * the handoff is not hidden by the cost of the futures.
+ * <p>
+ * Not run as part of the build.  Run it with
+ * {@code mvn test -Dtest=LocalChannelBenchmark}.
+ */
+public class LocalChannelBenchmark {
+
+    private static final int WINDOW = 64;
+    private static final long WARMUP_MILLIS = 1000;
+    private static final long MEASURE_MILLIS = 3000;
+    private static final Object MESSAGE = new Object();
+
+    @Test
+    public void benchmark() throws Exception {
+        LocalEventLoop loop = new LocalEventLoop(1);
+        report("same loop", run(loop, loop, loop));
+
+        LocalEventLoop serverLoop = new LocalEventLoop(1);
+        LocalEventLoop clientLoop = new LocalEventLoop(1);
+        report("cross loop", run(serverLoop, serverLoop, clientLoop));
+    }
+
+    private static void report(String name, long messagesPerSecond) {
+        System.err.println(name + ": " + messagesPerSecond + " echoes/s (" + WINDOW + " in flight)");
+    }
+
+    private static long run(EventLoop bossLoop, EventLoop serverLoop, EventLoop clientLoop) throws Exception {
+        LocalAddress addr = new LocalAddress("benchmark");
+        ServerBootstrap sb = new ServerBootstrap();
+        Bootstrap cb = new Bootstrap();
+
+        sb.eventLoop(bossLoop, serverLoop)
+          .channel(new LocalServerChannel())
+          .localAddress(addr)
+          .childHandler(new ChannelInitializer<LocalChannel>() {
+              @Override
+              public void initChannel(LocalChannel ch) throws Exception {
+                  ch.pipeline().addLast(new EchoHandler());
+              }
+          });
+
+        PingHandler ping = new PingHandler();
+        cb.eventLoop(clientLoop)
+          .channel(new LocalChannel())
+          .remoteAddress(addr)
+          .handler(ping);
+
+        Channel sc = sb.bind().sync().channel();
+        Channel cc = cb.connect().sync().channel();
+        try {
+            Thread.sleep(WARMUP_MILLIS);
+            long startCount = ping.count;
+            long startTime = System.nanoTime();
+            Thread.sleep(MEASURE_MILLIS);
+            long endCount = ping.count;
+            long endTime = System.nanoTime();
+            return (endCount - startCount) * 1000000000L / (endTime - startTime);
+        } finally {
+            ping.stopped = true;
+            cc.close().sync();
+            sc.close().sync();
+            sb.shutdown();
+            cb.shutdown();
+        }
+    }
+
+    private static final class EchoHandler extends ChannelInboundMessageHandlerAdapter<Object> {
+        @Override
+        public void messageReceived(ChannelHandlerContext ctx, Object msg) throws Exception {
+            ctx.write(msg, ctx.voidFuture());
+        }
+    }
+
+    private static final class PingHandler extends ChannelInboundMessageHandlerAdapter<Object> {
+        volatile long count;
+        volatile boolean stopped;
+
+        @Override
+        public void channelActive(ChannelHandlerContext ctx) throws Exception {
+            for (int i = 0; i < WINDOW; i ++) {
+                ctx.write(MESSAGE, ctx.voidFuture());
+            }
+        }
+
+        @Override
+        public void messageReceived(ChannelHandlerContext ctx, Object msg) throws Exception {
+            count ++;
+            if (!stopped) {
+                ctx.write(msg, ctx.voidFuture());
+            }
+        }
+    }
+}
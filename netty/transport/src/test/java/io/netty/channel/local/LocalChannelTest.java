@@ -0,0 +1,213 @@
+/*
+ * Copyright 2012 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.local;
+
+import static org.junit.Assert.*;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundMessageHandlerAdapter;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.EventLoop;
+import io.netty.util.CharsetUtil;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class LocalChannelTest {
+
+    private static final LocalAddress ADDR = new LocalAddress("LocalChannelTest");
+
+    @Test
+    public void testSameEventLoop() throws Exception {
+        EventLoop loop = new LocalEventLoop(1);
+        testEcho(loop, loop, loop, 10000);
+    }
+
+    @Test
+    public void testDifferentEventLoops() throws Exception {
+        testEcho(new LocalEventLoop(1), new LocalEventLoop(1), new LocalEventLoop(1), 10000);
+    }
+
+    @Test
+    public void testSameEventLoopDeliversImmediately() throws Exception {
+        EventLoop loop = new LocalEventLoop(1);
+        final RecordingHandler server = new RecordingHandler(1);
+        ServerBootstrap sb = newServerBootstrap(loop, loop, server);
+        Bootstrap cb = new Bootstrap();
+        cb.eventLoop(loop)
+          .channel(new LocalChannel())
+          .remoteAddress(ADDR)
+          .handler(new RecordingHandler(0));
+
+        Channel sc = sb.bind().sync().channel();
+        final Channel cc = cb.connect().sync().channel();
+        try {
+            final List<Object> receivedDuringWrite = new ArrayList<Object>();
+            cc.eventLoop().submit(new Runnable() {
+                @Override
+                public void run() {
+                    cc.write("a");
+                    receivedDuringWrite.addAll(server.received);
+                }
+            }).get();
+
+            assertEquals(1, receivedDuringWrite.size());
+            assertEquals("a", receivedDuringWrite.get(0));
+        } finally {
+            cc.close().sync();
+            sc.close().sync();
+            sb.shutdown();
+            cb.shutdown();
+        }
+    }
+
+    @Test
+    public void testReleaseUndeliveredMessagesOnClose() throws Exception {
+        final RecordingHandler server = new RecordingHandler(1) {
+            @Override
+            public void channelActive(ChannelHandlerContext ctx) throws Exception {
+                child = ctx.channel();
+                latch.countDown();
+            }
+        };
+        ServerBootstrap sb = newServerBootstrap(new LocalEventLoop(1), new LocalEventLoop(1), server);
+        Bootstrap cb = new Bootstrap();
+        cb.eventLoop(new LocalEventLoop(1))
+          .channel(new LocalChannel())
+          .remoteAddress(ADDR)
+          .handler(new RecordingHandler(0));
+
+        Channel sc = sb.bind().sync().channel();
+        Channel cc = cb.connect().sync().channel();
+        try {
+            assertTrue(server.latch.await(10, TimeUnit.SECONDS));
+            EventLoop serverLoop = server.child.eventLoop();
+
+            // Keep the server event loop busy so that the message is still
+            // being handed over when the server side is closed.
+            final CountDownLatch resume = new CountDownLatch(1);
+            serverLoop.execute(new Runnable() {
+                @Override
+                public void run() {
+                    while (resume.getCount() > 0) {
+                        try {
+                            resume.await();
+                        } catch (InterruptedException e) {
+                            // Ignored
+                        }
+                    }
+                }
+            });
+            ChannelFuture closeFuture = server.child.close();
+            ByteBuf msg = Unpooled.copiedBuffer("a", CharsetUtil.US_ASCII);
+            cc.write(msg).sync();
+            resume.countDown();
+
+            closeFuture.sync();
+            // Wait for the delivery task which was scheduled after the close.
+            serverLoop.submit(new Runnable() {
+                @Override
+                public void run() {
+                    // NOOP
+                }
+            }).get();
+
+            assertTrue(server.received.isEmpty());
+            assertEquals(0, msg.refCnt());
+        } finally {
+            cc.close().sync();
+            sc.close().sync();
+            sb.shutdown();
+            cb.shutdown();
+        }
+    }
+
+    private static void testEcho(
+            EventLoop bossLoop, EventLoop serverLoop, EventLoop clientLoop, int messages) throws Exception {
+        ServerBootstrap sb = newServerBootstrap(bossLoop, serverLoop, new EchoHandler());
+        RecordingHandler client = new RecordingHandler(messages);
+        Bootstrap cb = new Bootstrap();
+        cb.eventLoop(clientLoop)
+          .channel(new LocalChannel())
+          .remoteAddress(ADDR)
+          .handler(client);
+
+        Channel sc = sb.bind().sync().channel();
+        Channel cc = cb.connect().sync().channel();
+        try {
+            for (int i = 0; i < messages; i ++) {
+                cc.write(Integer.valueOf(i), cc.voidFuture());
+            }
+
+            assertTrue(client.latch.await(10, TimeUnit.SECONDS));
+            for (int i = 0; i < messages; i ++) {
+                assertEquals(Integer.valueOf(i), client.received.get(i));
+            }
+        } finally {
+            cc.close().sync();
+            sc.close().sync();
+            sb.shutdown();
+            cb.shutdown();
+        }
+    }
+
+    private static ServerBootstrap newServerBootstrap(
+            EventLoop bossLoop, EventLoop serverLoop, final ChannelInboundMessageHandlerAdapter<Object> handler) {
+        ServerBootstrap sb = new ServerBootstrap();
+        sb.eventLoop(bossLoop, serverLoop)
+          .channel(new LocalServerChannel())
+          .localAddress(ADDR)
+          .childHandler(new ChannelInitializer<LocalChannel>() {
+              @Override
+              public void initChannel(LocalChannel ch) throws Exception {
+                  ch.pipeline().addLast(handler);
+              }
+          });
+        return sb;
+    }
+
+    private static final class EchoHandler extends ChannelInboundMessageHandlerAdapter<Object> {
+        @Override
+        public void messageReceived(ChannelHandlerContext ctx, Object msg) throws Exception {
+            ctx.write(msg, ctx.voidFuture());
+        }
+    }
+
+    private static class RecordingHandler extends ChannelInboundMessageHandlerAdapter<Object> {
+        final List<Object> received = new ArrayList<Object>();
+        final CountDownLatch latch;
+        volatile Channel child;
+
+        RecordingHandler(int expectedMessages) {
+            latch = new CountDownLatch(expectedMessages);
+        }
+
+        @Override
+        public void messageReceived(ChannelHandlerContext ctx, Object msg) throws Exception {
+            received.add(msg);
+            latch.countDown();
+        }
+    }
+}
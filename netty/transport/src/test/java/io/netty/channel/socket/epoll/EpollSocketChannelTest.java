@@ -0,0 +1,123 @@
+/*
+ * Copyright 2012 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.socket.epoll;
+
+import static org.junit.Assert.*;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundByteHandlerAdapter;
+import io.netty.util.NetworkConstants;
+
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ * Tests the epoll transport.  Skipped if the native library is not available.
+ */
+public class EpollSocketChannelTest {
+
+    @Test
+    public void testSocketOptions() throws Exception {
+        if (!Epoll.isAvailable()) {
+            return;
+        }
+
+        EpollSocketChannel ch = new EpollSocketChannel();
+        try {
+            EpollSocketChannelConfig config = ch.config();
+            config.setTcpCork(true);
+            assertTrue(config.isTcpCork());
+            assertTrue(config.getOption(EpollChannelOption.TCP_CORK));
+            config.setOption(EpollChannelOption.TCP_CORK, false);
+            assertFalse(config.isTcpCork());
+
+            config.setTcpNoDelay(true);
+            assertTrue(config.isTcpNoDelay());
+            config.setSoLinger(10);
+            assertEquals(10, config.getSoLinger());
+            config.setSoLinger(-1);
+            assertEquals(-1, config.getSoLinger());
+
+            assertTrue(config.getOptions().containsKey(EpollChannelOption.TCP_QUICKACK));
+        } finally {
+            Native.close(ch.fd);
+        }
+    }
+
+    @Test
+    public void testServerSocketOptions() throws Exception {
+        if (!Epoll.isAvailable()) {
+            return;
+        }
+
+        EpollServerSocketChannel ch = new EpollServerSocketChannel();
+        try {
+            EpollServerSocketChannelConfig config = ch.config();
+            assertTrue(config.isReuseAddress());
+            config.setOption(EpollChannelOption.SO_REUSEPORT, true);
+            assertTrue(config.isReusePort());
+            config.setBacklog(64);
+            assertEquals(64, (int) config.getOption(EpollChannelOption.SO_BACKLOG));
+        } finally {
+            Native.close(ch.fd);
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testAccept() throws Exception {
+        if (!Epoll.isAvailable()) {
+            return;
+        }
+
+        final CountDownLatch latch = new CountDownLatch(1);
+        ServerBootstrap sb = new ServerBootstrap()
+                .eventLoop(new EpollEventLoop(1), new EpollEventLoop(1))
+                .channel(new EpollServerSocketChannel())
+                .localAddress(new InetSocketAddress(NetworkConstants.LOCALHOST, 0))
+                .childHandler(new ChannelInboundByteHandlerAdapter() {
+                    @Override
+                    public void channelActive(ChannelHandlerContext ctx) throws Exception {
+                        assertTrue(ctx.channel() instanceof EpollSocketChannel);
+                        latch.countDown();
+                    }
+
+                    @Override
+                    public void inboundBufferUpdated(ChannelHandlerContext ctx, ByteBuf in) throws Exception {
+                        in.clear();
+                    }
+                });
+        try {
+            Channel sc = sb.bind().sync().channel();
+            InetSocketAddress localAddress = (InetSocketAddress) sc.localAddress();
+            assertTrue(localAddress.getPort() > 0);
+
+            Socket s = new Socket(localAddress.getAddress(), localAddress.getPort());
+            try {
+                assertTrue(latch.await(5, TimeUnit.SECONDS));
+            } finally {
+                s.close();
+            }
+        } finally {
+            sb.shutdown();
+        }
+    }
+}
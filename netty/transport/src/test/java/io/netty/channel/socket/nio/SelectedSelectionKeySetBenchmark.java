@@ -0,0 +1,133 @@
+/*
+ * Copyright 2012 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.socket.nio;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.Pipe;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Iterator;
+import java.util.Set;
+
+import org.junit.Test;
+
+/**
+ * Compares the throughput of the selector loop with the default selected-key
+ * set and with {@link SelectedSelectionKeySet}.  Every registered channel is
+ * always ready, so each iteration selects and processes all keys.
+ * <p>
+ * Not run as part of the build.  Run it with
+ * {@code mvn test -Dtest=SelectedSelectionKeySetBenchmark}.  On Java 9 or
+ * above, the optimized set requires
+ * {@code --add-opens java.base/sun.nio.ch=ALL-UNNAMED}.
+ */
+public class SelectedSelectionKeySetBenchmark {
+
+    private static final int CHANNELS = 256;
+    private static final long WARMUP_MILLIS = 1000;
+    private static final long MEASURE_MILLIS = 3000;
+
+    @Test
+    public void benchmark() throws Exception {
+        Pipe[] pipes = new Pipe[CHANNELS];
+        for (int i = 0; i < pipes.length; i ++) {
+            pipes[i] = Pipe.open();
+            pipes[i].source().configureBlocking(false);
+            // Never read, so the source stays readable.
+            pipes[i].sink().write(ByteBuffer.wrap(new byte[1]));
+        }
+
+        Selector plain = Selector.open();
+        Selector optimized = Selector.open();
+        try {
+            SelectedSelectionKeySet selectedKeys = SelectorUtil.optimizeSelectedKeys(optimized);
+            register(plain, pipes);
+            register(optimized, pipes);
+
+            report("plain", runPlain(plain));
+            if (selectedKeys == null) {
+                System.err.println("optimized: unavailable (selector implementation does not allow it)");
+            } else {
+                report("optimized", runOptimized(optimized, selectedKeys));
+            }
+        } finally {
+            optimized.close();
+            SelectedSelectionKeySetTest.closeAll(plain, pipes);
+        }
+    }
+
+    private static void register(Selector selector, Pipe[] pipes) throws Exception {
+        for (Pipe p: pipes) {
+            p.source().register(selector, SelectionKey.OP_READ, p);
+        }
+    }
+
+    private static void report(String name, long keysPerSecond) {
+        System.err.println(name + ": " + keysPerSecond + " keys/s");
+    }
+
+    private static long runPlain(Selector selector) throws Exception {
+        loopPlain(selector, WARMUP_MILLIS);
+        return loopPlain(selector, MEASURE_MILLIS);
+    }
+
+    private static long loopPlain(Selector selector, long millis) throws Exception {
+        long keys = 0;
+        long startTime = System.nanoTime();
+        long deadline = startTime + millis * 1000000L;
+        long currentTime;
+        do {
+            selector.selectNow();
+            Set<SelectionKey> selectedKeys = selector.selectedKeys();
+            for (Iterator<SelectionKey> i = selectedKeys.iterator(); i.hasNext();) {
+                keys += process(i.next());
+            }
+            selectedKeys.clear();
+            currentTime = System.nanoTime();
+        } while (currentTime < deadline);
+        return keys * 1000000000L / (currentTime - startTime);
+    }
+
+    private static long runOptimized(Selector selector, SelectedSelectionKeySet selectedKeys) throws Exception {
+        loopOptimized(selector, selectedKeys, WARMUP_MILLIS);
+        return loopOptimized(selector, selectedKeys, MEASURE_MILLIS);
+    }
+
+    private static long loopOptimized(
+            Selector selector, SelectedSelectionKeySet selectedKeys, long millis) throws Exception {
+        long keys = 0;
+        long startTime = System.nanoTime();
+        long deadline = startTime + millis * 1000000L;
+        long currentTime;
+        do {
+            selector.selectNow();
+            SelectionKey[] array = selectedKeys.keys();
+            for (int i = 0; i < selectedKeys.size(); i ++) {
+                keys += process(array[i]);
+            }
+            selectedKeys.reset();
+            currentTime = System.nanoTime();
+        } while (currentTime < deadline);
+        return keys * 1000000000L / (currentTime - startTime);
+    }
+
+    private static int process(SelectionKey k) {
+        if (k.attachment() == null) {
+            throw new IllegalStateException();
+        }
+        return k.readyOps() & SelectionKey.OP_READ;
+    }
+}
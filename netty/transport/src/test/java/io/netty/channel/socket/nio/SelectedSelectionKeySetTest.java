@@ -0,0 +1,149 @@
+/*
+ * Copyright 2012 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.socket.nio;
+
+import static org.junit.Assert.*;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.Pipe;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import org.junit.Test;
+
+public class SelectedSelectionKeySetTest {
+
+    @Test
+    public void testAddAndReset() throws Exception {
+        Selector selector = Selector.open();
+        Pipe[] pipes = new Pipe[1500];
+        try {
+            SelectedSelectionKeySet set = new SelectedSelectionKeySet();
+            for (int i = 0; i < pipes.length; i ++) {
+                pipes[i] = Pipe.open();
+                pipes[i].source().configureBlocking(false);
+                assertTrue(set.add(pipes[i].source().register(selector, SelectionKey.OP_READ)));
+            }
+            assertFalse(set.add(null));
+
+            // Grows beyond the initial capacity.
+            assertEquals(pipes.length, set.size());
+            SelectionKey[] keys = set.keys();
+            for (int i = 0; i < pipes.length; i ++) {
+                assertSame(pipes[i].source(), keys[i].channel());
+            }
+
+            set.reset();
+            assertEquals(0, set.size());
+            assertNull(set.keys()[0]);
+            assertNull(set.keys()[pipes.length - 1]);
+        } finally {
+            closeAll(selector, pipes);
+        }
+    }
+
+    @Test
+    public void testIterator() throws Exception {
+        Selector selector = Selector.open();
+        Pipe[] pipes = new Pipe[3];
+        try {
+            SelectedSelectionKeySet set = new SelectedSelectionKeySet();
+            SelectionKey[] expected = new SelectionKey[pipes.length];
+            for (int i = 0; i < pipes.length; i ++) {
+                pipes[i] = Pipe.open();
+                pipes[i].source().configureBlocking(false);
+                expected[i] = pipes[i].source().register(selector, SelectionKey.OP_READ);
+                set.add(expected[i]);
+            }
+
+            Iterator<SelectionKey> i = set.iterator();
+            for (SelectionKey k: expected) {
+                assertTrue(i.hasNext());
+                assertSame(k, i.next());
+            }
+            assertFalse(i.hasNext());
+            try {
+                i.next();
+                fail();
+            } catch (NoSuchElementException e) {
+                // Expected
+            }
+
+            // The methods of AbstractSet which iterate work as well.
+            assertEquals(Arrays.asList(expected), new ArrayList<SelectionKey>(set));
+            assertEquals(Arrays.asList(expected).toString(), set.toString());
+            int hashCode = 0;
+            for (SelectionKey k: expected) {
+                hashCode += k.hashCode();
+            }
+            assertEquals(hashCode, set.hashCode());
+
+            set.clear();
+            assertEquals(0, set.size());
+            assertFalse(set.iterator().hasNext());
+            assertNull(set.keys()[0]);
+        } finally {
+            closeAll(selector, pipes);
+        }
+    }
+
+    @Test
+    public void testOptimizedSelector() throws Exception {
+        Selector selector = Selector.open();
+        Pipe[] pipes = new Pipe[4];
+        try {
+            SelectedSelectionKeySet set = SelectorUtil.optimizeSelectedKeys(selector);
+            if (set == null) {
+                // Not allowed by the selector implementation.
+                return;
+            }
+            assertSame(set, selector.selectedKeys());
+
+            for (int i = 0; i < pipes.length; i ++) {
+                pipes[i] = Pipe.open();
+                pipes[i].source().configureBlocking(false);
+                pipes[i].source().register(selector, SelectionKey.OP_READ, pipes[i]);
+            }
+
+            pipes[1].sink().write(ByteBuffer.wrap(new byte[1]));
+            pipes[3].sink().write(ByteBuffer.wrap(new byte[1]));
+            assertEquals(2, selector.selectNow());
+            assertEquals(2, set.size());
+
+            SelectionKey[] keys = set.keys();
+            assertTrue(keys[0].attachment() == pipes[1] || keys[0].attachment() == pipes[3]);
+            assertTrue(keys[1].attachment() == pipes[1] || keys[1].attachment() == pipes[3]);
+            assertNotSame(keys[0], keys[1]);
+            assertTrue(keys[0].isReadable());
+        } finally {
+            closeAll(selector, pipes);
+        }
+    }
+
+    static void closeAll(Selector selector, Pipe[] pipes) throws Exception {
+        for (Pipe p: pipes) {
+            if (p != null) {
+                p.source().close();
+                p.sink().close();
+            }
+        }
+        selector.close();
+    }
+}